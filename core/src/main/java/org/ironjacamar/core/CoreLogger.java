@@ -74,6 +74,26 @@ public interface CoreLogger extends BasicLogger
          "Please close your own connections")
    public void closingConnectionNoClose(String clz);
 
+   /**
+    * Connection leak
+    * @param handle The handle
+    * @param held The time the handle has been held in milliseconds
+    * @param thread The allocating thread
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 104, value = "Connection held for %d ms by thread %s, possible leak: %s")
+   public void connectionLeak(Object handle, long held, String thread);
+
+   /**
+    * Connection leak
+    * @param handle The handle
+    * @param held The time the handle has been held in milliseconds
+    * @param thread The allocating thread
+    * @param t The allocation stack trace
+    */
+   @LogMessage(level = WARN)
+   public void connectionLeak(Object handle, long held, String thread, @Cause Throwable t);
+
    // WORK MANAGER (200)
 
    /**
@@ -159,27 +179,12 @@ public interface CoreLogger extends BasicLogger
    // POOL MANAGER (600)
 
    /**
-    * ConnectionValidator has been interrupted
-    */
-   @LogMessage(level = INFO)
-   @Message(id = 601, value = "ConnectionValidator has been interrupted")
-   public void returningConnectionValidatorInterrupted();
-
-   /**
-    * ConnectionValidator ignored unexpected runtime exception
-    * @param t The exception
-    */
-   @LogMessage(level = WARN)
-   @Message(id = 602, value = "ConnectionValidator ignored unexpected runtime exception")
-   public void connectionValidatorIgnoredUnexpectedRuntimeException(@Cause Throwable t);
-
-   /**
-    * ConnectionValidator ignored unexpected error
+    * MaintenanceScheduler ignored unexpected error
     * @param t The exception
     */
    @LogMessage(level = WARN)
-   @Message(id = 603, value = "ConnectionValidator ignored unexpected error")
-   public void connectionValidatorIgnoredUnexpectedError(@Cause Throwable t);
+   @Message(id = 604, value = "MaintenanceScheduler ignored unexpected error")
+   public void maintenanceSchedulerIgnoredUnexpectedError(@Cause Throwable t);
 
    /**
     * Unable to fill pool
@@ -319,4 +324,15 @@ public interface CoreLogger extends BasicLogger
          "transaction with more than one branch may result in inconsistent data in some cases of failure")
    public void prepareCalledOnLocaltx();
 
+   // BOOTSTRAP CONTEXT (1200)
+
+   /**
+    * Timer task failed
+    * @param task The task
+    * @param t The exception
+    */
+   @LogMessage(level = WARN)
+   @Message(id = 1201, value = "Timer task failed, cancelling its timer: %s")
+   public void timerTaskFailed(Object task, @Cause Throwable t);
+
 }
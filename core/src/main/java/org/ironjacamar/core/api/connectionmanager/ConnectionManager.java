@@ -23,6 +23,8 @@ package org.ironjacamar.core.api.connectionmanager;
 
 import org.ironjacamar.core.api.connectionmanager.listener.ConnectionListener;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionRequestInfo;
 import javax.resource.spi.LazyAssociatableConnectionManager;
@@ -68,6 +70,32 @@ public interface ConnectionManager extends javax.resource.spi.ConnectionManager,
    public boolean dissociateManagedConnection(Object connection, ManagedConnection mc, ManagedConnectionFactory mcf)
       throws ResourceException;
 
+   /**
+    * Allocate a connection without blocking the caller. The returned future is completed
+    * with the connection once a connection listener is free, or a new one has been created,
+    * and exceptionally if the allocation fails, or the blocking timeout and allocation retries
+    * are exhausted.
+    *
+    * The Subject is taken from the calling thread. The connection isn't enlisted in the
+    * transaction of the calling thread; use enlistConnection on a thread associated with
+    * the transaction once the future has completed.
+    *
+    * @param mcf The managed connection factory
+    * @param cri The connection request information
+    * @return The future connection
+    */
+   public CompletableFuture<Object> allocateConnectionAsync(ManagedConnectionFactory mcf, ConnectionRequestInfo cri);
+
+   /**
+    * Enlist a connection from allocateConnectionAsync in the transaction associated with
+    * the calling thread. Nothing is done if there is no transaction, or the connection
+    * manager isn't transactional
+    *
+    * @param connection The connection
+    * @exception ResourceException Thrown if an error occurs
+    */
+   public void enlistConnection(Object connection) throws ResourceException;
+
    /**
     * Return the connection listener
     * @param cl The connection listener
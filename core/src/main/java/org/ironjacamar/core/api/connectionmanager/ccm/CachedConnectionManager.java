@@ -73,6 +73,32 @@ public interface CachedConnectionManager extends UserTransactionListener
     */
    public void setIgnoreUnknownConnections(boolean v);
 
+   /**
+    * Get the leak sample rate; one in every rate connections records its allocation
+    * stack trace if debug is enabled. 1 samples every connection, and 0 none
+    * @return The value
+    */
+   public int getLeakSampleRate();
+
+   /**
+    * Set the leak sample rate
+    * @param v The value
+    */
+   public void setLeakSampleRate(int v);
+
+   /**
+    * Get the leak threshold; connections held longer than the threshold are reported
+    * if debug is enabled. 0 disables the reporting
+    * @return The value in milliseconds
+    */
+   public long getLeakThreshold();
+
+   /**
+    * Set the leak threshold
+    * @param v The value in milliseconds
+    */
+   public void setLeakThreshold(long v);
+
    /**
     * Push a context
     * @param contextKey The context key
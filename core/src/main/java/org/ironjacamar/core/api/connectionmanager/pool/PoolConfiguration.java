@@ -56,6 +56,9 @@ public class PoolConfiguration
    
    /** Background validation - millis */
    private long backgroundValidationMillis;
+
+   /** Background validation - batch size */
+   private int backgroundValidationBatchSize;
    
    /** Prefill pool*/
    private boolean prefill;
@@ -81,6 +84,7 @@ public class PoolConfiguration
       validateOnMatch = false;
       backgroundValidation = false;
       backgroundValidationMillis = 60000;
+      backgroundValidationBatchSize = 1;
       prefill = false;
       useFastFail = false;
       flushStrategy = null;
@@ -268,6 +272,28 @@ public class PoolConfiguration
       backgroundValidationMillis = v;
    }
 
+   /**
+    * Get background-validation-batch-size; the number of connections validated
+    * by a single ValidatingManagedConnectionFactory.getInvalidConnections call.
+    * Deployed resource adapters default to the ironjacamar.pool.validation.batch
+    * system property
+    * @return The value
+    */
+   public int getBackgroundValidationBatchSize()
+   {
+      return backgroundValidationBatchSize;
+   }
+
+   /**
+    * Set background-validation-batch-size
+    * @param v The value
+    */
+   public void setBackgroundValidationBatchSize(int v)
+   {
+      if (v > 0)
+         backgroundValidationBatchSize = v;
+   }
+
    /**
     * Get prefill
     * @return The value
@@ -340,6 +366,7 @@ public class PoolConfiguration
       sb.append(" validateOnMatch=").append(validateOnMatch);
       sb.append(" backgroundValidation=").append(backgroundValidation);
       sb.append(" backgroundValidationMillis=").append(backgroundValidationMillis);
+      sb.append(" backgroundValidationBatchSize=").append(backgroundValidationBatchSize);
       sb.append(" prefill=").append(prefill);
       sb.append(" useFastFail=").append(useFastFail);
       sb.append(" flushStrategy=").append(flushStrategy);
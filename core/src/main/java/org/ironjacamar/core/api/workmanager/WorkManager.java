@@ -28,7 +28,13 @@ import org.ironjacamar.core.spi.security.Callback;
 import org.ironjacamar.core.spi.security.SecurityIntegration;
 import org.ironjacamar.core.spi.transaction.xa.XATerminator;
 
+import java.util.Collection;
+
 import javax.resource.spi.ResourceAdapter;
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
 
 import org.jboss.threads.BlockingExecutor;
 
@@ -157,6 +163,20 @@ public interface WorkManager extends javax.resource.spi.work.WorkManager, Gracef
     */
    public WorkManagerStatistics getStatistics();
 
+   /**
+    * Schedule a batch of work instances. The work instances are verified once per class,
+    * and share the execution context and the work listener
+    * @param works The work instances
+    * @param startTimeout The start timeout for each work instance
+    * @param execContext The execution context
+    * @param workListener The work listener
+    * @exception WorkException Thrown if a work instance couldn't be scheduled; the work instances
+    *                          after a rejected work instance are rejected too
+    */
+   public void scheduleWorkBatch(Collection<? extends Work> works, long startTimeout,
+                                 ExecutionContext execContext, WorkListener workListener)
+      throws WorkException;
+
    /**
     * Clone the WorkManager implementation
     * @return A copy of the implementation
@@ -22,9 +22,7 @@ package org.ironjacamar.core.bootstrapcontext;
 
 import org.ironjacamar.core.api.workmanager.WorkManager;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 
@@ -58,8 +56,8 @@ public class BootstrapContextImpl implements CloneableBootstrapContext
    /** Supported contexts */
    private Set<Class> supportedContexts;
 
-   /** Timers */
-   private List<Timer> timers;
+   /** The scheduler of the timers */
+   private TimerScheduler timerScheduler;
 
    /** the name */
    private String name;
@@ -91,7 +89,7 @@ public class BootstrapContextImpl implements CloneableBootstrapContext
       this.supportedContexts.add(SecurityContext.class);
       this.supportedContexts.add(TransactionContext.class);
 
-      this.timers = null;
+      this.timerScheduler = null;
    }
 
    /**
@@ -152,19 +150,76 @@ public class BootstrapContextImpl implements CloneableBootstrapContext
    }
 
    /**
-    * Create a timer
+    * Create a timer; the tasks of the timers run on threads shared by the bootstrap context
     * @return The timer
     */
-   public Timer createTimer()
+   public synchronized Timer createTimer()
    {
-      Timer t = new Timer(true);
+      if (timerScheduler == null)
+         timerScheduler = new TimerScheduler();
 
-      if (timers == null)
-         timers = new ArrayList<Timer>();
+      return new BootstrapContextTimer(timerScheduler);
+   }
+
+   /**
+    * Get the number of timer threads
+    * @return The value
+    */
+   public synchronized int getTimerThreads()
+   {
+      if (timerScheduler == null)
+         return 0;
+
+      return timerScheduler.getThreads();
+   }
 
-      timers.add(t);
+   /**
+    * Get the number of pending timer tasks; periodic tasks are pending until they are cancelled
+    * @return The value
+    */
+   public synchronized int getTimerPendingTasks()
+   {
+      if (timerScheduler == null)
+         return 0;
+
+      return timerScheduler.getPendingTasks();
+   }
+
+   /**
+    * Get the number of timer tasks executed
+    * @return The value
+    */
+   public synchronized long getTimerExecutedCount()
+   {
+      if (timerScheduler == null)
+         return 0L;
+
+      return timerScheduler.getExecutedCount();
+   }
+
+   /**
+    * Get how late the timer tasks ran
+    * @param percentile The percentile
+    * @return The value in milliseconds
+    */
+   public synchronized long getTimerLateness(double percentile)
+   {
+      if (timerScheduler == null)
+         return 0L;
+
+      return timerScheduler.getLateness(percentile);
+   }
+
+   /**
+    * Get the maximum lateness of the timer tasks
+    * @return The value in milliseconds
+    */
+   public synchronized long getTimerMaxLateness()
+   {
+      if (timerScheduler == null)
+         return 0L;
 
-      return t;
+      return timerScheduler.getMaxLateness();
    }
 
    /**
@@ -183,16 +238,10 @@ public class BootstrapContextImpl implements CloneableBootstrapContext
    /**
     * Shutdown
     */
-   public void shutdown()
+   public synchronized void shutdown()
    {
-      if (timers != null)
-      {
-         for (Timer t : timers)
-         {
-            t.cancel();
-            t.purge();
-         }
-      }
+      if (timerScheduler != null)
+         timerScheduler.shutdown();
    }
 
    @Override
@@ -260,6 +309,7 @@ public class BootstrapContextImpl implements CloneableBootstrapContext
    public BootstrapContextImpl clone() throws CloneNotSupportedException
    {
       BootstrapContextImpl bcbc = (BootstrapContextImpl)super.clone();
+      bcbc.timerScheduler = null;
       bcbc.setTransactionSynchronizationRegistry(getTransactionSynchronizationRegistry());
       bcbc.setXATerminator(getXATerminator());
       bcbc.setName(getName());
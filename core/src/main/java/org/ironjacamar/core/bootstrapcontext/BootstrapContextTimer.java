@@ -0,0 +1,346 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.bootstrapcontext;
+
+import org.ironjacamar.core.CoreLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A timer which runs its tasks on a thread shared by the timers of the bootstrap context,
+ * instead of on a thread of its own.
+ *
+ * The bootstrap context has to return a {@link Timer}, and its constructors always start a
+ * thread; the base timer is cancelled right away, so its thread ends without waiting for a task.
+ *
+ * Each task is scheduled on the assigned thread through a wrapper, which runs it with the context
+ * classloader of the creator of the timer. Like {@link java.util.Timer}, a task throwing an
+ * exception cancels its timer; the other timers sharing the thread aren't affected. As the thread
+ * only holds the wrappers, a task is cancelled with {@link #cancel()} on its timer; the
+ * {@link TimerTask#cancel()} of the task itself isn't seen by the timer
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class BootstrapContextTimer extends Timer
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, BootstrapContextTimer.class.getName());
+
+   /** The scheduler */
+   private final TimerScheduler scheduler;
+
+   /** The index of the assigned thread */
+   private final int index;
+
+   /** The context classloader of the tasks */
+   private final ClassLoader classLoader;
+
+   /** The scheduled tasks */
+   private final Set<Entry> entries;
+
+   /** Cancelled */
+   private boolean cancelled;
+
+   /**
+    * Constructor
+    * @param scheduler The scheduler
+    */
+   BootstrapContextTimer(TimerScheduler scheduler)
+   {
+      super(true);
+      super.cancel();
+
+      this.scheduler = scheduler;
+      this.index = scheduler.assign();
+      this.classLoader = SecurityActions.getThreadContextClassLoader();
+      this.entries = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+      this.cancelled = false;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void schedule(TimerTask task, long delay)
+   {
+      Entry entry = add(task, false);
+      try
+      {
+         scheduler.getTimer(index).schedule(entry, delay);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void schedule(TimerTask task, Date time)
+   {
+      Entry entry = add(task, false);
+      try
+      {
+         scheduler.getTimer(index).schedule(entry, time);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void schedule(TimerTask task, long delay, long period)
+   {
+      Entry entry = add(task, true);
+      try
+      {
+         scheduler.getTimer(index).schedule(entry, delay, period);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void schedule(TimerTask task, Date firstTime, long period)
+   {
+      Entry entry = add(task, true);
+      try
+      {
+         scheduler.getTimer(index).schedule(entry, firstTime, period);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void scheduleAtFixedRate(TimerTask task, long delay, long period)
+   {
+      Entry entry = add(task, true);
+      try
+      {
+         scheduler.getTimer(index).scheduleAtFixedRate(entry, delay, period);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void scheduleAtFixedRate(TimerTask task, Date firstTime, long period)
+   {
+      Entry entry = add(task, true);
+      try
+      {
+         scheduler.getTimer(index).scheduleAtFixedRate(entry, firstTime, period);
+      }
+      catch (RuntimeException re)
+      {
+         unschedule(entry);
+         throw re;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void cancel()
+   {
+      List<Entry> l = null;
+
+      synchronized (this)
+      {
+         cancelled = true;
+
+         l = new ArrayList<Entry>(entries);
+         entries.clear();
+      }
+
+      for (Entry entry : l)
+      {
+         entry.cancel();
+         scheduler.done();
+      }
+
+      scheduler.purge(index);
+   }
+
+   /**
+    * Removes the cancelled tasks from the thread; the tasks of the other timers sharing
+    * the thread are included in the result
+    * @return The number of tasks removed
+    */
+   @Override
+   public int purge()
+   {
+      return scheduler.purge(index);
+   }
+
+   /**
+    * Get the number of tasks scheduled on this timer
+    * @return The value
+    */
+   synchronized int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Add a task
+    * @param task The task
+    * @param periodic Is the task periodic
+    * @return The entry to schedule
+    * @exception IllegalStateException Thrown if the timer is cancelled, or the task already scheduled
+    */
+   private synchronized Entry add(TimerTask task, boolean periodic)
+   {
+      if (task == null)
+         throw new NullPointerException();
+
+      if (cancelled)
+         throw new IllegalStateException("Timer already cancelled.");
+
+      scheduler.scheduled(task);
+
+      Entry entry = new Entry(task, periodic);
+      entries.add(entry);
+
+      return entry;
+   }
+
+   /**
+    * An entry couldn't be scheduled
+    * @param entry The entry
+    */
+   private void unschedule(Entry entry)
+   {
+      synchronized (this)
+      {
+         entries.remove(entry);
+      }
+
+      scheduler.unscheduled(entry.task);
+   }
+
+   /**
+    * Remove an entry which is done
+    * @param entry The entry
+    */
+   private void remove(Entry entry)
+   {
+      synchronized (this)
+      {
+         if (!entries.remove(entry))
+            return;
+      }
+
+      scheduler.done();
+   }
+
+   /**
+    * Runs a task for the timer
+    */
+   private class Entry extends TimerTask
+   {
+      /** The task */
+      private final TimerTask task;
+
+      /** Is the task periodic */
+      private final boolean periodic;
+
+      /**
+       * Constructor
+       * @param task The task
+       * @param periodic Is the task periodic
+       */
+      Entry(TimerTask task, boolean periodic)
+      {
+         this.task = task;
+         this.periodic = periodic;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         scheduler.executed(Math.max(0L, System.currentTimeMillis() - scheduledExecutionTime()));
+
+         final ClassLoader oldTccl = SecurityActions.getThreadContextClassLoader();
+         SecurityActions.setThreadContextClassLoader(classLoader);
+
+         try
+         {
+            task.run();
+         }
+         catch (Throwable t)
+         {
+            // Like java.util.Timer an exception ends the timer, but not the shared thread
+            log.timerTaskFailed(task, t);
+            BootstrapContextTimer.this.cancel();
+            return;
+         }
+         finally
+         {
+            SecurityActions.setThreadContextClassLoader(oldTccl);
+         }
+
+         if (!periodic)
+            remove(this);
+      }
+   }
+}
@@ -0,0 +1,268 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.bootstrapcontext;
+
+import org.ironjacamar.core.connectionmanager.pool.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * The timer threads shared by the timers of a bootstrap context.
+ *
+ * The threads are {@link java.util.Timer}s. There are at most a fixed number of threads, started
+ * when a timer is created, and each timer is assigned one of them in turn. The tasks of a timer
+ * run in sequence like with {@link java.util.Timer}; a long running task only delays the tasks of
+ * the timers sharing its thread. The tasks are run through a wrapper, so a task throwing an
+ * exception only ends its own timer, and never the thread
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class TimerScheduler
+{
+   /** The default number of threads */
+   static final int DEFAULT_THREADS = 4;
+
+   /** Thread name */
+   private static final String THREAD_NAME = "IronJacamar Timer";
+
+   /** The threads */
+   private final Timer[] timers;
+
+   /** The next thread to assign */
+   private int next;
+
+   /** The tasks that have been scheduled; a task can only be scheduled once */
+   private final Set<TimerTask> tasks;
+
+   /** The number of pending tasks */
+   private final AtomicInteger pending;
+
+   /** The number of tasks executed */
+   private final AtomicLong executed;
+
+   /** How late the tasks ran, in milliseconds */
+   private final LatencyHistogram lateness;
+
+   /** The maximum lateness, in milliseconds */
+   private final LongAccumulator maxLateness;
+
+   /** Shutdown */
+   private boolean shutdown;
+
+   /**
+    * Constructor
+    */
+   TimerScheduler()
+   {
+      this(DEFAULT_THREADS);
+   }
+
+   /**
+    * Constructor
+    * @param threads The maximum number of threads
+    */
+   TimerScheduler(int threads)
+   {
+      if (threads <= 0)
+         throw new IllegalArgumentException("Non-positive threads.");
+
+      this.timers = new Timer[threads];
+      this.next = 0;
+      this.tasks = Collections.newSetFromMap(new WeakHashMap<TimerTask, Boolean>());
+      this.pending = new AtomicInteger(0);
+      this.executed = new AtomicLong(0L);
+      this.lateness = new LatencyHistogram();
+      this.maxLateness = new LongAccumulator(Math::max, 0L);
+      this.shutdown = false;
+   }
+
+   /**
+    * Assign a thread to a timer
+    * @return The index of the thread
+    * @exception IllegalStateException Thrown if the scheduler is shutdown
+    */
+   synchronized int assign()
+   {
+      int index = next;
+      next = (next + 1) % timers.length;
+
+      getTimer(index);
+
+      return index;
+   }
+
+   /**
+    * Get a thread; it is started by the first timer assigned to it
+    * @param index The index of the thread
+    * @return The thread
+    * @exception IllegalStateException Thrown if the scheduler is shutdown
+    */
+   synchronized Timer getTimer(int index)
+   {
+      if (shutdown)
+         throw new IllegalStateException("Timer already cancelled.");
+
+      if (timers[index] == null)
+         timers[index] = new Timer(THREAD_NAME + "-" + (index + 1), true);
+
+      return timers[index];
+   }
+
+   /**
+    * Remove the cancelled tasks from a thread
+    * @param index The index of the thread
+    * @return The number of tasks removed
+    */
+   synchronized int purge(int index)
+   {
+      if (timers[index] == null)
+         return 0;
+
+      return timers[index].purge();
+   }
+
+   /**
+    * A task is scheduled
+    * @param task The task
+    * @exception IllegalStateException Thrown if the task has already been scheduled
+    */
+   void scheduled(TimerTask task)
+   {
+      synchronized (tasks)
+      {
+         if (!tasks.add(task))
+            throw new IllegalStateException("Task already scheduled or cancelled");
+      }
+
+      pending.incrementAndGet();
+   }
+
+   /**
+    * A task couldn't be scheduled after all
+    * @param task The task
+    */
+   void unscheduled(TimerTask task)
+   {
+      synchronized (tasks)
+      {
+         tasks.remove(task);
+      }
+
+      pending.decrementAndGet();
+   }
+
+   /**
+    * A task is done; it ran once, or it was cancelled
+    */
+   void done()
+   {
+      pending.decrementAndGet();
+   }
+
+   /**
+    * A task is executed
+    * @param late How late the task ran, in milliseconds
+    */
+   void executed(long late)
+   {
+      executed.incrementAndGet();
+      lateness.record(late);
+      maxLateness.accumulate(late);
+   }
+
+   /**
+    * Get the number of threads started
+    * @return The value
+    */
+   synchronized int getThreads()
+   {
+      int result = 0;
+      for (Timer timer : timers)
+      {
+         if (timer != null)
+            result++;
+      }
+      return result;
+   }
+
+   /**
+    * Get the number of pending tasks; periodic tasks are pending until they are cancelled
+    * @return The value
+    */
+   int getPendingTasks()
+   {
+      return pending.get();
+   }
+
+   /**
+    * Get the number of tasks executed
+    * @return The value
+    */
+   long getExecutedCount()
+   {
+      return executed.get();
+   }
+
+   /**
+    * Get how late the tasks ran
+    * @param percentile The percentile
+    * @return The value in milliseconds
+    */
+   long getLateness(double percentile)
+   {
+      return lateness.getValueAtPercentile(percentile);
+   }
+
+   /**
+    * Get the maximum lateness
+    * @return The value in milliseconds
+    */
+   long getMaxLateness()
+   {
+      return maxLateness.get();
+   }
+
+   /**
+    * Shutdown
+    */
+   synchronized void shutdown()
+   {
+      shutdown = true;
+
+      for (int i = 0; i < timers.length; i++)
+      {
+         if (timers[i] != null)
+         {
+            timers[i].cancel();
+            timers[i] = null;
+         }
+      }
+   }
+}
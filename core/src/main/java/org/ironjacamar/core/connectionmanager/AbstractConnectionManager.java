@@ -28,11 +28,19 @@ import org.ironjacamar.core.connectionmanager.pool.Pool;
 import org.ironjacamar.core.spi.graceful.GracefulCallback;
 import org.ironjacamar.core.spi.security.SubjectFactory;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionRequestInfo;
@@ -80,6 +88,9 @@ public abstract class AbstractConnectionManager implements ConnectionManager
     */
    protected SubjectFactory subjectFactory;
 
+   /** The credential cache */
+   protected CredentialCache credentialCache;
+
    /** Supports lazy association */
    private Boolean supportsLazyAssociation;
    
@@ -92,6 +103,15 @@ public abstract class AbstractConnectionManager implements ConnectionManager
    /** Graceful call back */
    private GracefulCallback gracefulCallback;
 
+   /** Executor for asynchronous allocations */
+   private ExecutorService allocationExecutor;
+
+   /** The pending asynchronous allocations */
+   private Set<AsyncAllocation> asyncAllocations;
+
+   /** The lock */
+   private final ReentrantLock lock;
+
    /**
     * Constructor
     *
@@ -112,6 +132,25 @@ public abstract class AbstractConnectionManager implements ConnectionManager
       this.scheduledExecutorService = null;
       this.scheduledGraceful = null;
       this.gracefulCallback = null;
+      this.allocationExecutor = null;
+      this.asyncAllocations = ConcurrentHashMap.newKeySet();
+      this.lock = new ReentrantLock();
+
+      long ttl = CredentialCache.DEFAULT_TIME_TO_LIVE;
+      String value = SecurityActions.getSystemProperty("ironjacamar.cm.credential.ttl");
+      if (value != null && !value.trim().equals(""))
+      {
+         try
+         {
+            ttl = Long.parseLong(value.trim());
+         }
+         catch (Throwable t)
+         {
+            // Use the default time to live
+         }
+      }
+
+      this.credentialCache = new CredentialCache(mcf, ttl, CredentialCache.DEFAULT_MAX_SIZE);
    }
 
    /**
@@ -160,6 +199,7 @@ public abstract class AbstractConnectionManager implements ConnectionManager
    public void setSubjectFactory(SubjectFactory subjectFactory)
    {
       this.subjectFactory = subjectFactory;
+      this.credentialCache.clear();
    }
 
    /**
@@ -257,11 +297,8 @@ public abstract class AbstractConnectionManager implements ConnectionManager
 
       if (seconds > 0 && scheduledGraceful == null)
       {
-         if (scheduledExecutorService == null)
-            scheduledExecutorService = Executors.newScheduledThreadPool(1);
-
          scheduledGraceful =
-            scheduledExecutorService.schedule(new ConnectionManagerShutdown(this), seconds, TimeUnit.SECONDS);
+            getScheduledExecutorService().schedule(new ConnectionManagerShutdown(this), seconds, TimeUnit.SECONDS);
       }
    }
 
@@ -282,27 +319,46 @@ public abstract class AbstractConnectionManager implements ConnectionManager
    /**
     * {@inheritDoc}
     */
-   public synchronized void shutdown()
+   public void shutdown()
    {
-      shutdown.set(true);
+      lock.lock();
+      try
+      {
+         shutdown.set(true);
 
-      if (pool != null)
-         pool.shutdown();
+         if (pool != null)
+            pool.shutdown();
 
-      if (scheduledExecutorService != null)
-      {
-         if (scheduledGraceful != null && !scheduledGraceful.isDone())
-            scheduledGraceful.cancel(true);
+         credentialCache.clear();
 
-         scheduledGraceful = null;
-         scheduledExecutorService.shutdownNow();
-         scheduledExecutorService = null;
-      }
+         for (AsyncAllocation allocation : asyncAllocations)
+            allocation.fail(new ResourceException());
+
+         if (scheduledExecutorService != null)
+         {
+            if (scheduledGraceful != null && !scheduledGraceful.isDone())
+               scheduledGraceful.cancel(true);
 
-      if (gracefulCallback != null)
+            scheduledGraceful = null;
+            scheduledExecutorService.shutdownNow();
+            scheduledExecutorService = null;
+         }
+
+         if (allocationExecutor != null)
+         {
+            allocationExecutor.shutdownNow();
+            allocationExecutor = null;
+         }
+
+         if (gracefulCallback != null)
+         {
+            gracefulCallback.done();
+            gracefulCallback = null;
+         }
+      }
+      finally
       {
-         gracefulCallback.done();
-         gracefulCallback = null;
+         lock.unlock();
       }
    }
 
@@ -321,18 +377,8 @@ public abstract class AbstractConnectionManager implements ConnectionManager
    {
       if (shutdown.get())
          throw new ResourceException();
-      Credential credential;
-      if (subjectFactory == null || cmConfiguration.getSecurityDomain() == null)
-      {
-         credential = new Credential(null, cri);
-      }
-      else
-      {
-         credential = new Credential(SecurityActions.createSubject(subjectFactory,
-                                                                   cmConfiguration.getSecurityDomain(),
-                                                                   mcf),
-                                     cri);
-      }
+      Credential credential =
+         credentialCache.getCredential(subjectFactory, cmConfiguration.getSecurityDomain(), cri);
       org.ironjacamar.core.connectionmanager.listener.ConnectionListener cl = getConnectionListener(credential);
       Object connection = cl.getConnection();
 
@@ -342,6 +388,50 @@ public abstract class AbstractConnectionManager implements ConnectionManager
       return connection;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public CompletableFuture<Object> allocateConnectionAsync(ManagedConnectionFactory mcf, ConnectionRequestInfo cri)
+   {
+      try
+      {
+         if (shutdown.get())
+            throw new ResourceException();
+
+         Credential credential =
+            credentialCache.getCredential(subjectFactory, cmConfiguration.getSecurityDomain(), cri);
+
+         AsyncAllocation allocation = new AsyncAllocation(credential);
+         asyncAllocations.add(allocation);
+         allocation.submit();
+
+         return allocation.future;
+      }
+      catch (ResourceException re)
+      {
+         CompletableFuture<Object> future = new CompletableFuture<Object>();
+         future.completeExceptionally(re);
+         return future;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void enlistConnection(Object connection) throws ResourceException
+   {
+      if (connection == null)
+         throw new ResourceException();
+
+      org.ironjacamar.core.connectionmanager.listener.ConnectionListener cl =
+         pool.findConnectionListener(null, connection);
+
+      if (cl == null)
+         throw new ResourceException("Unknown connection: " + connection);
+
+      enlistAsyncConnectionListener(cl);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -453,6 +543,93 @@ public abstract class AbstractConnectionManager implements ConnectionManager
       throw new ResourceException(failure);
    }
 
+   /**
+    * Get a connection listener for an asynchronous allocation. This is a single attempt
+    * without retries, on an allocation executor thread
+    *
+    * @param credential The credential
+    * @return The listener
+    * @throws ResourceException Thrown in case of an error
+    */
+   protected org.ironjacamar.core.connectionmanager.listener.ConnectionListener getAsyncConnectionListener(
+         Credential credential) throws ResourceException
+   {
+      org.ironjacamar.core.connectionmanager.listener.ConnectionListener result =
+         pool.getConnectionListener(credential);
+
+      if (supportsLazyAssociation == null)
+      {
+         supportsLazyAssociation =
+            (result.getManagedConnection() instanceof DissociatableManagedConnection) ? Boolean.TRUE : Boolean.FALSE;
+      }
+
+      return result;
+   }
+
+   /**
+    * Enlist the connection listener of an asynchronous allocation in the context of the
+    * calling thread
+    *
+    * @param cl The listener
+    * @throws ResourceException Thrown in case of an error
+    */
+   protected void enlistAsyncConnectionListener(
+         org.ironjacamar.core.connectionmanager.listener.ConnectionListener cl)
+      throws ResourceException
+   {
+   }
+
+   /**
+    * Get the scheduled executor service
+    * @return The value
+    */
+   private ScheduledExecutorService getScheduledExecutorService()
+   {
+      lock.lock();
+      try
+      {
+         if (scheduledExecutorService == null)
+            scheduledExecutorService = Executors.newScheduledThreadPool(1);
+
+         return scheduledExecutorService;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Get the executor for asynchronous allocations
+    * @return The value
+    */
+   private ExecutorService getAllocationExecutor()
+   {
+      lock.lock();
+      try
+      {
+         if (allocationExecutor == null)
+         {
+            // An attempt may wait for up to the blocking timeout, so the number of threads is
+            // bounded, and the other allocations queue up without holding a thread
+            int threads = Math.max(1, Math.min(pool.getConfiguration().getMaxSize(),
+                                               Runtime.getRuntime().availableProcessors()));
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                                 new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+
+            allocationExecutor = executor;
+         }
+
+         return allocationExecutor;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -494,18 +671,8 @@ public abstract class AbstractConnectionManager implements ConnectionManager
       if (connection == null)
          throw new ResourceException();
 
-      Credential credential = null;
-      if (getSubjectFactory() == null || cmConfiguration.getSecurityDomain() == null)
-      {
-         credential = new Credential(null, cri);
-      }
-      else
-      {
-         credential = new Credential(SecurityActions.createSubject(subjectFactory,
-                                                                   cmConfiguration.getSecurityDomain(),
-                                                                   mcf),
-                                     cri);
-      }
+      Credential credential =
+         credentialCache.getCredential(getSubjectFactory(), cmConfiguration.getSecurityDomain(), cri);
 
       return associateConnectionListener(credential, connection).getManagedConnection();
    }
@@ -682,4 +849,177 @@ public abstract class AbstractConnectionManager implements ConnectionManager
 
       return false;
    }
+
+   /**
+    * An asynchronous allocation. Each attempt runs on the allocation executor, and
+    * waits for at most the blocking timeout; retries are scheduled after the allocation
+    * retry wait instead of sleeping
+    */
+   private class AsyncAllocation implements Runnable
+   {
+      /** The future */
+      private final AllocationFuture future;
+
+      /** The credential */
+      private final Credential credential;
+
+      /** The time the allocation was submitted */
+      private final long submitted;
+
+      /** The number of retries */
+      private int retries;
+
+      /**
+       * Constructor
+       * @param credential The credential
+       */
+      AsyncAllocation(Credential credential)
+      {
+         this.future = new AllocationFuture();
+         this.credential = credential;
+         this.submitted = System.currentTimeMillis();
+         this.retries = 0;
+      }
+
+      /**
+       * Submit an attempt
+       */
+      void submit()
+      {
+         try
+         {
+            getAllocationExecutor().execute(this);
+         }
+         catch (RejectedExecutionException ree)
+         {
+            fail(new ResourceException(ree));
+         }
+      }
+
+      /**
+       * Fail the allocation
+       * @param t The cause
+       */
+      void fail(Throwable t)
+      {
+         asyncAllocations.remove(this);
+         future.failed(t);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         if (future.isDone())
+         {
+            asyncAllocations.remove(this);
+            return;
+         }
+
+         if (shutdown.get())
+         {
+            fail(new ResourceException());
+            return;
+         }
+
+         // Queued behind other attempts for longer than a caller would have blocked
+         if (retries == 0 &&
+             System.currentTimeMillis() - submitted > pool.getConfiguration().getBlockingTimeout())
+         {
+            fail(new ResourceException("No ConnectionListener"));
+            return;
+         }
+
+         try
+         {
+            org.ironjacamar.core.connectionmanager.listener.ConnectionListener cl =
+               getAsyncConnectionListener(credential);
+            Object connection = cl.getConnection();
+
+            if (ccm != null)
+               ccm.registerConnection(AbstractConnectionManager.this, cl, connection);
+
+            asyncAllocations.remove(this);
+            future.acquired(cl, connection);
+         }
+         catch (Exception e)
+         {
+            int to = cmConfiguration.getAllocationRetry();
+            long sleep = cmConfiguration.getAllocationRetryWaitMillis();
+
+            if (to == 0 && e instanceof RetryableException)
+               to = 1;
+
+            if (retries < to && !shutdown.get())
+            {
+               retries++;
+
+               if (sleep > 0)
+               {
+                  try
+                  {
+                     getScheduledExecutorService().schedule(new Runnable()
+                     {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public void run()
+                        {
+                           submit();
+                        }
+                     }, sleep, TimeUnit.MILLISECONDS);
+                  }
+                  catch (RejectedExecutionException ree)
+                  {
+                     fail(new ResourceException(e));
+                  }
+               }
+               else
+               {
+                  submit();
+               }
+            }
+            else
+            {
+               fail(e instanceof ResourceException ? e : new ResourceException(e));
+            }
+         }
+      }
+   }
+
+   /**
+    * The future of an asynchronous allocation. The connection listener is acquired outside of
+    * the context of the caller, and the future completes once it is acquired; enlisting it in
+    * a transaction is left to the caller through enlistConnection
+    */
+   private class AllocationFuture extends CompletableFuture<Object>
+   {
+      /**
+       * The connection listener has been acquired
+       * @param cl The connection listener
+       * @param connection The connection
+       */
+      void acquired(org.ironjacamar.core.connectionmanager.listener.ConnectionListener cl, Object connection)
+      {
+         if (!complete(connection))
+         {
+            // Cancelled by the caller while the attempt was running
+            if (ccm != null)
+               ccm.unregisterConnection(AbstractConnectionManager.this, cl, connection);
+
+            cl.removeConnection(connection);
+            returnConnectionListener(cl, false);
+         }
+      }
+
+      /**
+       * The allocation failed
+       * @param t The cause
+       */
+      void failed(Throwable t)
+      {
+         completeExceptionally(t);
+      }
+   }
 }
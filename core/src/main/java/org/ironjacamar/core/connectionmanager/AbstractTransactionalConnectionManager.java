@@ -132,6 +132,15 @@ public abstract class AbstractTransactionalConnectionManager extends AbstractCon
       }
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void enlistAsyncConnectionListener(ConnectionListener cl) throws ResourceException
+   {
+      transactionStarted(cl);
+   }
+
    /**
     * Should enlist the ConnectionListener
     * @param cl The ConnectionListener
@@ -0,0 +1,220 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.spi.security.SubjectFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.security.auth.Subject;
+
+/**
+ * A cache of the Credential instances of a connection manager.
+ *
+ * The Subject of the security domain is created once and reused until it expires, and a canonical
+ * Credential is kept for each ConnectionRequestInfo, such that pool lookups can reuse the cached
+ * hash code, and the equals checks can stop at the identity check. The cache is
+ * evicted when the subject factory or the security domain changes.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class CredentialCache
+{
+   /** Default time to live in milliseconds */
+   public static final long DEFAULT_TIME_TO_LIVE = 60000L;
+
+   /** Default maximum number of credentials per subject */
+   public static final int DEFAULT_MAX_SIZE = 64;
+
+   /** The managed connection factory */
+   private final ManagedConnectionFactory mcf;
+
+   /** The time to live in nanoseconds */
+   private final long timeToLive;
+
+   /** The maximum number of credentials per subject */
+   private final int maxSize;
+
+   /** The current entry */
+   private volatile Entry entry;
+
+   /**
+    * Constructor
+    * @param mcf The managed connection factory
+    * @param timeToLive The time to live of a Subject in milliseconds; 0 or less disables the Subject cache
+    * @param maxSize The maximum number of credentials per subject
+    */
+   public CredentialCache(ManagedConnectionFactory mcf, long timeToLive, int maxSize)
+   {
+      this.mcf = mcf;
+      this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+      this.maxSize = maxSize;
+      this.entry = null;
+   }
+
+   /**
+    * Get a credential
+    * @param subjectFactory The subject factory, or <code>null</code>
+    * @param securityDomain The security domain, or <code>null</code>
+    * @param cri The connection request info
+    * @return The credential
+    */
+   public Credential getCredential(SubjectFactory subjectFactory, String securityDomain, ConnectionRequestInfo cri)
+   {
+      boolean secured = subjectFactory != null && securityDomain != null;
+
+      if (secured && timeToLive <= 0)
+         return new Credential(SecurityActions.createSubject(subjectFactory, securityDomain, mcf), cri);
+
+      Entry e = entry;
+
+      if (e == null || !e.isValid(secured ? subjectFactory : null, secured ? securityDomain : null))
+      {
+         Subject subject = null;
+
+         if (secured)
+            subject = SecurityActions.createSubject(subjectFactory, securityDomain, mcf);
+
+         e = new Entry(secured ? subjectFactory : null, secured ? securityDomain : null, subject);
+         entry = e;
+      }
+
+      return e.getCredential(cri);
+   }
+
+   /**
+    * Clear the cache
+    */
+   public void clear()
+   {
+      entry = null;
+   }
+
+   /**
+    * The credentials of a Subject
+    */
+   private class Entry
+   {
+      /** The subject factory */
+      private final SubjectFactory subjectFactory;
+
+      /** The security domain */
+      private final String securityDomain;
+
+      /** The subject */
+      private final Subject subject;
+
+      /** The creation time */
+      private final long created;
+
+      /** The credential without a connection request info */
+      private final Credential credential;
+
+      /** The credentials by connection request info; the least recently used is evicted when full */
+      private final LinkedHashMap<ConnectionRequestInfo, Credential> credentials;
+
+      /** The lock for the credentials */
+      private final ReentrantLock lock;
+
+      /**
+       * Constructor
+       * @param subjectFactory The subject factory
+       * @param securityDomain The security domain
+       * @param subject The subject
+       */
+      Entry(SubjectFactory subjectFactory, String securityDomain, Subject subject)
+      {
+         this.subjectFactory = subjectFactory;
+         this.securityDomain = securityDomain;
+         this.subject = subject;
+         this.created = System.nanoTime();
+         this.credential = new Credential(subject, null);
+         this.credentials = new LinkedHashMap<ConnectionRequestInfo, Credential>(16, 0.75f, true)
+         {
+            /** Serial version uid */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ConnectionRequestInfo, Credential> eldest)
+            {
+               return size() > maxSize;
+            }
+         };
+         this.lock = new ReentrantLock();
+      }
+
+      /**
+       * Is the entry valid for a subject factory and security domain
+       * @param sf The subject factory
+       * @param sd The security domain
+       * @return True if valid, otherwise false
+       */
+      boolean isValid(SubjectFactory sf, String sd)
+      {
+         if (sf != subjectFactory)
+            return false;
+
+         if (sd == null ? securityDomain != null : !sd.equals(securityDomain))
+            return false;
+
+         return subject == null || System.nanoTime() - created < timeToLive;
+      }
+
+      /**
+       * Get the credential for a connection request info
+       * @param cri The connection request info
+       * @return The credential
+       */
+      Credential getCredential(ConnectionRequestInfo cri)
+      {
+         if (cri == null)
+            return credential;
+
+         lock.lock();
+         try
+         {
+            Credential c = credentials.get(cri);
+
+            if (c == null)
+            {
+               c = new Credential(subject, cri);
+               credentials.put(cri, c);
+            }
+
+            return c;
+         }
+         finally
+         {
+            lock.unlock();
+         }
+      }
+   }
+}
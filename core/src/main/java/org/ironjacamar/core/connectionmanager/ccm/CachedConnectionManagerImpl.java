@@ -25,6 +25,7 @@ import org.ironjacamar.core.CoreBundle;
 import org.ironjacamar.core.CoreLogger;
 import org.ironjacamar.core.api.connectionmanager.ccm.CachedConnectionManager;
 import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.pool.MaintenanceScheduler;
 import org.ironjacamar.core.spi.transaction.TransactionIntegration;
 import org.ironjacamar.core.spi.transaction.TxUtils;
 import org.ironjacamar.core.tracer.Tracer;
@@ -40,8 +41,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
@@ -84,8 +86,17 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
    /** Thread contexts - stack based */
    private ThreadLocal<LinkedList<Context>> threadContexts = new ThreadLocal<LinkedList<Context>>();
 
-   /** Connection stack traces */
-   private Map<Object, Throwable> connectionStackTraces = new WeakHashMap<Object, Throwable>();
+   /** Leak sample rate */
+   private volatile int leakSampleRate;
+
+   /** Leak threshold */
+   private volatile long leakThreshold;
+
+   /** The connections in use */
+   private ConnectionTracker connections = new ConnectionTracker();
+
+   /** The leak check */
+   private AtomicReference<MaintenanceScheduler.Task> leakCheck;
 
    /**
     * Constructor
@@ -96,6 +107,9 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       this.debug = false;
       this.error = false;
       this.ignoreConnections = false;
+      this.leakSampleRate = 1;
+      this.leakThreshold = 0L;
+      this.leakCheck = new AtomicReference<MaintenanceScheduler.Task>(null);
       this.transactionIntegration = transactionIntegration;
    }
 
@@ -113,6 +127,7 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
    public void setDebug(boolean v)
    {
       debug = v;
+      scheduleLeakCheck();
    }
 
    /**
@@ -147,6 +162,43 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       ignoreConnections = v;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public int getLeakSampleRate()
+   {
+      return leakSampleRate;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLeakSampleRate(int v)
+   {
+      if (v >= 0)
+         leakSampleRate = v;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getLeakThreshold()
+   {
+      return leakThreshold;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLeakThreshold(long v)
+   {
+      if (v >= 0)
+      {
+         leakThreshold = v;
+         scheduleLeakCheck();
+      }
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -332,10 +384,10 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
    {
       if (debug)
       {
-         synchronized (connectionStackTraces)
-         {
-            connectionStackTraces.put(connection, new Throwable("STACKTRACE"));
-         }
+         int rate = leakSampleRate;
+         boolean sample = rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+
+         connections.register(connection, sample ? new Throwable("STACKTRACE") : null);
       }
 
       Context context = currentContext();
@@ -379,10 +431,7 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
             ccs.remove(connection);
          }
 
-         synchronized (connectionStackTraces)
-         {
-            connectionStackTraces.remove(connection);
-         }
+         connections.unregister(connection);
       }
 
       Context context = currentContext();
@@ -433,10 +482,7 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       if (!debug)
          return 0;
 
-      synchronized (connectionStackTraces)
-      {
-         return connectionStackTraces.size();
-      }
+      return connections.size();
    }
 
    /**
@@ -447,24 +493,34 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       if (!debug)
          return Collections.unmodifiableMap(Collections.EMPTY_MAP);
 
-      synchronized (connectionStackTraces)
+      Map<String, String> result = new HashMap<String, String>();
+      long now = System.currentTimeMillis();
+      long threshold = leakThreshold;
+
+      for (Map.Entry<Object, ConnectionTracker.Allocation> entry : connections.getAllocations().entrySet())
       {
-         Map<String, String> result = new HashMap<String, String>();
+         Object key = entry.getKey();
+         ConnectionTracker.Allocation allocation = entry.getValue();
+         long held = now - allocation.getTimestamp();
 
-         for (Map.Entry<Object, Throwable> entry : connectionStackTraces.entrySet())
-         {
-            Object key = entry.getKey();
-            Throwable stackTrace = entry.getValue();
+         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+         PrintStream ps = new PrintStream(baos, true);
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            PrintStream ps = new PrintStream(baos, true);
-            stackTrace.printStackTrace(ps);
+         ps.print("Held for " + held + " ms by thread " + allocation.getThreadName() +
+                  " (" + allocation.getThreadId() + ")");
 
-            result.put(key.toString(), baos.toString());
-         }
+         if (threshold > 0 && held > threshold)
+            ps.print(", possible leak");
+
+         ps.println();
 
-         return Collections.unmodifiableMap(result);
+         if (allocation.getStackTrace() != null)
+            allocation.getStackTrace().printStackTrace(ps);
+
+         result.put(key.toString(), baos.toString());
       }
+
+      return Collections.unmodifiableMap(result);
    }
 
    /**
@@ -475,6 +531,9 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       if (transactionIntegration != null && transactionIntegration.getUserTransactionRegistry() != null)
          transactionIntegration.getUserTransactionRegistry().addListener(this);
 
+      MaintenanceScheduler.getInstance().register(this);
+      scheduleLeakCheck();
+
       log.debugf("start: %s", this.toString());
    }
 
@@ -487,6 +546,69 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
 
       if (transactionIntegration != null && transactionIntegration.getUserTransactionRegistry() != null)
          transactionIntegration.getUserTransactionRegistry().removeListener(this);
+
+      MaintenanceScheduler.Task task = leakCheck.getAndSet(null);
+      if (task != null)
+         task.cancel();
+
+      MaintenanceScheduler.getInstance().unregister(this);
+   }
+
+   /**
+    * Schedule the leak check if debug is enabled and a leak threshold is set
+    */
+   private void scheduleLeakCheck()
+   {
+      MaintenanceScheduler.Task task = null;
+      long threshold = leakThreshold;
+
+      if (debug && threshold > 0)
+      {
+         task = MaintenanceScheduler.getInstance().schedule(this, new Runnable()
+         {
+            public void run()
+            {
+               checkLeaks();
+            }
+         }, Math.max(threshold / 2, 100L));
+      }
+
+      MaintenanceScheduler.Task previous = leakCheck.getAndSet(task);
+      if (previous != null)
+         previous.cancel();
+   }
+
+   /**
+    * Report the connections held longer than the leak threshold; each connection is reported once
+    */
+   void checkLeaks()
+   {
+      long threshold = leakThreshold;
+
+      if (!debug || threshold <= 0)
+         return;
+
+      long now = System.currentTimeMillis();
+
+      for (Map.Entry<Object, ConnectionTracker.Allocation> entry : connections.getAllocations().entrySet())
+      {
+         ConnectionTracker.Allocation allocation = entry.getValue();
+         long held = now - allocation.getTimestamp();
+
+         if (held > threshold && !allocation.isReported())
+         {
+            allocation.setReported();
+
+            if (allocation.getStackTrace() != null)
+            {
+               log.connectionLeak(entry.getKey(), held, allocation.getThreadName(), allocation.getStackTrace());
+            }
+            else
+            {
+               log.connectionLeak(entry.getKey(), held, allocation.getThreadName());
+            }
+         }
+      }
    }
 
    /**
@@ -581,10 +703,9 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       {
          Throwable exception = null;
 
-         synchronized (connectionStackTraces)
-         {
-            exception = connectionStackTraces.remove(connectionHandle);
-         }
+         ConnectionTracker.Allocation allocation = connections.unregister(connectionHandle);
+         if (allocation != null)
+            exception = allocation.getStackTrace();
 
          Method m = SecurityActions.getMethod(connectionHandle.getClass(), "close", new Class[]{});
 
@@ -698,9 +819,11 @@ public class CachedConnectionManagerImpl implements CachedConnectionManager
       sb.append("[debug=").append(debug);
       sb.append(" error=").append(error);
       sb.append(" ignoreConnections=").append(ignoreConnections);
+      sb.append(" leakSampleRate=").append(leakSampleRate);
+      sb.append(" leakThreshold=").append(leakThreshold);
       sb.append(" transactionIntegration=").append(transactionIntegration);
       sb.append(" threadContexts=").append(threadContexts.get());
-      sb.append(" connectionStackTraces=").append(connectionStackTraces);
+      sb.append(" connections=").append(connections.size());
       sb.append("]");
 
       return sb.toString();
@@ -0,0 +1,282 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.connectionmanager.ccm;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the connection handles in use. Each handle is recorded with the time
+ * and the thread of its allocation, and a sample of them with their allocation stack trace.
+ *
+ * Handles are held weakly, and compared by identity
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class ConnectionTracker
+{
+   /** The allocations */
+   private final ConcurrentMap<HandleReference, Allocation> allocations;
+
+   /** The queue of collected handles */
+   private final ReferenceQueue<Object> queue;
+
+   /**
+    * Constructor
+    */
+   ConnectionTracker()
+   {
+      this.allocations = new ConcurrentHashMap<HandleReference, Allocation>();
+      this.queue = new ReferenceQueue<Object>();
+   }
+
+   /**
+    * Register a connection handle
+    * @param connection The connection handle
+    * @param stackTrace The allocation stack trace, or <code>null</code> if not sampled
+    */
+   void register(Object connection, Throwable stackTrace)
+   {
+      expunge();
+
+      Thread thread = Thread.currentThread();
+      allocations.put(new HandleReference(connection, queue),
+                      new Allocation(System.currentTimeMillis(), thread.getId(), thread.getName(), stackTrace));
+   }
+
+   /**
+    * Unregister a connection handle
+    * @param connection The connection handle
+    * @return The allocation, or <code>null</code> if the handle isn't tracked
+    */
+   Allocation unregister(Object connection)
+   {
+      expunge();
+
+      HandleReference key = new HandleReference(connection, null);
+      Allocation allocation = allocations.remove(key);
+      key.clear();
+
+      return allocation;
+   }
+
+   /**
+    * Get the number of connection handles
+    * @return The value
+    */
+   int size()
+   {
+      expunge();
+
+      return allocations.size();
+   }
+
+   /**
+    * Get the connection handles and their allocations
+    * @return The snapshot
+    */
+   Map<Object, Allocation> getAllocations()
+   {
+      expunge();
+
+      Map<Object, Allocation> result = new HashMap<Object, Allocation>(allocations.size());
+
+      for (Map.Entry<HandleReference, Allocation> entry : allocations.entrySet())
+      {
+         Object connection = entry.getKey().get();
+
+         if (connection != null)
+            result.put(connection, entry.getValue());
+      }
+
+      return result;
+   }
+
+   /**
+    * Clear
+    */
+   void clear()
+   {
+      allocations.clear();
+
+      while (queue.poll() != null)
+      {
+         // Drain
+      }
+   }
+
+   /**
+    * Remove the allocations of the collected connection handles
+    */
+   private void expunge()
+   {
+      Reference<?> ref = queue.poll();
+
+      while (ref != null)
+      {
+         allocations.remove(ref);
+         ref = queue.poll();
+      }
+   }
+
+   /**
+    * An allocation of a connection handle
+    */
+   static class Allocation
+   {
+      /** The time of the allocation */
+      private final long timestamp;
+
+      /** The id of the allocating thread */
+      private final long threadId;
+
+      /** The name of the allocating thread */
+      private final String threadName;
+
+      /** The allocation stack trace */
+      private final Throwable stackTrace;
+
+      /** Has the allocation been reported as a leak */
+      private volatile boolean reported;
+
+      /**
+       * Constructor
+       * @param timestamp The time of the allocation
+       * @param threadId The id of the allocating thread
+       * @param threadName The name of the allocating thread
+       * @param stackTrace The allocation stack trace, or <code>null</code> if not sampled
+       */
+      Allocation(long timestamp, long threadId, String threadName, Throwable stackTrace)
+      {
+         this.timestamp = timestamp;
+         this.threadId = threadId;
+         this.threadName = threadName;
+         this.stackTrace = stackTrace;
+         this.reported = false;
+      }
+
+      /**
+       * Get the time of the allocation
+       * @return The value
+       */
+      long getTimestamp()
+      {
+         return timestamp;
+      }
+
+      /**
+       * Get the id of the allocating thread
+       * @return The value
+       */
+      long getThreadId()
+      {
+         return threadId;
+      }
+
+      /**
+       * Get the name of the allocating thread
+       * @return The value
+       */
+      String getThreadName()
+      {
+         return threadName;
+      }
+
+      /**
+       * Get the allocation stack trace
+       * @return The value, or <code>null</code> if not sampled
+       */
+      Throwable getStackTrace()
+      {
+         return stackTrace;
+      }
+
+      /**
+       * Has the allocation been reported as a leak
+       * @return True if reported; otherwise false
+       */
+      boolean isReported()
+      {
+         return reported;
+      }
+
+      /**
+       * Mark the allocation as reported
+       */
+      void setReported()
+      {
+         reported = true;
+      }
+   }
+
+   /**
+    * A weak reference to a connection handle, which uses the identity of the handle
+    */
+   private static class HandleReference extends WeakReference<Object>
+   {
+      /** The identity hash code of the handle */
+      private final int hash;
+
+      /**
+       * Constructor
+       * @param connection The connection handle
+       * @param queue The reference queue, or <code>null</code> for a lookup key
+       */
+      HandleReference(Object connection, ReferenceQueue<Object> queue)
+      {
+         super(connection, queue);
+         this.hash = System.identityHashCode(connection);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public boolean equals(Object o)
+      {
+         if (this == o)
+            return true;
+
+         if (!(o instanceof HandleReference))
+            return false;
+
+         Object connection = get();
+
+         return connection != null && connection == ((HandleReference)o).get();
+      }
+   }
+}
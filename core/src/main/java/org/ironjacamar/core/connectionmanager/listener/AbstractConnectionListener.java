@@ -27,7 +27,9 @@ import org.ironjacamar.core.CoreLogger;
 import org.ironjacamar.core.api.connectionmanager.pool.FlushMode;
 import org.ironjacamar.core.connectionmanager.ConnectionManager;
 import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.pool.ConnectionListenerIndex;
 import org.ironjacamar.core.connectionmanager.pool.ManagedConnectionPool;
+import org.ironjacamar.core.connectionmanager.pool.Pool;
 import org.ironjacamar.core.spi.transaction.ConnectableResourceListener;
 import org.ironjacamar.core.tracer.Tracer;
 
@@ -332,6 +334,10 @@ public abstract class AbstractConnectionListener implements ConnectionListener,
       if (connectionTraces != null)
          connectionTraces.put(c, new Exception());
 
+      ConnectionListenerIndex index = getConnectionListenerIndex();
+      if (index != null)
+         index.addConnection(this, c);
+
       return connectionHandles.add(c);
    }
    
@@ -346,6 +352,10 @@ public abstract class AbstractConnectionListener implements ConnectionListener,
       if (connectionTraces != null)
          connectionTraces.remove(c);
 
+      ConnectionListenerIndex index = getConnectionListenerIndex();
+      if (index != null)
+         index.removeConnection(this, c);
+
       return connectionHandles.remove(c);
    }
    
@@ -363,8 +373,25 @@ public abstract class AbstractConnectionListener implements ConnectionListener,
       if (connectionTraces != null)
          connectionTraces.clear();
 
+      ConnectionListenerIndex index = getConnectionListenerIndex();
+      if (index != null)
+      {
+         for (Object c : connectionHandles)
+            index.removeConnection(this, c);
+      }
+
       connectionHandles.clear();
    }
+
+   /**
+    * Get the connection listener index of the pool
+    * @return The value, or <code>null</code> if there is no pool
+    */
+   private ConnectionListenerIndex getConnectionListenerIndex()
+   {
+      Pool pool = cm.getPool();
+      return pool != null ? pool.getConnectionListenerIndex() : null;
+   }
    
    /**
     * {@inheritDoc}
@@ -32,6 +32,8 @@ import org.ironjacamar.core.spi.transaction.TxUtils;
 
 import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener.DESTROY;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.resource.ResourceException;
 import javax.resource.spi.ManagedConnection;
 import javax.transaction.Transaction;
@@ -50,6 +52,9 @@ public abstract class AbstractTransactionalConnectionListener extends
    /** The Message bundle */
    CoreBundle bundle = Messages.getBundle(CoreBundle.class);
 
+   /** The lock */
+   private final ReentrantLock lock = new ReentrantLock();
+
    /**
     * Constructor
     * @param cm The connection manager
@@ -70,37 +75,53 @@ public abstract class AbstractTransactionalConnectionListener extends
    /**
     * {@inheritDoc}
     */
-   public synchronized void enlist() throws ResourceException
+   public void enlist() throws ResourceException
    {
-      if (isEnlisted())
+      lock.lock();
+      try
       {
-         try
+         if (isEnlisted())
          {
-            StablePool sp = (StablePool)cm.getPool();
-            Object tx = sp.verifyConnectionListener(this);
-            if (tx != null)
-               throw new ResourceException(tx.toString());
-         }
-         finally
-         {
-            setState(DESTROY);
+            try
+            {
+               StablePool sp = (StablePool)cm.getPool();
+               Object tx = sp.verifyConnectionListener(this);
+               if (tx != null)
+                  throw new ResourceException(tx.toString());
+            }
+            finally
+            {
+               setState(DESTROY);
+            }
          }
-      }
 
-      super.enlist();
+         super.enlist();
+      }
+      finally
+      {
+         lock.unlock();
+      }
    }
 
    /**
     * {@inheritDoc}
     */
-   public synchronized void delist() throws ResourceException
+   public void delist() throws ResourceException
    {
-      if (!isEnlisted())
+      lock.lock();
+      try
       {
-         setState(DESTROY);
-      }
+         if (!isEnlisted())
+         {
+            setState(DESTROY);
+         }
 
-      super.delist();
+         super.delist();
+      }
+      finally
+      {
+         lock.unlock();
+      }
    }
 
    /**
@@ -31,9 +31,13 @@ import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener
 import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener.VALIDATION;
 import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener.ZOMBIE;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ManagedConnection;
@@ -61,6 +65,9 @@ public abstract class AbstractManagedConnectionPool implements ManagedConnection
    /** last idle check */
    protected long lastIdleCheck;
 
+   /** The lock */
+   protected final ReentrantLock lock;
+
    /**
     * Constructor
     * @param pool The pool
@@ -73,6 +80,7 @@ public abstract class AbstractManagedConnectionPool implements ManagedConnection
       this.credential = credential;
       this.poolIsFifo = pool.isFIFO() && credential.equals(pool.getPrefillCredential());
       this.lastIdleCheck = System.currentTimeMillis();
+      this.lock = new ReentrantLock();
    }
 
    /**
@@ -157,6 +165,129 @@ public abstract class AbstractManagedConnectionPool implements ManagedConnection
       return null;
    }
 
+   /**
+    * Validate the free connection listeners which are due for background validation; up to
+    * background-validation-batch-size connection listeners are validated at a time
+    * @param listeners The listeners
+    * @return True if any connection listener was destroyed, otherwise false
+    */
+   protected boolean validateConnectionListeners(Collection<ConnectionListener> listeners)
+   {
+      boolean anyDestroyed = false;
+      long timestamp = System.currentTimeMillis();
+      int batchSize = pool.getConfiguration().getBackgroundValidationBatchSize();
+      List<ConnectionListener> batch = new ArrayList<ConnectionListener>(batchSize);
+
+      for (ConnectionListener cl : listeners)
+      {
+         if (cl.changeState(FREE, VALIDATION))
+         {
+            if (cl.getValidated() + pool.getConfiguration().getBackgroundValidationMillis() <= timestamp)
+            {
+               batch.add(cl);
+
+               if (batch.size() >= batchSize)
+               {
+                  if (validateConnectionListeners(listeners, batch, FREE))
+                     anyDestroyed = true;
+
+                  batch.clear();
+               }
+            }
+            else
+            {
+               if (!cl.changeState(VALIDATION, FREE))
+               {
+                  if (Tracer.isEnabled())
+                     Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
+                                                      false, false, false,
+                                                      false, true, false, false,
+                                                      Tracer.isRecordCallstacks() ?
+                                                      new Throwable("CALLSTACK") : null);
+
+                  destroyAndRemoveConnectionListener(cl, listeners);
+               }
+            }
+         }
+      }
+
+      if (validateConnectionListeners(listeners, batch, FREE))
+         anyDestroyed = true;
+
+      return anyDestroyed;
+   }
+
+   /**
+    * Validate a batch of connection listeners using a single getInvalidConnections call
+    * @param listeners The listeners
+    * @param batch The connection listeners; all in the VALIDATION state
+    * @param newState The new state
+    * @return True if any connection listener was destroyed, otherwise false
+    */
+   protected boolean validateConnectionListeners(Collection<ConnectionListener> listeners,
+                                                 Collection<ConnectionListener> batch,
+                                                 int newState)
+   {
+      boolean anyDestroyed = false;
+
+      if (batch.isEmpty())
+         return anyDestroyed;
+
+      ManagedConnectionFactory mcf = pool.getConnectionManager().getManagedConnectionFactory();
+
+      if (batch.size() == 1 || !(mcf instanceof ValidatingManagedConnectionFactory))
+      {
+         for (ConnectionListener cl : batch)
+         {
+            if (validateConnectionListener(listeners, cl, newState) == null)
+               anyDestroyed = true;
+         }
+
+         return anyDestroyed;
+      }
+
+      ValidatingManagedConnectionFactory vcf = (ValidatingManagedConnectionFactory)mcf;
+      Set invalidSet = null;
+      try
+      {
+         Set<ManagedConnection> candidateSet = new HashSet<ManagedConnection>(batch.size());
+         for (ConnectionListener cl : batch)
+            candidateSet.add(cl.getManagedConnection());
+
+         invalidSet = vcf.getInvalidConnections(candidateSet);
+      }
+      catch (ResourceException re)
+      {
+         // Find the invalid connections one by one
+         for (ConnectionListener cl : batch)
+         {
+            if (validateConnectionListener(listeners, cl, newState) == null)
+               anyDestroyed = true;
+         }
+
+         return anyDestroyed;
+      }
+
+      for (ConnectionListener cl : batch)
+      {
+         if (invalidSet == null || !invalidSet.contains(cl.getManagedConnection()))
+         {
+            cl.validated();
+            if (cl.changeState(VALIDATION, newState))
+               continue;
+         }
+
+         if (Tracer.isEnabled())
+            Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl, false, false, true, false,
+                  false, false, false, Tracer.isRecordCallstacks() ? new Throwable("CALLSTACK") : null);
+
+         destroyAndRemoveConnectionListener(cl, listeners);
+         anyDestroyed = true;
+      }
+
+      return anyDestroyed;
+   }
+
    /**
     * Destroy and remove a connection listener
     * @param cl The connection listener
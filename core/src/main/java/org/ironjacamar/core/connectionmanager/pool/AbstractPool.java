@@ -36,9 +36,9 @@ import org.ironjacamar.core.spi.transaction.TxUtils;
 import org.ironjacamar.core.spi.transaction.local.LocalXAResource;
 import org.ironjacamar.core.tracer.Tracer;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionRequestInfo;
@@ -46,6 +46,7 @@ import javax.resource.spi.ManagedConnection;
 import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
 import javax.security.auth.Subject;
 import javax.transaction.Transaction;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.transaction.xa.XAResource;
 
 import org.jboss.logging.Logger;
@@ -77,11 +78,6 @@ public abstract class AbstractPool implements Pool
     */
    protected ConcurrentHashMap<Credential, ManagedConnectionPool> pools;
 
-   /**
-    * The transaction map
-    */
-   protected ConcurrentHashMap<Object, Map<ManagedConnectionPool, ConnectionListener>> transactionMap;
-
    /**
     * The semaphore
     */
@@ -103,6 +99,21 @@ public abstract class AbstractPool implements Pool
     * The janitor
     */
    protected Janitor janitor;
+
+   /**
+    * The connection listener index
+    */
+   protected ConnectionListenerIndex connectionListenerIndex;
+
+   /**
+    * The lock
+    */
+   protected final ReentrantLock lock;
+
+   /**
+    * The connection listener each thread returned last; <code>null</code> if affinity is disabled
+    */
+   private ThreadLocal<WeakReference<ConnectionListener>> lastUsed;
    
    /**
     * Constructor
@@ -115,12 +126,17 @@ public abstract class AbstractPool implements Pool
       this.cm = cm;
       this.poolConfiguration = pc;
       this.pools = new ConcurrentHashMap<Credential, ManagedConnectionPool>();
-      this.transactionMap = new ConcurrentHashMap<Object, Map<ManagedConnectionPool, ConnectionListener>>();
       this.statistics = new PoolStatisticsImpl(poolConfiguration.getMaxSize());
       this.semaphore = new Semaphore(poolConfiguration.getMaxSize(), statistics);
       this.flushStrategy = poolConfiguration.getFlushStrategy();
       this.capacity = null;
       this.janitor = null;
+      this.connectionListenerIndex = new ConnectionListenerIndex();
+      this.lock = new ReentrantLock();
+
+      String affinity = SecurityActions.getSystemProperty("ironjacamar.pool.affinity");
+      if (affinity != null && Boolean.valueOf(affinity.trim()))
+         this.lastUsed = new ThreadLocal<WeakReference<ConnectionListener>>();
    }
 
    /**
@@ -179,6 +195,50 @@ public abstract class AbstractPool implements Pool
       janitor = v;
    }
 
+   /**
+    * Is thread affinity enabled, e.g. does a thread first try the connection listener it returned last
+    * @return The value
+    */
+   public boolean isAffinity()
+   {
+      return lastUsed != null;
+   }
+
+   /**
+    * Get the connection listener the current thread returned last to a managed connection pool
+    * @param mcp The managed connection pool
+    * @return The connection listener, or <code>null</code> if there is none, or affinity is disabled
+    */
+   public ConnectionListener getLastUsedConnectionListener(ManagedConnectionPool mcp)
+   {
+      if (lastUsed == null)
+         return null;
+
+      WeakReference<ConnectionListener> ref = lastUsed.get();
+      if (ref == null)
+         return null;
+
+      ConnectionListener cl = ref.get();
+      if (cl == null || cl.getManagedConnectionPool() != mcp)
+         return null;
+
+      return cl;
+   }
+
+   /**
+    * Record the connection listener the current thread returned
+    * @param cl The connection listener
+    */
+   public void setLastUsedConnectionListener(ConnectionListener cl)
+   {
+      if (lastUsed == null)
+         return;
+
+      WeakReference<ConnectionListener> ref = lastUsed.get();
+      if (ref == null || ref.get() != cl)
+         lastUsed.set(new WeakReference<ConnectionListener>(cl));
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -202,22 +262,13 @@ public abstract class AbstractPool implements Pool
 
             if (TxUtils.isUncommitted(tx))
             {
-               Object id = txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().getTransactionKey();
+               TransactionSynchronizationRegistry tsr =
+                  txCM.getTransactionIntegration().getTransactionSynchronizationRegistry();
 
-               Map<ManagedConnectionPool, ConnectionListener> currentMap = transactionMap.get(id);
+               TransactionMap currentMap = TransactionMap.find(tsr);
 
-               if (currentMap == null)
-               {
-                  Map<ManagedConnectionPool, ConnectionListener> map = new HashMap<>();
-
-                  currentMap = transactionMap.putIfAbsent(id, map);
-                  if (currentMap == null)
-                  {
-                     currentMap = map;
-                  }
-               }
-
-               cl = currentMap.get(mcp);
+               if (currentMap != null)
+                  cl = currentMap.get(mcp);
 
                if (cl == null)
                {
@@ -225,10 +276,9 @@ public abstract class AbstractPool implements Pool
                   {
                      cl = mcp.getConnectionListener();
 
+                     currentMap = TransactionMap.findOrCreate(tsr);
                      currentMap.put(mcp, cl);
-
-                     txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().
-                        registerInterposedSynchronization(new TransactionMapCleanup(id, transactionMap));
+                     transactionTracked(currentMap, cl);
                   }
                   else
                   {
@@ -266,7 +316,8 @@ public abstract class AbstractPool implements Pool
 
       if (mcp == null)
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             mcp = pools.get(credential);
 
@@ -287,6 +338,10 @@ public abstract class AbstractPool implements Pool
                }
             }
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       return mcp;
    }
@@ -322,17 +377,26 @@ public abstract class AbstractPool implements Pool
    /**
     * {@inheritDoc}
     */
-   public synchronized void shutdown()
+   public void shutdown()
    {
-      for (ManagedConnectionPool mcp : pools.values())
+      lock.lock();
+      try
       {
-         mcp.shutdown();
+         for (ManagedConnectionPool mcp : pools.values())
+         {
+            mcp.shutdown();
 
-         if (Tracer.isEnabled())
-            Tracer.destroyManagedConnectionPool(poolConfiguration.getId(), mcp);
-      }
+            if (Tracer.isEnabled())
+               Tracer.destroyManagedConnectionPool(poolConfiguration.getId(), mcp);
+         }
 
-      pools.clear();
+         pools.clear();
+         connectionListenerIndex.clear();
+      }
+      finally
+      {
+         lock.unlock();
+      }
    }
 
    /**
@@ -574,28 +638,36 @@ public abstract class AbstractPool implements Pool
     * {@inheritDoc}
     */
    @Override
-   public synchronized void flush(FlushMode mode)
+   public void flush(FlushMode mode)
    {
-      if (isShutdown())
-         return;
-
-      for (Credential credential : pools.keySet())
+      lock.lock();
+      try
       {
-         ManagedConnectionPool mcp = pools.get(credential);
-         if (mcp != null)
-         {
-            mcp.flush(mode);
+         if (isShutdown())
+            return;
 
-            if (mcp.isEmpty() && !poolConfiguration.isPrefill())
+         for (Credential credential : pools.keySet())
+         {
+            ManagedConnectionPool mcp = pools.get(credential);
+            if (mcp != null)
             {
-               mcp.shutdown();
-               pools.remove(credential);
+               mcp.flush(mode);
 
-               if (Tracer.isEnabled())
-                  Tracer.destroyManagedConnectionPool(poolConfiguration.getId(), mcp);
+               if (mcp.isEmpty() && !poolConfiguration.isPrefill())
+               {
+                  mcp.shutdown();
+                  pools.remove(credential);
+
+                  if (Tracer.isEnabled())
+                     Tracer.destroyManagedConnectionPool(poolConfiguration.getId(), mcp);
+               }
             }
          }
       }
+      finally
+      {
+         lock.unlock();
+      }
    }
 
    /**
@@ -680,22 +752,12 @@ public abstract class AbstractPool implements Pool
 
             if (TxUtils.isUncommitted(tx))
             {
-               Object id = txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().getTransactionKey();
-
-               Map<ManagedConnectionPool, ConnectionListener> currentMap = transactionMap.get(id);
-
-               if (currentMap == null)
-               {
-                  Map<ManagedConnectionPool, ConnectionListener> map = new HashMap<>();
+               TransactionSynchronizationRegistry tsr =
+                  txCM.getTransactionIntegration().getTransactionSynchronizationRegistry();
 
-                  currentMap = transactionMap.putIfAbsent(id, map);
-                  if (currentMap == null)
-                  {
-                     currentMap = map;
-                  }
-               }
+               TransactionMap currentMap = TransactionMap.find(tsr);
 
-               ConnectionListener existing = currentMap.get(cl.getManagedConnectionPool());
+               ConnectionListener existing = currentMap != null ? currentMap.get(cl.getManagedConnectionPool()) : null;
 
                if (existing == null)
                {
@@ -703,10 +765,9 @@ public abstract class AbstractPool implements Pool
                   {
                      cl.enlist();
                      
+                     currentMap = TransactionMap.findOrCreate(tsr);
                      currentMap.put(cl.getManagedConnectionPool(), cl);
-
-                     txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().
-                        registerInterposedSynchronization(new TransactionMapCleanup(id, transactionMap));
+                     transactionTracked(currentMap, cl);
                   }
                   else
                   {
@@ -716,7 +777,7 @@ public abstract class AbstractPool implements Pool
                else
                {
                   log.tracef("Already a connection listener in the pool tracked by transaction=%s (existing=%s)",
-                             id, existing);
+                             currentMap.getKey(), existing);
 
                   if (existing.equals(cl))
                   {
@@ -778,16 +839,11 @@ public abstract class AbstractPool implements Pool
                }
                finally
                {
-                  Object id = txCM.getTransactionIntegration()
-                     .getTransactionSynchronizationRegistry().getTransactionKey();
-
-                  Map<ManagedConnectionPool, ConnectionListener> currentMap = transactionMap.get(id);
+                  TransactionMap currentMap =
+                     TransactionMap.find(txCM.getTransactionIntegration().getTransactionSynchronizationRegistry());
 
                   if (currentMap != null)
-                  {
-                     ConnectionListener registered = currentMap.remove(cl.getManagedConnectionPool());
-                     transactionMap.put(id, currentMap);
-                  }
+                     currentMap.remove(cl.getManagedConnectionPool());
                }
             }
          }
@@ -811,9 +867,16 @@ public abstract class AbstractPool implements Pool
     */
    public ConnectionListener findConnectionListener(ManagedConnection mc, Object c)
    {
+      ConnectionListener cl = connectionListenerIndex.find(mc, c);
+
+      if (cl != null || mc == null)
+         return cl;
+
+      // Pools which don't index their connection listeners
       for (ManagedConnectionPool mcp : pools.values())
       {
-         ConnectionListener cl = mcp.findConnectionListener(mc, c);
+         cl = mcp.findConnectionListener(mc, c);
+
          if (cl != null)
             return cl;
       }
@@ -821,6 +884,14 @@ public abstract class AbstractPool implements Pool
       return null;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public ConnectionListenerIndex getConnectionListenerIndex()
+   {
+      return connectionListenerIndex;
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -846,6 +917,15 @@ public abstract class AbstractPool implements Pool
       return null;
    }
 
+   /**
+    * A connection listener is now tracked by a transaction
+    * @param map The transaction map
+    * @param cl The connection listener
+    */
+   protected void transactionTracked(TransactionMap map, ConnectionListener cl)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -861,11 +941,12 @@ public abstract class AbstractPool implements Pool
 
          if (TxUtils.isUncommitted(tx))
          {
-            Object id = txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().getTransactionKey();
-            Map<ManagedConnectionPool, ConnectionListener> currentMap = transactionMap.get(id);
+            TransactionMap currentMap =
+               TransactionMap.find(txCM.getTransactionIntegration().getTransactionSynchronizationRegistry());
             ManagedConnectionPool key = pools.get(credential);
 
-            return currentMap.get(key);
+            if (currentMap != null && key != null)
+               return currentMap.get(key);
          }
       }
       catch (Exception e)
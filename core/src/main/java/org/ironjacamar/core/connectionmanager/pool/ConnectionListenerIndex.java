@@ -0,0 +1,178 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.resource.spi.ManagedConnection;
+
+/**
+ * An index of the connection listeners of a pool, by managed connection and by connection handle.
+ *
+ * Both indexes are keyed on object identity, so a lookup costs the same no matter how
+ * many managed connection pools, e.g. credentials, the pool has.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ConnectionListenerIndex
+{
+   /** Connection listeners by managed connection */
+   private final ConcurrentMap<Identity, ConnectionListener> managedConnections;
+
+   /** Connection listeners by connection handle */
+   private final ConcurrentMap<Identity, ConnectionListener> connections;
+
+   /**
+    * Constructor
+    */
+   public ConnectionListenerIndex()
+   {
+      this.managedConnections = new ConcurrentHashMap<Identity, ConnectionListener>();
+      this.connections = new ConcurrentHashMap<Identity, ConnectionListener>();
+   }
+
+   /**
+    * Add a connection listener
+    * @param cl The connection listener
+    */
+   public void add(ConnectionListener cl)
+   {
+      managedConnections.put(new Identity(cl.getManagedConnection()), cl);
+
+      for (Object c : cl.getConnections())
+         connections.put(new Identity(c), cl);
+   }
+
+   /**
+    * Remove a connection listener
+    * @param cl The connection listener
+    */
+   public void remove(ConnectionListener cl)
+   {
+      managedConnections.remove(new Identity(cl.getManagedConnection()), cl);
+
+      for (Object c : cl.getConnections())
+         connections.remove(new Identity(c), cl);
+   }
+
+   /**
+    * Add a connection handle
+    * @param cl The connection listener
+    * @param c The connection handle
+    */
+   public void addConnection(ConnectionListener cl, Object c)
+   {
+      if (c != null)
+         connections.put(new Identity(c), cl);
+   }
+
+   /**
+    * Remove a connection handle
+    * @param cl The connection listener
+    * @param c The connection handle
+    */
+   public void removeConnection(ConnectionListener cl, Object c)
+   {
+      if (c != null)
+         connections.remove(new Identity(c), cl);
+   }
+
+   /**
+    * Find a connection listener
+    * @param mc The managed connection, or <code>null</code> to find by connection handle only
+    * @param c The connection handle (optional)
+    * @return The connection listener, or <code>null</code>
+    */
+   public ConnectionListener find(ManagedConnection mc, Object c)
+   {
+      if (mc == null)
+         return c != null ? connections.get(new Identity(c)) : null;
+
+      ConnectionListener cl = managedConnections.get(new Identity(mc));
+
+      if (cl != null && c != null && !cl.getConnections().contains(c))
+         return null;
+
+      return cl;
+   }
+
+   /**
+    * Get the number of connection listeners
+    * @return The value
+    */
+   public int size()
+   {
+      return managedConnections.size();
+   }
+
+   /**
+    * Clear the index
+    */
+   public void clear()
+   {
+      managedConnections.clear();
+      connections.clear();
+   }
+
+   /**
+    * An identity based key
+    */
+   private static final class Identity
+   {
+      /** The object */
+      private final Object o;
+
+      /**
+       * Constructor
+       * @param o The object
+       */
+      Identity(Object o)
+      {
+         this.o = o;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public int hashCode()
+      {
+         return System.identityHashCode(o);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean equals(Object other)
+      {
+         if (other == this)
+            return true;
+
+         if (!(other instanceof Identity))
+            return false;
+
+         return ((Identity)other).o == o;
+      }
+   }
+}
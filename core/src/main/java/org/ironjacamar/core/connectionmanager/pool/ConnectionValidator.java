@@ -20,22 +20,9 @@
  */
 package org.ironjacamar.core.connectionmanager.pool;
 
-import org.ironjacamar.core.CoreLogger;
-
-import java.util.Comparator;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
-import org.jboss.logging.Logger;
 
 /**
  * Connection validator
@@ -43,53 +30,22 @@ import org.jboss.logging.Logger;
  */
 public class ConnectionValidator
 {
-   /** The logger */
-   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class,
-         ConnectionValidator.class.getName());
-
-   /** Thread name */
-   private static final String THREAD_NAME = "IronJacamar ConnectionValidator";
-   
    /** Singleton instance */
    private static ConnectionValidator instance = new ConnectionValidator();
    
    /** Registered pool instances */
-   private TreeMap<Key, ManagedConnectionPool> registeredPools;
+   private Map<ManagedConnectionPool, MaintenanceScheduler.Task> registeredPools;
    
-   /** Executor service */
+   /** Executor service; <code>null</code> for the maintenance scheduler's executor */
    private ExecutorService executorService;
 
-   /** Is the executor external */
-   private boolean isExternal;
-   
-   /** The interval */
-   private long interval;
-
-   /** The next scan */
-   private long next;
-   
-   /** Shutdown */
-   private AtomicBoolean shutdown;
-
-   /** Lock */
-   private Lock lock;
-   
-   /** Condition */
-   private Condition condition;
-   
    /**
     * Private constructor.
     */
    private ConnectionValidator()
    {
-      this.registeredPools = new TreeMap<Key, ManagedConnectionPool>(new KeyComparator());
+      this.registeredPools = new ConcurrentHashMap<ManagedConnectionPool, MaintenanceScheduler.Task>();
       this.executorService = null;
-      this.isExternal = false;
-      this.interval = Long.MAX_VALUE;
-      this.next = Long.MAX_VALUE;
-      this.shutdown = new AtomicBoolean(false);
-      this.lock = new ReentrantLock(true);
-      this.condition = lock.newCondition();
    }
 
    /**
@@ -107,16 +63,7 @@ public class ConnectionValidator
     */
    public void setExecutorService(ExecutorService v)
    {
-      if (v != null)
-      {
-         executorService = v;
-         isExternal = true;
-      }
-      else
-      {
-         executorService = null;
-         isExternal = false;
-      }
+      executorService = v;
    }
 
    /**
@@ -125,16 +72,7 @@ public class ConnectionValidator
     */
    public void start() throws Throwable
    {
-      if (!isExternal)
-      {
-         executorService = Executors.newSingleThreadExecutor(new ValidatorThreadFactory());
-      }
-
-      shutdown.set(false);
-      interval = Long.MAX_VALUE;
-      next = Long.MAX_VALUE;
-
-      executorService.execute(new ConnectionValidatorRunner());
+      MaintenanceScheduler.getInstance().register(this);
    }
 
    /**
@@ -143,15 +81,12 @@ public class ConnectionValidator
     */
    public void stop() throws Throwable
    {
-      shutdown.set(true);
-
-      if (!isExternal && executorService != null)
-      {
-         executorService.shutdownNow();
-         executorService = null;
-      }
+      for (MaintenanceScheduler.Task task : registeredPools.values())
+         task.cancel();
 
       registeredPools.clear();
+
+      MaintenanceScheduler.getInstance().unregister(this);
    }
    
    /**
@@ -159,31 +94,25 @@ public class ConnectionValidator
     * @param mcp managed connection pool
     * @param mcpInterval validation interval
     */
-   public void registerPool(ManagedConnectionPool mcp, long mcpInterval)
+   public void registerPool(final ManagedConnectionPool mcp, long mcpInterval)
    {
-      try
+      if (mcpInterval > 1)
       {
-         lock.lock();
-         
-         synchronized (registeredPools)
-         {
-            registeredPools.put(new Key(System.identityHashCode(mcp), System.currentTimeMillis(), mcpInterval), mcp);
-         }
-         
-         if (mcpInterval > 1 && mcpInterval / 2 < interval) 
-         {
-            interval = interval / 2;
-            long maybeNext = System.currentTimeMillis() + interval;
-            if (next > maybeNext && maybeNext > 0) 
+         MaintenanceScheduler.Task task =
+            MaintenanceScheduler.getInstance().schedule(mcp, new Runnable()
             {
-               next = maybeNext;
-               condition.signal();
-            }
-         }
-      } 
-      finally
-      {
-         lock.unlock();
+               /**
+                * {@inheritDoc}
+                */
+               public void run()
+               {
+                  mcp.validateConnections();
+               }
+            }, mcpInterval / 2, executorService);
+
+         MaintenanceScheduler.Task old = registeredPools.put(mcp, task);
+         if (old != null)
+            old.cancel();
       }
    }
    
@@ -193,239 +122,8 @@ public class ConnectionValidator
     */
    public void unregisterPool(ManagedConnectionPool mcp)
    {
-      synchronized (registeredPools)
-      {
-         registeredPools.values().remove(mcp);
-      
-         if (registeredPools.size() == 0) 
-            interval = Long.MAX_VALUE;
-      }
-   }
-
-   /**
-    * Thread factory
-    */
-   private static class ValidatorThreadFactory implements ThreadFactory
-   {
-      /**
-       * {@inheritDoc}
-       */
-      public Thread newThread(Runnable r)
-      {
-         Thread thread = new Thread(r, ConnectionValidator.THREAD_NAME);
-         thread.setDaemon(true);
-         
-         return thread;
-      }      
-   }
-   
-   /**
-    * ConnectionValidatorRunner
-    */
-   private class ConnectionValidatorRunner implements Runnable
-   {
-      /**
-       * {@inheritDoc}
-       */
-      public void run()
-      {
-         final ClassLoader oldTccl = SecurityActions.getThreadContextClassLoader();
-         SecurityActions.setThreadContextClassLoader(ConnectionValidator.class.getClassLoader());
-         
-         try
-         {
-            lock.lock();
-            
-            while (!shutdown.get())
-            {
-               boolean result = instance.condition.await(instance.interval, TimeUnit.MILLISECONDS);
-
-               // We only scan the ManagedConnectionPools that needs to be
-               NavigableMap<Key, ManagedConnectionPool> entries =
-                  registeredPools.headMap(new Key(System.currentTimeMillis()), true);
-
-               for (Map.Entry<Key, ManagedConnectionPool> entry : entries.entrySet())
-               {
-                  entry.getValue().validateConnections();
-                  entry.getKey().update();
-               }
-
-               next = System.currentTimeMillis() + interval;
-               
-               if (next < 0)
-               {
-                  next = Long.MAX_VALUE;  
-               }              
-            }            
-         }
-         catch (InterruptedException e)
-         {
-
-            if (!shutdown.get())
-               log.returningConnectionValidatorInterrupted();
-
-         }
-         catch (RuntimeException e)
-         {
-            log.connectionValidatorIgnoredUnexpectedRuntimeException(e);
-         }
-         catch (Exception e)
-         {
-            log.connectionValidatorIgnoredUnexpectedError(e);
-         }         
-         finally
-         {
-            lock.unlock();  
-            SecurityActions.setThreadContextClassLoader(oldTccl);
-         }
-      }
-   }
-
-   /**
-    * Key for ManagedConnectionPool instance
-    */
-   private static class Key
-   {
-      private int id;
-      private long timestamp;
-      private long interval;
-
-      /**
-       * Constructor used for scanning
-       * @param timestamp The timestamp
-       */
-      public Key(long timestamp)
-      {
-         this(-1, timestamp, 0);
-      }
-
-      /**
-       * Constructor
-       * @param id The system identity of the ManagedConnectionPool
-       * @param timestamp The timestamp
-       * @param interval The interval
-       */
-      public Key(int id, long timestamp, long interval)
-      {
-         this.id = id;
-         this.timestamp = timestamp;
-         this.interval = interval;
-      }
-
-      /**
-       * Update the timestamp
-       */
-      public void update()
-      {
-         timestamp = System.currentTimeMillis();
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public int hashCode()
-      {
-         int hash = 7;
-         hash += 7 * id;
-         hash += (int)(7L * timestamp);
-         hash += (int)(7L * interval);
-         return hash;
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public boolean equals(Object o)
-      {
-         if (o == this)
-            return true;
-
-         if (o == null || !(o instanceof Key))
-            return false;
-
-         Key k = (Key)o;
-
-         return id == k.id;
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public String toString()
-      {
-         return "[" + Integer.toHexString(id) + "," + timestamp  + "," + interval + "]"; 
-      }
-   }
-
-   /**
-    * Comparator for Key
-    */
-   private static class KeyComparator implements Comparator<Key>
-   {
-      /**
-       * Constructor
-       */
-      public KeyComparator()
-      {
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public int compare(Key k1, Key k2)
-      {
-         long t1 = k1.timestamp + (k1.interval / 2);
-         long t2 = k2.timestamp + (k2.interval / 2);
-         
-         if (t1 < t2)
-            return -1;
-         
-         if (t1 > t2)
-            return 1;
-
-         if (k1.id != -1 && k2.id != -1)
-         {
-            if (k1.id < k2.id)
-               return -1;
-         
-            if (k1.id > k2.id)
-               return 1;
-         }
-         else
-         {
-            if (k1.id == -1)
-            {
-               return 1;
-            }
-            else
-            {               
-               return -1;
-            }
-         }
-         
-         return 0;
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public int hashCode()
-      {
-         return 42;
-      }
-
-      /**
-       * {@inheritDoc}
-       */
-      public boolean equals(Object o)
-      {
-         if (o == this)
-            return true;
-
-         if (o == null || !(o instanceof KeyComparator))
-            return false;
-
-         return true;
-      }
+      MaintenanceScheduler.Task task = registeredPools.remove(mcp);
+      if (task != null)
+         task.cancel();
    }
 }
@@ -0,0 +1,206 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A FIFO queue of threads waiting for a connection listener.
+ *
+ * Waiting threads park instead of spinning, and a returned connection listener
+ * is handed directly to the oldest waiter. A connection listener passed to
+ * {@link #handOff(ConnectionListener)} must be in the VALIDATION state, so no
+ * other thread can claim it while it is in transit.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class HandOffQueue
+{
+   /** Marker for a waiter that has given up */
+   private static final Object CANCELLED = new Object();
+
+   /** The waiters */
+   private final ConcurrentLinkedQueue<Waiter> waiters;
+
+   /**
+    * Constructor
+    */
+   public HandOffQueue()
+   {
+      this.waiters = new ConcurrentLinkedQueue<Waiter>();
+   }
+
+   /**
+    * Register the current thread as a waiter
+    * @return The waiter
+    */
+   public Waiter enqueue()
+   {
+      Waiter waiter = new Waiter(Thread.currentThread());
+      waiters.add(waiter);
+      return waiter;
+   }
+
+   /**
+    * Remove a waiter from the queue
+    * @param waiter The waiter
+    * @return A connection listener that was handed to the waiter before it was removed, or <code>null</code>
+    */
+   public ConnectionListener cancel(Waiter waiter)
+   {
+      waiters.remove(waiter);
+      return waiter.cancel();
+   }
+
+   /**
+    * Hand a connection listener to the oldest waiter
+    * @param cl The connection listener; must be in the VALIDATION state
+    * @return True if a waiter took the connection listener, otherwise false
+    */
+   public boolean handOff(ConnectionListener cl)
+   {
+      Waiter waiter = waiters.poll();
+      while (waiter != null)
+      {
+         if (waiter.offer(cl))
+            return true;
+
+         waiter = waiters.poll();
+      }
+
+      return false;
+   }
+
+   /**
+    * Wake up the oldest waiter, so it can check the pool again
+    */
+   public void wakeUp()
+   {
+      Waiter waiter = waiters.peek();
+      if (waiter != null)
+         waiter.wakeUp();
+   }
+
+   /**
+    * Are there any waiters
+    * @return True if there are waiters, otherwise false
+    */
+   public boolean hasWaiters()
+   {
+      return !waiters.isEmpty();
+   }
+
+   /**
+    * Get the number of waiters
+    * @return The value
+    */
+   public int size()
+   {
+      return waiters.size();
+   }
+
+   /**
+    * A thread waiting for a connection listener
+    */
+   public static class Waiter
+   {
+      /** The thread */
+      private final Thread thread;
+
+      /** The slot: <code>null</code> while waiting, a connection listener, or CANCELLED */
+      private final AtomicReference<Object> slot;
+
+      /**
+       * Constructor
+       * @param thread The thread
+       */
+      Waiter(Thread thread)
+      {
+         this.thread = thread;
+         this.slot = new AtomicReference<Object>();
+      }
+
+      /**
+       * Get the connection listener handed to this waiter
+       * @return The value, or <code>null</code>
+       */
+      public ConnectionListener getConnectionListener()
+      {
+         Object o = slot.get();
+         if (o instanceof ConnectionListener)
+            return (ConnectionListener)o;
+
+         return null;
+      }
+
+      /**
+       * Park the waiting thread
+       * @param millis The maximum number of milliseconds to wait
+       */
+      public void await(long millis)
+      {
+         if (slot.get() == null)
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(millis));
+      }
+
+      /**
+       * Offer a connection listener
+       * @param cl The connection listener
+       * @return True if accepted, otherwise false
+       */
+      boolean offer(ConnectionListener cl)
+      {
+         if (slot.compareAndSet(null, cl))
+         {
+            LockSupport.unpark(thread);
+            return true;
+         }
+
+         return false;
+      }
+
+      /**
+       * Cancel the waiter
+       * @return A connection listener handed before the cancel, or <code>null</code>
+       */
+      ConnectionListener cancel()
+      {
+         if (slot.compareAndSet(null, CANCELLED))
+            return null;
+
+         return getConnectionListener();
+      }
+
+      /**
+       * Wake up the waiting thread
+       */
+      void wakeUp()
+      {
+         LockSupport.unpark(thread);
+      }
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, lock-free latency histogram.
+ *
+ * Values are recorded into log-linear buckets: every power of two is split into
+ * {@link #SUB_BUCKETS} linear sub-buckets, which keeps the relative error of a
+ * reported percentile below 1 / {@link #SUB_BUCKETS}. Values larger than
+ * {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ *
+ * Each bucket is a {@link LongAdder}, so threads recording into the same bucket,
+ * like all sub-millisecond acquisitions, don't contend on a single cell.
+ *
+ * @author <a href="jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class LatencyHistogram
+{
+   /** The number of sub-buckets per power of two */
+   static final int SUB_BUCKETS = 16;
+
+   /** The largest value that is tracked */
+   static final long MAX_VALUE = (1L << 40) - 1;
+
+   /** The number of bits covered by the linear buckets */
+   private static final int LINEAR_BITS = 5;
+
+   /** The number of linear buckets */
+   private static final int LINEAR_BUCKETS = 1 << LINEAR_BITS;
+
+   /** The number of buckets */
+   private static final int BUCKETS = LINEAR_BUCKETS + (40 - LINEAR_BITS) * SUB_BUCKETS;
+
+   /** The buckets */
+   private final LongAdder[] counts;
+
+   /**
+    * Constructor
+    */
+   public LatencyHistogram()
+   {
+      this.counts = new LongAdder[BUCKETS];
+
+      for (int i = 0; i < BUCKETS; i++)
+         counts[i] = new LongAdder();
+   }
+
+   /**
+    * Record a value
+    * @param value The value; negative values are ignored
+    */
+   public void record(long value)
+   {
+      if (value < 0)
+         return;
+
+      counts[index(value > MAX_VALUE ? MAX_VALUE : value)].increment();
+   }
+
+   /**
+    * Get the number of recorded values
+    * @return The value
+    */
+   public long getCount()
+   {
+      long total = 0L;
+
+      for (int i = 0; i < BUCKETS; i++)
+         total += counts[i].sum();
+
+      return total;
+   }
+
+   /**
+    * Get the value at a percentile
+    * @param percentile The percentile, between 0 and 100
+    * @return The highest value equivalent to the bucket holding the percentile, or 0 if nothing is recorded
+    */
+   public long getValueAtPercentile(double percentile)
+   {
+      long[] snapshot = new long[BUCKETS];
+      long total = 0L;
+
+      for (int i = 0; i < BUCKETS; i++)
+      {
+         snapshot[i] = counts[i].sum();
+         total += snapshot[i];
+      }
+
+      if (total == 0L)
+         return 0L;
+
+      long rank = (long)Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total);
+      if (rank < 1L)
+         rank = 1L;
+
+      long seen = 0L;
+      for (int i = 0; i < BUCKETS; i++)
+      {
+         seen += snapshot[i];
+
+         if (seen >= rank)
+            return highestValue(i);
+      }
+
+      return highestValue(BUCKETS - 1);
+   }
+
+   /**
+    * Clear the histogram
+    */
+   public void clear()
+   {
+      for (int i = 0; i < BUCKETS; i++)
+         counts[i].reset();
+   }
+
+   /**
+    * Get the bucket index of a value
+    * @param value The value
+    * @return The index
+    */
+   static int index(long value)
+   {
+      if (value < LINEAR_BUCKETS)
+         return (int)value;
+
+      int shift = 63 - Long.numberOfLeadingZeros(value) - (LINEAR_BITS - 1);
+      int sub = (int)(value >>> shift) - SUB_BUCKETS;
+
+      return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + sub;
+   }
+
+   /**
+    * Get the highest value recorded in a bucket
+    * @param index The index
+    * @return The value
+    */
+   static long highestValue(int index)
+   {
+      if (index < LINEAR_BUCKETS)
+         return index;
+
+      int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+      long sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+
+      return ((sub + 1) << shift) - 1;
+   }
+}
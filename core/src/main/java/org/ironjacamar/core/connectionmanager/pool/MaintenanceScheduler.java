@@ -0,0 +1,759 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.CoreLogger;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The maintenance scheduler shared by the connection validator, the idle connection remover
+ * and the pool and capacity fillers.
+ *
+ * Periodic tasks are kept in a hashed timing wheel, which is advanced by a single thread.
+ * Due tasks are executed by a small pool of worker threads, and tasks that should run right
+ * away, like the fills, by a pool of their own, so a burst of validations doesn't delay them.
+ * An executor service set by the user runs both. The first run of a periodic task is
+ * delayed by a stable per-owner jitter, so pools registered at the same time with the same
+ * interval are spread out.
+ *
+ * The services using the scheduler register while they are started, and the threads are
+ * stopped when the last one unregisters.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class MaintenanceScheduler
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class,
+         MaintenanceScheduler.class.getName());
+
+   /** Thread name */
+   private static final String THREAD_NAME = "IronJacamar MaintenanceScheduler";
+
+   /** Thread name of the workers running the tasks right away */
+   private static final String EXECUTE_THREAD_NAME = "IronJacamar MaintenanceScheduler Execute";
+
+   /** Singleton instance */
+   private static MaintenanceScheduler instance = new MaintenanceScheduler();
+
+   /** The tick duration in milliseconds */
+   private long tickMillis;
+
+   /** The number of buckets in the wheel; a power of two */
+   private int wheelSize;
+
+   /** The jitter, as a fraction of the interval */
+   private double jitter;
+
+   /** The maximum number of worker threads */
+   private int maxThreads;
+
+   /** The wheel */
+   private volatile Wheel wheel;
+
+   /** Executor service */
+   private volatile ExecutorService executorService;
+
+   /** Executor service of the tasks run right away */
+   private volatile ExecutorService executeService;
+
+   /** Is the executor external */
+   private boolean isExternal;
+
+   /** Running */
+   private AtomicBoolean running;
+
+   /** The registrations of each user */
+   private Map<Object, Integer> users;
+
+   /** How late the tasks ran, in milliseconds */
+   private LatencyHistogram lateness;
+
+   /** The maximum lateness, in milliseconds */
+   private LongAccumulator maxLateness;
+
+   /** The number of tasks executed */
+   private LongAdder executed;
+
+   /**
+    * Private constructor.
+    */
+   private MaintenanceScheduler()
+   {
+      this.tickMillis = 100L;
+      this.wheelSize = 512;
+      this.jitter = 0.1;
+      this.maxThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+      this.wheel = null;
+      this.executorService = null;
+      this.executeService = null;
+      this.isExternal = false;
+      this.running = new AtomicBoolean(false);
+      this.users = new IdentityHashMap<Object, Integer>();
+      this.lateness = new LatencyHistogram();
+      this.maxLateness = new LongAccumulator(Math::max, 0L);
+      this.executed = new LongAdder();
+   }
+
+   /**
+    * Get the instance
+    * @return The value
+    */
+   public static MaintenanceScheduler getInstance()
+   {
+      return instance;
+   }
+
+   /**
+    * Set the executor service running the tasks
+    * @param v The value
+    */
+   public void setExecutorService(ExecutorService v)
+   {
+      if (v != null)
+      {
+         executorService = v;
+         isExternal = true;
+      }
+      else
+      {
+         executorService = null;
+         isExternal = false;
+      }
+   }
+
+   /**
+    * Get the tick duration
+    * @return The value in milliseconds
+    */
+   public long getTickMillis()
+   {
+      return tickMillis;
+   }
+
+   /**
+    * Set the tick duration; takes effect on the next start
+    * @param v The value in milliseconds
+    */
+   public void setTickMillis(long v)
+   {
+      if (v > 0)
+         tickMillis = v;
+   }
+
+   /**
+    * Get the number of buckets in the wheel
+    * @return The value
+    */
+   public int getWheelSize()
+   {
+      return wheelSize;
+   }
+
+   /**
+    * Set the number of buckets in the wheel; rounded up to a power of two, and takes effect on the next start
+    * @param v The value
+    */
+   public void setWheelSize(int v)
+   {
+      if (v > 0 && v <= (1 << 20))
+         wheelSize = Integer.highestOneBit(v) == v ? v : Integer.highestOneBit(v) << 1;
+   }
+
+   /**
+    * Get the jitter
+    * @return The value, as a fraction of the interval
+    */
+   public double getJitter()
+   {
+      return jitter;
+   }
+
+   /**
+    * Set the jitter
+    * @param v The value, as a fraction of the interval
+    */
+   public void setJitter(double v)
+   {
+      if (v >= 0.0 && v <= 1.0)
+         jitter = v;
+   }
+
+   /**
+    * Get the maximum number of worker threads, for the periodic tasks and for the tasks run right away
+    * @return The value
+    */
+   public int getMaxThreads()
+   {
+      return maxThreads;
+   }
+
+   /**
+    * Set the maximum number of worker threads; takes effect on the next start
+    * @param v The value
+    */
+   public void setMaxThreads(int v)
+   {
+      if (v > 0)
+         maxThreads = v;
+   }
+
+   /**
+    * Start
+    */
+   public void start()
+   {
+      if (running.get())
+         return;
+
+      synchronized (this)
+      {
+         if (running.get())
+            return;
+
+         if (!isExternal)
+         {
+            executorService = createExecutorService(THREAD_NAME);
+            executeService = createExecutorService(EXECUTE_THREAD_NAME);
+         }
+         else
+         {
+            executeService = executorService;
+         }
+
+         Wheel w = new Wheel(tickMillis, wheelSize);
+         wheel = w;
+         running.set(true);
+
+         w.thread.start();
+      }
+   }
+
+   /**
+    * Stop
+    */
+   public synchronized void stop()
+   {
+      if (!running.compareAndSet(true, false))
+         return;
+
+      Wheel w = wheel;
+      wheel = null;
+
+      if (w != null)
+         w.thread.interrupt();
+
+      if (!isExternal && executorService != null)
+      {
+         executorService.shutdownNow();
+         executorService = null;
+      }
+
+      if (!isExternal && executeService != null)
+         executeService.shutdownNow();
+
+      executeService = null;
+   }
+
+   /**
+    * Is the scheduler running
+    * @return True if running; otherwise false
+    */
+   public boolean isRunning()
+   {
+      return running.get();
+   }
+
+   /**
+    * Register a user of the scheduler, and start it; a user can register more than once
+    * @param user The user
+    */
+   public synchronized void register(Object user)
+   {
+      Integer count = users.get(user);
+      users.put(user, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+
+      start();
+   }
+
+   /**
+    * Unregister a user of the scheduler; the scheduler is stopped when the last user is unregistered
+    * @param user The user
+    */
+   public synchronized void unregister(Object user)
+   {
+      Integer count = users.get(user);
+      if (count == null)
+         return;
+
+      if (count.intValue() > 1)
+      {
+         users.put(user, Integer.valueOf(count.intValue() - 1));
+      }
+      else
+      {
+         users.remove(user);
+
+         if (users.isEmpty())
+            stop();
+      }
+   }
+
+   /**
+    * Create the executor service of the workers
+    * @param name The name of the threads
+    * @return The executor service
+    */
+   private ExecutorService createExecutorService(String name)
+   {
+      ThreadPoolExecutor tpe = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                                                      new LinkedBlockingQueue<Runnable>(),
+                                                      new MaintenanceThreadFactory(name));
+      tpe.allowCoreThreadTimeOut(true);
+
+      return tpe;
+   }
+
+   /**
+    * Schedule a periodic task
+    * @param owner The owner of the task; determines the jitter
+    * @param r The task
+    * @param interval The interval in milliseconds
+    * @return The task
+    */
+   public Task schedule(Object owner, Runnable r, long interval)
+   {
+      return schedule(owner, r, interval, null);
+   }
+
+   /**
+    * Schedule a periodic task
+    * @param owner The owner of the task; determines the jitter
+    * @param r The task
+    * @param interval The interval in milliseconds
+    * @param executor The executor running the task, or <code>null</code> for the scheduler's executor
+    * @return The task
+    */
+   public Task schedule(Object owner, Runnable r, long interval, Executor executor)
+   {
+      long range = (long)(interval * jitter);
+      long offset = range > 0 ? (System.identityHashCode(owner) & 0x7fffffffL) % (range + 1) : 0L;
+
+      Task task = new Task(r, interval, executor);
+      task.deadline = System.currentTimeMillis() + interval + offset;
+
+      start();
+      add(task);
+
+      return task;
+   }
+
+   /**
+    * Run a task as soon as possible
+    * @param r The task
+    */
+   public void execute(Runnable r)
+   {
+      Task task = new Task(r, 0L, null);
+      task.deadline = System.currentTimeMillis();
+
+      start();
+
+      dispatch(task);
+   }
+
+   /**
+    * Get the number of tasks executed
+    * @return The value
+    */
+   public long getExecutedCount()
+   {
+      return executed.sum();
+   }
+
+   /**
+    * Get how late a percentile of the tasks ran
+    * @param percentile The percentile, e.g. 99.0
+    * @return The value in milliseconds
+    */
+   public long getLateness(double percentile)
+   {
+      return lateness.getValueAtPercentile(percentile);
+   }
+
+   /**
+    * Get how late the latest task ran
+    * @return The value in milliseconds
+    */
+   public long getMaxLateness()
+   {
+      return maxLateness.get();
+   }
+
+   /**
+    * Clear the metrics
+    */
+   public void clear()
+   {
+      lateness.clear();
+      maxLateness.reset();
+      executed.reset();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("MaintenanceScheduler@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[tickMillis=").append(tickMillis);
+      sb.append(" wheelSize=").append(wheelSize);
+      sb.append(" jitter=").append(jitter);
+      sb.append(" maxThreads=").append(maxThreads);
+      sb.append(" executed=").append(getExecutedCount());
+      sb.append(" p50Lateness=").append(getLateness(50.0));
+      sb.append(" p99Lateness=").append(getLateness(99.0));
+      sb.append(" maxLateness=").append(getMaxLateness());
+      sb.append("]");
+
+      return sb.toString();
+   }
+
+   /**
+    * Hand a due task to its executor
+    * @param task The task
+    */
+   private void dispatch(Task task)
+   {
+      Executor executor = task.executor;
+      if (executor == null)
+         executor = task.interval > 0 ? executorService : executeService;
+
+      try
+      {
+         if (executor == null)
+            throw new IllegalStateException(THREAD_NAME);
+
+         executor.execute(task);
+      }
+      catch (Throwable t)
+      {
+         if (running.get())
+            log.maintenanceSchedulerIgnoredUnexpectedError(t);
+      }
+   }
+
+   /**
+    * Add a periodic task to the wheel
+    * @param task The task
+    */
+   private void add(Task task)
+   {
+      Wheel w = wheel;
+      if (w != null)
+      {
+         w.pending.add(task);
+         LockSupport.unpark(w.thread);
+      }
+   }
+
+   /**
+    * A scheduled task
+    */
+   public class Task implements Runnable
+   {
+      /** The task */
+      private final Runnable runnable;
+
+      /** The interval; 0 if the task runs once */
+      private final long interval;
+
+      /** The executor */
+      private final Executor executor;
+
+      /** The deadline */
+      private volatile long deadline;
+
+      /** The remaining rounds of the wheel; only accessed by the wheel thread */
+      private long remainingRounds;
+
+      /** Cancelled */
+      private volatile boolean cancelled;
+
+      /**
+       * Constructor
+       * @param runnable The task
+       * @param interval The interval
+       * @param executor The executor
+       */
+      Task(Runnable runnable, long interval, Executor executor)
+      {
+         this.runnable = runnable;
+         this.interval = interval;
+         this.executor = executor;
+         this.deadline = 0L;
+         this.remainingRounds = 0L;
+         this.cancelled = false;
+      }
+
+      /**
+       * Cancel the task
+       */
+      public void cancel()
+      {
+         cancelled = true;
+      }
+
+      /**
+       * Is the task cancelled
+       * @return The value
+       */
+      public boolean isCancelled()
+      {
+         return cancelled;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         if (cancelled)
+            return;
+
+         long late = System.currentTimeMillis() - deadline;
+         if (late < 0L)
+            late = 0L;
+
+         lateness.record(late);
+         maxLateness.accumulate(late);
+         executed.increment();
+
+         final ClassLoader oldTccl = SecurityActions.getThreadContextClassLoader();
+         SecurityActions.setThreadContextClassLoader(MaintenanceScheduler.class.getClassLoader());
+
+         try
+         {
+            runnable.run();
+         }
+         catch (Throwable t)
+         {
+            log.maintenanceSchedulerIgnoredUnexpectedError(t);
+         }
+         finally
+         {
+            SecurityActions.setThreadContextClassLoader(oldTccl);
+
+            // Fixed delay, so a slow task doesn't pile up behind itself
+            if (interval > 0 && !cancelled && running.get())
+            {
+               deadline = System.currentTimeMillis() + interval;
+               add(this);
+            }
+         }
+      }
+   }
+
+   /**
+    * Thread factory
+    */
+   private static class MaintenanceThreadFactory implements ThreadFactory
+   {
+      /** The name of the threads */
+      private final String name;
+
+      /**
+       * Constructor
+       * @param name The name of the threads
+       */
+      MaintenanceThreadFactory(String name)
+      {
+         this.name = name;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread thread = new Thread(r, name);
+         thread.setDaemon(true);
+
+         return thread;
+      }
+   }
+
+   /**
+    * The hashed timing wheel, advanced by its own thread
+    */
+   private class Wheel implements Runnable
+   {
+      /** The thread */
+      private final Thread thread;
+
+      /** The tick duration in milliseconds */
+      private final long tickMillis;
+
+      /** The mask for the bucket index */
+      private final int mask;
+
+      /** The buckets; only accessed by the wheel thread */
+      private final List<List<Task>> buckets;
+
+      /** Tasks waiting to be added to the buckets */
+      private final ConcurrentLinkedQueue<Task> pending;
+
+      /** The start time */
+      private final long startTime;
+
+      /** The number of tasks in the buckets; only accessed by the wheel thread */
+      private int size;
+
+      /** The current tick; only accessed by the wheel thread */
+      private long tick;
+
+      /**
+       * Constructor
+       * @param tickMillis The tick duration in milliseconds
+       * @param wheelSize The number of buckets; a power of two
+       */
+      Wheel(long tickMillis, int wheelSize)
+      {
+         this.thread = new MaintenanceThreadFactory(THREAD_NAME).newThread(this);
+         this.tickMillis = tickMillis;
+         this.mask = wheelSize - 1;
+         this.buckets = new ArrayList<List<Task>>(wheelSize);
+         this.pending = new ConcurrentLinkedQueue<Task>();
+         this.startTime = System.currentTimeMillis();
+         this.size = 0;
+         this.tick = 0L;
+
+         for (int i = 0; i < wheelSize; i++)
+            buckets.add(new ArrayList<Task>());
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         while (wheel == this && !thread.isInterrupted())
+         {
+            if (size == 0 && pending.isEmpty())
+            {
+               // Nothing scheduled, so wait for a task instead of ticking
+               LockSupport.park(this);
+               tick = (System.currentTimeMillis() - startTime) / tickMillis;
+               continue;
+            }
+
+            long sleep = startTime + (tick + 1) * tickMillis - System.currentTimeMillis();
+            if (sleep > 0)
+            {
+               LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleep));
+
+               // Woken up early by a new task
+               if (startTime + (tick + 1) * tickMillis > System.currentTimeMillis())
+               {
+                  transferPending();
+                  continue;
+               }
+            }
+
+            transferPending();
+            tick++;
+            expire();
+         }
+      }
+
+      /**
+       * Add the pending tasks to the buckets; a task is never added to the current tick
+       */
+      private void transferPending()
+      {
+         Task task = pending.poll();
+         while (task != null)
+         {
+            if (!task.isCancelled())
+            {
+               long ticks = (task.deadline - startTime + tickMillis - 1) / tickMillis;
+               if (ticks <= tick)
+                  ticks = tick + 1;
+
+               task.remainingRounds = (ticks - tick - 1) / buckets.size();
+               buckets.get((int)(ticks & mask)).add(task);
+               size++;
+            }
+
+            task = pending.poll();
+         }
+      }
+
+      /**
+       * Expire the tasks of the current bucket
+       */
+      private void expire()
+      {
+         Iterator<Task> it = buckets.get((int)(tick & mask)).iterator();
+         while (it.hasNext())
+         {
+            Task task = it.next();
+
+            if (task.isCancelled())
+            {
+               it.remove();
+               size--;
+            }
+            else if (task.remainingRounds > 0)
+            {
+               task.remainingRounds--;
+            }
+            else
+            {
+               it.remove();
+               size--;
+               dispatch(task);
+            }
+         }
+      }
+   }
+}
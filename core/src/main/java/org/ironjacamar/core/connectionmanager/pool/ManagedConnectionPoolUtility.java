@@ -114,6 +114,7 @@ public class ManagedConnectionPoolUtility
       sb.append("  ValidateOnMatch: ").append(pc.isValidateOnMatch()).append(newLine);
       sb.append("  BackgroundValidation: ").append(pc.isBackgroundValidation()).append(newLine);
       sb.append("  BackgroundValidationMillis: ").append(pc.getBackgroundValidationMillis()).append(newLine);
+      sb.append("  BackgroundValidationBatchSize: ").append(pc.getBackgroundValidationBatchSize()).append(newLine);
       sb.append("  UseFastFail: ").append(pc.isUseFastFail()).append(newLine);
       if (pool.getCapacity() != null)
       {
@@ -164,6 +164,15 @@ public interface Pool extends org.ironjacamar.core.api.connectionmanager.pool.Po
     */
    public ConnectionListener findConnectionListener(ManagedConnection mc, Object c);
 
+   /**
+    * Get the index of the ConnectionListener instances
+    * @return The value, or <code>null</code> if the pool doesn't index its ConnectionListener instances
+    */
+   public default ConnectionListenerIndex getConnectionListenerIndex()
+   {
+      return null;
+   }
+
    /**
     * Get the active ConnectionListener instance
     * @param credential The credential
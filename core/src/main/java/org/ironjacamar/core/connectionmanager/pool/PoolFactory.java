@@ -25,6 +25,7 @@ import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
 import org.ironjacamar.core.connectionmanager.ConnectionManager;
 import org.ironjacamar.core.connectionmanager.pool.dflt.DefaultPool;
 import org.ironjacamar.core.connectionmanager.pool.stable.StablePool;
+import org.ironjacamar.core.connectionmanager.pool.striped.StripedPool;
 
 import java.lang.reflect.Constructor;
 import java.util.HashMap;
@@ -84,6 +85,8 @@ public class PoolFactory
             return new DefaultPool(cm, pc);
          case "stable":
             return new StablePool(cm, pc);
+         case "striped":
+            return new StripedPool(cm, pc);
          default:
          {
             Class<? extends Pool> clz = customPoolTypes.get(type);
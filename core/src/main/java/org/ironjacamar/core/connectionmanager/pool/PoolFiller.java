@@ -20,8 +20,9 @@
  */
 package org.ironjacamar.core.connectionmanager.pool;
 
-import java.util.LinkedList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * PoolFiller
@@ -32,23 +33,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * @author <a href="mailto:gurkanerdogdu@yahoo.com">Gurkan Erdogdu</a>
  * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
  */
-public class PoolFiller implements Runnable
+public class PoolFiller
 {
 
    /** Singleton instance */
    private static final PoolFiller FILLER = new PoolFiller();
 
-   /** Pools list */
-   private final LinkedList<FillRequest> pools = new LinkedList<FillRequest>();
-
-   /** Filler thread */
-   private final Thread fillerThread;
-
-   /** Thread name */
-   private static final String THREAD_FILLER_NAME = "IronJacamar PoolFiller";
-
-   /**Thread is configured or not*/
-   private AtomicBoolean threadStarted = new AtomicBoolean(false);
+   /** Fill requests waiting to run */
+   private final Set<FillRequest> pools =
+      Collections.newSetFromMap(new ConcurrentHashMap<FillRequest, Boolean>());
 
    /**
     * Fill given pool
@@ -64,75 +57,27 @@ public class PoolFiller implements Runnable
     */
    public PoolFiller()
    {
-      fillerThread = new Thread(this, THREAD_FILLER_NAME);
-      fillerThread.setDaemon(true);
    }
 
    /**
-    * {@inheritDoc}
+    * Fill pool
+    * @param fr The fill request
     */
-   public void run()
+   private void internalFillPool(final FillRequest fr)
    {
-      final ClassLoader myClassLoader = SecurityActions.getClassLoader(getClass());
-      SecurityActions.setThreadContextClassLoader(myClassLoader);
-
-      while (true)
+      if (pools.add(fr))
       {
-         boolean empty = false;
-
-         while (!empty)
+         MaintenanceScheduler.getInstance().execute(new Runnable()
          {
-            FillRequest fr = null;
-
-            synchronized (pools)
-            {
-               empty = pools.isEmpty();
-               if (!empty)
-                  fr = pools.removeFirst();
-            }
-
-            if (!empty)
+            /**
+             * {@inheritDoc}
+             */
+            public void run()
             {
+               pools.remove(fr);
                fr.getManagedConnectionPool().fillTo(fr.getFillSize());
             }
-         }
-
-         try 
-         {
-            synchronized (pools)
-            {
-               while (pools.isEmpty())
-               {
-                  pools.wait();                        
-               }
-            }
-         }
-         catch (InterruptedException ie)
-         {
-            Thread.currentThread().interrupt();
-            return;
-         }
-      }
-   }
-
-   /**
-    * Fill pool
-    * @param fr The fill request
-    */
-   private void internalFillPool(FillRequest fr)
-   {
-      if (this.threadStarted.compareAndSet(false, true))         
-      {
-         this.fillerThread.start();
-      }
-      
-      synchronized (pools)
-      {
-         if (!pools.contains(fr))
-         {
-            pools.addLast(fr);
-            pools.notifyAll();
-         }
+         });
       }
    }
 }
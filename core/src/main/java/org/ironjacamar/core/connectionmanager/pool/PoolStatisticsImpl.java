@@ -29,6 +29,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -37,11 +38,15 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Pool statistics
  *
+ * Counters are kept in {@link LongAdder} cells and maximum values in {@link LongAccumulator}s,
+ * so request threads updating the statistics don't contend on a single memory location.
+ *
  * @author <a href="jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
  */
 public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
@@ -105,57 +110,73 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    private static final String XA_START_TOTAL_TIME = "XAStartTotalTime";
    private static final String XA_START_MAX_TIME = "XAStartMaxTime";
 
+   private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+   private static final String[] PERCENTILE_NAMES = {"P50", "P90", "P99", "P999"};
+
    private int maxPoolSize;
    private transient SortedSet<String> names;
    private transient Map<String, Class> types;
    private transient Map<Locale, ResourceBundle> rbs;
 
    private transient AtomicBoolean enabled;
-   private transient AtomicInteger createdCount;
-   private transient AtomicInteger destroyedCount;
-   private transient AtomicInteger maxUsedCount;
-   private transient AtomicLong maxCreationTime;
-   private transient AtomicLong maxGetTime;
-   private transient AtomicLong maxPoolTime;
-   private transient AtomicLong maxUsageTime;
-   private transient AtomicInteger maxWaitCount;
-   private transient AtomicLong maxWaitTime;
-   private transient AtomicInteger timedOut;
-   private transient AtomicLong totalBlockingTime;
-   private transient AtomicLong totalBlockingTimeInvocations;
-   private transient AtomicLong totalCreationTime;
-   private transient AtomicLong totalGetTime;
-   private transient AtomicLong totalGetTimeInvocations;
-   private transient AtomicLong totalPoolTime;
-   private transient AtomicLong totalPoolTimeInvocations;
-   private transient AtomicLong totalUsageTime;
-   private transient AtomicLong totalUsageTimeInvocations;
+   private transient LongAdder createdCount;
+   private transient LongAdder destroyedCount;
+   private transient LongAccumulator maxUsedCount;
+   private transient LongAccumulator maxCreationTime;
+   private transient LongAccumulator maxGetTime;
+   private transient LongAccumulator maxPoolTime;
+   private transient LongAccumulator maxUsageTime;
+   private transient LongAccumulator maxWaitCount;
+   private transient LongAccumulator maxWaitTime;
+   private transient LongAdder timedOut;
+   private transient LongAdder totalBlockingTime;
+   private transient LongAdder totalBlockingTimeInvocations;
+   private transient LongAdder totalCreationTime;
+   private transient LongAdder totalGetTime;
+   private transient LongAdder totalGetTimeInvocations;
+   private transient LongAdder totalPoolTime;
+   private transient LongAdder totalPoolTimeInvocations;
+   private transient LongAdder totalUsageTime;
+   private transient LongAdder totalUsageTimeInvocations;
    private transient AtomicInteger inUseCount;
-   private transient AtomicInteger blockingFailureCount;
-   private transient AtomicInteger waitCount;
-
-
-   private transient AtomicLong commitCount;
-   private transient AtomicLong commitTotalTime;
-   private transient AtomicLong commitMaxTime;
-   private transient AtomicLong endCount;
-   private transient AtomicLong endTotalTime;
-   private transient AtomicLong endMaxTime;
-   private transient AtomicLong forgetCount;
-   private transient AtomicLong forgetTotalTime;
-   private transient AtomicLong forgetMaxTime;
-   private transient AtomicLong prepareCount;
-   private transient AtomicLong prepareTotalTime;
-   private transient AtomicLong prepareMaxTime;
-   private transient AtomicLong recoverCount;
-   private transient AtomicLong recoverTotalTime;
-   private transient AtomicLong recoverMaxTime;
-   private transient AtomicLong rollbackCount;
-   private transient AtomicLong rollbackTotalTime;
-   private transient AtomicLong rollbackMaxTime;
-   private transient AtomicLong startCount;
-   private transient AtomicLong startTotalTime;
-   private transient AtomicLong startMaxTime;
+   private transient LongAdder blockingFailureCount;
+   private transient LongAdder waitCount;
+
+
+   private transient LongAdder commitCount;
+   private transient LongAdder commitTotalTime;
+   private transient LongAccumulator commitMaxTime;
+   private transient LongAdder endCount;
+   private transient LongAdder endTotalTime;
+   private transient LongAccumulator endMaxTime;
+   private transient LongAdder forgetCount;
+   private transient LongAdder forgetTotalTime;
+   private transient LongAccumulator forgetMaxTime;
+   private transient LongAdder prepareCount;
+   private transient LongAdder prepareTotalTime;
+   private transient LongAccumulator prepareMaxTime;
+   private transient LongAdder recoverCount;
+   private transient LongAdder recoverTotalTime;
+   private transient LongAccumulator recoverMaxTime;
+   private transient LongAdder rollbackCount;
+   private transient LongAdder rollbackTotalTime;
+   private transient LongAccumulator rollbackMaxTime;
+   private transient LongAdder startCount;
+   private transient LongAdder startTotalTime;
+   private transient LongAccumulator startMaxTime;
+
+   private transient LatencyHistogram creationTimeHistogram;
+   private transient LatencyHistogram getTimeHistogram;
+   private transient LatencyHistogram poolTimeHistogram;
+   private transient LatencyHistogram usageTimeHistogram;
+   private transient LatencyHistogram commitTimeHistogram;
+   private transient LatencyHistogram endTimeHistogram;
+   private transient LatencyHistogram forgetTimeHistogram;
+   private transient LatencyHistogram prepareTimeHistogram;
+   private transient LatencyHistogram recoverTimeHistogram;
+   private transient LatencyHistogram rollbackTimeHistogram;
+   private transient LatencyHistogram startTimeHistogram;
+   private transient Map<String, Percentile> percentiles;
 
    /**
     * Constructor
@@ -174,50 +195,62 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    {
       this.maxPoolSize = maxPoolSize;
 
-      this.createdCount = new AtomicInteger(0);
-      this.destroyedCount = new AtomicInteger(0);
-      this.maxCreationTime = new AtomicLong(Long.MIN_VALUE);
-      this.maxGetTime = new AtomicLong(Long.MIN_VALUE);
-      this.maxPoolTime = new AtomicLong(Long.MIN_VALUE);
-      this.maxUsageTime = new AtomicLong(Long.MIN_VALUE);
-      this.maxUsedCount = new AtomicInteger(Integer.MIN_VALUE);
-      this.maxWaitCount = new AtomicInteger(0);
-      this.maxWaitTime = new AtomicLong(Long.MIN_VALUE);
-      this.timedOut = new AtomicInteger(0);
-      this.totalBlockingTime = new AtomicLong(0);
-      this.totalBlockingTimeInvocations = new AtomicLong(0);
-      this.totalCreationTime = new AtomicLong(0);
-      this.totalGetTime = new AtomicLong(0);
-      this.totalGetTimeInvocations = new AtomicLong(0);
-      this.totalPoolTime = new AtomicLong(0);
-      this.totalPoolTimeInvocations = new AtomicLong(0);
-      this.totalUsageTime = new AtomicLong(0);
-      this.totalUsageTimeInvocations = new AtomicLong(0);
+      this.createdCount = new LongAdder();
+      this.destroyedCount = new LongAdder();
+      this.maxCreationTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.maxGetTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.maxPoolTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.maxUsageTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.maxUsedCount = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.maxWaitCount = new LongAccumulator(Math::max, 0L);
+      this.maxWaitTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+      this.timedOut = new LongAdder();
+      this.totalBlockingTime = new LongAdder();
+      this.totalBlockingTimeInvocations = new LongAdder();
+      this.totalCreationTime = new LongAdder();
+      this.totalGetTime = new LongAdder();
+      this.totalGetTimeInvocations = new LongAdder();
+      this.totalPoolTime = new LongAdder();
+      this.totalPoolTimeInvocations = new LongAdder();
+      this.totalUsageTime = new LongAdder();
+      this.totalUsageTimeInvocations = new LongAdder();
       this.inUseCount = new AtomicInteger(0);
-      this.blockingFailureCount = new AtomicInteger(0);
-      this.waitCount = new AtomicInteger(0);
-
-      this.commitCount = new AtomicLong(0L);
-      this.commitTotalTime = new AtomicLong(0L);
-      this.commitMaxTime = new AtomicLong(0L);
-      this.endCount = new AtomicLong(0L);
-      this.endTotalTime = new AtomicLong(0L);
-      this.endMaxTime = new AtomicLong(0L);
-      this.forgetCount = new AtomicLong(0L);
-      this.forgetTotalTime = new AtomicLong(0L);
-      this.forgetMaxTime = new AtomicLong(0L);
-      this.prepareCount = new AtomicLong(0L);
-      this.prepareTotalTime = new AtomicLong(0L);
-      this.prepareMaxTime = new AtomicLong(0L);
-      this.recoverCount = new AtomicLong(0L);
-      this.recoverTotalTime = new AtomicLong(0L);
-      this.recoverMaxTime = new AtomicLong(0L);
-      this.rollbackCount = new AtomicLong(0L);
-      this.rollbackTotalTime = new AtomicLong(0L);
-      this.rollbackMaxTime = new AtomicLong(0L);
-      this.startCount = new AtomicLong(0L);
-      this.startTotalTime = new AtomicLong(0L);
-      this.startMaxTime = new AtomicLong(0L);
+      this.blockingFailureCount = new LongAdder();
+      this.waitCount = new LongAdder();
+
+      this.commitCount = new LongAdder();
+      this.commitTotalTime = new LongAdder();
+      this.commitMaxTime = new LongAccumulator(Math::max, 0L);
+      this.endCount = new LongAdder();
+      this.endTotalTime = new LongAdder();
+      this.endMaxTime = new LongAccumulator(Math::max, 0L);
+      this.forgetCount = new LongAdder();
+      this.forgetTotalTime = new LongAdder();
+      this.forgetMaxTime = new LongAccumulator(Math::max, 0L);
+      this.prepareCount = new LongAdder();
+      this.prepareTotalTime = new LongAdder();
+      this.prepareMaxTime = new LongAccumulator(Math::max, 0L);
+      this.recoverCount = new LongAdder();
+      this.recoverTotalTime = new LongAdder();
+      this.recoverMaxTime = new LongAccumulator(Math::max, 0L);
+      this.rollbackCount = new LongAdder();
+      this.rollbackTotalTime = new LongAdder();
+      this.rollbackMaxTime = new LongAccumulator(Math::max, 0L);
+      this.startCount = new LongAdder();
+      this.startTotalTime = new LongAdder();
+      this.startMaxTime = new LongAccumulator(Math::max, 0L);
+
+      this.creationTimeHistogram = new LatencyHistogram();
+      this.getTimeHistogram = new LatencyHistogram();
+      this.poolTimeHistogram = new LatencyHistogram();
+      this.usageTimeHistogram = new LatencyHistogram();
+      this.commitTimeHistogram = new LatencyHistogram();
+      this.endTimeHistogram = new LatencyHistogram();
+      this.forgetTimeHistogram = new LatencyHistogram();
+      this.prepareTimeHistogram = new LatencyHistogram();
+      this.recoverTimeHistogram = new LatencyHistogram();
+      this.rollbackTimeHistogram = new LatencyHistogram();
+      this.startTimeHistogram = new LatencyHistogram();
 
       SortedSet<String> n = new TreeSet<String>();
       Map<String, Class> t = new HashMap<String, Class>();
@@ -363,8 +396,23 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       n.add(XA_START_MAX_TIME);
       t.put(XA_START_MAX_TIME, long.class);
 
+      Map<String, Percentile> p = new LinkedHashMap<String, Percentile>();
+
+      addPercentiles(n, t, p, "", "CreationTime", creationTimeHistogram);
+      addPercentiles(n, t, p, "", "GetTime", getTimeHistogram);
+      addPercentiles(n, t, p, "", "PoolTime", poolTimeHistogram);
+      addPercentiles(n, t, p, "", "UsageTime", usageTimeHistogram);
+      addPercentiles(n, t, p, "XACommit", "Time", commitTimeHistogram);
+      addPercentiles(n, t, p, "XAEnd", "Time", endTimeHistogram);
+      addPercentiles(n, t, p, "XAForget", "Time", forgetTimeHistogram);
+      addPercentiles(n, t, p, "XAPrepare", "Time", prepareTimeHistogram);
+      addPercentiles(n, t, p, "XARecover", "Time", recoverTimeHistogram);
+      addPercentiles(n, t, p, "XARollback", "Time", rollbackTimeHistogram);
+      addPercentiles(n, t, p, "XAStart", "Time", startTimeHistogram);
+
       this.names = Collections.unmodifiableSortedSet(n);
       this.types = Collections.unmodifiableMap(t);
+      this.percentiles = Collections.unmodifiableMap(p);
       this.enabled = new AtomicBoolean(true);
       
       ResourceBundle defaultResourceBundle = 
@@ -376,6 +424,28 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       clear();
    }
 
+   /**
+    * Register the percentile names of a histogram
+    * @param n The names
+    * @param t The types
+    * @param p The percentiles
+    * @param prefix The name prefix
+    * @param suffix The name suffix
+    * @param histogram The histogram
+    */
+   private static void addPercentiles(SortedSet<String> n, Map<String, Class> t, Map<String, Percentile> p,
+                                      String prefix, String suffix, LatencyHistogram histogram)
+   {
+      for (int i = 0; i < PERCENTILES.length; i++)
+      {
+         String name = prefix + PERCENTILE_NAMES[i] + suffix;
+
+         n.add(name);
+         t.put(name, long.class);
+         p.put(name, new Percentile(histogram, PERCENTILES[i]));
+      }
+   }
+
 
    /**
     * {@inheritDoc}
@@ -649,6 +719,10 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       {
          return getStartMaxTime();
       }
+      else if (percentiles.containsKey(name))
+      {
+         return getPercentile(name);
+      }
 
       return null;
    }
@@ -681,10 +755,10 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      if (createdCount.get() < destroyedCount.get())
+      if (createdCount.sum() < destroyedCount.sum())
          clear();
 
-      return createdCount.get() - destroyedCount.get();
+      return (int)(createdCount.sum() - destroyedCount.sum());
    }
 
    /**
@@ -706,7 +780,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalBlockingTimeInvocations.get() != 0 ? totalBlockingTime.get() / totalBlockingTimeInvocations.get() : 0;
+      return totalBlockingTimeInvocations.sum() != 0 ? totalBlockingTime.sum() / totalBlockingTimeInvocations.sum() : 0;
    }
 
    /**
@@ -717,7 +791,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return createdCount.get() != 0 ? totalCreationTime.get() / createdCount.get() : 0;
+      return createdCount.sum() != 0 ? totalCreationTime.sum() / createdCount.sum() : 0;
    }
 
    /**
@@ -728,7 +802,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalGetTimeInvocations.get() != 0 ? totalGetTime.get() / totalGetTimeInvocations.get() : 0;
+      return totalGetTimeInvocations.sum() != 0 ? totalGetTime.sum() / totalGetTimeInvocations.sum() : 0;
    }
 
    /**
@@ -739,7 +813,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalUsageTimeInvocations.get() != 0 ? totalUsageTime.get() / totalUsageTimeInvocations.get() : 0;
+      return totalUsageTimeInvocations.sum() != 0 ? totalUsageTime.sum() / totalUsageTimeInvocations.sum() : 0;
    }
 
    /**
@@ -750,7 +824,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalPoolTimeInvocations.get() != 0 ? totalPoolTime.get() / totalPoolTimeInvocations.get() : 0;
+      return totalPoolTimeInvocations.sum() != 0 ? totalPoolTime.sum() / totalPoolTimeInvocations.sum() : 0;
    }
 
    /**
@@ -761,7 +835,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return blockingFailureCount.get();
+      return (int)blockingFailureCount.sum();
    }
 
    /**
@@ -770,7 +844,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    public void deltaBlockingFailureCount()
    {
       if (enabled.get())
-         blockingFailureCount.incrementAndGet();
+         blockingFailureCount.increment();
    }
 
    /**
@@ -781,7 +855,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return createdCount.get();
+      return (int)createdCount.sum();
    }
 
    /**
@@ -790,7 +864,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    public void deltaCreatedCount()
    {
       if (enabled.get())
-         createdCount.incrementAndGet();
+         createdCount.increment();
    }
 
    /**
@@ -801,7 +875,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return destroyedCount.get();
+      return (int)destroyedCount.sum();
    }
 
    /**
@@ -810,7 +884,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    public void deltaDestroyedCount()
    {
       if (enabled.get())
-         destroyedCount.incrementAndGet();
+         destroyedCount.increment();
    }
 
    /**
@@ -841,7 +915,10 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaInUseCount(int v)
    {
-      setMaxUsedCount(inUseCount.addAndGet(v));
+      int inUse = inUseCount.addAndGet(v);
+
+      if (v > 0)
+         setMaxUsedCount(inUse);
    }
 
    /**
@@ -853,17 +930,16 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return maxUsedCount.get() != Integer.MIN_VALUE ? maxUsedCount.get() : 0;
+      return maxUsedCount.get() != Long.MIN_VALUE ? (int)maxUsedCount.get() : 0;
    }
 
    /**
     * Set max used count
     * @param v The value
     */
-   private void setMaxUsedCount(int v)
+   private void setMaxUsedCount(long v)
    {
-      if (v > maxUsedCount.get())
-         maxUsedCount.set(v);
+      maxUsedCount.accumulate(v);
    }
 
    /**
@@ -919,7 +995,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0;
 
-      return maxWaitCount.get() != Integer.MIN_VALUE ? maxWaitCount.get() : 0;
+      return (int)maxWaitCount.get();
    }
 
    /**
@@ -928,8 +1004,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void setMaxWaitCount(int v)
    {
-      if (v > maxWaitCount.get())
-         maxWaitCount.set(v);
+      maxWaitCount.accumulate(v);
    }
 
    /**
@@ -951,7 +1026,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return timedOut.get();
+      return (int)timedOut.sum();
    }
 
    /**
@@ -960,7 +1035,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    public void deltaTimedOut()
    {
       if (enabled.get())
-         timedOut.incrementAndGet();
+         timedOut.increment();
    }
 
    /**
@@ -971,7 +1046,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalBlockingTime.get();
+      return totalBlockingTime.sum();
    }
 
    /**
@@ -982,11 +1057,10 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    {
       if (enabled.get() && delta > 0)
       {
-         totalBlockingTime.addAndGet(delta);
-         totalBlockingTimeInvocations.incrementAndGet();
+         totalBlockingTime.add(delta);
+         totalBlockingTimeInvocations.increment();
 
-         if (delta > maxWaitTime.get())
-            maxWaitTime.set(delta);
+         maxWaitTime.accumulate(delta);
       }
    }
 
@@ -998,7 +1072,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalCreationTime.get();
+      return totalCreationTime.sum();
    }
 
    /**
@@ -1007,12 +1081,16 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaTotalCreationTime(long delta)
    {
-      if (enabled.get() && delta > 0)
+      if (enabled.get())
       {
-         totalCreationTime.addAndGet(delta);
+         creationTimeHistogram.record(delta);
 
-         if (delta > maxCreationTime.get())
-            maxCreationTime.set(delta);
+         if (delta > 0)
+         {
+            totalCreationTime.add(delta);
+
+            maxCreationTime.accumulate(delta);
+         }
       }
    }
 
@@ -1024,7 +1102,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalGetTime.get();
+      return totalGetTime.sum();
    }
 
    /**
@@ -1033,13 +1111,17 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaTotalGetTime(long delta)
    {
-      if (enabled.get() && delta > 0)
+      if (enabled.get())
       {
-         totalGetTime.addAndGet(delta);
-         totalGetTimeInvocations.incrementAndGet();
+         getTimeHistogram.record(delta);
 
-         if (delta > maxGetTime.get())
-            maxGetTime.set(delta);
+         if (delta > 0)
+         {
+            totalGetTime.add(delta);
+            totalGetTimeInvocations.increment();
+
+            maxGetTime.accumulate(delta);
+         }
       }
    }
 
@@ -1051,7 +1133,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalPoolTime.get();
+      return totalPoolTime.sum();
    }
 
    /**
@@ -1060,13 +1142,17 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaTotalPoolTime(long delta)
    {
-      if (enabled.get() && delta > 0)
+      if (enabled.get())
       {
-         totalPoolTime.addAndGet(delta);
-         totalPoolTimeInvocations.incrementAndGet();
+         poolTimeHistogram.record(delta);
 
-         if (delta > maxPoolTime.get())
-            maxPoolTime.set(delta);
+         if (delta > 0)
+         {
+            totalPoolTime.add(delta);
+            totalPoolTimeInvocations.increment();
+
+            maxPoolTime.accumulate(delta);
+         }
       }
    }
 
@@ -1078,7 +1164,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0L;
 
-      return totalUsageTime.get();
+      return totalUsageTime.sum();
    }
 
    /**
@@ -1087,13 +1173,17 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaTotalUsageTime(long delta)
    {
-      if (enabled.get() && delta > 0)
+      if (enabled.get())
       {
-         totalUsageTime.addAndGet(delta);
-         totalUsageTimeInvocations.incrementAndGet();
+         usageTimeHistogram.record(delta);
 
-         if (delta > maxUsageTime.get())
-            maxUsageTime.set(delta);
+         if (delta > 0)
+         {
+            totalUsageTime.add(delta);
+            totalUsageTimeInvocations.increment();
+
+            maxUsageTime.accumulate(delta);
+         }
       }
    }
 
@@ -1105,7 +1195,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!enabled.get())
          return 0;
 
-      return waitCount.get();
+      return (int)waitCount.sum();
    }
 
    /**
@@ -1114,7 +1204,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
    public void deltaWaitCount()
    {
       if (enabled.get())
-         waitCount.incrementAndGet();
+         waitCount.increment();
    }
 
    /**
@@ -1125,7 +1215,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return commitCount.get();
+      return commitCount.sum();
    }
 
    /**
@@ -1136,7 +1226,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return commitTotalTime.get();
+      return commitTotalTime.sum();
    }
 
    /**
@@ -1147,8 +1237,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (commitCount.get() > 0)
-         return commitTotalTime.get() / commitCount.get();
+      if (commitCount.sum() > 0)
+         return commitTotalTime.sum() / commitCount.sum();
 
       return 0L;
    }
@@ -1169,14 +1259,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaCommit(long time)
    {
-      commitCount.incrementAndGet();
+      commitCount.increment();
+      commitTimeHistogram.record(time);
 
       if (time > 0)
       {
-         commitTotalTime.addAndGet(time);
+         commitTotalTime.add(time);
 
-         if (time > commitMaxTime.get())
-            commitMaxTime.set(time);
+         commitMaxTime.accumulate(time);
       }
    }
 
@@ -1188,7 +1278,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return endCount.get();
+      return endCount.sum();
    }
 
    /**
@@ -1199,7 +1289,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return endTotalTime.get();
+      return endTotalTime.sum();
    }
 
    /**
@@ -1210,8 +1300,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (endCount.get() > 0)
-         return endTotalTime.get() / endCount.get();
+      if (endCount.sum() > 0)
+         return endTotalTime.sum() / endCount.sum();
 
       return 0L;
    }
@@ -1232,14 +1322,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaEnd(long time)
    {
-      endCount.incrementAndGet();
+      endCount.increment();
+      endTimeHistogram.record(time);
 
       if (time > 0)
       {
-         endTotalTime.addAndGet(time);
+         endTotalTime.add(time);
 
-         if (time > endMaxTime.get())
-            endMaxTime.set(time);
+         endMaxTime.accumulate(time);
       }
    }
 
@@ -1251,7 +1341,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return forgetCount.get();
+      return forgetCount.sum();
    }
 
    /**
@@ -1262,7 +1352,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return forgetTotalTime.get();
+      return forgetTotalTime.sum();
    }
 
    /**
@@ -1273,8 +1363,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (forgetCount.get() > 0)
-         return forgetTotalTime.get() / forgetCount.get();
+      if (forgetCount.sum() > 0)
+         return forgetTotalTime.sum() / forgetCount.sum();
 
       return 0L;
    }
@@ -1295,14 +1385,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaForget(long time)
    {
-      forgetCount.incrementAndGet();
+      forgetCount.increment();
+      forgetTimeHistogram.record(time);
 
       if (time > 0)
       {
-         forgetTotalTime.addAndGet(time);
+         forgetTotalTime.add(time);
 
-         if (time > forgetMaxTime.get())
-            forgetMaxTime.set(time);
+         forgetMaxTime.accumulate(time);
       }
    }
 
@@ -1314,7 +1404,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return prepareCount.get();
+      return prepareCount.sum();
    }
 
    /**
@@ -1325,7 +1415,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return prepareTotalTime.get();
+      return prepareTotalTime.sum();
    }
 
    /**
@@ -1336,8 +1426,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (prepareCount.get() > 0)
-         return prepareTotalTime.get() / prepareCount.get();
+      if (prepareCount.sum() > 0)
+         return prepareTotalTime.sum() / prepareCount.sum();
 
       return 0L;
    }
@@ -1358,14 +1448,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaPrepare(long time)
    {
-      prepareCount.incrementAndGet();
+      prepareCount.increment();
+      prepareTimeHistogram.record(time);
 
       if (time > 0)
       {
-         prepareTotalTime.addAndGet(time);
+         prepareTotalTime.add(time);
 
-         if (time > prepareMaxTime.get())
-            prepareMaxTime.set(time);
+         prepareMaxTime.accumulate(time);
       }
    }
 
@@ -1377,7 +1467,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return recoverCount.get();
+      return recoverCount.sum();
    }
 
    /**
@@ -1388,7 +1478,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return recoverTotalTime.get();
+      return recoverTotalTime.sum();
    }
 
    /**
@@ -1399,8 +1489,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (recoverCount.get() > 0)
-         return recoverTotalTime.get() / recoverCount.get();
+      if (recoverCount.sum() > 0)
+         return recoverTotalTime.sum() / recoverCount.sum();
 
       return 0L;
    }
@@ -1421,14 +1511,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaRecover(long time)
    {
-      recoverCount.incrementAndGet();
+      recoverCount.increment();
+      recoverTimeHistogram.record(time);
 
       if (time > 0)
       {
-         recoverTotalTime.addAndGet(time);
+         recoverTotalTime.add(time);
 
-         if (time > recoverMaxTime.get())
-            recoverMaxTime.set(time);
+         recoverMaxTime.accumulate(time);
       }
    }
 
@@ -1440,7 +1530,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return rollbackCount.get();
+      return rollbackCount.sum();
    }
 
    /**
@@ -1451,7 +1541,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return rollbackTotalTime.get();
+      return rollbackTotalTime.sum();
    }
 
    /**
@@ -1462,8 +1552,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (rollbackCount.get() > 0)
-         return rollbackTotalTime.get() / rollbackCount.get();
+      if (rollbackCount.sum() > 0)
+         return rollbackTotalTime.sum() / rollbackCount.sum();
 
       return 0L;
    }
@@ -1484,14 +1574,14 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaRollback(long time)
    {
-      rollbackCount.incrementAndGet();
+      rollbackCount.increment();
+      rollbackTimeHistogram.record(time);
 
       if (time > 0)
       {
-         rollbackTotalTime.addAndGet(time);
+         rollbackTotalTime.add(time);
 
-         if (time > rollbackMaxTime.get())
-            rollbackMaxTime.set(time);
+         rollbackMaxTime.accumulate(time);
       }
    }
 
@@ -1503,7 +1593,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return startCount.get();
+      return startCount.sum();
    }
 
    /**
@@ -1514,7 +1604,7 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      return startTotalTime.get();
+      return startTotalTime.sum();
    }
 
    /**
@@ -1525,8 +1615,8 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       if (!isEnabled())
          return 0L;
 
-      if (startCount.get() > 0)
-         return startTotalTime.get() / startCount.get();
+      if (startCount.sum() > 0)
+         return startTotalTime.sum() / startCount.sum();
 
       return 0L;
    }
@@ -1547,65 +1637,94 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
     */
    public void deltaStart(long time)
    {
-      startCount.incrementAndGet();
+      startCount.increment();
+      startTimeHistogram.record(time);
 
       if (time > 0)
       {
-         startTotalTime.addAndGet(time);
+         startTotalTime.add(time);
 
-         if (time > startMaxTime.get())
-            startMaxTime.set(time);
+         startMaxTime.accumulate(time);
       }
    }
 
+   /**
+    * Get the value of a percentile, like <code>P99GetTime</code> or <code>XACommitP999Time</code>
+    * @param name The name of the percentile
+    * @return The value, or 0 if the name isn't known
+    */
+   public long getPercentile(String name)
+   {
+      if (!isEnabled())
+         return 0L;
+
+      Percentile percentile = percentiles.get(name);
+      if (percentile == null)
+         return 0L;
+
+      return percentile.getValue();
+   }
+
    /**
     * {@inheritDoc}
     */
    public void clear()
    {
-      this.createdCount.set(0);
-      this.destroyedCount.set(0);
-      this.maxCreationTime.set(Long.MIN_VALUE);
-      this.maxGetTime.set(Long.MIN_VALUE);
-      this.maxPoolTime.set(Long.MIN_VALUE);
-      this.maxUsageTime.set(Long.MIN_VALUE);
-      this.maxUsedCount.set(Integer.MIN_VALUE);
-      this.maxWaitTime.set(Long.MIN_VALUE);
-      this.timedOut.set(0);
-      this.totalBlockingTime.set(0L);
-      this.totalBlockingTimeInvocations.set(0L);
-      this.totalCreationTime.set(0L);
-      this.totalGetTime.set(0L);
-      this.totalGetTimeInvocations.set(0L);
-      this.totalPoolTime.set(0L);
-      this.totalPoolTimeInvocations.set(0L);
-      this.totalUsageTime.set(0L);
-      this.totalUsageTimeInvocations.set(0L);
+      this.createdCount.reset();
+      this.destroyedCount.reset();
+      this.maxCreationTime.reset();
+      this.maxGetTime.reset();
+      this.maxPoolTime.reset();
+      this.maxUsageTime.reset();
+      this.maxUsedCount.reset();
+      this.maxWaitTime.reset();
+      this.timedOut.reset();
+      this.totalBlockingTime.reset();
+      this.totalBlockingTimeInvocations.reset();
+      this.totalCreationTime.reset();
+      this.totalGetTime.reset();
+      this.totalGetTimeInvocations.reset();
+      this.totalPoolTime.reset();
+      this.totalPoolTimeInvocations.reset();
+      this.totalUsageTime.reset();
+      this.totalUsageTimeInvocations.reset();
       this.inUseCount.set(0);
-      this.blockingFailureCount.set(0);
-      this.waitCount.set(0);
-
-      this.commitCount = new AtomicLong(0L);
-      this.commitTotalTime = new AtomicLong(0L);
-      this.commitMaxTime = new AtomicLong(0L);
-      this.endCount = new AtomicLong(0L);
-      this.endTotalTime = new AtomicLong(0L);
-      this.endMaxTime = new AtomicLong(0L);
-      this.forgetCount = new AtomicLong(0L);
-      this.forgetTotalTime = new AtomicLong(0L);
-      this.forgetMaxTime = new AtomicLong(0L);
-      this.prepareCount = new AtomicLong(0L);
-      this.prepareTotalTime = new AtomicLong(0L);
-      this.prepareMaxTime = new AtomicLong(0L);
-      this.recoverCount = new AtomicLong(0L);
-      this.recoverTotalTime = new AtomicLong(0L);
-      this.recoverMaxTime = new AtomicLong(0L);
-      this.rollbackCount = new AtomicLong(0L);
-      this.rollbackTotalTime = new AtomicLong(0L);
-      this.rollbackMaxTime = new AtomicLong(0L);
-      this.startCount = new AtomicLong(0L);
-      this.startTotalTime = new AtomicLong(0L);
-      this.startMaxTime = new AtomicLong(0L);
+      this.blockingFailureCount.reset();
+      this.waitCount.reset();
+
+      this.commitCount.reset();
+      this.commitTotalTime.reset();
+      this.commitMaxTime.reset();
+      this.endCount.reset();
+      this.endTotalTime.reset();
+      this.endMaxTime.reset();
+      this.forgetCount.reset();
+      this.forgetTotalTime.reset();
+      this.forgetMaxTime.reset();
+      this.prepareCount.reset();
+      this.prepareTotalTime.reset();
+      this.prepareMaxTime.reset();
+      this.recoverCount.reset();
+      this.recoverTotalTime.reset();
+      this.recoverMaxTime.reset();
+      this.rollbackCount.reset();
+      this.rollbackTotalTime.reset();
+      this.rollbackMaxTime.reset();
+      this.startCount.reset();
+      this.startTotalTime.reset();
+      this.startMaxTime.reset();
+
+      this.creationTimeHistogram.clear();
+      this.getTimeHistogram.clear();
+      this.poolTimeHistogram.clear();
+      this.usageTimeHistogram.clear();
+      this.commitTimeHistogram.clear();
+      this.endTimeHistogram.clear();
+      this.forgetTimeHistogram.clear();
+      this.prepareTimeHistogram.clear();
+      this.recoverTimeHistogram.clear();
+      this.rollbackTimeHistogram.clear();
+      this.startTimeHistogram.clear();
    }
 
    private void writeObject(ObjectOutputStream out) throws IOException
@@ -1743,8 +1862,46 @@ public class PoolStatisticsImpl implements PoolStatistics, XAResourceStatistics
       sb.append(",");
       sb.append(XA_START_MAX_TIME).append("=").append(getStartMaxTime());
 
+      for (String name : percentiles.keySet())
+      {
+         sb.append(",");
+         sb.append(name).append("=").append(getPercentile(name));
+      }
+
       sb.append("]");
       
       return sb.toString();
    }
+
+   /**
+    * A percentile of a histogram
+    */
+   private static class Percentile
+   {
+      /** The histogram */
+      private final LatencyHistogram histogram;
+
+      /** The percentile */
+      private final double percentile;
+
+      /**
+       * Constructor
+       * @param histogram The histogram
+       * @param percentile The percentile
+       */
+      Percentile(LatencyHistogram histogram, double percentile)
+      {
+         this.histogram = histogram;
+         this.percentile = percentile;
+      }
+
+      /**
+       * Get the value
+       * @return The value
+       */
+      long getValue()
+      {
+         return histogram.getValueAtPercentile(percentile);
+      }
+   }
 }
@@ -0,0 +1,156 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * The connection listeners tracked by a transaction, one per managed connection pool.
+ *
+ * The map is stored as a resource of the transaction in the TransactionSynchronizationRegistry,
+ * and is shared by all pools enlisted in the transaction. It is registered as the interposed
+ * synchronization of the transaction when created, and cleared when the transaction completes.
+ *
+ * @author <a href="jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class TransactionMap implements Synchronization
+{
+   /** The resource key */
+   private static final Object RESOURCE_KEY = TransactionMap.class;
+
+   /** The transaction key */
+   private final Object key;
+
+   /** The connection listeners */
+   private final Map<ManagedConnectionPool, ConnectionListener> listeners;
+
+   /**
+    * Constructor
+    * @param key The transaction key
+    */
+   TransactionMap(Object key)
+   {
+      this.key = key;
+      this.listeners = new HashMap<ManagedConnectionPool, ConnectionListener>(4);
+   }
+
+   /**
+    * Find the transaction map of the current transaction
+    * @param tsr The transaction synchronization registry
+    * @return The value, or <code>null</code> if no connection listeners have been tracked
+    */
+   public static TransactionMap find(TransactionSynchronizationRegistry tsr)
+   {
+      return (TransactionMap)tsr.getResource(RESOURCE_KEY);
+   }
+
+   /**
+    * Find or create the transaction map of the current transaction. The current transaction
+    * must be active, as the map registers itself as an interposed synchronization when created
+    * @param tsr The transaction synchronization registry
+    * @return The value
+    */
+   public static TransactionMap findOrCreate(TransactionSynchronizationRegistry tsr)
+   {
+      TransactionMap map = (TransactionMap)tsr.getResource(RESOURCE_KEY);
+
+      if (map == null)
+      {
+         map = new TransactionMap(tsr.getTransactionKey());
+         tsr.registerInterposedSynchronization(map);
+         tsr.putResource(RESOURCE_KEY, map);
+      }
+
+      return map;
+   }
+
+   /**
+    * Get the transaction key
+    * @return The value
+    */
+   public Object getKey()
+   {
+      return key;
+   }
+
+   /**
+    * Get the connection listener tracked for a managed connection pool
+    * @param mcp The managed connection pool
+    * @return The value, or <code>null</code>
+    */
+   public synchronized ConnectionListener get(ManagedConnectionPool mcp)
+   {
+      return listeners.get(mcp);
+   }
+
+   /**
+    * Track a connection listener for a managed connection pool
+    * @param mcp The managed connection pool
+    * @param cl The connection listener
+    */
+   public synchronized void put(ManagedConnectionPool mcp, ConnectionListener cl)
+   {
+      listeners.put(mcp, cl);
+   }
+
+   /**
+    * Stop tracking the connection listener of a managed connection pool
+    * @param mcp The managed connection pool
+    * @return The connection listener, or <code>null</code>
+    */
+   public synchronized ConnectionListener remove(ManagedConnectionPool mcp)
+   {
+      return listeners.remove(mcp);
+   }
+
+   /**
+    * Is a connection listener tracked
+    * @param cl The connection listener
+    * @return True if tracked, otherwise false
+    */
+   public synchronized boolean contains(ConnectionListener cl)
+   {
+      return listeners.containsValue(cl);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void beforeCompletion()
+   {
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public synchronized void afterCompletion(int status)
+   {
+      listeners.clear();
+   }
+}
@@ -30,6 +30,7 @@ import org.ironjacamar.core.connectionmanager.pool.CapacityFiller;
 import org.ironjacamar.core.connectionmanager.pool.CapacityRequest;
 import org.ironjacamar.core.connectionmanager.pool.ConnectionValidator;
 import org.ironjacamar.core.connectionmanager.pool.FillRequest;
+import org.ironjacamar.core.connectionmanager.pool.HandOffQueue;
 import org.ironjacamar.core.connectionmanager.pool.IdleConnectionRemover;
 import org.ironjacamar.core.connectionmanager.pool.ManagedConnectionPoolUtility;
 import org.ironjacamar.core.connectionmanager.pool.PoolFiller;
@@ -39,7 +40,6 @@ import org.ironjacamar.core.connectionmanager.pool.capacity.TimedOutFIFODecremen
 import org.ironjacamar.core.tracer.Tracer;
 
 import java.util.Iterator;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ManagedConnection;
@@ -68,7 +68,12 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
    /**
     * The connection listeners
     */
-   private ConcurrentLinkedDeque<ConnectionListener> listeners;
+   private Stripes stripes;
+
+   /**
+    * The threads waiting for a connection listener
+    */
+   private HandOffQueue waiters;
 
    /**
     * Constructor
@@ -77,10 +82,23 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
     * @param credential The credential
     */
    public DefaultManagedConnectionPool(DefaultPool pool, Credential credential)
+   {
+      this(pool, credential, 1);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param pool       The pool
+    * @param credential The credential
+    * @param stripeCount The number of stripes of the connection listeners
+    */
+   protected DefaultManagedConnectionPool(DefaultPool pool, Credential credential, int stripeCount)
    {
       super(pool, credential);
       this.pool = pool;
-      this.listeners = new ConcurrentLinkedDeque<ConnectionListener>();
+      this.stripes = new Stripes(stripeCount);
+      this.waiters = new HandOffQueue();
 
       if (credential.equals(pool.getPrefillCredential()) &&
             pool.getConfiguration().isPrefill() &&
@@ -110,153 +128,137 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
    {
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "getConnectionListener()",
                pool.getConnectionManager().getManagedConnectionFactory(),
                pool.getConnectionManager(),
                pool, pool.getConfiguration(),
-               listeners, pool.getInternalStatistics(),
+               stripes, pool.getInternalStatistics(),
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
          pool.getLogger().debug(ManagedConnectionPoolUtility.details("getConnectionListener()",
                                                                      pool.getConfiguration().getId(),
-                                                                     getCount(IN_USE, listeners),
+                                                                     getCount(IN_USE, stripes),
                                                                      pool.getConfiguration().getMaxSize()));
 
       }
       
       long timestamp = System.currentTimeMillis();
-      while (System.currentTimeMillis() - timestamp <= pool.getConfiguration().getBlockingTimeout())
+
+      // Try the connection listener this thread returned last, before contending on the shared listeners
+      ConnectionListener last = pool.getLastUsedConnectionListener(this);
+      if (last != null && last.changeState(FREE, VALIDATION))
       {
-         Iterator<ConnectionListener> listenersIterator =
-            poolIsFifo ? listeners.iterator() : listeners.descendingIterator();
+         ConnectionListener result = activateConnectionListener(last, timestamp);
+         if (result != null)
+            return result;
+      }
 
-         while (listenersIterator.hasNext())
+      HandOffQueue.Waiter waiter = null;
+      try
+      {
+         do
          {
-            ConnectionListener cl = listenersIterator.next();
-            if (cl.changeState(FREE, VALIDATION))
+            if (waiter != null)
             {
-               if (pool.getInternalStatistics().isEnabled())
-                  pool.getInternalStatistics().deltaTotalBlockingTime(System.currentTimeMillis() - timestamp);
-
-               if (pool.getConfiguration().isValidateOnMatch())
+               ConnectionListener handed = waiter.getConnectionListener();
+               if (handed != null)
                {
-                  ConnectionListener result = validateConnectionListener(listeners, cl, IN_USE);
-                  if (result != null)
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.getConnectionListener(pool.getConfiguration().getId(),
-                                                     this, result, true, false,
-                                                     Tracer.isRecordCallstacks() ?
-                                                     new Throwable("CALLSTACK") : null);
-
-                     if (pool.getJanitor().isRecording())
-                        pool.getJanitor().registerConnectionListener(result);
+                  waiter = null;
 
-                     result.fromPool();
-
-                     if (pool.getInternalStatistics().isEnabled())
-                     {
-                        pool.getInternalStatistics().deltaInUseCount(1);
-                        pool.getInternalStatistics().deltaTotalGetTime(result.getFromPool() - timestamp);
-                        pool.getInternalStatistics().deltaTotalPoolTime(result.getFromPool() - result.getToPool());
-                     }
-                     
+                  ConnectionListener result = activateConnectionListener(handed, timestamp);
+                  if (result != null)
                      return result;
-                  }
-                  else
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
-                                                         this, cl, false, false, true, false, false,
-                                                         false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     if (pool.getConfiguration().isUseFastFail())
-                        break;
-                  }
                }
-               else
-               {
-                  if (cl.changeState(VALIDATION, IN_USE))
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.getConnectionListener(pool.getConfiguration().getId(),
-                                                     this, cl, true, false,
-                                                     Tracer.isRecordCallstacks() ?
-                                                     new Throwable("CALLSTACK") : null);
+            }
 
-                     if (pool.getJanitor().isRecording())
-                        pool.getJanitor().registerConnectionListener(cl);
+            Iterator<ConnectionListener> listenersIterator = stripes.iterator(poolIsFifo);
+
+            while (listenersIterator.hasNext())
+            {
+               ConnectionListener cl = listenersIterator.next();
+               if (cl.changeState(FREE, VALIDATION))
+               {
+                  stripes.taken(listenersIterator, cl);
 
-                     cl.fromPool();
+                  ConnectionListener result = activateConnectionListener(cl, timestamp);
+                  if (result != null)
+                     return result;
 
-                     if (pool.getInternalStatistics().isEnabled())
-                     {
-                        pool.getInternalStatistics().deltaInUseCount(1);
-                        pool.getInternalStatistics().deltaTotalGetTime(cl.getFromPool() - timestamp);
-                        pool.getInternalStatistics().deltaTotalPoolTime(cl.getFromPool() - cl.getToPool());
-                     }
-                     
-                     return cl;
-                  }
-                  else
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
-                                                         this, cl, false, false, false, false, true,
-                                                         false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     destroyAndRemoveConnectionListener(cl, listeners);
-                  }
+                  if (pool.getConfiguration().isValidateOnMatch() && pool.getConfiguration().isUseFastFail())
+                     break;
                }
             }
-         }
 
-         if (!pool.isFull())
-         {
-            try
+            if (!pool.isFull())
             {
-               ConnectionListener cl = pool.createConnectionListener(credential, this);
+               try
+               {
+                  ConnectionListener cl = pool.createConnectionListener(credential, this);
 
-               if (Tracer.isEnabled())
-                  Tracer.createConnectionListener(pool.getConfiguration().getId(),
-                                                  this, cl, cl.getManagedConnection(),
-                                                  true, false, false,
-                                                  Tracer.isRecordCallstacks() ?
-                                                  new Throwable("CALLSTACK") : null);
+                  if (Tracer.isEnabled())
+                     Tracer.createConnectionListener(pool.getConfiguration().getId(),
+                                                     this, cl, cl.getManagedConnection(),
+                                                     true, false, false,
+                                                     Tracer.isRecordCallstacks() ?
+                                                     new Throwable("CALLSTACK") : null);
 
-               listeners.addFirst(cl);
+                  stripes.addFirst(cl);
 
+               }
+               catch (ResourceException re)
+               {
+                  throw re;
+               }
+               finally
+               {
+                  prefill();
+                  // Trigger capacity increase
+                  if (pool.getCapacity().getIncrementer() != null)
+                     CapacityFiller.schedule(new CapacityRequest(this));
+               }
             }
-            catch (ResourceException re)
+            else if (waiter == null)
             {
-               throw re;
+               if (pool.getInternalStatistics().isEnabled())
+                  pool.getInternalStatistics().deltaWaitCount();
+
+               // Register before the next scan, so a connection returned after the scan is handed to us
+               waiter = waiters.enqueue();
             }
-            finally
+            else
             {
-               prefill();
-               // Trigger capacity increase
-               if (pool.getCapacity().getIncrementer() != null)
-                  CapacityFiller.schedule(new CapacityRequest(this));
+               long remaining = pool.getConfiguration().getBlockingTimeout() -
+                  (System.currentTimeMillis() - timestamp);
+
+               if (Thread.currentThread().isInterrupted())
+                  break;
+
+               if (remaining > 0)
+                  waiter.await(remaining);
             }
          }
-         else
+         while (System.currentTimeMillis() - timestamp <= pool.getConfiguration().getBlockingTimeout());
+      }
+      finally
+      {
+         if (waiter != null)
          {
-            if (pool.getInternalStatistics().isEnabled())
-               pool.getInternalStatistics().deltaWaitCount();
+            ConnectionListener handed = waiters.cancel(waiter);
+            if (handed != null)
+               releaseConnectionListener(handed);
          }
-
-         Thread.yield();
       }
 
       if (pool.getInternalStatistics().isEnabled())
@@ -272,24 +274,29 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
    {
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "returnConnectionListener(" + Integer.toHexString(System.identityHashCode(cl)) + ", " + kill + ")",
                pool.getConnectionManager().getManagedConnectionFactory(),
                pool.getConnectionManager(),
                pool, pool.getConfiguration(),
-               listeners, pool.getInternalStatistics(),
+               stripes, pool.getInternalStatistics(),
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
          pool.getLogger().debug(ManagedConnectionPoolUtility.details(
             "returnConnectionListener(" + Integer.toHexString(System.identityHashCode(cl)) + ", " + kill + ")",
             pool.getConfiguration().getId(),
-            getCount(IN_USE, listeners),
+            getCount(IN_USE, stripes),
             pool.getConfiguration().getMaxSize()));
       }
 
@@ -310,8 +317,15 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
             {
                cl.getManagedConnection().cleanup();
                cl.toPool();
-               if (!cl.changeState(TO_POOL, FREE))
+               if (cl.changeState(TO_POOL, FREE))
+               {
+                  pool.setLastUsedConnectionListener(cl);
+                  handOff(cl);
+               }
+               else
+               {
                   kill = true;
+               }
             }
             catch (ResourceException re)
             {
@@ -339,7 +353,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
          }
          finally
          {
-            listeners.remove(cl);
+            stripes.remove(cl);
          }
       }
    }
@@ -347,44 +361,52 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
    /**
     * {@inheritDoc}
     */
-   public synchronized void shutdown()
+   public void shutdown()
    {
-      if (pool.getConfiguration().isBackgroundValidation() &&
-          pool.getConfiguration().getBackgroundValidationMillis() > 0)
-      {
-         ConnectionValidator.getInstance().unregisterPool(this);
-      }
-
-      if (pool.getConfiguration().getIdleTimeoutMinutes() > 0)
-      {
-         IdleConnectionRemover.getInstance().unregisterPool(this);
-      }
-
-      for (ConnectionListener cl : listeners)
+      lock.lock();
+      try
       {
-         if (cl.getState() == IN_USE)
+         if (pool.getConfiguration().isBackgroundValidation() &&
+             pool.getConfiguration().getBackgroundValidationMillis() > 0)
          {
-            // TODO
+            ConnectionValidator.getInstance().unregisterPool(this);
          }
-         else if (cl.getState() == DESTROY)
+
+         if (pool.getConfiguration().getIdleTimeoutMinutes() > 0)
          {
-            // TODO
+            IdleConnectionRemover.getInstance().unregisterPool(this);
          }
 
-         try
+         for (ConnectionListener cl : stripes)
          {
-            if (Tracer.isEnabled())
-               Tracer.clearConnectionListener(pool.getConfiguration().getId(), this, cl);
+            if (cl.getState() == IN_USE)
+            {
+               // TODO
+            }
+            else if (cl.getState() == DESTROY)
+            {
+               // TODO
+            }
 
-            pool.destroyConnectionListener(cl);
-         }
-         catch (ResourceException re)
-         {
-            // TODO
-            cl.setState(ZOMBIE);
+            try
+            {
+               if (Tracer.isEnabled())
+                  Tracer.clearConnectionListener(pool.getConfiguration().getId(), this, cl);
+
+               pool.destroyConnectionListener(cl);
+            }
+            catch (ResourceException re)
+            {
+               // TODO
+               cl.setState(ZOMBIE);
+            }
          }
+         stripes.clear();
+      }
+      finally
+      {
+         lock.unlock();
       }
-      listeners.clear();
    }
 
    /**
@@ -408,7 +430,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
             return;
          }
 
-         int currentSize = listeners.size();
+         int currentSize = stripes.size();
 
          create = pool.getCapacity().getIncrementer()
                .shouldCreate(currentSize, pool.getConfiguration().getMaxSize(), created);
@@ -424,12 +446,13 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                         false, false, true, Tracer.isRecordCallstacks() ? new Throwable("CALLSTACK") : null);
 
                boolean added = false;
-               if (listeners.size() < pool.getConfiguration().getMaxSize())
+               if (stripes.size() < pool.getConfiguration().getMaxSize())
                {
                   if (log.isTraceEnabled())
                      log.trace("Capacity fill: cl=" + cl);
 
-                  listeners.add(cl);
+                  stripes.add(cl);
+                  handOff(cl);
                   created++;
                   added = true;
                }
@@ -462,7 +485,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
       if (credential.equals(pool.getPrefillCredential()) &&
           pool.getConfiguration().isPrefill() &&
           pool.getConfiguration().getMinSize() > 0 &&
-          listeners.size() < pool.getConfiguration().getMinSize())
+          stripes.size() < pool.getConfiguration().getMinSize())
       {
          PoolFiller.fillPool(new FillRequest(this, pool.getConfiguration().getMinSize()));
       }
@@ -480,24 +503,29 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "fillTo(" + size + ")",
                pool.getConnectionManager().getManagedConnectionFactory(),
                pool.getConnectionManager(),
                pool, pool.getConfiguration(),
-               listeners, pool.getInternalStatistics(),
+               stripes, pool.getInternalStatistics(),
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
          pool.getLogger().debug(ManagedConnectionPoolUtility.details(
             "fillTo(" + size + ")",
             pool.getConfiguration().getId(),
-            getCount(IN_USE, listeners),
+            getCount(IN_USE, stripes),
             pool.getConfiguration().getMaxSize()));
       }
 
@@ -509,7 +537,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
          }
 
          // We already have enough connections
-         if (listeners.size() >= size)
+         if (stripes.size() >= size)
          {
             return;
          }
@@ -528,10 +556,11 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
             boolean added = false;
 
-            if (listeners.size() < size)
+            if (stripes.size() < size)
             {
 
-               listeners.add(cl);
+               stripes.add(cl);
+               handOff(cl);
                added = true;
             }
 
@@ -567,44 +596,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (mcf instanceof ValidatingManagedConnectionFactory)
       {
-         ValidatingManagedConnectionFactory vcf = (ValidatingManagedConnectionFactory) mcf;
-         long timestamp = System.currentTimeMillis();
-
-         for (ConnectionListener cl : listeners)
-         {
-            if (cl.changeState(FREE, VALIDATION))
-            {
-               if (cl.getValidated() + pool.getConfiguration().getBackgroundValidationMillis() <= timestamp)
-               {
-                  ConnectionListener result = validateConnectionListener(listeners, cl, FREE);
-                  if (result == null)
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
-                                                         false, false, true,
-                                                         false, false, false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     anyDestroyed = true;
-                  }
-               }
-               else
-               {
-                  if (!cl.changeState(VALIDATION, FREE))
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
-                                                         false, false, false,
-                                                         false, true, false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     destroyAndRemoveConnectionListener(cl, listeners);
-                  }
-               }
-            }
-         }
+         anyDestroyed = validateConnectionListeners(stripes);
       }
       else
       {
@@ -613,6 +605,8 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (anyDestroyed)
          prefill();
+
+      waiters.wakeUp();
    }
 
    /**
@@ -651,33 +645,38 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "removeIdleConnections(" + timeout + ")",
                pool.getConnectionManager().getManagedConnectionFactory(),
                pool.getConnectionManager(),
                pool, pool.getConfiguration(),
-               listeners, pool.getInternalStatistics(),
+               stripes, pool.getInternalStatistics(),
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
          pool.getLogger().debug(ManagedConnectionPoolUtility.details(
             "removeIdleConnections(" + timeout + ")",
             pool.getConfiguration().getId(),
-            getCount(IN_USE, listeners),
+            getCount(IN_USE, stripes),
             pool.getConfiguration().getMaxSize()));
       }
 
-      for (ConnectionListener cl : listeners)
+      for (ConnectionListener cl : stripes)
       {
          if (cl.changeState(FREE, VALIDATION))
          {
             if (decrementer
-                  .shouldDestroy(cl, timeout, listeners.size(), pool.getConfiguration().getMinSize(), destroyed))
+                  .shouldDestroy(cl, timeout, stripes.size(), pool.getConfiguration().getMinSize(), destroyed))
             {
                if (Tracer.isEnabled())
                   Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
@@ -689,7 +688,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                if (pool.getInternalStatistics().isEnabled())
                   pool.getInternalStatistics().deltaTimedOut();
                      
-               destroyAndRemoveConnectionListener(cl, listeners);
+               destroyAndRemoveConnectionListener(cl, stripes);
                destroyed++;
             }
             else
@@ -706,7 +705,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                   if (pool.getInternalStatistics().isEnabled())
                      pool.getInternalStatistics().deltaTimedOut();
                      
-                  destroyAndRemoveConnectionListener(cl, listeners);
+                  destroyAndRemoveConnectionListener(cl, stripes);
                   destroyed++;
                }
             }
@@ -734,9 +733,11 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
          }
 
          // Empty pool
-         if (emptyManagedConnectionPool && listeners.isEmpty())
+         if (emptyManagedConnectionPool && stripes.isEmpty())
             pool.emptyManagedConnectionPool(this);
       }
+
+      waiters.wakeUp();
    }
 
    /**
@@ -744,7 +745,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
     */
    public boolean isEmpty()
    {
-      return listeners.isEmpty();
+      return stripes.isEmpty();
    }
 
    /**
@@ -754,7 +755,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
    {
 
       // Destroy connections in the pool
-      for (ConnectionListener cl : listeners)
+      for (ConnectionListener cl : stripes)
       {
          switch (mode)
          {
@@ -767,7 +768,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                                                    Tracer.isRecordCallstacks() ?
                                                    new Throwable("CALLSTACK") : null);
                      
-               destroyAndRemoveConnectionListener(cl, listeners);
+               destroyAndRemoveConnectionListener(cl, stripes);
                break;
             }
 
@@ -775,7 +776,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
             {
                if (cl.changeState(FREE, VALIDATION))
                {
-                  validateConnectionListener(listeners, cl, FREE);
+                  validateConnectionListener(stripes, cl, FREE);
                }
                break;
             }
@@ -790,7 +791,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                                                       Tracer.isRecordCallstacks() ?
                                                       new Throwable("CALLSTACK") : null);
                      
-                  destroyAndRemoveConnectionListener(cl, listeners);
+                  destroyAndRemoveConnectionListener(cl, stripes);
                }
                break;
             }
@@ -805,7 +806,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
                                                       Tracer.isRecordCallstacks() ?
                                                       new Throwable("CALLSTACK") : null);
                   
-                  destroyAndRemoveConnectionListener(cl, listeners);
+                  destroyAndRemoveConnectionListener(cl, stripes);
                }
                else if (cl.getState() == IN_USE || cl.getState() == TO_POOL || cl.getState() == VALIDATION)
                {
@@ -818,6 +819,133 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
 
       // Trigger prefill
       prefill();
+
+      waiters.wakeUp();
+   }
+
+   /**
+    * Wake up the oldest thread waiting for a connection listener, so it can
+    * check the pool again. Used when capacity becomes available
+    */
+   void wakeUp()
+   {
+      waiters.wakeUp();
+   }
+
+   /**
+    * Activate a connection listener that has been moved into the VALIDATION state
+    * @param cl The connection listener
+    * @param timestamp The time the request started
+    * @return The connection listener, or <code>null</code> if it couldn't be used
+    */
+   private ConnectionListener activateConnectionListener(ConnectionListener cl, long timestamp)
+   {
+      if (pool.getInternalStatistics().isEnabled())
+         pool.getInternalStatistics().deltaTotalBlockingTime(System.currentTimeMillis() - timestamp);
+
+      if (pool.getConfiguration().isValidateOnMatch())
+      {
+         ConnectionListener result = validateConnectionListener(stripes, cl, IN_USE);
+         if (result != null)
+         {
+            if (Tracer.isEnabled())
+               Tracer.getConnectionListener(pool.getConfiguration().getId(),
+                                            this, result, true, false,
+                                            Tracer.isRecordCallstacks() ?
+                                            new Throwable("CALLSTACK") : null);
+
+            if (pool.getJanitor().isRecording())
+               pool.getJanitor().registerConnectionListener(result);
+
+            result.fromPool();
+
+            if (pool.getInternalStatistics().isEnabled())
+            {
+               pool.getInternalStatistics().deltaInUseCount(1);
+               pool.getInternalStatistics().deltaTotalGetTime(result.getFromPool() - timestamp);
+               pool.getInternalStatistics().deltaTotalPoolTime(result.getFromPool() - result.getToPool());
+            }
+
+            return result;
+         }
+         else
+         {
+            if (Tracer.isEnabled())
+               Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
+                                                this, cl, false, false, true, false, false,
+                                                false, false,
+                                                Tracer.isRecordCallstacks() ?
+                                                new Throwable("CALLSTACK") : null);
+         }
+      }
+      else
+      {
+         if (cl.changeState(VALIDATION, IN_USE))
+         {
+            if (Tracer.isEnabled())
+               Tracer.getConnectionListener(pool.getConfiguration().getId(),
+                                            this, cl, true, false,
+                                            Tracer.isRecordCallstacks() ?
+                                            new Throwable("CALLSTACK") : null);
+
+            if (pool.getJanitor().isRecording())
+               pool.getJanitor().registerConnectionListener(cl);
+
+            cl.fromPool();
+
+            if (pool.getInternalStatistics().isEnabled())
+            {
+               pool.getInternalStatistics().deltaInUseCount(1);
+               pool.getInternalStatistics().deltaTotalGetTime(cl.getFromPool() - timestamp);
+               pool.getInternalStatistics().deltaTotalPoolTime(cl.getFromPool() - cl.getToPool());
+            }
+
+            return cl;
+         }
+         else
+         {
+            if (Tracer.isEnabled())
+               Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
+                                                this, cl, false, false, false, false, true,
+                                                false, false,
+                                                Tracer.isRecordCallstacks() ?
+                                                new Throwable("CALLSTACK") : null);
+
+            destroyAndRemoveConnectionListener(cl, stripes);
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Hand a FREE connection listener to the oldest waiting thread, if any
+    * @param cl The connection listener
+    */
+   private void handOff(ConnectionListener cl)
+   {
+      if (waiters.hasWaiters() && cl.changeState(FREE, VALIDATION))
+         releaseConnectionListener(cl);
+   }
+
+   /**
+    * Release a connection listener in the VALIDATION state, either to a waiting
+    * thread or back to the pool
+    * @param cl The connection listener
+    */
+   private void releaseConnectionListener(ConnectionListener cl)
+   {
+      if (!waiters.handOff(cl) && !cl.changeState(VALIDATION, FREE))
+      {
+         if (Tracer.isEnabled())
+            Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
+                                             this, cl, false, false, false, false, true,
+                                             false, false,
+                                             Tracer.isRecordCallstacks() ?
+                                             new Throwable("CALLSTACK") : null);
+
+         destroyAndRemoveConnectionListener(cl, stripes);
+      }
    }
 
    /**
@@ -825,7 +953,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
     */
    public ConnectionListener findConnectionListener(ManagedConnection mc, Object c)
    {
-      return findConnectionListener(mc, c, listeners);
+      return findConnectionListener(mc, c, stripes);
    }
 
    /**
@@ -833,7 +961,7 @@ public class DefaultManagedConnectionPool extends AbstractManagedConnectionPool
     */
    public ConnectionListener removeConnectionListener(boolean free)
    {
-      return removeConnectionListener(free, listeners);
+      return removeConnectionListener(free, stripes);
    }
 
 }
@@ -100,21 +100,26 @@ public class DefaultPool extends AbstractPool
                getInternalStatistics().deltaTotalCreationTime(System.currentTimeMillis() - start);
             }
 
+            ConnectionListener cl = null;
+
             if (cm.getTransactionSupport() == TransactionSupportLevel.NoTransaction)
             {
-               return new NoTransactionConnectionListener(cm, mc, credential, mcp, cm.getPool().getFlushStrategy());
+               cl = new NoTransactionConnectionListener(cm, mc, credential, mcp, cm.getPool().getFlushStrategy());
             }
             else if (cm.getTransactionSupport() == TransactionSupportLevel.LocalTransaction)
             {
-               return new LocalTransactionConnectionListener(cm, mc, credential, getLocalXAResource(mc), mcp,
+               cl = new LocalTransactionConnectionListener(cm, mc, credential, getLocalXAResource(mc), mcp,
                      cm.getPool().getFlushStrategy());
             }
             else
             {
-               return new XATransactionConnectionListener(cm, mc, credential, getXAResource(mc),
+               cl = new XATransactionConnectionListener(cm, mc, credential, getXAResource(mc),
                      cm.getConnectionManagerConfiguration().getXAResourceTimeout(), mcp,
                      cm.getPool().getFlushStrategy());
             }
+
+            connectionListenerIndex.add(cl);
+            return cl;
          }
       }
       catch (ResourceException re)
@@ -148,7 +153,15 @@ public class DefaultPool extends AbstractPool
       finally
       {
          cl.setState(DESTROYED);
+         connectionListenerIndex.remove(cl);
          semaphore.release();
+
+         // Capacity is shared across all credentials, so let a waiter in each pool retry
+         for (ManagedConnectionPool mcp : pools.values())
+         {
+            if (mcp instanceof DefaultManagedConnectionPool)
+               ((DefaultManagedConnectionPool)mcp).wakeUp();
+         }
       }
    }
 
@@ -0,0 +1,286 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool.dflt;
+
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connection listeners of a striped managed connection pool.
+ *
+ * Each listener lives in exactly one stripe. A thread scans its home stripe,
+ * chosen by thread hash, first and steals from the other stripes when it is empty,
+ * so the heads of the deques aren't shared by all threads. A stolen listener moves
+ * to the home stripe of the thread that took it, so the listeners follow the threads
+ * using them. With a single stripe this is a plain deque.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class Stripes extends AbstractCollection<ConnectionListener>
+{
+   /** The stripes */
+   private final ConcurrentLinkedDeque<ConnectionListener>[] stripes;
+
+   /** Round robin counter for placing new listeners */
+   private final AtomicInteger next;
+
+   /**
+    * Constructor
+    * @param size The number of stripes
+    */
+   @SuppressWarnings("unchecked")
+   Stripes(int size)
+   {
+      this.stripes = new ConcurrentLinkedDeque[size > 0 ? size : 1];
+      for (int i = 0; i < stripes.length; i++)
+      {
+         stripes[i] = new ConcurrentLinkedDeque<ConnectionListener>();
+      }
+      this.next = new AtomicInteger(0);
+   }
+
+   /**
+    * Get the number of stripes
+    * @return The value
+    */
+   int getStripeCount()
+   {
+      return stripes.length;
+   }
+
+   /**
+    * Get a stripe
+    * @param index The index
+    * @return The stripe
+    */
+   ConcurrentLinkedDeque<ConnectionListener> getStripe(int index)
+   {
+      return stripes[index];
+   }
+
+   /**
+    * Get the home stripe index of the current thread
+    * @return The value
+    */
+   int home()
+   {
+      if (stripes.length == 1)
+         return 0;
+
+      int h = System.identityHashCode(Thread.currentThread());
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      return (h & Integer.MAX_VALUE) % stripes.length;
+   }
+
+   /**
+    * Add a connection listener to the head of the home stripe of the current thread
+    * @param cl The connection listener
+    */
+   void addFirst(ConnectionListener cl)
+   {
+      stripes[home()].addFirst(cl);
+   }
+
+   /**
+    * Add a connection listener to the tail of a stripe, in round robin order
+    * @param cl The connection listener
+    * @return True
+    */
+   @Override
+   public boolean add(ConnectionListener cl)
+   {
+      stripes[(next.getAndIncrement() & Integer.MAX_VALUE) % stripes.length].addLast(cl);
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean remove(Object o)
+   {
+      for (ConcurrentLinkedDeque<ConnectionListener> stripe : stripes)
+      {
+         if (stripe.remove(o))
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean isEmpty()
+   {
+      for (ConcurrentLinkedDeque<ConnectionListener> stripe : stripes)
+      {
+         if (!stripe.isEmpty())
+            return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int size()
+   {
+      int size = 0;
+
+      for (ConcurrentLinkedDeque<ConnectionListener> stripe : stripes)
+      {
+         size += stripe.size();
+      }
+
+      return size;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void clear()
+   {
+      for (ConcurrentLinkedDeque<ConnectionListener> stripe : stripes)
+      {
+         stripe.clear();
+      }
+   }
+
+   /**
+    * Iterate over all stripes, starting at the home stripe of the current thread
+    * @param fifo Iterate each stripe from the head if true, otherwise from the tail
+    * @return The iterator
+    */
+   Iterator<ConnectionListener> iterator(boolean fifo)
+   {
+      return new StripesIterator(home(), fifo);
+   }
+
+   /**
+    * A connection listener was taken from an iterator; move it to the home stripe
+    * of the iterator if it was stolen from another stripe
+    * @param iterator The iterator, as returned by {@link #iterator(boolean)}
+    * @param cl The connection listener
+    */
+   void taken(Iterator<ConnectionListener> iterator, ConnectionListener cl)
+   {
+      StripesIterator it = (StripesIterator)iterator;
+
+      if (it.visited > 1)
+      {
+         it.remove();
+         stripes[it.start].addFirst(cl);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Iterator<ConnectionListener> iterator()
+   {
+      return new StripesIterator(0, true);
+   }
+
+   /**
+    * Weakly consistent iterator over the stripes
+    */
+   private class StripesIterator implements Iterator<ConnectionListener>
+   {
+      /** The first stripe */
+      private final int start;
+
+      /** Iterate from the head */
+      private final boolean fifo;
+
+      /** The number of stripes visited */
+      private int visited;
+
+      /** The current stripe iterator */
+      private Iterator<ConnectionListener> current;
+
+      /**
+       * Constructor
+       * @param start The first stripe
+       * @param fifo Iterate from the head
+       */
+      StripesIterator(int start, boolean fifo)
+      {
+         this.start = start;
+         this.fifo = fifo;
+         this.visited = 0;
+         this.current = null;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean hasNext()
+      {
+         while (current == null || !current.hasNext())
+         {
+            if (visited == stripes.length)
+               return false;
+
+            ConcurrentLinkedDeque<ConnectionListener> stripe = stripes[(start + visited) % stripes.length];
+            current = fifo ? stripe.iterator() : stripe.descendingIterator();
+            visited++;
+         }
+
+         return true;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public ConnectionListener next()
+      {
+         if (!hasNext())
+            throw new NoSuchElementException();
+
+         return current.next();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void remove()
+      {
+         if (current == null)
+            throw new IllegalStateException();
+
+         current.remove();
+      }
+   }
+}
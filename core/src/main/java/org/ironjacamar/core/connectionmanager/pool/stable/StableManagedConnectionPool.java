@@ -112,7 +112,8 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
    {
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "getConnectionListener()",
@@ -123,6 +124,10 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
@@ -139,6 +144,15 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
       {
          if (pool.getRequestSemaphore().tryAcquire(pool.getConfiguration().getBlockingTimeout(), TimeUnit.MILLISECONDS))
          {
+            // Try the connection listener this thread returned last, before contending on the shared listeners
+            ConnectionListener last = pool.getLastUsedConnectionListener(this);
+            if (last != null && last.changeState(FREE, VALIDATION))
+            {
+               ConnectionListener result = activateConnectionListener(last, timestamp);
+               if (result != null)
+                  return result;
+            }
+
             Iterator<ConnectionListener> listenersIterator =
                poolIsFifo ? listeners.iterator() : listeners.descendingIterator();
 
@@ -148,83 +162,12 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
 
                if (cl.changeState(FREE, VALIDATION))
                {
-                  if (pool.getInternalStatistics().isEnabled())
-                     pool.getInternalStatistics().deltaTotalBlockingTime(System.currentTimeMillis() - timestamp);
-
-                  if (pool.getConfiguration().isValidateOnMatch())
-                  {
-                     ConnectionListener result = validateConnectionListener(listeners, cl, IN_USE);
-                     if (result != null)
-                     {
-                        if (Tracer.isEnabled())
-                           Tracer.getConnectionListener(pool.getConfiguration().getId(),
-                                                        this, result, true, false,
-                                                        Tracer.isRecordCallstacks() ?
-                                                        new Throwable("CALLSTACK") : null);
-
-                        if (pool.getJanitor().isRecording())
-                           pool.getJanitor().registerConnectionListener(result);
-
-                        result.fromPool();
-
-                        if (pool.getInternalStatistics().isEnabled())
-                        {
-                           pool.getInternalStatistics().deltaInUseCount(1);
-                           pool.getInternalStatistics().deltaTotalGetTime(result.getFromPool() - timestamp);
-                           pool.getInternalStatistics().deltaTotalPoolTime(result.getFromPool() - result.getToPool());
-                        }
-                     
-                        return result;
-                     }
-                     else
-                     {
-                        if (Tracer.isEnabled())
-                           Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
-                                                            this, cl, false, false, true, false, false,
-                                                            false, false,
-                                                            Tracer.isRecordCallstacks() ?
-                                                            new Throwable("CALLSTACK") : null);
-                        
-                        if (pool.getConfiguration().isUseFastFail())
-                           break;
-                     }
-                  }
-                  else
-                  {
-                     if (cl.changeState(VALIDATION, IN_USE))
-                     {
-                        if (Tracer.isEnabled())
-                           Tracer.getConnectionListener(pool.getConfiguration().getId(),
-                                                        this, cl, true, false,
-                                                        Tracer.isRecordCallstacks() ?
-                                                        new Throwable("CALLSTACK") : null);
-                        
-                        if (pool.getJanitor().isRecording())
-                           pool.getJanitor().registerConnectionListener(cl);
+                  ConnectionListener result = activateConnectionListener(cl, timestamp);
+                  if (result != null)
+                     return result;
 
-                        cl.fromPool();
-
-                        if (pool.getInternalStatistics().isEnabled())
-                        {
-                           pool.getInternalStatistics().deltaInUseCount(1);
-                           pool.getInternalStatistics().deltaTotalGetTime(cl.getFromPool() - timestamp);
-                           pool.getInternalStatistics().deltaTotalPoolTime(cl.getFromPool() - cl.getToPool());
-                        }
-
-                        return cl;
-                     }
-                     else
-                     {
-                        if (Tracer.isEnabled())
-                           Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
-                                                            this, cl, false, false, false, false, true,
-                                                            false, false,
-                                                            Tracer.isRecordCallstacks() ?
-                                                            new Throwable("CALLSTACK") : null);
-                     
-                        destroyAndRemoveConnectionListener(cl, listeners);
-                     }
-                  }
+                  if (pool.getConfiguration().isValidateOnMatch() && pool.getConfiguration().isUseFastFail())
+                     break;
                }
             }
 
@@ -283,7 +226,8 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
    {
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "returnConnectionListener(" + Integer.toHexString(System.identityHashCode(cl)) + ", " + kill + ")",
@@ -294,6 +238,10 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
@@ -323,8 +271,14 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
                {
                   cl.getManagedConnection().cleanup();
                   cl.toPool();
-                  if (!cl.changeState(TO_POOL, FREE))
+                  if (cl.changeState(TO_POOL, FREE))
+                  {
+                     pool.setLastUsedConnectionListener(cl);
+                  }
+                  else
+                  {
                      kill = true;
+                  }
                }
                catch (ResourceException re)
                {
@@ -365,44 +319,52 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
    /**
     * {@inheritDoc}
     */
-   public synchronized void shutdown()
+   public void shutdown()
    {
-      if (pool.getConfiguration().isBackgroundValidation() &&
-          pool.getConfiguration().getBackgroundValidationMillis() > 0)
-      {
-         ConnectionValidator.getInstance().unregisterPool(this);
-      }
-
-      if (pool.getConfiguration().getIdleTimeoutMinutes() > 0)
-      {
-         IdleConnectionRemover.getInstance().unregisterPool(this);
-      }
-
-      for (ConnectionListener cl : listeners)
+      lock.lock();
+      try
       {
-         if (cl.getState() == IN_USE)
+         if (pool.getConfiguration().isBackgroundValidation() &&
+             pool.getConfiguration().getBackgroundValidationMillis() > 0)
          {
-            // TODO
+            ConnectionValidator.getInstance().unregisterPool(this);
          }
-         else if (cl.getState() == DESTROY)
+
+         if (pool.getConfiguration().getIdleTimeoutMinutes() > 0)
          {
-            // TODO
+            IdleConnectionRemover.getInstance().unregisterPool(this);
          }
 
-         try
+         for (ConnectionListener cl : listeners)
          {
-            if (Tracer.isEnabled())
-               Tracer.clearConnectionListener(pool.getConfiguration().getId(), this, cl);
+            if (cl.getState() == IN_USE)
+            {
+               // TODO
+            }
+            else if (cl.getState() == DESTROY)
+            {
+               // TODO
+            }
 
-            pool.destroyConnectionListener(cl);
-         }
-         catch (ResourceException re)
-         {
-            // TODO
-            cl.setState(ZOMBIE);
+            try
+            {
+               if (Tracer.isEnabled())
+                  Tracer.clearConnectionListener(pool.getConfiguration().getId(), this, cl);
+
+               pool.destroyConnectionListener(cl);
+            }
+            catch (ResourceException re)
+            {
+               // TODO
+               cl.setState(ZOMBIE);
+            }
          }
+         listeners.clear();
+      }
+      finally
+      {
+         lock.unlock();
       }
-      listeners.clear();
    }
 
    /**
@@ -432,7 +394,8 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "fillTo(" + size + ")",
@@ -443,6 +406,10 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
@@ -541,44 +508,7 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (mcf instanceof ValidatingManagedConnectionFactory)
       {
-         ValidatingManagedConnectionFactory vcf = (ValidatingManagedConnectionFactory) mcf;
-         long timestamp = System.currentTimeMillis();
-
-         for (ConnectionListener cl : listeners)
-         {
-            if (cl.changeState(FREE, VALIDATION))
-            {
-               if (cl.getValidated() + pool.getConfiguration().getBackgroundValidationMillis() <= timestamp)
-               {
-                  ConnectionListener result = validateConnectionListener(listeners, cl, FREE);
-                  if (result == null)
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
-                                                         false, false, true,
-                                                         false, false, false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     anyDestroyed = true;
-                  }
-               }
-               else
-               {
-                  if (!cl.changeState(VALIDATION, FREE))
-                  {
-                     if (Tracer.isEnabled())
-                        Tracer.destroyConnectionListener(pool.getConfiguration().getId(), this, cl,
-                                                         false, false, false,
-                                                         false, true, false, false,
-                                                         Tracer.isRecordCallstacks() ?
-                                                         new Throwable("CALLSTACK") : null);
-                     
-                     destroyAndRemoveConnectionListener(cl, listeners);
-                  }
-               }
-            }
-         }
+         anyDestroyed = validateConnectionListeners(listeners);
       }
       else
       {
@@ -625,7 +555,8 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
 
       if (pool.getLogger().isTraceEnabled())
       {
-         synchronized (this)
+         lock.lock();
+         try
          {
             pool.getLogger().trace(ManagedConnectionPoolUtility.fullDetails(this,
                "removeIdleConnections(" + timeout + ")",
@@ -636,6 +567,10 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
                credential.getSubject(),
                credential.getConnectionRequestInfo()));
          }
+         finally
+         {
+            lock.unlock();
+         }
       }
       else if (pool.getLogger().isDebugEnabled())
       {
@@ -888,6 +823,92 @@ public class StableManagedConnectionPool extends AbstractManagedConnectionPool
       prefill();
    }
 
+   /**
+    * Activate a connection listener that has been moved into the VALIDATION state
+    * @param cl The connection listener
+    * @param timestamp The time the request started
+    * @return The connection listener, or <code>null</code> if it couldn't be used
+    */
+   private ConnectionListener activateConnectionListener(ConnectionListener cl, long timestamp)
+   {
+      if (pool.getInternalStatistics().isEnabled())
+         pool.getInternalStatistics().deltaTotalBlockingTime(System.currentTimeMillis() - timestamp);
+
+      if (pool.getConfiguration().isValidateOnMatch())
+      {
+         ConnectionListener result = validateConnectionListener(listeners, cl, IN_USE);
+         if (result != null)
+         {
+            if (Tracer.isEnabled())
+               Tracer.getConnectionListener(pool.getConfiguration().getId(),
+                                            this, result, true, false,
+                                            Tracer.isRecordCallstacks() ?
+                                            new Throwable("CALLSTACK") : null);
+
+            if (pool.getJanitor().isRecording())
+               pool.getJanitor().registerConnectionListener(result);
+
+            result.fromPool();
+
+            if (pool.getInternalStatistics().isEnabled())
+            {
+               pool.getInternalStatistics().deltaInUseCount(1);
+               pool.getInternalStatistics().deltaTotalGetTime(result.getFromPool() - timestamp);
+               pool.getInternalStatistics().deltaTotalPoolTime(result.getFromPool() - result.getToPool());
+            }
+
+            return result;
+         }
+         else
+         {
+            if (Tracer.isEnabled())
+               Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
+                                                this, cl, false, false, true, false, false,
+                                                false, false,
+                                                Tracer.isRecordCallstacks() ?
+                                                new Throwable("CALLSTACK") : null);
+         }
+      }
+      else
+      {
+         if (cl.changeState(VALIDATION, IN_USE))
+         {
+            if (Tracer.isEnabled())
+               Tracer.getConnectionListener(pool.getConfiguration().getId(),
+                                            this, cl, true, false,
+                                            Tracer.isRecordCallstacks() ?
+                                            new Throwable("CALLSTACK") : null);
+
+            if (pool.getJanitor().isRecording())
+               pool.getJanitor().registerConnectionListener(cl);
+
+            cl.fromPool();
+
+            if (pool.getInternalStatistics().isEnabled())
+            {
+               pool.getInternalStatistics().deltaInUseCount(1);
+               pool.getInternalStatistics().deltaTotalGetTime(cl.getFromPool() - timestamp);
+               pool.getInternalStatistics().deltaTotalPoolTime(cl.getFromPool() - cl.getToPool());
+            }
+
+            return cl;
+         }
+         else
+         {
+            if (Tracer.isEnabled())
+               Tracer.destroyConnectionListener(pool.getConfiguration().getId(),
+                                                this, cl, false, false, false, false, true,
+                                                false, false,
+                                                Tracer.isRecordCallstacks() ?
+                                                new Throwable("CALLSTACK") : null);
+
+            destroyAndRemoveConnectionListener(cl, listeners);
+         }
+      }
+
+      return null;
+   }
+
    /**
     * {@inheritDoc}
     */
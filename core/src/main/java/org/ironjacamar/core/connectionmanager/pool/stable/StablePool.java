@@ -32,15 +32,15 @@ import org.ironjacamar.core.connectionmanager.listener.stable.NoTransactionConne
 import org.ironjacamar.core.connectionmanager.listener.stable.XATransactionConnectionListener;
 import org.ironjacamar.core.connectionmanager.pool.AbstractPool;
 import org.ironjacamar.core.connectionmanager.pool.ManagedConnectionPool;
+import org.ironjacamar.core.connectionmanager.pool.TransactionMap;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ManagedConnection;
 import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
-import javax.transaction.Transaction;
 
 import org.jboss.logging.Logger;
 
@@ -59,6 +59,9 @@ public class StablePool extends AbstractPool
    /** Request semaphore */
    private Semaphore requestSemaphore;
 
+   /** The transaction map that last tracked each connection listener */
+   private ConcurrentHashMap<ConnectionListener, TransactionMap> trackedBy;
+
    /**
     * Constructor
     * @param cm The connection manager
@@ -68,6 +71,7 @@ public class StablePool extends AbstractPool
    {
       super(cm, pc);
       this.requestSemaphore = new Semaphore(pc.getMaxSize(), true);
+      this.trackedBy = new ConcurrentHashMap<ConnectionListener, TransactionMap>();
    }
 
    /**
@@ -108,21 +112,26 @@ public class StablePool extends AbstractPool
                getInternalStatistics().deltaTotalCreationTime(System.currentTimeMillis() - start);
             }
 
+            ConnectionListener cl = null;
+
             if (cm.getTransactionSupport() == TransactionSupportLevel.NoTransaction)
             {
-               return new NoTransactionConnectionListener(cm, mc, credential, mcp, cm.getPool().getFlushStrategy());
+               cl = new NoTransactionConnectionListener(cm, mc, credential, mcp, cm.getPool().getFlushStrategy());
             }
             else if (cm.getTransactionSupport() == TransactionSupportLevel.LocalTransaction)
             {
-               return new LocalTransactionConnectionListener(cm, mc, credential, getLocalXAResource(mc), mcp,
+               cl = new LocalTransactionConnectionListener(cm, mc, credential, getLocalXAResource(mc), mcp,
                      cm.getPool().getFlushStrategy());
             }
             else
             {
-               return new XATransactionConnectionListener(cm, mc, credential, getXAResource(mc),
+               cl = new XATransactionConnectionListener(cm, mc, credential, getXAResource(mc),
                      cm.getConnectionManagerConfiguration().getXAResourceTimeout(), mcp,
                      cm.getPool().getFlushStrategy());
             }
+
+            connectionListenerIndex.add(cl);
+            return cl;
          }
       }
       catch (ResourceException re)
@@ -156,6 +165,8 @@ public class StablePool extends AbstractPool
       finally
       {
          cl.setState(DESTROYED);
+         connectionListenerIndex.remove(cl);
+         trackedBy.remove(cl);
          semaphore.release();
       }
    }
@@ -174,29 +185,44 @@ public class StablePool extends AbstractPool
     * @return The transaction object if in use, or null if not
     * @exception ResourceException Thrown in case of an error
     */
-   public synchronized Object verifyConnectionListener(ConnectionListener cl) throws ResourceException
+   public Object verifyConnectionListener(ConnectionListener cl) throws ResourceException
    {
-      for (Map.Entry<Object, Map<ManagedConnectionPool, ConnectionListener>> entry : transactionMap.entrySet())
+      lock.lock();
+      try
       {
-         if (entry.getValue().values().contains(cl))
+         TransactionMap map = trackedBy.get(cl);
+
+         if (map != null && map.contains(cl))
          {
             try
             {
                TransactionalConnectionManager txCM = (TransactionalConnectionManager)cm;
-               Transaction tx = txCM.getTransactionIntegration().getTransactionManager().getTransaction();
                Object id = txCM.getTransactionIntegration().getTransactionSynchronizationRegistry().getTransactionKey();
 
-               if (!id.equals(entry.getKey()))
-                  return entry.getKey();
+               if (!id.equals(map.getKey()))
+                  return map.getKey();
             }
             catch (Exception e)
             {
                throw new ResourceException(e);
             }
          }
+
+         return null;
+      }
+      finally
+      {
+         lock.unlock();
       }
+   }
 
-      return null;
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected void transactionTracked(TransactionMap map, ConnectionListener cl)
+   {
+      trackedBy.put(cl, map);
    }
 
    /**
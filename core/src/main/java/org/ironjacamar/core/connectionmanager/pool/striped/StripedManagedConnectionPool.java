@@ -0,0 +1,45 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool.striped;
+
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.pool.dflt.DefaultManagedConnectionPool;
+
+/**
+ * The striped ManagedConnectionPool
+ *
+ * The connection listeners are split into stripes; a thread looks in the stripe
+ * chosen by its thread hash first, and steals from the other stripes when it is empty
+ */
+public class StripedManagedConnectionPool extends DefaultManagedConnectionPool
+{
+   /**
+    * Constructor
+    *
+    * @param pool       The pool
+    * @param credential The credential
+    */
+   public StripedManagedConnectionPool(StripedPool pool, Credential credential)
+   {
+      super(pool, credential, pool.getStripeCount());
+   }
+}
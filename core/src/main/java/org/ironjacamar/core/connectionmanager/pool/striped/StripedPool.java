@@ -0,0 +1,92 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool.striped;
+
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.pool.ManagedConnectionPool;
+import org.ironjacamar.core.connectionmanager.pool.dflt.DefaultPool;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The striped pool
+ * @author <a href="jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class StripedPool extends DefaultPool
+{
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, 
+                                                           StripedPool.class.getName());
+
+   /** The number of stripes per managed connection pool */
+   private final int stripeCount;
+
+   /**
+    * Constructor
+    * @param cm The connection manager
+    * @param pc The pool configuration
+    */
+   public StripedPool(ConnectionManager cm, PoolConfiguration pc)
+   {
+      super(cm, pc);
+      this.stripeCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pc.getMaxSize()));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getType()
+   {
+      return "striped";
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public CoreLogger getLogger()
+   {
+      return log;
+   }
+
+   /**
+    * Get the number of stripes per managed connection pool
+    * @return The value
+    */
+   int getStripeCount()
+   {
+      return stripeCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public ManagedConnectionPool createManagedConnectionPool(Credential credential)
+   {
+      return new StripedManagedConnectionPool(this, credential);
+   }
+}
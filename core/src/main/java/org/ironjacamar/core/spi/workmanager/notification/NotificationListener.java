@@ -61,38 +61,118 @@ public interface NotificationListener
     */
    public void deltaDoWorkAccepted();
 
+   /**
+    * Delta doWork accepted by an amount
+    * @param delta The amount
+    */
+   public default void deltaDoWorkAccepted(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaDoWorkAccepted();
+   }
+
    /**
     * Delta doWork rejected
     */
    public void deltaDoWorkRejected();
 
+   /**
+    * Delta doWork rejected by an amount
+    * @param delta The amount
+    */
+   public default void deltaDoWorkRejected(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaDoWorkRejected();
+   }
+
    /**
     * Delta startWork accepted
     */
    public void deltaStartWorkAccepted();
 
+   /**
+    * Delta startWork accepted by an amount
+    * @param delta The amount
+    */
+   public default void deltaStartWorkAccepted(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaStartWorkAccepted();
+   }
+
    /**
     * Delta startWork rejected
     */
    public void deltaStartWorkRejected();
 
+   /**
+    * Delta startWork rejected by an amount
+    * @param delta The amount
+    */
+   public default void deltaStartWorkRejected(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaStartWorkRejected();
+   }
+
    /**
     * Delta scheduleWork accepted
     */
    public void deltaScheduleWorkAccepted();
 
+   /**
+    * Delta scheduleWork accepted by an amount
+    * @param delta The amount
+    */
+   public default void deltaScheduleWorkAccepted(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaScheduleWorkAccepted();
+   }
+
    /**
     * Delta scheduleWork rejected
     */
    public void deltaScheduleWorkRejected();
 
+   /**
+    * Delta scheduleWork rejected by an amount
+    * @param delta The amount
+    */
+   public default void deltaScheduleWorkRejected(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaScheduleWorkRejected();
+   }
+
    /**
     * Delta work successful
     */
    public void deltaWorkSuccessful();
 
+   /**
+    * Delta work successful by an amount
+    * @param delta The amount
+    */
+   public default void deltaWorkSuccessful(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaWorkSuccessful();
+   }
+
    /**
     * Delta work failed
     */
    public void deltaWorkFailed();
+
+   /**
+    * Delta work failed by an amount
+    * @param delta The amount
+    */
+   public default void deltaWorkFailed(long delta)
+   {
+      for (long i = 0; i < delta; i++)
+         deltaWorkFailed();
+   }
 }
@@ -0,0 +1,214 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.tracer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes trace events in the {@link TraceFormat binary trace format}
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class BinaryTraceWriter
+{
+   /** The output */
+   private final DataOutputStream out;
+
+   /** The string ids of the current segment */
+   private final Map<String, Integer> strings;
+
+   /** The next string id */
+   private int nextId;
+
+   /** The number of events in the current segment */
+   private int events;
+
+   /**
+    * Constructor; like the text format, the events are appended to an existing file,
+    * starting a new segment
+    * @param file The file
+    * @exception IOException Thrown if the file can't be opened, or isn't a binary trace file
+    */
+   BinaryTraceWriter(File file) throws IOException
+   {
+      boolean append = file.length() > 0;
+      if (append)
+         verify(file);
+
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 65536));
+      this.strings = new HashMap<String, Integer>();
+      this.nextId = 1;
+      this.events = 0;
+
+      if (append)
+      {
+         out.writeByte(TraceFormat.RESET);
+      }
+      else
+      {
+         out.writeInt(TraceFormat.MAGIC);
+         out.writeInt(TraceFormat.FORMAT_VERSION);
+      }
+   }
+
+   /**
+    * Write an event. A <code>null</code> string means the value is the identity hash code next to it.
+    * @param pool The pool
+    * @param mcp The managed connection pool
+    * @param mcpId The identity of the managed connection pool
+    * @param threadId The thread id
+    * @param type The event type
+    * @param timestamp The timestamp
+    * @param cl The connection listener
+    * @param clId The identity of the connection listener
+    * @param payload1 The first payload
+    * @param payload1Id The identity of the first payload
+    * @param payload2 The second payload
+    * @exception IOException Thrown if an error occurs
+    */
+   void write(String pool, String mcp, int mcpId, long threadId, int type, long timestamp,
+              String cl, int clId, String payload1, int payload1Id, String payload2)
+      throws IOException
+   {
+      if (events >= TraceFormat.SEGMENT_EVENTS || strings.size() + 5 > TraceFormat.SEGMENT_STRINGS)
+      {
+         out.writeByte(TraceFormat.RESET);
+         strings.clear();
+         nextId = 1;
+         events = 0;
+      }
+
+      int flags = 0;
+
+      int poolRef = string(pool != null ? pool : "Empty");
+      int mcpRef = mcpId;
+      if (mcp != null)
+      {
+         mcpRef = string(mcp);
+         flags |= TraceFormat.MCP_STRING;
+      }
+      int clRef = clId;
+      if (cl != null)
+      {
+         clRef = string(cl);
+         flags |= TraceFormat.CL_STRING;
+      }
+      int payload1Ref = payload1Id;
+      if (payload1 != null)
+      {
+         payload1Ref = string(payload1);
+         flags |= TraceFormat.PAYLOAD1_STRING;
+      }
+      int payload2Ref = string(payload2);
+
+      out.writeByte(TraceFormat.EVENT);
+      out.writeByte(flags);
+      out.writeInt(type);
+      out.writeLong(threadId);
+      out.writeLong(timestamp);
+      out.writeInt(poolRef);
+      out.writeInt(mcpRef);
+      out.writeInt(clRef);
+      out.writeInt(payload1Ref);
+      out.writeInt(payload2Ref);
+
+      events++;
+   }
+
+   /**
+    * Flush
+    * @exception IOException Thrown if an error occurs
+    */
+   void flush() throws IOException
+   {
+      out.flush();
+   }
+
+   /**
+    * Close
+    * @exception IOException Thrown if an error occurs
+    */
+   void close() throws IOException
+   {
+      out.close();
+   }
+
+   /**
+    * Verify that a file is a binary trace file of the current version
+    * @param file The file
+    * @exception IOException Thrown if it isn't
+    */
+   private static void verify(File file) throws IOException
+   {
+      DataInputStream dis = new DataInputStream(new FileInputStream(file));
+      try
+      {
+         if (file.length() < 8 || dis.readInt() != TraceFormat.MAGIC)
+            throw new IOException("Not a binary trace file: " + file);
+
+         int version = dis.readInt();
+         if (version != TraceFormat.FORMAT_VERSION)
+            throw new IOException("Unsupported trace format version: " + version);
+      }
+      finally
+      {
+         dis.close();
+      }
+   }
+
+   /**
+    * Get the id of a string, writing a string record the first time it is seen in the segment
+    * @param s The string
+    * @return The id
+    * @exception IOException Thrown if an error occurs
+    */
+   private int string(String s) throws IOException
+   {
+      if (s == null || s.isEmpty())
+         return 0;
+
+      Integer id = strings.get(s);
+      if (id != null)
+         return id.intValue();
+
+      int newId = nextId++;
+      byte[] data = s.getBytes(StandardCharsets.UTF_8);
+
+      out.writeByte(TraceFormat.STRING);
+      out.writeInt(newId);
+      out.writeInt(data.length);
+      out.write(data);
+
+      strings.put(s, Integer.valueOf(newId));
+
+      return newId;
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.tracer;
+
+/**
+ * The binary trace file format.
+ *
+ * A file starts with {@link #MAGIC} and {@link #FORMAT_VERSION}, followed by records
+ * that each start with a tag byte:
+ * <ul>
+ * <li>{@link #STRING}: int id, int length, UTF-8 bytes</li>
+ * <li>{@link #EVENT}: byte flags, int type, long thread id, long timestamp, and int pool,
+ *     managed connection pool, connection listener, first payload and second payload</li>
+ * <li>{@link #RESET}: starts a new segment; all string ids are forgotten</li>
+ * </ul>
+ * The pool and the second payload of an event are string ids. The managed connection pool,
+ * connection listener and first payload are string ids if their flag is set, otherwise identity
+ * hash codes. String id 0 is the empty string.
+ *
+ * Every segment can be read without the ones before it, so a reader can index a file by
+ * segment and only revisit the segments it needs. A writer appending to an existing file
+ * starts with a {@link #RESET}.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public final class TraceFormat
+{
+   /** Magic */
+   public static final int MAGIC = 0x494A5442;
+
+   /** Format version */
+   public static final int FORMAT_VERSION = 1;
+
+   /** String record */
+   public static final byte STRING = 1;
+
+   /** Event record */
+   public static final byte EVENT = 2;
+
+   /** Reset record */
+   public static final byte RESET = 3;
+
+   /** Flag: the managed connection pool is a string id */
+   public static final int MCP_STRING = 1;
+
+   /** Flag: the connection listener is a string id */
+   public static final int CL_STRING = 2;
+
+   /** Flag: the first payload is a string id */
+   public static final int PAYLOAD1_STRING = 4;
+
+   /** The size of an event record, without the tag */
+   public static final int EVENT_SIZE = 1 + 4 + 8 + 8 + 5 * 4;
+
+   /** The maximum number of strings in a segment */
+   public static final int SEGMENT_STRINGS = 4096;
+
+   /** The maximum number of events in a segment */
+   public static final int SEGMENT_EVENTS = 65536;
+
+   /**
+    * Constructor
+    */
+   private TraceFormat()
+   {
+   }
+}
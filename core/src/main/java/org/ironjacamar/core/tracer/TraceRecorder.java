@@ -0,0 +1,413 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.tracer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A lock-free trace event recorder.
+ *
+ * Threads claim a slot in a preallocated ring buffer and write a fixed-size record into it;
+ * no locks are taken and no objects are allocated on the recording path. A background
+ * drainer thread writes them to a file that can be given to the tracer report tools; either
+ * as {@link TraceEvent} lines, or in the {@link TraceFormat binary trace format}.
+ *
+ * Events are dropped, and counted, if the buffer is full.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+class TraceRecorder implements Runnable
+{
+   /** Recorder logger */
+   private static Logger log = Logger.getLogger(TraceRecorder.class);
+
+   /** The number of long fields per record */
+   private static final int LONGS = 2;
+
+   /** The number of int fields per record */
+   private static final int INTS = 4;
+
+   /** The number of reference fields per record */
+   private static final int REFS = 5;
+
+   /** The time the drainer parks when the buffer is empty */
+   private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+   /** The file */
+   private final File file;
+
+   /** Is the file in the binary format */
+   private final boolean binary;
+
+   /** The capacity */
+   private final int capacity;
+
+   /** The index mask */
+   private final int mask;
+
+   /** The next sequence to claim */
+   private final AtomicLong head;
+
+   /** The next sequence to drain */
+   private final AtomicLong tail;
+
+   /** The sequence published in each slot */
+   private final AtomicLongArray published;
+
+   /** Thread id and timestamp */
+   private final long[] longs;
+
+   /** Type, and the identities of the managed connection pool, connection listener and first payload */
+   private final int[] ints;
+
+   /** Pool name, and the string values of the managed connection pool, connection listener and payloads */
+   private final Object[] refs;
+
+   /** The number of dropped events */
+   private final LongAdder dropped;
+
+   /** Is the drainer running */
+   private volatile boolean running;
+
+   /** The drainer thread */
+   private Thread drainer;
+
+   /** The text output */
+   private Writer textWriter;
+
+   /** The binary output */
+   private BinaryTraceWriter binaryWriter;
+
+   /**
+    * Constructor
+    * @param file The file
+    * @param size The requested buffer size; rounded up to a power of two
+    * @param binary Write the binary format
+    */
+   TraceRecorder(File file, int size, boolean binary)
+   {
+      int c = Integer.highestOneBit(Math.max(2, size));
+      if (c < size)
+         c <<= 1;
+
+      this.file = file;
+      this.binary = binary;
+      this.capacity = c;
+      this.mask = c - 1;
+      this.head = new AtomicLong(0L);
+      this.tail = new AtomicLong(0L);
+      this.published = new AtomicLongArray(c);
+      this.longs = new long[c * LONGS];
+      this.ints = new int[c * INTS];
+      this.refs = new Object[c * REFS];
+      this.dropped = new LongAdder();
+      this.running = false;
+      this.drainer = null;
+      this.textWriter = null;
+      this.binaryWriter = null;
+
+      for (int i = 0; i < c; i++)
+         published.set(i, -1L);
+   }
+
+   /**
+    * Record an event. String values are recorded as is, other objects by their identity hash code.
+    * @param pool The pool
+    * @param mcp The managed connection pool
+    * @param type The event type
+    * @param cl The connection listener
+    * @param payload1 The first payload
+    * @param payload2 The second payload
+    * @return True if recorded, false if the buffer was full
+    */
+   boolean record(String pool, Object mcp, int type, Object cl, Object payload1, String payload2)
+   {
+      long seq = head.get();
+      while (true)
+      {
+         if (seq - tail.get() >= capacity)
+         {
+            dropped.increment();
+            return false;
+         }
+
+         if (head.compareAndSet(seq, seq + 1))
+            break;
+
+         seq = head.get();
+      }
+
+      int slot = (int)(seq & mask);
+
+      longs[slot * LONGS] = Thread.currentThread().getId();
+      longs[slot * LONGS + 1] = System.nanoTime();
+
+      ints[slot * INTS] = type;
+      ints[slot * INTS + 1] = id(mcp);
+      ints[slot * INTS + 2] = id(cl);
+      ints[slot * INTS + 3] = id(payload1);
+
+      refs[slot * REFS] = pool;
+      refs[slot * REFS + 1] = string(mcp);
+      refs[slot * REFS + 2] = string(cl);
+      refs[slot * REFS + 3] = string(payload1);
+      refs[slot * REFS + 4] = payload2 != null ? payload2 : "";
+
+      published.set(slot, seq);
+
+      return true;
+   }
+
+   /**
+    * Get the number of dropped events
+    * @return The value
+    */
+   long getDropped()
+   {
+      return dropped.sum();
+   }
+
+   /**
+    * Start the drainer
+    */
+   synchronized void start()
+   {
+      if (drainer == null)
+      {
+         running = true;
+
+         drainer = new Thread(this, "IronJacamar Tracer");
+         drainer.setDaemon(true);
+         drainer.start();
+
+         Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+         {
+            public void run()
+            {
+               stop();
+            }
+         }, "IronJacamar Tracer Shutdown"));
+      }
+   }
+
+   /**
+    * Stop the drainer, after the recorded events have been written
+    */
+   void stop()
+   {
+      Thread t = null;
+
+      synchronized (this)
+      {
+         running = false;
+         t = drainer;
+      }
+
+      if (t != null)
+      {
+         LockSupport.unpark(t);
+
+         try
+         {
+            t.join(TimeUnit.SECONDS.toMillis(10L));
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void run()
+   {
+      long reported = 0L;
+
+      try
+      {
+         if (binary)
+         {
+            binaryWriter = new BinaryTraceWriter(file);
+         }
+         else
+         {
+            textWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                                                                   StandardCharsets.UTF_8));
+         }
+
+         while (running)
+         {
+            if (drain() == 0)
+               LockSupport.parkNanos(this, PARK_NANOS);
+
+            long d = dropped.sum();
+            if (d != reported)
+            {
+               log.warnf("Tracer buffer full: %d events dropped", d);
+               reported = d;
+            }
+         }
+
+         drain();
+      }
+      catch (IOException ioe)
+      {
+         log.warnf(ioe, "Tracer can't write to %s", file);
+      }
+      finally
+      {
+         try
+         {
+            if (textWriter != null)
+               textWriter.close();
+
+            if (binaryWriter != null)
+               binaryWriter.close();
+         }
+         catch (IOException ignore)
+         {
+            // Ignore
+         }
+      }
+   }
+
+   /**
+    * Drain the published events
+    * @return The number of events written
+    * @exception IOException Thrown if an error occurs
+    */
+   int drain() throws IOException
+   {
+      int count = 0;
+      long seq = tail.get();
+      int slot = (int)(seq & mask);
+
+      while (published.get(slot) == seq)
+      {
+         long threadId = longs[slot * LONGS];
+         long timestamp = longs[slot * LONGS + 1];
+         int type = ints[slot * INTS];
+         int mcpId = ints[slot * INTS + 1];
+         int clId = ints[slot * INTS + 2];
+         int payload1Id = ints[slot * INTS + 3];
+         String pool = (String)refs[slot * REFS];
+         String mcp = (String)refs[slot * REFS + 1];
+         String cl = (String)refs[slot * REFS + 2];
+         String payload1 = (String)refs[slot * REFS + 3];
+         String payload2 = (String)refs[slot * REFS + 4];
+
+         for (int i = 0; i < REFS; i++)
+            refs[slot * REFS + i] = null;
+
+         seq++;
+         tail.set(seq);
+
+         if (binaryWriter != null)
+         {
+            binaryWriter.write(pool, mcp, mcpId, threadId, type, timestamp, cl, clId, payload1, payload1Id,
+                               payload2);
+         }
+         else
+         {
+            TraceEvent te = new TraceEvent(pool, value(mcp, mcpId), threadId, type, timestamp,
+                                           value(cl, clId), value(payload1, payload1Id), payload2);
+            textWriter.write(te.toString());
+            textWriter.write('\n');
+         }
+
+         count++;
+         slot = (int)(seq & mask);
+      }
+
+      if (count > 0)
+      {
+         if (binaryWriter != null)
+         {
+            binaryWriter.flush();
+         }
+         else
+         {
+            textWriter.flush();
+         }
+      }
+
+      return count;
+   }
+
+   /**
+    * Get the identity of a value
+    * @param o The value
+    * @return The identity hash code, or 0 for strings and <code>null</code>
+    */
+   private static int id(Object o)
+   {
+      if (o == null || o instanceof String)
+         return 0;
+
+      return System.identityHashCode(o);
+   }
+
+   /**
+    * Get the string of a value
+    * @param o The value
+    * @return The string, <code>""</code> for <code>null</code>, or <code>null</code> for other objects
+    */
+   private static String string(Object o)
+   {
+      if (o == null)
+         return "";
+
+      if (o instanceof String)
+         return (String)o;
+
+      return null;
+   }
+
+   /**
+    * Get the value of a field
+    * @param s The string value
+    * @param id The identity hash code
+    * @return The value
+    */
+   private static String value(String s, int id)
+   {
+      if (s != null)
+         return s;
+
+      return Integer.toHexString(id);
+   }
+}
@@ -24,7 +24,9 @@ package org.ironjacamar.core.tracer;
 import org.ironjacamar.Version;
 
 import java.io.CharArrayWriter;
+import java.io.File;
 import java.io.PrintWriter;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.logging.Logger;
 
@@ -37,6 +39,9 @@ public class Tracer
 {
    /** Tracer logger */
    private static Logger log = Logger.getLogger(Tracer.class);
+
+   /** The lock of the logger output */
+   private static final ReentrantLock LOCK = new ReentrantLock();
    
    /** Is the tracer enabled */
    private static boolean enabled = log.isTraceEnabled();
@@ -47,10 +52,11 @@ public class Tracer
    /** Is the tracer confidential */
    private static boolean confidential = false;
 
+   /** The recorder, if events are written to a trace file */
+   private static TraceRecorder recorder = null;
+
    static
    {
-      log.tracef("%s", new TraceEvent(Version.VERSION, "NONE", TraceEvent.VERSION, "NONE"));
-
       String value = SecurityActions.getSystemProperty("ironjacamar.tracer.callstacks");
       if (value != null && !value.trim().equals(""))
       {
@@ -78,6 +84,32 @@ public class Tracer
             confidential = true;
          }
       }
+
+      value = SecurityActions.getSystemProperty("ironjacamar.tracer.file");
+      if (value != null && !value.trim().equals(""))
+      {
+         int size = 65536;
+         String bufferSize = SecurityActions.getSystemProperty("ironjacamar.tracer.buffer");
+         if (bufferSize != null && !bufferSize.trim().equals(""))
+         {
+            try
+            {
+               size = Integer.parseInt(bufferSize.trim());
+            }
+            catch (Throwable t)
+            {
+               // Use default buffer size
+            }
+         }
+
+         boolean binary = "binary".equalsIgnoreCase(SecurityActions.getSystemProperty("ironjacamar.tracer.format"));
+
+         recorder = new TraceRecorder(new File(value.trim()), size, binary);
+         recorder.start();
+         enabled = true;
+      }
+
+      event(Version.VERSION, "NONE", TraceEvent.VERSION, "NONE", null, null);
    }
    
    /**
@@ -125,45 +157,34 @@ public class Tracer
     * @param interleaving Interleaving flag
     * @param callstack The call stack
     */
-   public static synchronized void getConnectionListener(String poolName, Object mcp, Object cl,
-                                                         boolean pooled, boolean interleaving,
-                                                         Throwable callstack)
+   public static void getConnectionListener(String poolName, Object mcp, Object cl,
+                                            boolean pooled, boolean interleaving,
+                                            Throwable callstack)
    {
       if (!interleaving)
       {
          if (pooled)
          {
-            log.tracef("%s", new TraceEvent(poolName, Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.GET_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.GET_CONNECTION_LISTENER, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.GET_CONNECTION_LISTENER_NEW,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.GET_CONNECTION_LISTENER_NEW, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
       }
       else
       {
          if (pooled)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.GET_INTERLEAVING_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.GET_INTERLEAVING_CONNECTION_LISTENER, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.GET_INTERLEAVING_CONNECTION_LISTENER_NEW,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.GET_INTERLEAVING_CONNECTION_LISTENER_NEW, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
       }
    }
@@ -177,46 +198,34 @@ public class Tracer
     * @param interleaving Interleaving flag
     * @param callstack The call stack
     */
-   public static synchronized void returnConnectionListener(String poolName, Object mcp,
-                                                            Object cl, boolean kill, boolean interleaving,
-                                                            Throwable callstack)
+   public static void returnConnectionListener(String poolName, Object mcp,
+                                               Object cl, boolean kill, boolean interleaving,
+                                               Throwable callstack)
    {
       if (!interleaving)
       {
          if (!kill)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.RETURN_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.RETURN_CONNECTION_LISTENER, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.RETURN_CONNECTION_LISTENER_WITH_KILL,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.RETURN_CONNECTION_LISTENER_WITH_KILL, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
       }
       else
       {
          if (!kill)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.RETURN_INTERLEAVING_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.RETURN_INTERLEAVING_CONNECTION_LISTENER, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.RETURN_INTERLEAVING_CONNECTION_LISTENER_WITH_KILL,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            !confidential && callstack != null ? toString(callstack) : ""));
+            event(poolName, mcp, TraceEvent.RETURN_INTERLEAVING_CONNECTION_LISTENER_WITH_KILL, cl,
+                  !confidential && callstack != null ? toString(callstack) : "", null);
          }
       }
    }
@@ -227,12 +236,9 @@ public class Tracer
     * @param mcp The managed connection pool
     * @param cl The connection listener
     */
-   public static synchronized void clearConnectionListener(String poolName, Object mcp, Object cl)
+   public static void clearConnectionListener(String poolName, Object mcp, Object cl)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.CLEAR_CONNECTION_LISTENER,
-                                      Integer.toHexString(System.identityHashCode(cl))));
+      event(poolName, mcp, TraceEvent.CLEAR_CONNECTION_LISTENER, cl, null, null);
    }
 
    /**
@@ -244,46 +250,31 @@ public class Tracer
     * @param success Outcome
     * @param interleaving Interleaving flag
     */
-   public static synchronized void enlistConnectionListener(String poolName, Object mcp, Object cl,
-                                                            String tx,
-                                                            boolean success, boolean interleaving)
+   public static void enlistConnectionListener(String poolName, Object mcp, Object cl,
+                                               String tx,
+                                               boolean success, boolean interleaving)
    {
       if (!interleaving)
       {
          if (success)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.ENLIST_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.ENLIST_CONNECTION_LISTENER, cl, tx.replace('-', '_'), null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.ENLIST_CONNECTION_LISTENER_FAILED,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.ENLIST_CONNECTION_LISTENER_FAILED, cl, tx.replace('-', '_'), null);
          }
       }
       else
       {
          if (success)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.ENLIST_INTERLEAVING_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.ENLIST_INTERLEAVING_CONNECTION_LISTENER, cl, tx.replace('-', '_'), null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.ENLIST_INTERLEAVING_CONNECTION_LISTENER_FAILED,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.ENLIST_INTERLEAVING_CONNECTION_LISTENER_FAILED, cl,
+                  tx.replace('-', '_'), null);
          }
       }
    }
@@ -298,8 +289,8 @@ public class Tracer
     * @param rollbacked Is the transaction rollbacked
     * @param interleaving Interleaving flag
     */
-   public static synchronized void delistConnectionListener(String poolName, Object mcp, Object cl, String tx,
-                                                            boolean success, boolean rollbacked, boolean interleaving)
+   public static void delistConnectionListener(String poolName, Object mcp, Object cl, String tx,
+                                               boolean success, boolean rollbacked, boolean interleaving)
    {
       if (!rollbacked)
       {
@@ -307,38 +298,23 @@ public class Tracer
          {
             if (success)
             {
-               log.tracef("%s", new TraceEvent(poolName,
-                                               Integer.toHexString(System.identityHashCode(mcp)),
-                                               TraceEvent.DELIST_CONNECTION_LISTENER,
-                                               Integer.toHexString(System.identityHashCode(cl)),
-                                               tx.replace('-', '_')));
+               event(poolName, mcp, TraceEvent.DELIST_CONNECTION_LISTENER, cl, tx.replace('-', '_'), null);
             }
             else
             {
-               log.tracef("%s", new TraceEvent(poolName,
-                                               Integer.toHexString(System.identityHashCode(mcp)),
-                                               TraceEvent.DELIST_CONNECTION_LISTENER_FAILED,
-                                               Integer.toHexString(System.identityHashCode(cl)),
-                                               tx.replace('-', '_')));
+               event(poolName, mcp, TraceEvent.DELIST_CONNECTION_LISTENER_FAILED, cl, tx.replace('-', '_'), null);
             }
          }
          else
          {
             if (success)
             {
-               log.tracef("%s", new TraceEvent(poolName,
-                                               Integer.toHexString(System.identityHashCode(mcp)),
-                                               TraceEvent.DELIST_INTERLEAVING_CONNECTION_LISTENER,
-                                               Integer.toHexString(System.identityHashCode(cl)),
-                                               tx.replace('-', '_')));
+               event(poolName, mcp, TraceEvent.DELIST_INTERLEAVING_CONNECTION_LISTENER, cl, tx.replace('-', '_'), null);
             }
             else
             {
-               log.tracef("%s", new TraceEvent(poolName,
-                                               Integer.toHexString(System.identityHashCode(mcp)),
-                                               TraceEvent.DELIST_INTERLEAVING_CONNECTION_LISTENER_FAILED,
-                                               Integer.toHexString(System.identityHashCode(cl)),
-                                               tx.replace('-', '_')));
+               event(poolName, mcp, TraceEvent.DELIST_INTERLEAVING_CONNECTION_LISTENER_FAILED, cl,
+                     tx.replace('-', '_'), null);
             }
          }
       }
@@ -346,19 +322,12 @@ public class Tracer
       {
          if (success)
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.DELIST_ROLLEDBACK_CONNECTION_LISTENER,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.DELIST_ROLLEDBACK_CONNECTION_LISTENER, cl, tx.replace('-', '_'), null);
          }
          else
          {
-            log.tracef("%s", new TraceEvent(poolName,
-                                            Integer.toHexString(System.identityHashCode(mcp)),
-                                            TraceEvent.DELIST_ROLLEDBACK_CONNECTION_LISTENER_FAILED,
-                                            Integer.toHexString(System.identityHashCode(cl)),
-                                            tx.replace('-', '_')));
+            event(poolName, mcp, TraceEvent.DELIST_ROLLEDBACK_CONNECTION_LISTENER_FAILED, cl,
+                  tx.replace('-', '_'), null);
          }
       }
    }
@@ -370,13 +339,9 @@ public class Tracer
     * @param cl The connection listener
     * @param connection The connection
     */
-   public static synchronized void getConnection(String poolName, Object mcp, Object cl, Object connection)
+   public static void getConnection(String poolName, Object mcp, Object cl, Object connection)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.GET_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection))));
+      event(poolName, mcp, TraceEvent.GET_CONNECTION, cl, connection, null);
    }
 
    /**
@@ -386,13 +351,9 @@ public class Tracer
     * @param cl The connection listener
     * @param connection The connection
     */
-   public static synchronized void returnConnection(String poolName, Object mcp, Object cl, Object connection)
+   public static void returnConnection(String poolName, Object mcp, Object cl, Object connection)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.RETURN_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection))));
+      event(poolName, mcp, TraceEvent.RETURN_CONNECTION, cl, connection, null);
    }
 
    /**
@@ -402,13 +363,9 @@ public class Tracer
     * @param cl The connection listener
     * @param connection The connection
     */
-   public static synchronized void clearConnection(String poolName, Object mcp, Object cl, Object connection)
+   public static void clearConnection(String poolName, Object mcp, Object cl, Object connection)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.CLEAR_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection))));
+      event(poolName, mcp, TraceEvent.CLEAR_CONNECTION, cl, connection, null);
    }
 
    /**
@@ -418,14 +375,10 @@ public class Tracer
     * @param cl The connection listener
     * @param exception The exception
     */
-   public static synchronized void exception(String poolName, Object mcp, Object cl, Throwable exception)
+   public static void exception(String poolName, Object mcp, Object cl, Throwable exception)
    {
       if (!confidential)
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.EXCEPTION,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         toString(exception)));
+         event(poolName, mcp, TraceEvent.EXCEPTION, cl, toString(exception), null);
    }
 
    /**
@@ -439,36 +392,24 @@ public class Tracer
     * @param incrementer An INCREMENTER operation
     * @param callstack The call stack
     */
-   public static synchronized void createConnectionListener(String poolName, Object mcp, Object cl, Object mc,
-                                                            boolean get, boolean prefill, boolean incrementer,
-                                                            Throwable callstack)
+   public static void createConnectionListener(String poolName, Object mcp, Object cl, Object mc,
+                                               boolean get, boolean prefill, boolean incrementer,
+                                               Throwable callstack)
    {
       if (get)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.CREATE_CONNECTION_LISTENER_GET,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         Integer.toHexString(System.identityHashCode(mc)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.CREATE_CONNECTION_LISTENER_GET, cl, mc,
+               !confidential && callstack != null ? toString(callstack) : "");
       }
       else if (prefill)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.CREATE_CONNECTION_LISTENER_PREFILL,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         Integer.toHexString(System.identityHashCode(mc)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.CREATE_CONNECTION_LISTENER_PREFILL, cl, mc,
+               !confidential && callstack != null ? toString(callstack) : "");
       }
       else if (incrementer)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.CREATE_CONNECTION_LISTENER_INCREMENTER,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         Integer.toHexString(System.identityHashCode(mc)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.CREATE_CONNECTION_LISTENER_INCREMENTER, cl, mc,
+               !confidential && callstack != null ? toString(callstack) : "");
       }
    }
 
@@ -486,67 +427,46 @@ public class Tracer
     * @param incrementer An INCREMENTER operation
     * @param callstack The call stack
     */
-   public static synchronized void destroyConnectionListener(String poolName, Object mcp, Object cl,
-                                                             boolean ret, boolean idle, boolean invalid,
-                                                             boolean flush, boolean error,
-                                                             boolean prefill, boolean incrementer,
-                                                             Throwable callstack)
+   public static void destroyConnectionListener(String poolName, Object mcp, Object cl,
+                                                boolean ret, boolean idle, boolean invalid,
+                                                boolean flush, boolean error,
+                                                boolean prefill, boolean incrementer,
+                                                Throwable callstack)
    {
       if (ret)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_RETURN,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_RETURN, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (idle)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_IDLE,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_IDLE, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (invalid)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_INVALID,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_INVALID, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (flush)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_FLUSH,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_FLUSH, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (error)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_ERROR,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_ERROR, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (prefill)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_PREFILL,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_PREFILL, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
       else if (incrementer)
       {
-         log.tracef("%s", new TraceEvent(poolName,
-                                         Integer.toHexString(System.identityHashCode(mcp)),
-                                         TraceEvent.DESTROY_CONNECTION_LISTENER_INCREMENTER,
-                                         Integer.toHexString(System.identityHashCode(cl)),
-                                         !confidential && callstack != null ? toString(callstack) : ""));
+         event(poolName, mcp, TraceEvent.DESTROY_CONNECTION_LISTENER_INCREMENTER, cl,
+               !confidential && callstack != null ? toString(callstack) : "", null);
       }
    }
 
@@ -555,12 +475,9 @@ public class Tracer
     * @param poolName The name of the pool
     * @param mcp The managed connection pool
     */
-   public static synchronized void createManagedConnectionPool(String poolName, Object mcp)
+   public static void createManagedConnectionPool(String poolName, Object mcp)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.MANAGED_CONNECTION_POOL_CREATE,
-                                      "NONE"));
+      event(poolName, mcp, TraceEvent.MANAGED_CONNECTION_POOL_CREATE, "NONE", null, null);
    }
 
    /**
@@ -568,12 +485,9 @@ public class Tracer
     * @param poolName The name of the pool
     * @param mcp The managed connection pool
     */
-   public static synchronized void destroyManagedConnectionPool(String poolName, Object mcp)
+   public static void destroyManagedConnectionPool(String poolName, Object mcp)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.MANAGED_CONNECTION_POOL_DESTROY,
-                                      "NONE"));
+      event(poolName, mcp, TraceEvent.MANAGED_CONNECTION_POOL_DESTROY, "NONE", null, null);
    }
 
    /**
@@ -581,10 +495,10 @@ public class Tracer
     * @param key The frame key
     * @param callstack The call stack
     */
-   public static synchronized void pushCCMContext(String key, Throwable callstack)
+   public static void pushCCMContext(String key, Throwable callstack)
    {
-      log.tracef("%s", new TraceEvent("CachedConnectionManager", "NONE", TraceEvent.PUSH_CCM_CONTEXT,
-                                      "NONE", key, callstack != null ? toString(callstack) : ""));
+      event("CachedConnectionManager", "NONE", TraceEvent.PUSH_CCM_CONTEXT, "NONE", key,
+            callstack != null ? toString(callstack) : "");
    }
 
    /**
@@ -592,10 +506,10 @@ public class Tracer
     * @param key The frame key
     * @param callstack The call stack
     */
-   public static synchronized void popCCMContext(String key, Throwable callstack)
+   public static void popCCMContext(String key, Throwable callstack)
    {
-      log.tracef("%s", new TraceEvent("CachedConnectionManager", "NONE", TraceEvent.POP_CCM_CONTEXT,
-                                      "NONE", key, callstack != null ? toString(callstack) : ""));
+      event("CachedConnectionManager", "NONE", TraceEvent.POP_CCM_CONTEXT, "NONE", key,
+            callstack != null ? toString(callstack) : "");
    }
 
    /**
@@ -606,15 +520,10 @@ public class Tracer
     * @param connection The connection
     * @param key The frame key
     */
-   public static synchronized void registerCCMConnection(String poolName, Object mcp, Object cl,
-                                                         Object connection, String key)
+   public static void registerCCMConnection(String poolName, Object mcp, Object cl,
+                                            Object connection, String key)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.REGISTER_CCM_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection)),
-                                      key));
+      event(poolName, mcp, TraceEvent.REGISTER_CCM_CONNECTION, cl, connection, key);
    }
 
    /**
@@ -625,15 +534,10 @@ public class Tracer
     * @param connection The connection
     * @param key The frame key
     */
-   public static synchronized void unregisterCCMConnection(String poolName, Object mcp, Object cl,
-                                                           Object connection, String key)
+   public static void unregisterCCMConnection(String poolName, Object mcp, Object cl,
+                                              Object connection, String key)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.UNREGISTER_CCM_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection)),
-                                      key));
+      event(poolName, mcp, TraceEvent.UNREGISTER_CCM_CONNECTION, cl, connection, key);
    }
 
    /**
@@ -644,15 +548,10 @@ public class Tracer
     * @param connection The connection
     * @param key The frame key
     */
-   public static synchronized void unknownCCMConnection(String poolName, Object mcp, Object cl,
-                                                        Object connection, String key)
+   public static void unknownCCMConnection(String poolName, Object mcp, Object cl,
+                                           Object connection, String key)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.UNKNOWN_CCM_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection)),
-                                      key));
+      event(poolName, mcp, TraceEvent.UNKNOWN_CCM_CONNECTION, cl, connection, key);
    }
 
    /**
@@ -663,15 +562,10 @@ public class Tracer
     * @param connection The connection
     * @param key The frame key
     */
-   public static synchronized void closeCCMConnection(String poolName, Object mcp, Object cl,
-                                                      Object connection, String key)
+   public static void closeCCMConnection(String poolName, Object mcp, Object cl,
+                                         Object connection, String key)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.CLOSE_CCM_CONNECTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection)),
-                                      key));
+      event(poolName, mcp, TraceEvent.CLOSE_CCM_CONNECTION, cl, connection, key);
    }
 
    /**
@@ -682,15 +576,56 @@ public class Tracer
     * @param connection The connection
     * @param key The frame key
     */
-   public static synchronized void ccmUserTransaction(String poolName, Object mcp, Object cl,
-                                                      Object connection, String key)
+   public static void ccmUserTransaction(String poolName, Object mcp, Object cl,
+                                         Object connection, String key)
    {
-      log.tracef("%s", new TraceEvent(poolName,
-                                      Integer.toHexString(System.identityHashCode(mcp)),
-                                      TraceEvent.CCM_USER_TRANSACTION,
-                                      Integer.toHexString(System.identityHashCode(cl)),
-                                      Integer.toHexString(System.identityHashCode(connection)),
-                                      key));
+      event(poolName, mcp, TraceEvent.CCM_USER_TRANSACTION, cl, connection, key);
+   }
+
+   /**
+    * Trace an event. String values are traced as is, other objects by their identity hash code.
+    * @param poolName The name of the pool
+    * @param mcp The managed connection pool
+    * @param type The event type
+    * @param cl The connection listener
+    * @param payload1 The first payload
+    * @param payload2 The second payload
+    */
+   private static void event(String poolName, Object mcp, int type, Object cl, Object payload1, String payload2)
+   {
+      if (recorder != null)
+      {
+         recorder.record(poolName, mcp, type, cl, payload1, payload2);
+      }
+      else
+      {
+         LOCK.lock();
+         try
+         {
+            log.tracef("%s", new TraceEvent(poolName, identity(mcp), type, identity(cl), identity(payload1),
+                                            payload2 != null ? payload2 : ""));
+         }
+         finally
+         {
+            LOCK.unlock();
+         }
+      }
+   }
+
+   /**
+    * Get the trace identity of a value
+    * @param o The value
+    * @return The value if it is a string, otherwise its identity hash code
+    */
+   private static String identity(Object o)
+   {
+      if (o == null)
+         return "";
+
+      if (o instanceof String)
+         return (String)o;
+
+      return Integer.toHexString(System.identityHashCode(o));
    }
 
    /**
@@ -698,7 +633,7 @@ public class Tracer
     * @param exception The exception
     * @return The string representation
     */
-   private static synchronized String toString(Throwable exception)
+   private static String toString(Throwable exception)
    {
       CharArrayWriter caw = new CharArrayWriter();
       PrintWriter pw = new PrintWriter(caw, true);
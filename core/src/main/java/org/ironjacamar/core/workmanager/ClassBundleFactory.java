@@ -26,7 +26,11 @@ import org.ironjacamar.core.CoreLogger;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.jboss.logging.Logger;
 
@@ -43,6 +47,10 @@ public class ClassBundleFactory
    /** Whether trace is enabled */
    private static boolean trace = log.isTraceEnabled();
 
+   /** The class bundles for each class */
+   private static Map<Class<?>, ClassBundle> bundles =
+      Collections.synchronizedMap(new WeakHashMap<Class<?>, ClassBundle>());
+
    /**
     * Constructor
     */
@@ -51,7 +59,8 @@ public class ClassBundleFactory
    }
 
    /**
-    * Create a class bundle
+    * Create a class bundle. The bundle is created once for each class, and
+    * must not be modified
     * @param s The serializable
     * @return The bundle
     */
@@ -59,7 +68,51 @@ public class ClassBundleFactory
    {
       if (s == null)
          return null;
-      
+
+      ClassBundle cb = bundles.get(s.getClass());
+      if (cb == null)
+      {
+         cb = buildClassBundle(s);
+         bundles.put(s.getClass(), cb);
+      }
+
+      return cb;
+   }
+
+   /**
+    * Create a class bundle where the definitions known by the receiver are references
+    * @param cb The class bundle
+    * @param known The hashes of the definitions known by the receiver
+    * @return The bundle
+    */
+   public static ClassBundle createClassBundle(ClassBundle cb, Set<String> known)
+   {
+      if (cb == null || cb.getDefinitions() == null || known.isEmpty())
+         return cb;
+
+      List<ClassDefinition> definitions = new ArrayList<ClassDefinition>(cb.getDefinitions().size());
+      for (ClassDefinition cd : cb.getDefinitions())
+      {
+         if (cd != null && known.contains(cd.getHash()))
+         {
+            definitions.add(cd.toReference());
+         }
+         else
+         {
+            definitions.add(cd);
+         }
+      }
+
+      return new ClassBundle(definitions);
+   }
+
+   /**
+    * Build a class bundle
+    * @param s The serializable
+    * @return The bundle
+    */
+   private static ClassBundle buildClassBundle(Serializable s)
+   {
       if (trace)
          log.tracef("Creating class bundle for: %s", s);
 
@@ -21,11 +21,19 @@
 
 package org.ironjacamar.core.workmanager;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
 /**
- * A definition of a class
+ * A definition of a class.
+ *
+ * A definition is identified by the hash of its data. A definition without data is a
+ * reference to a definition with the same hash, which the receiver already has. The hash of
+ * a definition with data is always computed from the data, and never taken from a peer.
  * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
  */
 public class ClassDefinition implements Serializable
@@ -42,6 +50,9 @@ public class ClassDefinition implements Serializable
    /** The data */
    private byte[] data;
 
+   /** The hash of the data */
+   private String hash;
+
    /**
     * Constructor
     * @param name The name of the class
@@ -55,6 +66,22 @@ public class ClassDefinition implements Serializable
       this.data = new byte[data.length];
       
       System.arraycopy(data, 0, this.data, 0, data.length);
+
+      this.hash = hash(this.data);
+   }
+
+   /**
+    * Constructor for a reference
+    * @param name The name of the class
+    * @param serialVersionUID The serial version unique identifier
+    * @param hash The hash of the class
+    */
+   public ClassDefinition(String name, long serialVersionUID, String hash)
+   {
+      this.name = name;
+      this.svu = serialVersionUID;
+      this.data = null;
+      this.hash = hash;
    }
 
    /**
@@ -77,15 +104,90 @@ public class ClassDefinition implements Serializable
 
    /**
     * Get the data
-    * @return The value
+    * @return The value; <code>null</code> for a reference
     */
    public byte[] getData()
    {
+      if (data == null)
+         return null;
+
       byte[] copy = new byte[data.length];
       System.arraycopy(data, 0, copy, 0, data.length);
       return copy;
    }
 
+   /**
+    * Get the hash of the data
+    * @return The value
+    */
+   public String getHash()
+   {
+      if (hash == null && data != null)
+         hash = hash(data);
+
+      return hash;
+   }
+
+   /**
+    * Is this a reference without data
+    * @return True if a reference; otherwise false
+    */
+   public boolean isReference()
+   {
+      return data == null;
+   }
+
+   /**
+    * Get a reference to this definition
+    * @return The reference
+    */
+   public ClassDefinition toReference()
+   {
+      return new ClassDefinition(name, svu, getHash());
+   }
+
+   /**
+    * Read the object; the hash of a definition with data is computed from the received data
+    * @param in The stream
+    * @exception IOException Thrown if an I/O error occurs
+    * @exception ClassNotFoundException Thrown if a class can't be found
+    */
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+   {
+      in.defaultReadObject();
+
+      if (data != null)
+         hash = hash(data);
+   }
+
+   /**
+    * Hash the data
+    * @param data The data
+    * @return The hash
+    */
+   private static String hash(byte[] data)
+   {
+      try
+      {
+         MessageDigest md = MessageDigest.getInstance("SHA-256");
+         byte[] digest = md.digest(data);
+
+         StringBuilder sb = new StringBuilder(digest.length * 2);
+         for (byte b : digest)
+         {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+         }
+
+         return sb.toString();
+      }
+      catch (NoSuchAlgorithmException nsae)
+      {
+         // Every Java platform supports SHA-256
+         throw new IllegalStateException(nsae);
+      }
+   }
+
    /** 
     * {@inheritDoc}
     */
@@ -96,7 +198,7 @@ public class ClassDefinition implements Serializable
 
       result += 7 * name.hashCode();
       result += 7 * svu;
-      result += 7 * Arrays.hashCode(data);
+      result += 7 * (getHash() != null ? getHash().hashCode() : 0);
 
       return result;
    }
@@ -124,7 +226,10 @@ public class ClassDefinition implements Serializable
       if (svu != cd.svu)
          return false;
 
-      return Arrays.equals(data, cd.data);
+      if (getHash() == null)
+         return cd.getHash() == null;
+
+      return getHash().equals(cd.getHash());
    }
 
    /**
@@ -138,6 +243,7 @@ public class ClassDefinition implements Serializable
       sb.append("ClassDefinition@").append(Integer.toHexString(System.identityHashCode(this)));
       sb.append("[name=").append(name);
       sb.append(" serialVersionUID=").append(svu);
+      sb.append(" hash=").append(getHash());
       sb.append(" data=").append(Arrays.toString(data));
       sb.append("]");
 
@@ -0,0 +1,205 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.CoreLogger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.resource.spi.work.WorkException;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The class definitions received from peers, identified by the hash of their data, and
+ * shared by the WorkClassLoader instances of a transport.
+ *
+ * The cache holds at most its maximum size of definitions, and evicts the least recently
+ * used definition first. A peer referencing an evicted definition gets a CLASS_DEFINITION_MISSING
+ * error, and sends the full class bundle again.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ClassDefinitionCache
+{
+   /** The error code of the exception thrown when a referenced class definition is missing */
+   public static final String CLASS_DEFINITION_MISSING = "ClassDefinitionMissing";
+
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class,
+                                                           ClassDefinitionCache.class.getName());
+
+   /** Whether trace is enabled */
+   private static boolean trace = log.isTraceEnabled();
+
+   /** The default maximum number of class definitions */
+   public static final int DEFAULT_MAX_SIZE = 1024;
+
+   /** The maximum number of class definitions */
+   private final int maxSize;
+
+   /** The definitions, in access order */
+   private final LinkedHashMap<String, ClassDefinition> definitions;
+
+   /** The lock of the definitions */
+   private final ReentrantLock lock;
+
+   /**
+    * Constructor
+    */
+   public ClassDefinitionCache()
+   {
+      this(DEFAULT_MAX_SIZE);
+   }
+
+   /**
+    * Constructor
+    * @param maxSize The maximum number of class definitions
+    */
+   public ClassDefinitionCache(final int maxSize)
+   {
+      this.maxSize = maxSize;
+      this.definitions = new LinkedHashMap<String, ClassDefinition>(16, 0.75f, true)
+      {
+         /** Serial version uid */
+         private static final long serialVersionUID = 1L;
+
+         /**
+          * {@inheritDoc}
+          */
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, ClassDefinition> eldest)
+         {
+            return size() > maxSize;
+         }
+      };
+      this.lock = new ReentrantLock();
+   }
+
+   /**
+    * Get the maximum number of class definitions
+    * @return The value
+    */
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   /**
+    * Resolve the references of a class bundle, and keep the definitions with data
+    * @param cb The class bundle
+    * @return The class bundle with all definitions having data
+    * @exception WorkException Thrown if a referenced definition isn't known; the error code
+    *            is CLASS_DEFINITION_MISSING
+    */
+   public ClassBundle resolve(ClassBundle cb) throws WorkException
+   {
+      if (cb == null || cb.getDefinitions() == null)
+         return cb;
+
+      List<ClassDefinition> result = new ArrayList<ClassDefinition>(cb.getDefinitions().size());
+
+      for (ClassDefinition cd : cb.getDefinitions())
+      {
+         if (cd.isReference())
+         {
+            ClassDefinition known = null;
+
+            lock.lock();
+            try
+            {
+               known = definitions.get(cd.getHash());
+            }
+            finally
+            {
+               lock.unlock();
+            }
+
+            if (known == null)
+            {
+               if (trace)
+                  log.tracef("Missing class definition: %s (%s)", cd.getName(), cd.getHash());
+
+               WorkException we = new WorkException("Missing class definition: " + cd.getName());
+               we.setErrorCode(CLASS_DEFINITION_MISSING);
+               throw we;
+            }
+
+            result.add(known);
+         }
+         else
+         {
+            lock.lock();
+            try
+            {
+               if (definitions.get(cd.getHash()) == null)
+                  definitions.put(cd.getHash(), cd);
+            }
+            finally
+            {
+               lock.unlock();
+            }
+
+            result.add(cd);
+         }
+      }
+
+      return new ClassBundle(result);
+   }
+
+   /**
+    * Get the number of class definitions
+    * @return The value
+    */
+   public int size()
+   {
+      lock.lock();
+      try
+      {
+         return definitions.size();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Clear the class definitions
+    */
+   public void clear()
+   {
+      lock.lock();
+      try
+      {
+         definitions.clear();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+}
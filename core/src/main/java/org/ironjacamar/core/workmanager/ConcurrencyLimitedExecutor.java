@@ -0,0 +1,202 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.StatisticsExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A StatisticsExecutor that isn't bounded by a thread count, but by a concurrency limit.
+ *
+ * Each task runs on its own thread from an unbounded pool, once a permit is available;
+ * the number of free threads is the number of remaining permits, so the distribution
+ * policies and selectors keep working. This suits resource adapters submitting many
+ * I/O-bound Work instances.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ConcurrencyLimitedExecutor implements StatisticsExecutor
+{
+   /** The concurrency limit */
+   private final int concurrency;
+
+   /** The permits */
+   private final Semaphore permits;
+
+   /** The executor */
+   private final ThreadPoolExecutor executor;
+
+   /**
+    * Constructor
+    * @param concurrency The concurrency limit
+    */
+   public ConcurrencyLimitedExecutor(int concurrency)
+   {
+      this(concurrency, Executors.defaultThreadFactory());
+   }
+
+   /**
+    * Constructor
+    * @param concurrency The concurrency limit
+    * @param threadFactory The thread factory
+    */
+   public ConcurrencyLimitedExecutor(int concurrency, ThreadFactory threadFactory)
+   {
+      if (concurrency <= 0)
+         throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+
+      this.concurrency = concurrency;
+      this.permits = new Semaphore(concurrency);
+      this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                                             new SynchronousQueue<Runnable>(), threadFactory);
+   }
+
+   /**
+    * Get the concurrency limit
+    * @return The value
+    */
+   public int getConcurrency()
+   {
+      return concurrency;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void execute(Runnable runnable)
+   {
+      permits.acquireUninterruptibly();
+      submit(runnable);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void executeBlocking(Runnable runnable) throws RejectedExecutionException, InterruptedException
+   {
+      permits.acquire();
+      submit(runnable);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void executeBlocking(Runnable runnable, long l, TimeUnit timeUnit) throws RejectedExecutionException,
+                                                                                    InterruptedException
+   {
+      if (!permits.tryAcquire(l, timeUnit))
+         throw new RejectedExecutionException("No permit within " + l + " " + timeUnit);
+
+      submit(runnable);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void executeNonBlocking(Runnable runnable) throws RejectedExecutionException
+   {
+      if (!permits.tryAcquire())
+         throw new RejectedExecutionException("No permit");
+
+      submit(runnable);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getNumberOfFreeThreads()
+   {
+      return permits.availablePermits();
+   }
+
+   /**
+    * Shutdown the executor
+    */
+   public void shutdown()
+   {
+      executor.shutdown();
+   }
+
+   /**
+    * Run a task holding a permit, and release the permit afterwards
+    * @param runnable The task
+    * @exception RejectedExecutionException Thrown if the task can't be run
+    */
+   private void submit(final Runnable runnable) throws RejectedExecutionException
+   {
+      try
+      {
+         executor.execute(new Runnable()
+         {
+            /**
+             * {@inheritDoc}
+             */
+            public void run()
+            {
+               try
+               {
+                  runnable.run();
+               }
+               finally
+               {
+                  permits.release();
+               }
+            }
+         });
+      }
+      catch (RejectedExecutionException ree)
+      {
+         permits.release();
+         throw ree;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("ConcurrencyLimitedExecutor@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[concurrency=").append(concurrency);
+      sb.append(" free=").append(permits.availablePermits());
+      sb.append(" threads=").append(executor.getPoolSize());
+      sb.append("]");
+
+      return sb.toString();
+   }
+}
@@ -30,14 +30,18 @@ import org.ironjacamar.core.spi.workmanager.notification.NotificationListener;
 import org.ironjacamar.core.spi.workmanager.policy.Policy;
 import org.ironjacamar.core.spi.workmanager.selector.Selector;
 import org.ironjacamar.core.spi.workmanager.transport.Transport;
+import org.ironjacamar.core.workmanager.selector.PingTime;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import javax.resource.spi.work.DistributableWork;
+import javax.resource.spi.work.ExecutionContext;
 import javax.resource.spi.work.Work;
 import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
 import javax.resource.spi.work.WorkManager;
 
 import org.jboss.logging.Logger;
@@ -152,12 +156,23 @@ public class DistributedWorkManagerImpl extends WorkManagerImpl implements Distr
          listeners.remove((NotificationListener)selector);
       }
 
+      if (selector != null && selector instanceof PingTime)
+         ((PingTime)selector).unregister(this);
+
       selector = v;
 
       if (selector != null && selector instanceof NotificationListener)
       {
          listeners.add((NotificationListener)selector);
       }
+
+      if (selector != null && selector instanceof PingTime)
+      {
+         ((PingTime)selector).register(this);
+
+         if (transport != null)
+            ((PingTime)selector).setTransport(transport);
+      }
    }
 
    /**
@@ -190,6 +205,9 @@ public class DistributedWorkManagerImpl extends WorkManagerImpl implements Distr
 
          initDistributedStatistics();
       }
+
+      if (selector != null && selector instanceof PingTime)
+         ((PingTime)selector).setTransport(transport);
    }
 
    /**
@@ -478,6 +496,154 @@ public class DistributedWorkManagerImpl extends WorkManagerImpl implements Distr
       }
    }
 
+   /**
+    * {@inheritDoc}
+    *
+    * The policy and the selector are consulted once for the batch, using its first distributable work instance,
+    * and the distributable work instances are sent to the selected work manager. If a work instance can't be
+    * sent, it and the work instances after it are rejected, and the work instances before it that stay local
+    * are still scheduled
+    */
+   @Override
+   public void scheduleWorkBatch(Collection<? extends Work> works, long startTimeout,
+                                 ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      if (policy == null || selector == null || transport == null || !scheduleWorkDistributionEnabled)
+      {
+         localScheduleWorkBatch(works, startTimeout, execContext, workListener, false);
+      }
+      else
+      {
+         List<Work> batch = works != null ? new ArrayList<Work>(works) : null;
+
+         try
+         {
+            doFirstBatchChecks(batch, startTimeout, execContext);
+            checkTransport();
+         }
+         catch (WorkException we)
+         {
+            if (batch != null)
+               rejectWorkBatch(batch, 0, we, workListener);
+
+            throw we;
+         }
+
+         Address dwmAddress = null;
+         boolean selected = false;
+         List<Work> local = new ArrayList<Work>(batch.size());
+         WorkException exception = null;
+
+         for (int i = 0; i < batch.size(); i++)
+         {
+            Work work = batch.get(i);
+
+            if (work instanceof DistributableWork)
+            {
+               DistributableWork dw = (DistributableWork)work;
+
+               if (!selected)
+               {
+                  if (policy.shouldDistribute(this, dw))
+                     dwmAddress = selector.selectDistributedWorkManager(getLocalAddress(), dw);
+
+                  selected = true;
+               }
+
+               if (dwmAddress != null && !getLocalAddress().equals(dwmAddress))
+               {
+                  try
+                  {
+                     transport.scheduleWork(dwmAddress, dw);
+                  }
+                  catch (WorkException we)
+                  {
+                     rejectWorkBatch(batch, i, we, workListener);
+                     exception = we;
+                     break;
+                  }
+
+                  continue;
+               }
+            }
+
+            local.add(work);
+         }
+
+         try
+         {
+            if (!local.isEmpty())
+               localScheduleWorkBatch(local, startTimeout, execContext, workListener, true);
+         }
+         catch (WorkException we)
+         {
+            if (exception == null)
+               exception = we;
+         }
+
+         if (exception != null)
+            throw exception;
+      }
+   }
+
+   /**
+    * Schedule a batch of work instances on this work manager
+    * @param works The work instances
+    * @param startTimeout The start timeout for each work instance
+    * @param execContext The execution context
+    * @param workListener The work listener
+    * @param checked Have the work instances passed the first checks
+    * @exception WorkException Thrown if a work instance couldn't be scheduled
+    */
+   private void localScheduleWorkBatch(Collection<? extends Work> works, long startTimeout,
+                                       ExecutionContext execContext, WorkListener workListener, boolean checked)
+      throws WorkException
+   {
+      if (transport != null && works != null)
+      {
+         checkTransport();
+
+         int longRunning = 0;
+         if (getLongRunningThreadPool() != null)
+         {
+            for (Work work : works)
+            {
+               if (WorkManagerUtil.isLongRunning(work))
+                  longRunning++;
+            }
+         }
+
+         if (longRunning > 0)
+         {
+            transport.updateLongRunningFree(getLocalAddress(),
+                                            getLongRunningThreadPool().getNumberOfFreeThreads() - longRunning);
+         }
+
+         if (works.size() > longRunning)
+         {
+            transport.updateShortRunningFree(getLocalAddress(),
+                                             getShortRunningThreadPool().getNumberOfFreeThreads() -
+                                             (works.size() - longRunning));
+         }
+
+         workListener = new WorkEventListener(getShortRunningThreadPool(),
+                                              getLongRunningThreadPool(),
+                                              getLocalAddress(),
+                                              transport,
+                                              workListener);
+      }
+
+      if (checked)
+      {
+         scheduleCheckedWorkBatch(new ArrayList<Work>(works), startTimeout, execContext, workListener);
+      }
+      else
+      {
+         super.scheduleWorkBatch(works, startTimeout, execContext, workListener);
+      }
+   }
+
    /**
     * Check the transport
     * @exception WorkException In case of an error
@@ -766,6 +932,18 @@ public class DistributedWorkManagerImpl extends WorkManagerImpl implements Distr
       }
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public synchronized void shutdown()
+   {
+      super.shutdown();
+
+      if (selector != null && selector instanceof PingTime)
+         ((PingTime)selector).unregister(this);
+   }
+
    /**
     * Clone the WorkManager implementation
     * @return A copy of the implementation
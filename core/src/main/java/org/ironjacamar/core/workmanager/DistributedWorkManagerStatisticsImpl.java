@@ -214,6 +214,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       successful.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaWorkSuccessful(long delta)
+   {
+      successful.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -230,6 +238,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       failed.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaWorkFailed(long delta)
+   {
+      failed.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -246,6 +262,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       doWorkAccepted.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaDoWorkAccepted(long delta)
+   {
+      doWorkAccepted.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -262,6 +286,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       doWorkRejected.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaDoWorkRejected(long delta)
+   {
+      doWorkRejected.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -278,6 +310,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       scheduleWorkAccepted.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaScheduleWorkAccepted(long delta)
+   {
+      scheduleWorkAccepted.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -294,6 +334,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       scheduleWorkRejected.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaScheduleWorkRejected(long delta)
+   {
+      scheduleWorkRejected.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -310,6 +358,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       startWorkAccepted.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaStartWorkAccepted(long delta)
+   {
+      startWorkAccepted.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -326,6 +382,14 @@ public class DistributedWorkManagerStatisticsImpl implements DistributedWorkMana
       startWorkRejected.incrementAndGet();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaStartWorkRejected(long delta)
+   {
+      startWorkRejected.addAndGet((int)delta);
+   }
+
    /**
     * {@inheritDoc}
     */
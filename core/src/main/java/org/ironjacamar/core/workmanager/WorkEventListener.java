@@ -27,6 +27,7 @@ import org.ironjacamar.core.spi.workmanager.transport.Transport;
 
 import javax.resource.spi.work.WorkAdapter;
 import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkListener;
 
 
 /**
@@ -35,8 +36,11 @@ import javax.resource.spi.work.WorkEvent;
  */
 public class WorkEventListener extends WorkAdapter
 {
-   /** Short or long running work */
-   private boolean isLong;
+   /** Short or long running work; null if it is decided per event */
+   private Boolean isLong;
+
+   /** The delegate */
+   private WorkListener delegate;
 
    /** The short thread pool */
    private StatisticsExecutor shortThreadPool;
@@ -64,11 +68,54 @@ public class WorkEventListener extends WorkAdapter
                             Address address,
                             Transport transport)
    {
-      this.isLong = isLong;
+      this.isLong = Boolean.valueOf(isLong);
       this.shortThreadPool = shortThreadPool;
       this.longThreadPool = longThreadPool;
       this.address = address;
       this.transport = transport;
+      this.delegate = null;
+   }
+
+   /**
+    * Constructor for a batch of work instances, where short or long running is decided per event
+    * @param shortThreadPool The short running thread pool
+    * @param longThreadPool The long running thread pool
+    * @param address The address
+    * @param transport The transport
+    * @param delegate The work listener to forward the events to, or <code>null</code>
+    */
+   public WorkEventListener(StatisticsExecutor shortThreadPool,
+                            StatisticsExecutor longThreadPool,
+                            Address address,
+                            Transport transport,
+                            WorkListener delegate)
+   {
+      this.isLong = null;
+      this.shortThreadPool = shortThreadPool;
+      this.longThreadPool = longThreadPool;
+      this.address = address;
+      this.transport = transport;
+      this.delegate = delegate;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void workAccepted(WorkEvent e)
+   {
+      if (delegate != null)
+         delegate.workAccepted(e);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void workStarted(WorkEvent e)
+   {
+      if (delegate != null)
+         delegate.workStarted(e);
    }
 
    /**
@@ -77,7 +124,10 @@ public class WorkEventListener extends WorkAdapter
    @Override
    public void workCompleted(WorkEvent e)
    {
-      done();
+      done(e);
+
+      if (delegate != null)
+         delegate.workCompleted(e);
    }
 
    /**
@@ -86,16 +136,22 @@ public class WorkEventListener extends WorkAdapter
    @Override
    public void workRejected(WorkEvent e)
    {
-      done();
+      done(e);
+
+      if (delegate != null)
+         delegate.workRejected(e);
    }
 
    /**
     * Send the done signal to other nodes
     * We are adding 1 to the result, since the thread officially has been released yet, but will be shortly
+    * @param e The event
     */
-   private void done()
+   private void done(WorkEvent e)
    {
-      if (longThreadPool != null && isLong)
+      boolean l = isLong != null ? isLong.booleanValue() : WorkManagerUtil.isLongRunning(e.getWork());
+
+      if (longThreadPool != null && l)
       {
          transport.updateLongRunningFree(address,
                                          longThreadPool.getNumberOfFreeThreads() + 1);
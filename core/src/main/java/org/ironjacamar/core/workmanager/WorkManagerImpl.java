@@ -34,10 +34,14 @@ import org.ironjacamar.core.spi.transaction.xa.XATerminator;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -162,13 +166,13 @@ public class WorkManagerImpl implements WorkManager
       id = null;
       name = null;
       specCompliant = true;
-      validatedWork = new HashSet<String>();
+      validatedWork = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
       resourceAdapter = null;
       shutdown = new AtomicBoolean(false);
       scheduledExecutorService = null;
       scheduledGraceful = null;
       gracefulCallback = null;
-      activeWorkWrappers = new HashSet<WorkWrapper>();
+      activeWorkWrappers = Collections.newSetFromMap(new ConcurrentHashMap<WorkWrapper, Boolean>());
       statisticsEnabled = true;
       statistics = new WorkManagerStatisticsImpl();
    }
@@ -648,11 +652,120 @@ public class WorkManagerImpl implements WorkManager
    {
       log.tracef("scheduleWork(%s, %s, %s, %s)", work, startTimeout, execContext, workListener);
 
+      scheduleWork(work, startTimeout, execContext, workListener, true);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void scheduleWorkBatch(Collection<? extends Work> works, long startTimeout,
+                                 ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      if (trace)
+         log.tracef("scheduleWorkBatch(%s, %s, %s, %s)", works, startTimeout, execContext, workListener);
+
+      List<Work> batch = works != null ? new ArrayList<Work>(works) : null;
+
+      try
+      {
+         doFirstBatchChecks(batch, startTimeout, execContext);
+      }
+      catch (WorkException we)
+      {
+         if (batch != null)
+            rejectWorkBatch(batch, 0, we, workListener);
+
+         throw we;
+      }
+
+      scheduleCheckedWorkBatch(batch, startTimeout, execContext, workListener);
+   }
+
+   /**
+    * Schedule a batch of work instances that have passed the first checks. The batch stops at
+    * the first rejection, and the remaining work instances are rejected too
+    * @param batch The work instances
+    * @param startTimeout The start timeout for each work instance
+    * @param execContext The execution context
+    * @param workListener The work listener
+    * @exception WorkException Thrown if a work instance couldn't be scheduled
+    */
+   protected void scheduleCheckedWorkBatch(List<Work> batch, long startTimeout,
+                                           ExecutionContext execContext, WorkListener workListener)
+      throws WorkException
+   {
+      WorkException exception = null;
+
+      for (int i = 0; i < batch.size(); i++)
+      {
+         try
+         {
+            scheduleWork(batch.get(i), startTimeout, execContext, workListener, false);
+         }
+         catch (WorkCompletedException wce)
+         {
+            if (exception == null)
+               exception = wce;
+         }
+         catch (WorkException we)
+         {
+            rejectWorkBatch(batch, i + 1, we, workListener);
+
+            if (exception == null)
+               exception = we;
+
+            break;
+         }
+      }
+
+      if (exception != null)
+         throw exception;
+   }
+
+   /**
+    * Reject the work instances of a batch
+    * @param batch The work instances
+    * @param from The index of the first work instance to reject
+    * @param exception The exception
+    * @param workListener The work listener
+    */
+   protected void rejectWorkBatch(List<Work> batch, int from, WorkException exception, WorkListener workListener)
+   {
+      if (trace)
+         log.tracef("Exception %s for %d work instances of a batch", exception, batch.size() - from);
+
+      for (int i = from; i < batch.size(); i++)
+      {
+         if (workListener != null)
+         {
+            WorkEvent event = new WorkEvent(this, WorkEvent.WORK_REJECTED, batch.get(i), exception);
+            workListener.workRejected(event);
+         }
+
+         deltaScheduleWorkRejected();
+      }
+   }
+
+   /**
+    * Schedule work
+    * @param work The work instance
+    * @param startTimeout The start timeout
+    * @param execContext The execution context
+    * @param workListener The work listener
+    * @param firstChecks Should the first checks be done
+    * @exception WorkException Thrown if the work instance couldn't be scheduled
+    */
+   private void scheduleWork(Work work, long startTimeout, ExecutionContext execContext, WorkListener workListener,
+                             boolean firstChecks)
+      throws WorkException
+   {
       WorkException exception = null;
       WorkWrapper wrapper = null;
       try
       {
-         doFirstChecks(work, startTimeout, execContext);
+         if (firstChecks)
+            doFirstChecks(work, startTimeout, execContext);
 
          if (workListener != null)
          {
@@ -822,6 +935,36 @@ public class WorkManagerImpl implements WorkManager
       checkAndVerifyWork(work, execContext);
    }
 
+   /**
+    * Do first checks for a batch of work instances. The work instances are verified once per class
+    * @param works The work instances
+    * @param startTimeout The start timeout
+    * @param execContext The execution context
+    * @exception WorkException Thrown if a work instance is rejected
+    */
+   public void doFirstBatchChecks(Collection<? extends Work> works, long startTimeout, ExecutionContext execContext)
+      throws WorkException
+   {
+      if (isShutdown())
+         throw new WorkRejectedException(bundle.workmanagerShutdown());
+
+      if (works == null)
+         throw new WorkRejectedException(bundle.workIsNull());
+
+      if (startTimeout < 0)
+         throw new WorkRejectedException(bundle.startTimeoutIsNegative(startTimeout));
+
+      Set<Class<?>> checked = new HashSet<Class<?>>();
+      for (Work work : works)
+      {
+         if (work == null)
+            throw new WorkRejectedException(bundle.workIsNull());
+
+         if (checked.add(work.getClass()))
+            checkAndVerifyWork(work, execContext);
+      }
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -910,11 +1053,8 @@ public class WorkManagerImpl implements WorkManager
       }
       else
       {
-         synchronized (activeWorkWrappers)
-         {
-            if (activeWorkWrappers.isEmpty())
-               shutdown();
-         }
+         if (activeWorkWrappers.isEmpty())
+            shutdown();
       }
    }
 
@@ -925,12 +1065,9 @@ public class WorkManagerImpl implements WorkManager
    {
       shutdown.set(true);
 
-      synchronized (activeWorkWrappers)
+      for (WorkWrapper ww : activeWorkWrappers)
       {
-         for (WorkWrapper ww : activeWorkWrappers)
-         {
-            ww.getWork().release();
-         }
+         ww.getWork().release();
       }
 
       if (scheduledExecutorService != null)
@@ -978,13 +1115,8 @@ public class WorkManagerImpl implements WorkManager
     */
    void addWorkWrapper(WorkWrapper ww)
    {
-      synchronized (activeWorkWrappers)
-      {
-         activeWorkWrappers.add(ww);
-
-         if (statisticsEnabled)
-            statistics.setWorkActive(activeWorkWrappers.size());
-      }
+      if (activeWorkWrappers.add(ww))
+         statistics.deltaWorkActive(1);
    }
 
    /**
@@ -993,13 +1125,8 @@ public class WorkManagerImpl implements WorkManager
     */
    void removeWorkWrapper(WorkWrapper ww)
    {
-      synchronized (activeWorkWrappers)
-      {
-         activeWorkWrappers.remove(ww);
-
-         if (statisticsEnabled)
-            statistics.setWorkActive(activeWorkWrappers.size());
-      }
+      if (activeWorkWrappers.remove(ww))
+         statistics.deltaWorkActive(-1);
    }
 
    /**
@@ -1430,21 +1557,14 @@ public class WorkManagerImpl implements WorkManager
       sb.append(" resourceAdapter=").append(resourceAdapter);
       sb.append(" shutdown=").append(shutdown);
       sb.append(" activeWorkWrappers=[");
-      synchronized (activeWorkWrappers)
+      Iterator<WorkWrapper> it = activeWorkWrappers.iterator();
+      while (it.hasNext())
       {
-         if (!activeWorkWrappers.isEmpty())
-         {
-            Iterator<WorkWrapper> it = activeWorkWrappers.iterator();
+         WorkWrapper ww = it.next();
+         sb.append("WorkWrapper@").append(Integer.toHexString(System.identityHashCode(ww)));
 
-            while (it.hasNext())
-            {
-               WorkWrapper ww = it.next();
-               sb.append("WorkWrapper@").append(Integer.toHexString(System.identityHashCode(ww)));
-
-               if (it.hasNext())
-                  sb.append(", ");
-            }
-         }
+         if (it.hasNext())
+            sb.append(", ");
       }
       sb.append("]");
 
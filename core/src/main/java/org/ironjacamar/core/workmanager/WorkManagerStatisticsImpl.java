@@ -23,54 +23,56 @@ package org.ironjacamar.core.workmanager;
 
 import org.ironjacamar.core.api.workmanager.WorkManagerStatistics;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The JBoss work manager statistics implementation
+ *
+ * The counters are striped, so concurrent updates from the work threads don't contend
  */
 public class WorkManagerStatisticsImpl implements WorkManagerStatistics
 {
    /** Active */
-   private AtomicInteger active;
+   private LongAdder active;
 
    /** Successful */
-   private AtomicInteger successful;
+   private LongAdder successful;
 
    /** Failed */
-   private AtomicInteger failed;
+   private LongAdder failed;
 
    /** DoWork: Accepted */
-   private AtomicInteger doWorkAccepted;
+   private LongAdder doWorkAccepted;
 
    /** DoWork: Rejected */
-   private AtomicInteger doWorkRejected;
+   private LongAdder doWorkRejected;
 
    /** ScheduleWork: Accepted */
-   private AtomicInteger scheduleWorkAccepted;
+   private LongAdder scheduleWorkAccepted;
 
    /** ScheduleWork: Rejected */
-   private AtomicInteger scheduleWorkRejected;
+   private LongAdder scheduleWorkRejected;
 
    /** StartWork: Accepted */
-   private AtomicInteger startWorkAccepted;
+   private LongAdder startWorkAccepted;
 
    /** StartWork: Rejected */
-   private AtomicInteger startWorkRejected;
+   private LongAdder startWorkRejected;
 
    /**
     * Constructor
     */
    public WorkManagerStatisticsImpl()
    {
-      active = new AtomicInteger(0);
-      successful = new AtomicInteger(0);
-      failed = new AtomicInteger(0);
-      doWorkAccepted = new AtomicInteger(0);
-      doWorkRejected = new AtomicInteger(0);
-      scheduleWorkAccepted = new AtomicInteger(0);
-      scheduleWorkRejected = new AtomicInteger(0);
-      startWorkAccepted = new AtomicInteger(0);
-      startWorkRejected = new AtomicInteger(0);
+      active = new LongAdder();
+      successful = new LongAdder();
+      failed = new LongAdder();
+      doWorkAccepted = new LongAdder();
+      doWorkRejected = new LongAdder();
+      scheduleWorkAccepted = new LongAdder();
+      scheduleWorkRejected = new LongAdder();
+      startWorkAccepted = new LongAdder();
+      startWorkRejected = new LongAdder();
    }
 
    /**
@@ -78,16 +80,16 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getWorkActive()
    {
-      return active.get();
+      return (int)active.sum();
    }
 
    /**
-    * Set the number of active work instances
+    * Delta the number of active work instances
     * @param v The value
     */
-   void setWorkActive(int v)
+   void deltaWorkActive(int v)
    {
-      active.set(v);
+      active.add(v);
    }
 
    /**
@@ -95,7 +97,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getWorkSuccessful()
    {
-      return successful.get();
+      return (int)successful.sum();
    }
 
    /**
@@ -103,7 +105,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaWorkSuccessful()
    {
-      successful.incrementAndGet();
+      successful.increment();
    }
 
    /**
@@ -111,7 +113,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getWorkFailed()
    {
-      return failed.get();
+      return (int)failed.sum();
    }
 
    /**
@@ -119,7 +121,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaWorkFailed()
    {
-      failed.incrementAndGet();
+      failed.increment();
    }
 
    /**
@@ -127,7 +129,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getDoWorkAccepted()
    {
-      return doWorkAccepted.get();
+      return (int)doWorkAccepted.sum();
    }
 
    /**
@@ -135,7 +137,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaDoWorkAccepted()
    {
-      doWorkAccepted.incrementAndGet();
+      doWorkAccepted.increment();
    }
 
    /**
@@ -143,7 +145,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getDoWorkRejected()
    {
-      return doWorkRejected.get();
+      return (int)doWorkRejected.sum();
    }
 
    /**
@@ -151,7 +153,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaDoWorkRejected()
    {
-      doWorkRejected.incrementAndGet();
+      doWorkRejected.increment();
    }
 
    /**
@@ -159,7 +161,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getScheduleWorkAccepted()
    {
-      return scheduleWorkAccepted.get();
+      return (int)scheduleWorkAccepted.sum();
    }
 
    /**
@@ -167,7 +169,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaScheduleWorkAccepted()
    {
-      scheduleWorkAccepted.incrementAndGet();
+      scheduleWorkAccepted.increment();
    }
 
    /**
@@ -175,7 +177,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getScheduleWorkRejected()
    {
-      return scheduleWorkRejected.get();
+      return (int)scheduleWorkRejected.sum();
    }
 
    /**
@@ -183,7 +185,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaScheduleWorkRejected()
    {
-      scheduleWorkRejected.incrementAndGet();
+      scheduleWorkRejected.increment();
    }
 
    /**
@@ -191,7 +193,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getStartWorkAccepted()
    {
-      return startWorkAccepted.get();
+      return (int)startWorkAccepted.sum();
    }
 
    /**
@@ -199,7 +201,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaStartWorkAccepted()
    {
-      startWorkAccepted.incrementAndGet();
+      startWorkAccepted.increment();
    }
 
    /**
@@ -207,7 +209,7 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    public int getStartWorkRejected()
    {
-      return startWorkRejected.get();
+      return (int)startWorkRejected.sum();
    }
 
    /**
@@ -215,23 +217,23 @@ public class WorkManagerStatisticsImpl implements WorkManagerStatistics
     */
    void deltaStartWorkRejected()
    {
-      startWorkRejected.incrementAndGet();
+      startWorkRejected.increment();
    }
 
    /**
     * {@inheritDoc}
     */
-   public synchronized void clear()
+   public void clear()
    {
-      active.set(0);
-      successful.set(0);
-      failed.set(0);
-      doWorkAccepted.set(0);
-      doWorkRejected.set(0);
-      scheduleWorkAccepted.set(0);
-      scheduleWorkRejected.set(0);
-      startWorkAccepted.set(0);
-      startWorkRejected.set(0);
+      // Active is a gauge maintained by the work manager, so it is kept
+      successful.reset();
+      failed.reset();
+      doWorkAccepted.reset();
+      doWorkRejected.reset();
+      scheduleWorkAccepted.reset();
+      scheduleWorkRejected.reset();
+      startWorkAccepted.reset();
+      startWorkRejected.reset();
    }
 
    /**
@@ -168,6 +168,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaDoWorkAccepted(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -175,6 +182,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaDoWorkRejected(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -182,6 +196,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaStartWorkAccepted(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -189,6 +210,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaStartWorkRejected(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -196,6 +224,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaScheduleWorkAccepted(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -203,6 +238,13 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaScheduleWorkRejected(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -210,10 +252,24 @@ public abstract class AbstractNotificationListener implements NotificationListen
    {
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaWorkSuccessful(long delta)
+   {
+   }
+
    /**
     * {@inheritDoc}
     */
    public void deltaWorkFailed()
    {
    }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void deltaWorkFailed(long delta)
+   {
+   }
 }
@@ -24,8 +24,31 @@ package org.ironjacamar.core.workmanager.selector;
 import org.ironjacamar.core.CoreBundle;
 import org.ironjacamar.core.CoreLogger;
 import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.spi.workmanager.transport.Transport;
+import org.ironjacamar.core.workmanager.WorkManagerUtil;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.resource.spi.work.DistributableWork;
 
@@ -35,6 +58,17 @@ import org.jboss.logging.Messages;
 /**
  * The ping time selector
  *
+ * The round trip time of each peer is probed in the background through the transport, and
+ * kept as an exponentially weighted moving average together with the free thread counts of
+ * the peer. The work manager with the lowest cost, the round trip time divided by the free
+ * thread count, is selected, so nearby and idle work managers are preferred. A peer which
+ * hasn't answered a probe within the stale timeout is only selected when no other peer
+ * can take the work.
+ *
+ * The probes run on threads of the selector, and a ping which isn't answered within the ping
+ * timeout counts as unanswered. The threads are stopped by {@link #shutdown()}, or when the last
+ * work manager using the selector unregisters.
+ *
  * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
  */
 public class PingTime extends AbstractSelector
@@ -48,11 +82,310 @@ public class PingTime extends AbstractSelector
    /** The bundle */
    private static CoreBundle bundle = Messages.getBundle(CoreBundle.class);
 
+   /** The round trip time in milliseconds added to each sample, so the free count matters on a fast network */
+   private static final double RTT_OFFSET = 1.0;
+
+   /** The maximum number of pings running at the same time, including pings which timed out */
+   private static final int MAX_PINGS = 4;
+
+   /** The name of the probe threads */
+   private static final String THREAD_NAME = "PingTime";
+
+   /** The transport */
+   private volatile Transport transport;
+
+   /** The probe interval in milliseconds */
+   private long probeInterval;
+
+   /** The weight of a new sample in the averages */
+   private double weight;
+
+   /** The stale timeout in milliseconds */
+   private long staleTimeout;
+
+   /** The ping timeout in milliseconds */
+   private long pingTimeout;
+
+   /** The peers */
+   private ConcurrentMap<Address, Peer> peers;
+
+   /** Is a probe running */
+   private AtomicBoolean probing;
+
+   /** The scheduler of the probes */
+   private ScheduledExecutorService scheduler;
+
+   /** The executor of the pings */
+   private ExecutorService pinger;
+
+   /** The prober */
+   private ScheduledFuture<?> prober;
+
+   /** The work managers using the selector */
+   private Set<Object> users;
+
    /**
     * Constructor
     */
    public PingTime()
    {
+      this.transport = null;
+      this.probeInterval = 5000L;
+      this.weight = 0.25;
+      this.staleTimeout = 15000L;
+      this.pingTimeout = 2000L;
+      this.peers = new ConcurrentHashMap<Address, Peer>();
+      this.probing = new AtomicBoolean(false);
+      this.scheduler = null;
+      this.pinger = null;
+      this.prober = null;
+      this.users = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+   }
+
+   /**
+    * Get the transport
+    * @return The value
+    */
+   public Transport getTransport()
+   {
+      return transport;
+   }
+
+   /**
+    * Set the transport used for the probes
+    * @param v The value
+    */
+   public synchronized void setTransport(Transport v)
+   {
+      transport = v;
+      schedule();
+   }
+
+   /**
+    * Get the probe interval
+    * @return The value in milliseconds
+    */
+   public long getProbeInterval()
+   {
+      return probeInterval;
+   }
+
+   /**
+    * Set the probe interval
+    * @param v The value in milliseconds; 0 or less only probes when a peer joins
+    */
+   public synchronized void setProbeInterval(long v)
+   {
+      probeInterval = v;
+      schedule();
+   }
+
+   /**
+    * Get the weight of a new sample in the averages
+    * @return The value
+    */
+   public double getWeight()
+   {
+      return weight;
+   }
+
+   /**
+    * Set the weight of a new sample in the averages
+    * @param v The value; between 0 and 1, where 1 only uses the latest sample
+    */
+   public void setWeight(double v)
+   {
+      weight = v;
+   }
+
+   /**
+    * Get the stale timeout
+    * @return The value in milliseconds
+    */
+   public long getStaleTimeout()
+   {
+      return staleTimeout;
+   }
+
+   /**
+    * Set the time after the last answered probe at which a peer is demoted
+    * @param v The value in milliseconds
+    */
+   public void setStaleTimeout(long v)
+   {
+      staleTimeout = v;
+   }
+
+   /**
+    * Get the ping timeout
+    * @return The value in milliseconds
+    */
+   public long getPingTimeout()
+   {
+      return pingTimeout;
+   }
+
+   /**
+    * Set the time a ping is waited for before it counts as unanswered
+    * @param v The value in milliseconds
+    */
+   public void setPingTimeout(long v)
+   {
+      pingTimeout = v;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void join(Address address)
+   {
+      super.join(address);
+
+      getPeer(address);
+
+      synchronized (this)
+      {
+         if (transport != null && scheduler != null)
+         {
+            try
+            {
+               scheduler.execute(new Runnable()
+               {
+                  public void run()
+                  {
+                     probe();
+                  }
+               });
+            }
+            catch (RejectedExecutionException ree)
+            {
+               // Shutting down
+            }
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void leave(Address address)
+   {
+      super.leave(address);
+
+      peers.remove(address);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void updateShortRunningFree(Address address, long free)
+   {
+      super.updateShortRunningFree(address, free);
+
+      Peer peer = getPeer(address);
+      peer.shortRunningFree = average(peer.shortRunningFree, free);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void updateLongRunningFree(Address address, long free)
+   {
+      super.updateLongRunningFree(address, free);
+
+      Peer peer = getPeer(address);
+      peer.longRunningFree = average(peer.longRunningFree, free);
+   }
+
+   /**
+    * Register a work manager using the selector
+    * @param user The work manager
+    */
+   public synchronized void register(Object user)
+   {
+      users.add(user);
+   }
+
+   /**
+    * Unregister a work manager using the selector; the probes are stopped when the last
+    * work manager unregisters
+    * @param user The work manager
+    */
+   public synchronized void unregister(Object user)
+   {
+      if (users.remove(user) && users.isEmpty())
+         shutdown();
+   }
+
+   /**
+    * Stop the probes
+    */
+   public synchronized void shutdown()
+   {
+      cancel();
+
+      if (scheduler != null)
+      {
+         scheduler.shutdownNow();
+         scheduler = null;
+      }
+
+      if (pinger != null)
+      {
+         pinger.shutdownNow();
+         pinger = null;
+      }
+   }
+
+   /**
+    * Probe the round trip time of the peers
+    */
+   public void probe()
+   {
+      Transport tr = transport;
+
+      if (tr == null || !probing.compareAndSet(false, true))
+         return;
+
+      try
+      {
+         List<Address> addresses = new ArrayList<Address>(peers.keySet());
+
+         for (Address address : addresses)
+         {
+            Peer peer = peers.get(address);
+            if (peer != null)
+            {
+               long rtt = ping(tr, address);
+
+               if (rtt < 0L)
+               {
+                  peer.failures++;
+               }
+               else
+               {
+                  peer.rtt = average(peer.rtt, rtt / 1000000.0);
+                  peer.failures = 0;
+                  peer.lastSeen = System.currentTimeMillis();
+               }
+
+               if (trace)
+                  log.tracef("Probe: %s (%s)", address, peer);
+            }
+         }
+      }
+      catch (Throwable t)
+      {
+         log.debugf("Probe: %s", t.getMessage(), t);
+      }
+      finally
+      {
+         probing.set(false);
+      }
    }
 
    /**
@@ -73,8 +406,11 @@ public class PingTime extends AbstractSelector
       */
 
       Map<Address, Long> selectionMap = getSelectionMap(own.getWorkManagerId(), work);
+      boolean isLongRunning = WorkManagerUtil.isLongRunning(work);
+      long now = System.currentTimeMillis();
       Address result = null;
-      long pingTime = Long.MAX_VALUE;
+      double cost = Double.MAX_VALUE;
+      boolean healthy = false;
 
       if (selectionMap != null)
       {
@@ -86,11 +422,15 @@ public class PingTime extends AbstractSelector
                Long free = entry.getValue();
                if (free != null && free.longValue() > 0)
                {
-                  long l = Long.MAX_VALUE; // TODO dwm.getTransport().ping(id);
-                  if (l < pingTime)
+                  Peer peer = getPeer(id);
+                  boolean h = peer.isHealthy(now, staleTimeout);
+                  double c = peer.getCost(isLongRunning, free.longValue());
+
+                  if ((h && !healthy) || (h == healthy && c < cost))
                   {
                      result = id;
-                     pingTime = l;
+                     cost = c;
+                     healthy = h;
                   }
                }
             }
@@ -98,8 +438,214 @@ public class PingTime extends AbstractSelector
       }
 
       if (trace)
-         log.tracef("WorkManager: %s (%s)", result, pingTime);
+         log.tracef("WorkManager: %s (%s, %s)", result, cost, healthy);
 
       return result;
    }
+
+   /**
+    * Ping a peer, waiting at most the ping timeout for the answer
+    * @param tr The transport
+    * @param address The address
+    * @return The round trip time in nanoseconds, or -1 if the ping wasn't answered
+    * @exception InterruptedException If the thread is interrupted
+    */
+   private long ping(final Transport tr, final Address address) throws InterruptedException
+   {
+      ExecutorService executor = getPinger();
+      if (executor == null)
+         return -1L;
+
+      Future<Long> future = null;
+      try
+      {
+         future = executor.submit(new Callable<Long>()
+         {
+            public Long call()
+            {
+               long start = System.nanoTime();
+               long result = tr.ping(address);
+               long end = System.nanoTime();
+
+               return Long.valueOf(result == Long.MAX_VALUE ? -1L : end - start);
+            }
+         });
+
+         return future.get(pingTimeout, TimeUnit.MILLISECONDS).longValue();
+      }
+      catch (RejectedExecutionException ree)
+      {
+         // Too many pings are still unanswered
+         return -1L;
+      }
+      catch (TimeoutException te)
+      {
+         future.cancel(true);
+         return -1L;
+      }
+      catch (ExecutionException ee)
+      {
+         if (trace)
+            log.tracef("Ping: %s (%s)", address, ee.getCause());
+
+         return -1L;
+      }
+   }
+
+   /**
+    * Get the executor of the pings
+    * @return The value, or null if the probes are stopped
+    */
+   private synchronized ExecutorService getPinger()
+   {
+      if (pinger == null && scheduler != null)
+      {
+         pinger = new ThreadPoolExecutor(0, MAX_PINGS, 60L, TimeUnit.SECONDS,
+                                         new SynchronousQueue<Runnable>(), new ProbeThreadFactory());
+      }
+
+      return pinger;
+   }
+
+   /**
+    * Get a peer, which is created if it isn't known
+    * @param address The address
+    * @return The peer
+    */
+   private Peer getPeer(Address address)
+   {
+      Peer peer = peers.get(address);
+      if (peer == null)
+      {
+         peer = new Peer();
+         Peer existing = peers.putIfAbsent(address, peer);
+         if (existing != null)
+            peer = existing;
+      }
+      return peer;
+   }
+
+   /**
+    * Add a sample to an average
+    * @param current The current average, or a negative value if there is none
+    * @param sample The sample
+    * @return The new average
+    */
+   private double average(double current, double sample)
+   {
+      if (current < 0.0)
+         return sample;
+
+      return current + weight * (sample - current);
+   }
+
+   /**
+    * Schedule the probes at the probe interval
+    */
+   private void schedule()
+   {
+      cancel();
+
+      if (transport == null)
+         return;
+
+      if (scheduler == null)
+         scheduler = new ScheduledThreadPoolExecutor(1, new ProbeThreadFactory());
+
+      if (probeInterval > 0)
+      {
+         prober = scheduler.scheduleWithFixedDelay(new Runnable()
+         {
+            public void run()
+            {
+               probe();
+            }
+         }, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   /**
+    * Cancel the scheduled probes
+    */
+   private void cancel()
+   {
+      if (prober != null)
+      {
+         prober.cancel(false);
+         prober = null;
+      }
+   }
+
+   /**
+    * Thread factory
+    */
+   private static class ProbeThreadFactory implements ThreadFactory
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public Thread newThread(Runnable r)
+      {
+         Thread thread = new Thread(r, THREAD_NAME);
+         thread.setDaemon(true);
+
+         return thread;
+      }
+   }
+
+   /**
+    * The averages of a peer
+    */
+   static class Peer
+   {
+      /** The average round trip time in milliseconds; negative if unknown */
+      volatile double rtt = -1.0;
+
+      /** The average short running free count; negative if unknown */
+      volatile double shortRunningFree = -1.0;
+
+      /** The average long running free count; negative if unknown */
+      volatile double longRunningFree = -1.0;
+
+      /** The time of the last answered probe */
+      volatile long lastSeen = 0L;
+
+      /** The number of unanswered probes in a row */
+      volatile int failures = 0;
+
+      /**
+       * Has the peer answered a probe within the stale timeout
+       * @param now The current time
+       * @param staleTimeout The stale timeout
+       * @return True if healthy; otherwise false
+       */
+      boolean isHealthy(long now, long staleTimeout)
+      {
+         return rtt >= 0.0 && failures == 0 && now - lastSeen <= staleTimeout;
+      }
+
+      /**
+       * Get the cost of sending work to the peer
+       * @param isLongRunning Is the work long running
+       * @param free The current free count
+       * @return The cost
+       */
+      double getCost(boolean isLongRunning, long free)
+      {
+         double average = isLongRunning && longRunningFree >= 0.0 ? longRunningFree : shortRunningFree;
+         double f = average >= 0.0 ? Math.min(average, free) : free;
+
+         return (Math.max(rtt, 0.0) + RTT_OFFSET) / Math.max(f, 1.0);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public String toString()
+      {
+         return "Peer[rtt=" + rtt + ", shortRunningFree=" + shortRunningFree + ", longRunningFree=" +
+            longRunningFree + ", lastSeen=" + lastSeen + ", failures=" + failures + "]";
+      }
+   }
 }
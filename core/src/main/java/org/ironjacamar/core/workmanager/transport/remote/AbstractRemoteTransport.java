@@ -26,11 +26,14 @@ import org.ironjacamar.core.api.workmanager.DistributedWorkManager;
 import org.ironjacamar.core.api.workmanager.DistributedWorkManagerStatisticsValues;
 import org.ironjacamar.core.api.workmanager.StatisticsExecutor;
 import org.ironjacamar.core.api.workmanager.WorkManager;
+import org.ironjacamar.core.connectionmanager.pool.MaintenanceScheduler;
 import org.ironjacamar.core.spi.workmanager.Address;
 import org.ironjacamar.core.spi.workmanager.notification.NotificationListener;
 import org.ironjacamar.core.spi.workmanager.transport.Transport;
 import org.ironjacamar.core.workmanager.ClassBundle;
 import org.ironjacamar.core.workmanager.ClassBundleFactory;
+import org.ironjacamar.core.workmanager.ClassDefinition;
+import org.ironjacamar.core.workmanager.ClassDefinitionCache;
 import org.ironjacamar.core.workmanager.WorkManagerCoordinator;
 import org.ironjacamar.core.workmanager.WorkManagerEvent;
 import org.ironjacamar.core.workmanager.WorkManagerEventQueue;
@@ -45,7 +48,15 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.resource.spi.work.DistributableWork;
 import javax.resource.spi.work.WorkException;
@@ -79,6 +90,57 @@ public abstract class AbstractRemoteTransport<T> implements Transport
    /** the WorkManagerCoordinator */
    protected WorkManagerCoordinator workManagerCoordinator;
 
+   /** The interval in milliseconds at which the statistics and free counts are published */
+   private long statisticsInterval;
+
+   /** The number of changes which publishes the statistics before the interval has elapsed */
+   private int statisticsThreshold;
+
+   /** The epoch of the published totals */
+   private long epoch;
+
+   /** The sequence of the published updates */
+   private AtomicLong sequence;
+
+   /** The cumulative delta totals for each remote work manager */
+   private ConcurrentMap<Address, AtomicLongArray> deltaTotals;
+
+   /** The latest free counts of each local work manager */
+   private ConcurrentMap<Address, AtomicLongArray> freeCounts;
+
+   /** The number of changes since the statistics were published */
+   private AtomicInteger pendingChanges;
+
+   /** Is the statistics being published */
+   private AtomicBoolean publishing;
+
+   /** Has a publish been requested by the threshold */
+   private AtomicBoolean publishRequested;
+
+   /** Did the last publish fail; the threshold doesn't request a publish until the next interval */
+   private volatile boolean publishFailed;
+
+   /** The statistics publisher */
+   private MaintenanceScheduler.Task publisher;
+
+   /** The epoch of the totals received from each transport */
+   private Map<String, Long> receivedEpochs;
+
+   /** The sequence of the last update applied from each transport */
+   private Map<String, Long> receivedSequences;
+
+   /** The totals received from each transport */
+   private Map<String, Map<Address, long[]>> receivedTotals;
+
+   /** The lock for the received totals */
+   private ReentrantLock receivedLock;
+
+   /** The hashes of the class definitions known by each peer */
+   private ConcurrentMap<T, Set<String>> knownClassDefinitions;
+
+   /** The class definitions received from the peers */
+   private ClassDefinitionCache classDefinitionCache;
+
    /**
     * Constructor
     */
@@ -86,6 +148,23 @@ public abstract class AbstractRemoteTransport<T> implements Transport
    {
       this.executorService = null;
       this.nodes = Collections.synchronizedMap(new HashMap<Address, T>());
+      this.statisticsInterval = 0L;
+      this.statisticsThreshold = 1000;
+      this.epoch = System.currentTimeMillis();
+      this.sequence = new AtomicLong(0);
+      this.deltaTotals = new ConcurrentHashMap<Address, AtomicLongArray>();
+      this.freeCounts = new ConcurrentHashMap<Address, AtomicLongArray>();
+      this.pendingChanges = new AtomicInteger(0);
+      this.publishing = new AtomicBoolean(false);
+      this.publishRequested = new AtomicBoolean(false);
+      this.publishFailed = false;
+      this.publisher = null;
+      this.receivedEpochs = new HashMap<String, Long>();
+      this.receivedSequences = new HashMap<String, Long>();
+      this.receivedTotals = new HashMap<String, Map<Address, long[]>>();
+      this.receivedLock = new ReentrantLock();
+      this.knownClassDefinitions = new ConcurrentHashMap<T, Set<String>>();
+      this.classDefinitionCache = new ClassDefinitionCache();
    }
 
    /**
@@ -117,6 +196,44 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       this.workManagerCoordinator = wcc;
    }
 
+   /**
+    * Get the interval at which the statistics and free counts are published
+    * @return The value in milliseconds
+    */
+   public long getStatisticsInterval()
+   {
+      return statisticsInterval;
+   }
+
+   /**
+    * Set the interval at which the statistics and free counts are published. The changes
+    * are gathered locally and sent as one message to each peer; 0 or less sends each
+    * change right away
+    * @param v The value in milliseconds
+    */
+   public void setStatisticsInterval(long v)
+   {
+      this.statisticsInterval = v;
+   }
+
+   /**
+    * Get the number of changes which publishes the statistics before the interval has elapsed
+    * @return The value
+    */
+   public int getStatisticsThreshold()
+   {
+      return statisticsThreshold;
+   }
+
+   /**
+    * Set the number of changes which publishes the statistics before the interval has elapsed
+    * @param v The value; 0 or less only publishes at the interval
+    */
+   public void setStatisticsThreshold(int v)
+   {
+      this.statisticsThreshold = v;
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -205,6 +322,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && getId().equals(address.getTransportId()))
       {
+         if (coalesceFreeCount(address, StatisticsUpdate.SHORT_RUNNING, freeCount))
+            return;
+
          for (Entry<Address, T> entry : nodes.entrySet())
          {
             Address a = entry.getKey();
@@ -236,6 +356,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && getId().equals(address.getTransportId()))
       {
+         if (coalesceFreeCount(address, StatisticsUpdate.LONG_RUNNING, freeCount))
+            return;
+
          for (Entry<Address, T> entry : nodes.entrySet())
          {
             Address a = entry.getKey();
@@ -330,6 +453,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.DOWORK_ACCEPTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -356,6 +482,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.DOWORK_REJECTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -382,6 +511,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.STARTWORK_ACCEPTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -408,6 +540,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.STARTWORK_REJECTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -434,6 +569,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.SCHEDULEWORK_ACCEPTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -460,6 +598,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.SCHEDULEWORK_REJECTED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -486,6 +627,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.WORK_SUCCESSFUL))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -512,6 +656,9 @@ public abstract class AbstractRemoteTransport<T> implements Transport
 
       if (address.getTransportId() != null && !getId().equals(address.getTransportId()))
       {
+         if (coalesceDelta(address, StatisticsUpdate.WORK_FAILED))
+            return;
+
          try
          {
             T addr = nodes.get(address);
@@ -536,10 +683,8 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       if (trace)
          log.tracef("DO_WORK(%s, %s)", address, work);
 
-      ClassBundle cb = ClassBundleFactory.createClassBundle(work);
-
       T addr = nodes.get(address);
-      sendMessage(addr, Request.DO_WORK, address, cb, work);
+      sendWork(addr, Request.DO_WORK, address, work);
    }
 
    /**
@@ -551,10 +696,8 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       if (trace)
          log.tracef("SCHEDULE_WORK(%s, %s)", address, work);
 
-      ClassBundle cb = ClassBundleFactory.createClassBundle(work);
-
       T addr = nodes.get(address);
-      sendMessage(addr, Request.SCHEDULE_WORK, address, cb, work);
+      sendWork(addr, Request.SCHEDULE_WORK, address, work);
    }
 
    /**
@@ -566,10 +709,212 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       if (trace)
          log.tracef("START_WORK(%s, %s)", address, work);
 
+      T addr = nodes.get(address);
+      return (long)sendWork(addr, Request.START_WORK, address, work);
+   }
+
+   /**
+    * Send a work instance with its class bundle. The class definitions which the peer has
+    * received before are sent as references; if the peer doesn't know a referenced definition
+    * anymore the work instance is sent again with the full class bundle
+    * @param addr The physical address
+    * @param request The request
+    * @param address The logical address
+    * @param work The work instance
+    * @return The result
+    * @exception WorkException In case of an error
+    */
+   private Serializable sendWork(T addr, Request request, Address address, DistributableWork work)
+      throws WorkException
+   {
       ClassBundle cb = ClassBundleFactory.createClassBundle(work);
+      Set<String> known = getKnownClassDefinitions(addr);
 
-      T addr = nodes.get(address);
-      return (long)sendMessage(addr, Request.START_WORK, address, cb, work);
+      Serializable result = null;
+      try
+      {
+         result = sendMessage(addr, request, address, ClassBundleFactory.createClassBundle(cb, known), work);
+      }
+      catch (WorkException we)
+      {
+         if (known.isEmpty() || !ClassDefinitionCache.CLASS_DEFINITION_MISSING.equals(we.getErrorCode()))
+            throw we;
+
+         if (trace)
+            log.tracef("Sending class bundle again to %s: %s", addr, we.getMessage());
+
+         known.clear();
+         result = sendMessage(addr, request, address, cb, work);
+      }
+
+      if (cb != null && cb.getDefinitions() != null)
+      {
+         for (ClassDefinition cd : cb.getDefinitions())
+         {
+            if (cd != null)
+               known.add(cd.getHash());
+         }
+
+         // The peer holds at most as many definitions as the cache, so start over
+         if (known.size() > classDefinitionCache.getMaxSize())
+            known.clear();
+      }
+
+      return result;
+   }
+
+   /**
+    * Get the hashes of the class definitions known by a peer
+    * @param addr The physical address
+    * @return The hashes
+    */
+   private Set<String> getKnownClassDefinitions(T addr)
+   {
+      if (addr == null)
+         return new HashSet<String>();
+
+      Set<String> known = knownClassDefinitions.get(addr);
+      if (known == null)
+      {
+         known = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+         Set<String> existing = knownClassDefinitions.putIfAbsent(addr, known);
+         if (existing != null)
+            known = existing;
+      }
+
+      return known;
+   }
+
+   /**
+    * Start publishing the statistics and free counts at the statistics interval. The publishes
+    * run on the executor of the transport, as a slow peer would otherwise hold up the pool
+    * maintenance sharing the maintenance scheduler
+    */
+   protected void startStatisticsPublisher()
+   {
+      if (statisticsInterval > 0 && publisher == null)
+      {
+         MaintenanceScheduler.getInstance().register(this);
+         publisher = MaintenanceScheduler.getInstance().schedule(this, new Runnable()
+         {
+            public void run()
+            {
+               publishStatistics();
+            }
+         }, statisticsInterval, executorService);
+      }
+   }
+
+   /**
+    * Stop publishing the statistics and free counts; the pending changes are published first
+    */
+   protected void stopStatisticsPublisher()
+   {
+      if (publisher != null)
+      {
+         publisher.cancel();
+         publisher = null;
+
+         publishStatistics();
+
+         MaintenanceScheduler.getInstance().unregister(this);
+      }
+   }
+
+   /**
+    * Publish the pending statistics and free counts as one message to each peer
+    */
+   public void publishStatistics()
+   {
+      if (!publishing.compareAndSet(false, true))
+         return;
+
+      boolean failed = false;
+      try
+      {
+         int changes = pendingChanges.getAndSet(0);
+         if (changes == 0)
+            return;
+
+         long seq = sequence.incrementAndGet();
+
+         Map<Address, T> copy = null;
+         synchronized (nodes)
+         {
+            copy = new HashMap<Address, T>(nodes);
+         }
+
+         Map<T, StatisticsUpdate> updates = new HashMap<T, StatisticsUpdate>();
+         for (Entry<Address, T> entry : copy.entrySet())
+         {
+            Address a = entry.getKey();
+            T addr = entry.getValue();
+
+            if (addr != null && a.getTransportId() != null && !getId().equals(a.getTransportId()) &&
+                !updates.containsKey(addr))
+            {
+               StatisticsUpdate update = new StatisticsUpdate(getId(), epoch, seq);
+               for (Entry<Address, AtomicLongArray> free : freeCounts.entrySet())
+               {
+                  update.addFreeCounts(free.getKey(),
+                                       free.getValue().get(StatisticsUpdate.SHORT_RUNNING),
+                                       free.getValue().get(StatisticsUpdate.LONG_RUNNING));
+               }
+               updates.put(addr, update);
+            }
+         }
+
+         for (Entry<Address, AtomicLongArray> entry : deltaTotals.entrySet())
+         {
+            StatisticsUpdate update = updates.get(copy.get(entry.getKey()));
+            if (update != null)
+            {
+               long[] values = new long[StatisticsUpdate.COUNTERS];
+               for (int i = 0; i < values.length; i++)
+               {
+                  values[i] = entry.getValue().get(i);
+               }
+               update.addTotals(entry.getKey(), values);
+            }
+         }
+
+         if (trace)
+            log.tracef("PUBLISH_STATISTICS(%d, %s)", changes, updates.values());
+
+         for (Entry<T, StatisticsUpdate> entry : updates.entrySet())
+         {
+            if (!entry.getValue().isEmpty())
+            {
+               try
+               {
+                  sendMessage(entry.getKey(), Request.UPDATE_STATISTICS, entry.getValue());
+               }
+               catch (WorkException e1)
+               {
+                  failed = true;
+
+                  if (log.isDebugEnabled())
+                  {
+                     log.debug("Error", e1);
+                  }
+               }
+            }
+         }
+
+         // The totals are cumulative, so they are sent again at the next interval
+         if (failed)
+            pendingChanges.addAndGet(changes);
+
+         publishFailed = failed;
+      }
+      finally
+      {
+         publishing.set(false);
+      }
+
+      // Changes gathered while publishing may have reached the threshold
+      if (!failed && statisticsThreshold > 0 && pendingChanges.get() >= statisticsThreshold)
+         requestPublish();
    }
 
    /**
@@ -592,6 +937,25 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       this.executorService = executorService;
    }
 
+   /**
+    * Get the class definitions received from the peers
+    * @return The value
+    */
+   public ClassDefinitionCache getClassDefinitionCache()
+   {
+      return classDefinitionCache;
+   }
+
+   /**
+    * Clear the class definitions received from the peers, and what is known about the
+    * class definitions of the peers
+    */
+   protected void clearClassDefinitions()
+   {
+      classDefinitionCache.clear();
+      knownClassDefinitions.clear();
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -626,6 +990,7 @@ public abstract class AbstractRemoteTransport<T> implements Transport
    public void unregister(Address address)
    {
       nodes.remove(address);
+      freeCounts.remove(address);
 
       if (address.getTransportId() == null || address.getTransportId().equals(getId()))
       {
@@ -723,12 +1088,15 @@ public abstract class AbstractRemoteTransport<T> implements Transport
          }
       }
 
+      knownClassDefinitions.remove(physicalAddress);
+
       if (!remove.isEmpty())
       {
 
          for (Address logicalAddress : remove)
          {
             nodes.remove(logicalAddress);
+            deltaTotals.remove(logicalAddress);
 
             DistributedWorkManager dwm = workManagerCoordinator.resolveDistributedWorkManager(logicalAddress);
 
@@ -787,6 +1155,7 @@ public abstract class AbstractRemoteTransport<T> implements Transport
          log.tracef("LOCAL_WORKMANAGER_REMOVE(%s)", address);
 
       nodes.remove(address);
+      deltaTotals.remove(address);
 
       DistributedWorkManager dwm = workManagerCoordinator.resolveDistributedWorkManager(address);
 
@@ -1189,6 +1558,227 @@ public abstract class AbstractRemoteTransport<T> implements Transport
       }
    }
 
+   /**
+    * Local update statistics
+    * @param update the statistics update
+    */
+   public void localUpdateStatistics(StatisticsUpdate update)
+   {
+      if (trace)
+         log.tracef("LOCAL_UPDATE_STATISTICS(%s)", update);
+
+      Map<Address, long[]> deltas = new HashMap<Address, long[]>();
+
+      receivedLock.lock();
+      try
+      {
+         Long e = receivedEpochs.get(update.getTransportId());
+         if (e != null && e.longValue() > update.getEpoch())
+            return;
+
+         Map<Address, long[]> seen = receivedTotals.get(update.getTransportId());
+         if (seen == null || e == null || e.longValue() != update.getEpoch())
+         {
+            seen = new HashMap<Address, long[]>();
+            receivedEpochs.put(update.getTransportId(), Long.valueOf(update.getEpoch()));
+            receivedSequences.remove(update.getTransportId());
+            receivedTotals.put(update.getTransportId(), seen);
+         }
+
+         for (Entry<Address, long[]> entry : update.getTotals().entrySet())
+         {
+            long[] last = seen.get(entry.getKey());
+            if (last == null)
+            {
+               last = new long[StatisticsUpdate.COUNTERS];
+               seen.put(entry.getKey(), last);
+            }
+
+            long[] delta = new long[StatisticsUpdate.COUNTERS];
+            for (int i = 0; i < delta.length; i++)
+            {
+               if (entry.getValue()[i] > last[i])
+               {
+                  delta[i] = entry.getValue()[i] - last[i];
+                  last[i] = entry.getValue()[i];
+               }
+            }
+            deltas.put(entry.getKey(), delta);
+         }
+
+         // The free counts are the latest values, so an update delivered out of order is stale
+         Long s = receivedSequences.get(update.getTransportId());
+         if (s == null || s.longValue() < update.getSequence())
+         {
+            receivedSequences.put(update.getTransportId(), Long.valueOf(update.getSequence()));
+
+            for (Entry<Address, long[]> entry : update.getFreeCounts().entrySet())
+            {
+               long shortRunning = entry.getValue()[StatisticsUpdate.SHORT_RUNNING];
+               long longRunning = entry.getValue()[StatisticsUpdate.LONG_RUNNING];
+
+               if (shortRunning >= 0)
+                  localUpdateShortRunningFree(entry.getKey(), shortRunning);
+
+               if (longRunning >= 0)
+                  localUpdateLongRunningFree(entry.getKey(), longRunning);
+            }
+         }
+      }
+      finally
+      {
+         receivedLock.unlock();
+      }
+
+      for (Entry<Address, long[]> entry : deltas.entrySet())
+      {
+         localDeltaStatistics(entry.getKey(), entry.getValue());
+      }
+
+   }
+
+   /**
+    * Apply the deltas of the statistics to a local work manager
+    * @param address the logical address
+    * @param delta the deltas, indexed by the counter constants of StatisticsUpdate
+    */
+   private void localDeltaStatistics(Address address, long[] delta)
+   {
+      DistributedWorkManager dwm = workManagerCoordinator.resolveDistributedWorkManager(address);
+
+      if (dwm != null)
+      {
+         Collection<NotificationListener> copy =
+            new ArrayList<NotificationListener>(dwm.getNotificationListeners());
+         for (NotificationListener nl : copy)
+         {
+            if (delta[StatisticsUpdate.WORK_SUCCESSFUL] > 0)
+               nl.deltaWorkSuccessful(delta[StatisticsUpdate.WORK_SUCCESSFUL]);
+
+            if (delta[StatisticsUpdate.WORK_FAILED] > 0)
+               nl.deltaWorkFailed(delta[StatisticsUpdate.WORK_FAILED]);
+
+            if (delta[StatisticsUpdate.DOWORK_ACCEPTED] > 0)
+               nl.deltaDoWorkAccepted(delta[StatisticsUpdate.DOWORK_ACCEPTED]);
+
+            if (delta[StatisticsUpdate.DOWORK_REJECTED] > 0)
+               nl.deltaDoWorkRejected(delta[StatisticsUpdate.DOWORK_REJECTED]);
+
+            if (delta[StatisticsUpdate.SCHEDULEWORK_ACCEPTED] > 0)
+               nl.deltaScheduleWorkAccepted(delta[StatisticsUpdate.SCHEDULEWORK_ACCEPTED]);
+
+            if (delta[StatisticsUpdate.SCHEDULEWORK_REJECTED] > 0)
+               nl.deltaScheduleWorkRejected(delta[StatisticsUpdate.SCHEDULEWORK_REJECTED]);
+
+            if (delta[StatisticsUpdate.STARTWORK_ACCEPTED] > 0)
+               nl.deltaStartWorkAccepted(delta[StatisticsUpdate.STARTWORK_ACCEPTED]);
+
+            if (delta[StatisticsUpdate.STARTWORK_REJECTED] > 0)
+               nl.deltaStartWorkRejected(delta[StatisticsUpdate.STARTWORK_REJECTED]);
+         }
+      }
+   }
+
+   /**
+    * Gather a delta for a remote work manager, if the statistics are published at an interval
+    * @param address the logical address
+    * @param index the counter
+    * @return True if the delta was gathered; false if it should be sent right away
+    */
+   private boolean coalesceDelta(Address address, int index)
+   {
+      if (statisticsInterval <= 0)
+         return false;
+
+      AtomicLongArray totals = deltaTotals.get(address);
+      if (totals == null)
+      {
+         totals = new AtomicLongArray(StatisticsUpdate.COUNTERS);
+         AtomicLongArray existing = deltaTotals.putIfAbsent(address, totals);
+         if (existing != null)
+            totals = existing;
+      }
+
+      totals.incrementAndGet(index);
+      changed();
+
+      return true;
+   }
+
+   /**
+    * Gather a free count for a local work manager, if the statistics are published at an interval
+    * @param address the logical address
+    * @param index SHORT_RUNNING or LONG_RUNNING
+    * @param freeCount the free count
+    * @return True if the free count was gathered; false if it should be sent right away
+    */
+   private boolean coalesceFreeCount(Address address, int index, long freeCount)
+   {
+      if (statisticsInterval <= 0)
+         return false;
+
+      AtomicLongArray counts = freeCounts.get(address);
+      if (counts == null)
+      {
+         counts = new AtomicLongArray(new long[] {-1L, -1L});
+         AtomicLongArray existing = freeCounts.putIfAbsent(address, counts);
+         if (existing != null)
+            counts = existing;
+      }
+
+      counts.set(index, freeCount);
+      changed();
+
+      return true;
+   }
+
+   /**
+    * Count a change, and publish the statistics when the threshold is reached
+    */
+   private void changed()
+   {
+      int changes = pendingChanges.incrementAndGet();
+
+      // A change during a publish is picked up by the check after the publish
+      if (statisticsThreshold > 0 && changes >= statisticsThreshold && !publishFailed && !publishing.get())
+         requestPublish();
+   }
+
+   /**
+    * Request a publish of the statistics, unless one is already requested
+    */
+   private void requestPublish()
+   {
+      if (publishRequested.compareAndSet(false, true))
+      {
+         Runnable r = new Runnable()
+         {
+            public void run()
+            {
+               publishRequested.set(false);
+               publishStatistics();
+            }
+         };
+
+         try
+         {
+            // Without an executor of its own the transport falls back to the maintenance scheduler
+            if (executorService != null)
+            {
+               executorService.execute(r);
+            }
+            else
+            {
+               MaintenanceScheduler.getInstance().execute(r);
+            }
+         }
+         catch (RejectedExecutionException ree)
+         {
+            publishRequested.set(false);
+         }
+      }
+   }
+
    /**
     * Get the own address
     * @return The value
@@ -0,0 +1,503 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.workmanager.transport.remote;
+
+import org.ironjacamar.core.api.workmanager.DistributedWorkManagerStatisticsValues;
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.workmanager.ClassBundle;
+import org.ironjacamar.core.workmanager.ClassDefinition;
+import org.ironjacamar.core.workmanager.WorkClassLoader;
+import org.ironjacamar.core.workmanager.WorkObjectInputStream;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A versioned binary codec for the protocol messages.
+ *
+ * A message is laid out as the version, the ordinal of the request or response and the
+ * number of parameters, each as a byte, followed by the parameters. Each parameter starts
+ * with a tag; addresses, free counts, strings, sets of addresses, class bundles,
+ * statistics values and statistics updates have fixed layouts, and any other value, like the work instance or an
+ * exception, is written with Java serialization.
+ *
+ * A message is read from a complete frame, so every count and length is checked against
+ * the bytes left in the message before anything is allocated for it.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ProtocolCodec
+{
+   /** The version of the codec; never the first byte of a Java serialization stream */
+   public static final byte VERSION = 3;
+
+   /** Tag: null */
+   private static final byte TAG_NULL = 0;
+
+   /** Tag: Long */
+   private static final byte TAG_LONG = 1;
+
+   /** Tag: String */
+   private static final byte TAG_STRING = 2;
+
+   /** Tag: Address */
+   private static final byte TAG_ADDRESS = 3;
+
+   /** Tag: Set of Address */
+   private static final byte TAG_ADDRESS_SET = 4;
+
+   /** Tag: ClassBundle */
+   private static final byte TAG_CLASS_BUNDLE = 5;
+
+   /** Tag: DistributedWorkManagerStatisticsValues */
+   private static final byte TAG_STATISTICS_VALUES = 6;
+
+   /** Tag: Java serialization */
+   private static final byte TAG_OBJECT = 7;
+
+   /** Tag: StatisticsUpdate */
+   private static final byte TAG_STATISTICS_UPDATE = 8;
+
+   /** The minimum size of an address: two empty strings and the transport flag */
+   private static final int ADDRESS_SIZE = 5;
+
+   /** The minimum size of a class definition: an empty name, the serial version and a length */
+   private static final int CLASS_DEFINITION_SIZE = 14;
+
+   /**
+    * Constructor
+    */
+   private ProtocolCodec()
+   {
+   }
+
+   /**
+    * Write a request
+    * @param out The output
+    * @param request The request
+    * @param parameters The parameters
+    * @exception IOException Thrown if an error occurs
+    */
+   public static void writeRequest(DataOutput out, Request request, Serializable... parameters) throws IOException
+   {
+      writeHeader(out, request.ordinal(), parameters);
+   }
+
+   /**
+    * Write a response
+    * @param out The output
+    * @param response The response
+    * @param parameters The parameters
+    * @exception IOException Thrown if an error occurs
+    */
+   public static void writeResponse(DataOutput out, Response response, Serializable... parameters)
+      throws IOException
+   {
+      if (response.getNumberOfParameter() == 0)
+         parameters = null;
+
+      writeHeader(out, response.ordinal(), parameters);
+   }
+
+   /**
+    * Read the version and the ordinal of a message
+    * @param in The input
+    * @return The ordinal
+    * @exception IOException Thrown if an error occurs, or the version isn't supported
+    */
+   public static int readOrdinal(DataInput in) throws IOException
+   {
+      byte version = in.readByte();
+      if (version != VERSION)
+         throw new StreamCorruptedException("Unsupported protocol version: " + version);
+
+      return in.readUnsignedByte();
+   }
+
+   /**
+    * Read the number of parameters of a message
+    * @param in The input
+    * @return The number of parameters
+    * @exception IOException Thrown if an error occurs
+    */
+   public static int readNumberOfParameters(DataInput in) throws IOException
+   {
+      return in.readUnsignedByte();
+   }
+
+   /**
+    * Write a message header, and the parameters
+    * @param out The output
+    * @param ordinal The ordinal
+    * @param parameters The parameters
+    * @exception IOException Thrown if an error occurs
+    */
+   private static void writeHeader(DataOutput out, int ordinal, Serializable... parameters) throws IOException
+   {
+      out.writeByte(VERSION);
+      out.writeByte(ordinal);
+
+      if (parameters != null)
+      {
+         out.writeByte(parameters.length);
+         for (Serializable p : parameters)
+         {
+            writeValue(out, p);
+         }
+      }
+      else
+      {
+         out.writeByte(0);
+      }
+   }
+
+   /**
+    * Write a value
+    * @param out The output
+    * @param v The value
+    * @exception IOException Thrown if an error occurs
+    */
+   public static void writeValue(DataOutput out, Serializable v) throws IOException
+   {
+      if (v == null)
+      {
+         out.writeByte(TAG_NULL);
+      }
+      else if (v instanceof Long)
+      {
+         out.writeByte(TAG_LONG);
+         out.writeLong(((Long)v).longValue());
+      }
+      else if (v instanceof String)
+      {
+         out.writeByte(TAG_STRING);
+         out.writeUTF((String)v);
+      }
+      else if (v instanceof Address)
+      {
+         out.writeByte(TAG_ADDRESS);
+         writeAddress(out, (Address)v);
+      }
+      else if (v instanceof Set && isAddressSet((Set<?>)v))
+      {
+         Set<?> s = (Set<?>)v;
+
+         out.writeByte(TAG_ADDRESS_SET);
+         out.writeInt(s.size());
+         for (Object o : s)
+         {
+            writeAddress(out, (Address)o);
+         }
+      }
+      else if (v instanceof ClassBundle)
+      {
+         List<ClassDefinition> definitions = ((ClassBundle)v).getDefinitions();
+
+         out.writeByte(TAG_CLASS_BUNDLE);
+         out.writeInt(definitions != null ? definitions.size() : -1);
+         if (definitions != null)
+         {
+            for (ClassDefinition cd : definitions)
+            {
+               out.writeUTF(cd.getName());
+               out.writeLong(cd.getSerialVersionUID());
+               writeBytes(out, cd.getData());
+               if (cd.isReference())
+                  out.writeUTF(cd.getHash());
+            }
+         }
+      }
+      else if (v instanceof DistributedWorkManagerStatisticsValues)
+      {
+         DistributedWorkManagerStatisticsValues values = (DistributedWorkManagerStatisticsValues)v;
+
+         out.writeByte(TAG_STATISTICS_VALUES);
+         out.writeInt(values.getWorkSuccessful());
+         out.writeInt(values.getWorkFailed());
+         out.writeInt(values.getDoWorkAccepted());
+         out.writeInt(values.getDoWorkRejected());
+         out.writeInt(values.getScheduleWorkAccepted());
+         out.writeInt(values.getScheduleWorkRejected());
+         out.writeInt(values.getStartWorkAccepted());
+         out.writeInt(values.getStartWorkRejected());
+      }
+      else if (v instanceof StatisticsUpdate)
+      {
+         StatisticsUpdate update = (StatisticsUpdate)v;
+
+         out.writeByte(TAG_STATISTICS_UPDATE);
+         out.writeUTF(update.getTransportId());
+         out.writeLong(update.getEpoch());
+         out.writeLong(update.getSequence());
+         out.writeInt(update.getTotals().size());
+         for (Map.Entry<Address, long[]> entry : update.getTotals().entrySet())
+         {
+            writeAddress(out, entry.getKey());
+            for (int i = 0; i < StatisticsUpdate.COUNTERS; i++)
+            {
+               out.writeLong(entry.getValue()[i]);
+            }
+         }
+         out.writeInt(update.getFreeCounts().size());
+         for (Map.Entry<Address, long[]> entry : update.getFreeCounts().entrySet())
+         {
+            writeAddress(out, entry.getKey());
+            out.writeLong(entry.getValue()[StatisticsUpdate.SHORT_RUNNING]);
+            out.writeLong(entry.getValue()[StatisticsUpdate.LONG_RUNNING]);
+         }
+      }
+      else
+      {
+         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+         ObjectOutputStream oos = new ObjectOutputStream(baos);
+         oos.writeObject(v);
+         oos.close();
+
+         out.writeByte(TAG_OBJECT);
+         writeBytes(out, baos.toByteArray());
+      }
+   }
+
+   /**
+    * Read a value
+    * @param in The input
+    * @param wcl The work class loader for values written with Java serialization, or <code>null</code>
+    * @return The value
+    * @exception IOException Thrown if an error occurs
+    * @exception ClassNotFoundException Thrown if a class can't be found
+    */
+   public static Serializable readValue(DataInput in, WorkClassLoader wcl)
+      throws IOException, ClassNotFoundException
+   {
+      byte tag = in.readByte();
+
+      switch (tag)
+      {
+         case TAG_NULL : {
+            return null;
+         }
+         case TAG_LONG : {
+            return Long.valueOf(in.readLong());
+         }
+         case TAG_STRING : {
+            return in.readUTF();
+         }
+         case TAG_ADDRESS : {
+            return readAddress(in);
+         }
+         case TAG_ADDRESS_SET : {
+            int size = readSize(in, ADDRESS_SIZE, false);
+            HashSet<Address> s = new HashSet<Address>(size * 2);
+            for (int i = 0; i < size; i++)
+            {
+               s.add(readAddress(in));
+            }
+            return s;
+         }
+         case TAG_CLASS_BUNDLE : {
+            int size = readSize(in, CLASS_DEFINITION_SIZE, true);
+            List<ClassDefinition> definitions = null;
+            if (size >= 0)
+            {
+               definitions = new ArrayList<ClassDefinition>(size);
+               for (int i = 0; i < size; i++)
+               {
+                  String name = in.readUTF();
+                  long svu = in.readLong();
+                  byte[] data = readBytes(in);
+                  if (data != null)
+                  {
+                     definitions.add(new ClassDefinition(name, svu, data));
+                  }
+                  else
+                  {
+                     definitions.add(new ClassDefinition(name, svu, in.readUTF()));
+                  }
+               }
+            }
+            return new ClassBundle(definitions);
+         }
+         case TAG_STATISTICS_VALUES : {
+            return new DistributedWorkManagerStatisticsValues(in.readInt(), in.readInt(),
+                                                              in.readInt(), in.readInt(),
+                                                              in.readInt(), in.readInt(),
+                                                              in.readInt(), in.readInt());
+         }
+         case TAG_STATISTICS_UPDATE : {
+            StatisticsUpdate update = new StatisticsUpdate(in.readUTF(), in.readLong(), in.readLong());
+            int size = readSize(in, ADDRESS_SIZE + 8 * StatisticsUpdate.COUNTERS, false);
+            for (int i = 0; i < size; i++)
+            {
+               Address address = readAddress(in);
+               long[] values = new long[StatisticsUpdate.COUNTERS];
+               for (int j = 0; j < values.length; j++)
+               {
+                  values[j] = in.readLong();
+               }
+               update.addTotals(address, values);
+            }
+            size = readSize(in, ADDRESS_SIZE + 16, false);
+            for (int i = 0; i < size; i++)
+            {
+               update.addFreeCounts(readAddress(in), in.readLong(), in.readLong());
+            }
+            return update;
+         }
+         case TAG_OBJECT : {
+            WorkObjectInputStream wois = new WorkObjectInputStream(new ByteArrayInputStream(readBytes(in)), wcl);
+            try
+            {
+               return (Serializable)wois.readObject();
+            }
+            finally
+            {
+               wois.close();
+            }
+         }
+         default :
+            throw new StreamCorruptedException("Unknown tag: " + tag);
+      }
+   }
+
+   /**
+    * Is the set a set of addresses
+    * @param s The set
+    * @return True if all elements are addresses; otherwise false
+    */
+   private static boolean isAddressSet(Set<?> s)
+   {
+      for (Object o : s)
+      {
+         if (!(o instanceof Address))
+            return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * Write an address
+    * @param out The output
+    * @param a The address
+    * @exception IOException Thrown if an error occurs
+    */
+   private static void writeAddress(DataOutput out, Address a) throws IOException
+   {
+      out.writeUTF(a.getWorkManagerId());
+      out.writeUTF(a.getWorkManagerName());
+      out.writeBoolean(a.getTransportId() != null);
+      if (a.getTransportId() != null)
+         out.writeUTF(a.getTransportId());
+   }
+
+   /**
+    * Read an address
+    * @param in The input
+    * @return The address
+    * @exception IOException Thrown if an error occurs
+    */
+   private static Address readAddress(DataInput in) throws IOException
+   {
+      String workManagerId = in.readUTF();
+      String workManagerName = in.readUTF();
+      String transportId = in.readBoolean() ? in.readUTF() : null;
+
+      return new Address(workManagerId, workManagerName, transportId);
+   }
+
+   /**
+    * Write a byte array
+    * @param out The output
+    * @param b The bytes
+    * @exception IOException Thrown if an error occurs
+    */
+   private static void writeBytes(DataOutput out, byte[] b) throws IOException
+   {
+      if (b != null)
+      {
+         out.writeInt(b.length);
+         out.write(b);
+      }
+      else
+      {
+         out.writeInt(-1);
+      }
+   }
+
+   /**
+    * Read a byte array
+    * @param in The input
+    * @return The bytes
+    * @exception IOException Thrown if an error occurs
+    */
+   private static byte[] readBytes(DataInput in) throws IOException
+   {
+      int length = readSize(in, 1, true);
+      if (length < 0)
+         return null;
+
+      byte[] b = new byte[length];
+      in.readFully(b);
+      return b;
+   }
+
+   /**
+    * Read a count or a length, and check it against the bytes left in the message
+    * @param in The input
+    * @param elementSize The minimum number of bytes of each element
+    * @param nullable Is -1, e.g. <code>null</code>, allowed
+    * @return The value
+    * @exception IOException Thrown if an error occurs, or the value doesn't fit the message
+    */
+   private static int readSize(DataInput in, int elementSize, boolean nullable) throws IOException
+   {
+      int size = in.readInt();
+
+      if (size < 0)
+      {
+         if (nullable && size == -1)
+            return size;
+
+         throw new StreamCorruptedException("Invalid size: " + size);
+      }
+
+      if (in instanceof InputStream && (long)size * elementSize > ((InputStream)in).available())
+         throw new StreamCorruptedException("Size exceeds the message: " + size);
+
+      return size;
+   }
+}
@@ -0,0 +1,214 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.transport.remote;
+
+import org.ironjacamar.core.spi.workmanager.Address;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The aggregated statistics and free thread counts published by a transport to a peer.
+ *
+ * The statistics are the cumulative totals, since the epoch of the sender, of the deltas
+ * for each work manager on the peer, and the free counts are the latest values of the work
+ * managers on the sender. A receiver keeps the totals it has seen from each sender and
+ * only applies the difference, so an update can be delivered more than once, or be
+ * superseded by a later one, without the statistics drifting. The free counts aren't
+ * cumulative, so they are only applied if the sequence of the update is later than the
+ * last one applied from the sender.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class StatisticsUpdate implements Serializable
+{
+   /** Serial version uid */
+   private static final long serialVersionUID = 1L;
+
+   /** Index: work successful */
+   public static final int WORK_SUCCESSFUL = 0;
+
+   /** Index: work failed */
+   public static final int WORK_FAILED = 1;
+
+   /** Index: doWork accepted */
+   public static final int DOWORK_ACCEPTED = 2;
+
+   /** Index: doWork rejected */
+   public static final int DOWORK_REJECTED = 3;
+
+   /** Index: scheduleWork accepted */
+   public static final int SCHEDULEWORK_ACCEPTED = 4;
+
+   /** Index: scheduleWork rejected */
+   public static final int SCHEDULEWORK_REJECTED = 5;
+
+   /** Index: startWork accepted */
+   public static final int STARTWORK_ACCEPTED = 6;
+
+   /** Index: startWork rejected */
+   public static final int STARTWORK_REJECTED = 7;
+
+   /** The number of counters */
+   public static final int COUNTERS = 8;
+
+   /** Index: short running free */
+   public static final int SHORT_RUNNING = 0;
+
+   /** Index: long running free */
+   public static final int LONG_RUNNING = 1;
+
+   /** The identifier of the sending transport */
+   private String transportId;
+
+   /** The epoch of the totals */
+   private long epoch;
+
+   /** The sequence of the update within the epoch */
+   private long sequence;
+
+   /** The cumulative totals for each work manager on the receiver */
+   private Map<Address, long[]> totals;
+
+   /** The free counts of each work manager on the sender; -1 if unknown */
+   private Map<Address, long[]> freeCounts;
+
+   /**
+    * Constructor
+    * @param transportId The identifier of the sending transport
+    * @param epoch The epoch of the totals
+    * @param sequence The sequence of the update within the epoch
+    */
+   public StatisticsUpdate(String transportId, long epoch, long sequence)
+   {
+      this.transportId = transportId;
+      this.epoch = epoch;
+      this.sequence = sequence;
+      this.totals = new HashMap<Address, long[]>();
+      this.freeCounts = new HashMap<Address, long[]>();
+   }
+
+   /**
+    * Get the identifier of the sending transport
+    * @return The value
+    */
+   public String getTransportId()
+   {
+      return transportId;
+   }
+
+   /**
+    * Get the epoch of the totals
+    * @return The value
+    */
+   public long getEpoch()
+   {
+      return epoch;
+   }
+
+   /**
+    * Get the sequence of the update within the epoch
+    * @return The value
+    */
+   public long getSequence()
+   {
+      return sequence;
+   }
+
+   /**
+    * Get the cumulative totals
+    * @return The values, indexed by the counter constants
+    */
+   public Map<Address, long[]> getTotals()
+   {
+      return totals;
+   }
+
+   /**
+    * Add the cumulative totals of a work manager
+    * @param address The address of the work manager
+    * @param values The values, indexed by the counter constants
+    */
+   public void addTotals(Address address, long[] values)
+   {
+      totals.put(address, values);
+   }
+
+   /**
+    * Get the free counts
+    * @return The values, indexed by SHORT_RUNNING and LONG_RUNNING
+    */
+   public Map<Address, long[]> getFreeCounts()
+   {
+      return freeCounts;
+   }
+
+   /**
+    * Add the free counts of a work manager
+    * @param address The address of the work manager
+    * @param shortRunning The short running free count, or -1
+    * @param longRunning The long running free count, or -1
+    */
+   public void addFreeCounts(Address address, long shortRunning, long longRunning)
+   {
+      freeCounts.put(address, new long[] {shortRunning, longRunning});
+   }
+
+   /**
+    * Is the update empty
+    * @return True if there are no totals and free counts; otherwise false
+    */
+   public boolean isEmpty()
+   {
+      return totals.isEmpty() && freeCounts.isEmpty();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("StatisticsUpdate@").append(Integer.toHexString(System.identityHashCode(this)));
+      sb.append("[transportId=").append(transportId);
+      sb.append(" epoch=").append(epoch);
+      sb.append(" sequence=").append(sequence);
+      sb.append(" totals={");
+      for (Entry<Address, long[]> entry : totals.entrySet())
+      {
+         sb.append(entry.getKey()).append("=").append(Arrays.toString(entry.getValue())).append(" ");
+      }
+      sb.append("} freeCounts={");
+      for (Entry<Address, long[]> entry : freeCounts.entrySet())
+      {
+         sb.append(entry.getKey()).append("=").append(Arrays.toString(entry.getValue())).append(" ");
+      }
+      sb.append("}]");
+
+      return sb.toString();
+   }
+}
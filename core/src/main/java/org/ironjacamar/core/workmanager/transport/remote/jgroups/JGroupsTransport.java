@@ -29,6 +29,7 @@ import org.ironjacamar.core.workmanager.WorkObjectInputStream;
 import org.ironjacamar.core.workmanager.transport.remote.AbstractRemoteTransport;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.ResponseValues;
+import org.ironjacamar.core.workmanager.transport.remote.StatisticsUpdate;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -137,6 +138,8 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
 
    private static final short DELTA_WORK_FAILED_METHOD = 23;
 
+   private static final short UPDATE_STATISTICS_METHOD = 24;
+
    private static Map<Short, Method> methods = new HashMap<Short, Method>();
 
    static
@@ -242,6 +245,10 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
          methods.put(DELTA_WORK_FAILED_METHOD,
                      SecurityActions.getMethod(AbstractRemoteTransport.class, "localDeltaWorkFailed",
                                                org.ironjacamar.core.spi.workmanager.Address.class));
+
+         methods.put(UPDATE_STATISTICS_METHOD,
+                     SecurityActions.getMethod(AbstractRemoteTransport.class, "localUpdateStatistics",
+                                               StatisticsUpdate.class));
       }
       catch (NoSuchMethodException e)
       {
@@ -315,7 +322,8 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
       WorkObjectInputStream wois = null;
       try
       {
-         WorkClassLoader wcl = SecurityActions.createWorkClassLoader(classBundle);
+         WorkClassLoader wcl =
+            SecurityActions.createWorkClassLoader(getClassDefinitionCache().resolve(classBundle));
          
          wois = new WorkObjectInputStream(bias, wcl);
 
@@ -363,7 +371,8 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
       WorkObjectInputStream wois = null;
       try
       {
-         WorkClassLoader wcl = SecurityActions.createWorkClassLoader(classBundle);
+         WorkClassLoader wcl =
+            SecurityActions.createWorkClassLoader(getClassDefinitionCache().resolve(classBundle));
          
          wois = new WorkObjectInputStream(bias, wcl);
 
@@ -410,7 +419,8 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
       WorkObjectInputStream wois = null;
       try
       {
-         WorkClassLoader wcl = SecurityActions.createWorkClassLoader(classBundle);
+         WorkClassLoader wcl =
+            SecurityActions.createWorkClassLoader(getClassDefinitionCache().resolve(classBundle));
          
          wois = new WorkObjectInputStream(bias, wcl);
 
@@ -463,6 +473,8 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
 
 
       channel.connect(clusterName);
+
+      startStatisticsPublisher();
    }
 
    /**
@@ -486,6 +498,9 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
     */
    public void shutdown() throws Throwable
    {
+      stopStatisticsPublisher();
+      clearClassDefinitions();
+
       if (disp != null)
       {
          try
@@ -806,6 +821,13 @@ public class JGroupsTransport extends AbstractRemoteTransport<org.jgroups.Addres
 
                break;
             }
+            case UPDATE_STATISTICS : {
+               StatisticsUpdate update = (StatisticsUpdate) parameters[0];
+
+               disp.callRemoteMethod(destAddress, new MethodCall(UPDATE_STATISTICS_METHOD, update), opts);
+
+               break;
+            }
             default :
                if (log.isDebugEnabled())
                {
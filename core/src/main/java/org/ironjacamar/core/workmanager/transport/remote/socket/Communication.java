@@ -27,15 +27,27 @@ import org.ironjacamar.core.spi.workmanager.Address;
 import org.ironjacamar.core.workmanager.ClassBundle;
 import org.ironjacamar.core.workmanager.WorkClassLoader;
 import org.ironjacamar.core.workmanager.WorkObjectInputStream;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolCodec;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Response;
-
+import org.ironjacamar.core.workmanager.transport.remote.StatisticsUpdate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.Socket;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.resource.spi.work.DistributableWork;
 import javax.resource.spi.work.WorkException;
@@ -81,15 +93,143 @@ public class Communication implements Runnable
     */
    public void run()
    {
-      WorkObjectInputStream wois = null;
-      ObjectOutputStream oos = null;
+      try
+      {
+         InputStream is = new BufferedInputStream(socket.getInputStream());
+         is.mark(4);
+
+         final DataInputStream dis = new DataInputStream(is);
+         if (dis.readInt() == Connection.MAGIC)
+         {
+            // A multiplexed connection is served by its own thread, not the transport's executor
+            Thread reader = new Thread(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     multiplexed(dis);
+                  }
+                  catch (IOException ioe)
+                  {
+                     if (trace)
+                        log.tracef("%s: %s", socket.getInetAddress(), ioe.getMessage());
+                  }
+               }
+            }, "SocketTransport-" + socket.getRemoteSocketAddress());
+            reader.setDaemon(true);
+            reader.start();
+         }
+         else
+         {
+            is.reset();
+            handle(is, socket.getOutputStream());
+         }
+      }
+      catch (IOException ioe)
+      {
+         if (trace)
+            log.tracef("%s: %s", socket.getInetAddress(), ioe.getMessage());
+
+         try
+         {
+            socket.close();
+         }
+         catch (IOException e)
+         {
+            //ignore it
+         }
+      }
+   }
+
+   /**
+    * Serve the requests of a multiplexed connection, until the peer closes it
+    * @param dis The input stream
+    * @exception IOException Thrown if an error occurs
+    */
+   private void multiplexed(DataInputStream dis) throws IOException
+   {
+      final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      final ReentrantLock writeLock = new ReentrantLock();
+
+      transport.addServerConnection(socket);
+      try
+      {
+         while (true)
+         {
+            final int id = dis.readInt();
+            final byte[] message = new byte[Connection.readFrameLength(dis, transport.getMaxFrameSize())];
+            dis.readFully(message);
+
+            transport.getExecutorService().submit(new Runnable()
+            {
+               public void run()
+               {
+                  ByteArrayOutputStream response = new ByteArrayOutputStream();
+                  handle(new ByteArrayInputStream(message), response);
+
+                  writeLock.lock();
+                  try
+                  {
+                     Connection.writeFrame(dos, id, response.toByteArray());
+                  }
+                  catch (IOException ioe)
+                  {
+                     if (log.isDebugEnabled())
+                     {
+                        log.debugf("Error sending response: %s", ioe.getMessage());
+                     }
+                  }
+                  finally
+                  {
+                     writeLock.unlock();
+                  }
+               }
+            });
+         }
+      }
+      catch (EOFException eof)
+      {
+         // The peer closed the connection
+      }
+      finally
+      {
+         transport.removeServerConnection(socket);
+
+         try
+         {
+            socket.close();
+         }
+         catch (IOException e)
+         {
+            //ignore it
+         }
+      }
+   }
+
+   /**
+    * Handle a request
+    * @param is The input stream holding the request
+    * @param os The output stream for the response
+    */
+   private void handle(InputStream is, OutputStream os)
+   {
+      Input input = null;
+      boolean binary = false;
       Serializable returnValue = null;
       Response response = null;
       try
       {
-         wois = new WorkObjectInputStream(socket.getInputStream());
-         int commandOrdinalPosition = wois.readInt();
-         int numberOfParameters = wois.readInt();
+         if (!is.markSupported())
+            is = new BufferedInputStream(is);
+
+         is.mark(1);
+         binary = is.read() == ProtocolCodec.VERSION;
+         is.reset();
+
+         input = binary ? new BinaryInput(is) : new SerializedInput(is);
+         int commandOrdinalPosition = input.readOrdinal();
+         int numberOfParameters = input.readNumberOfParameters();
 
          Request command = Request.values()[commandOrdinalPosition];
 
@@ -99,7 +239,7 @@ public class Communication implements Runnable
                if (numberOfParameters != 1)
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters, "JOIN"));
 
-               String address = (String)wois.readObject();
+               String address = (String)input.readObject();
 
                if (trace)
                   log.tracef("%s: JOIN(%s)", socket.getInetAddress(), address);
@@ -129,7 +269,7 @@ public class Communication implements Runnable
                if (numberOfParameters != 1)
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters, "LEAVE"));
 
-               String address = (String)wois.readObject();
+               String address = (String)input.readObject();
 
                if (trace)
                   log.tracef("%s: LEAVE(%s)", socket.getInetAddress(), address);
@@ -156,8 +296,8 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "WORKMANAGER_ADD"));
 
-               Address id = (Address)wois.readObject();
-               String address = (String)wois.readObject();
+               Address id = (Address)input.readObject();
+               String address = (String)input.readObject();
 
                if (trace)
                   log.tracef("%s: WORKMANAGER_ADD(%s, %s)", socket.getInetAddress(), id, address);
@@ -172,7 +312,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "WORKMANAGER_REMOVE"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: WORKMANAGER_REMOVE(%s)", socket.getInetAddress(), id);
@@ -200,16 +340,17 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DO_WORK"));
 
-               Address id = (Address)wois.readObject();
-               ClassBundle cb = (ClassBundle)wois.readObject();
+               Address id = (Address)input.readObject();
+               ClassBundle cb = (ClassBundle)input.readObject();
 
                if (trace)
                   log.tracef("DO_WORK/ClassBundle: %s", cb);
 
-               WorkClassLoader wcl = SecurityActions.createWorkClassLoader(cb);
-               wois.setWorkClassLoader(wcl);
+               WorkClassLoader wcl =
+                  SecurityActions.createWorkClassLoader(transport.getClassDefinitionCache().resolve(cb));
+               input.setWorkClassLoader(wcl);
 
-               DistributableWork work = (DistributableWork)wois.readObject();
+               DistributableWork work = (DistributableWork)input.readObject();
 
                if (trace)
                   log.tracef("%s: DO_WORK(%s, %s)", socket.getInetAddress(), id, work);
@@ -224,16 +365,17 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "START_WORK"));
 
-               Address id = (Address)wois.readObject();
-               ClassBundle cb = (ClassBundle)wois.readObject();
+               Address id = (Address)input.readObject();
+               ClassBundle cb = (ClassBundle)input.readObject();
 
                if (trace)
                   log.tracef("START_WORK/ClassBundle: %s", cb);
 
-               WorkClassLoader wcl = SecurityActions.createWorkClassLoader(cb);
-               wois.setWorkClassLoader(wcl);
+               WorkClassLoader wcl =
+                  SecurityActions.createWorkClassLoader(transport.getClassDefinitionCache().resolve(cb));
+               input.setWorkClassLoader(wcl);
 
-               DistributableWork work = (DistributableWork)wois.readObject();
+               DistributableWork work = (DistributableWork)input.readObject();
 
                if (trace)
                   log.tracef("%s: START_WORK(%s, %s)", socket.getInetAddress(), id, work);
@@ -248,16 +390,17 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "SCHEDULE_WORK"));
 
-               Address id = (Address)wois.readObject();
-               ClassBundle cb = (ClassBundle)wois.readObject();
+               Address id = (Address)input.readObject();
+               ClassBundle cb = (ClassBundle)input.readObject();
 
                if (trace)
                   log.tracef("SCHEDULE_WORK/ClassBundle: %s", cb);
 
-               WorkClassLoader wcl = SecurityActions.createWorkClassLoader(cb);
-               wois.setWorkClassLoader(wcl);
+               WorkClassLoader wcl =
+                  SecurityActions.createWorkClassLoader(transport.getClassDefinitionCache().resolve(cb));
+               input.setWorkClassLoader(wcl);
 
-               DistributableWork work = (DistributableWork)wois.readObject();
+               DistributableWork work = (DistributableWork)input.readObject();
 
                if (trace)
                   log.tracef("%s: SCHEDULE_WORK(%s, %s)", socket.getInetAddress(), id, work);
@@ -272,7 +415,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "GET_SHORTRUNNING_FREE"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: GET_SHORTRUNNING_FREE(%s)", socket.getInetAddress(), id);
@@ -287,7 +430,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "GET_LONGRUNNING_FREE"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: GET_LONGRUNNING_FREE(%s)", socket.getInetAddress(), id);
@@ -302,8 +445,8 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "UPDATE_SHORTRUNNING_FREE"));
 
-               Address id = (Address)wois.readObject();
-               Long freeCount = (Long)wois.readObject();
+               Address id = (Address)input.readObject();
+               Long freeCount = (Long)input.readObject();
 
                if (trace)
                   log.tracef("%s: UPDATE_SHORTRUNNING_FREE(%s, %d)", socket.getInetAddress(), id, freeCount);
@@ -318,8 +461,8 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "UPDATE_LONGRUNNING_FREE"));
 
-               Address id = (Address)wois.readObject();
-               Long freeCount = (Long)wois.readObject();
+               Address id = (Address)input.readObject();
+               Long freeCount = (Long)input.readObject();
 
                if (trace)
                   log.tracef("%s: UPDATE_LONGRUNNING_FREE(%s, %d)", socket.getInetAddress(), id, freeCount);
@@ -334,7 +477,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "GET_DISTRIBUTED_STATISTICS"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: GET_DISTRIBUTED_STATISTICS(%s)", socket.getInetAddress(), id);
@@ -349,7 +492,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "CLEAR_DISTRIBUTED_STATISTICS"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: CLEAR_DISTRIBUTED_STATISTICS(%s)", socket.getInetAddress(), id);
@@ -364,7 +507,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_DOWORK_ACCEPTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_DOWORK_ACCEPTED(%s)", socket.getInetAddress(), id);
@@ -379,7 +522,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_DOWORK_REJECTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_DOWORK_REJECTED(%s)", socket.getInetAddress(), id);
@@ -394,7 +537,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_STARTWORK_ACCEPTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_STARTWORK_ACCEPTED(%s)", socket.getInetAddress(), id);
@@ -409,7 +552,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_STARTWORK_REJECTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_STARTWORK_REJECTED(%s)", socket.getInetAddress(), id);
@@ -424,7 +567,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_SCHEDULEWORK_ACCEPTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_SCHEDULEWORK_ACCEPTED(%s)", socket.getInetAddress(), id);
@@ -439,7 +582,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_SCHEDULEWORK_REJECTED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_SCHEDULEWORK_REJECTED(%s)", socket.getInetAddress(), id);
@@ -454,7 +597,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_WORK_SUCCESSFUL"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_WORK_SUCCESSFUL(%s)", socket.getInetAddress(), id);
@@ -469,7 +612,7 @@ public class Communication implements Runnable
                   throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
                                                                                       "DELTA_WORK_FAILED"));
 
-               Address id = (Address)wois.readObject();
+               Address id = (Address)input.readObject();
 
                if (trace)
                   log.tracef("%s: DELTA_WORK_FAILED(%s)", socket.getInetAddress(), id);
@@ -479,6 +622,21 @@ public class Communication implements Runnable
 
                break;
             }
+            case UPDATE_STATISTICS : {
+               if (numberOfParameters != 1)
+                  throw new IllegalArgumentException(bundle.invalidNumberOfParameters(numberOfParameters,
+                                                                                      "UPDATE_STATISTICS"));
+
+               StatisticsUpdate update = (StatisticsUpdate)input.readObject();
+
+               if (trace)
+                  log.tracef("%s: UPDATE_STATISTICS(%s)", socket.getInetAddress(), update);
+
+               transport.localUpdateStatistics(update);
+               response = Response.OK_VOID;
+
+               break;
+            }
             default :
                if (log.isDebugEnabled())
                {
@@ -489,11 +647,12 @@ public class Communication implements Runnable
 
          if (response != null)
          {
-            sendResponse(response, returnValue);
+            sendResponse(os, binary, response, returnValue);
          }
          else
          {
-            sendResponse(Response.GENERIC_EXCEPTION, new Exception("Unknown command: " + commandOrdinalPosition));
+            sendResponse(os, binary, Response.GENERIC_EXCEPTION,
+                         new Exception("Unknown command: " + commandOrdinalPosition));
          }
       }
       catch (WorkException we)
@@ -501,22 +660,22 @@ public class Communication implements Runnable
          if (trace)
             log.tracef("%s: WORK_EXCEPTION(%s)", socket.getInetAddress(), we.getMessage());
 
-         sendResponse(Response.WORK_EXCEPTION, we);
+         sendResponse(os, binary, Response.WORK_EXCEPTION, we);
       }
       catch (Throwable t)
       {
          if (trace)
             log.tracef("%s: THROWABLE(%s)", socket.getInetAddress(), t.getMessage());
 
-         sendResponse(Response.GENERIC_EXCEPTION, t);
+         sendResponse(os, binary, Response.GENERIC_EXCEPTION, t);
       }
       finally
       {
-         if (wois != null)
+         if (input != null)
          {
             try
             {
-               wois.close();
+               input.close();
             }
             catch (IOException e)
             {
@@ -526,16 +685,42 @@ public class Communication implements Runnable
       }
    }
 
-   private void sendResponse(Response response, Serializable... parameters)
+   /**
+    * Send a response
+    * @param os The output stream
+    * @param binary Use the binary protocol
+    * @param response The response
+    * @param parameters The parameters
+    */
+   private void sendResponse(OutputStream os, boolean binary, Response response, Serializable... parameters)
    {
       if (trace)
          log.tracef("Sending response: %s with %s", response,
                     parameters != null ? Arrays.toString(parameters) : "null");
 
+      if (binary)
+      {
+         try
+         {
+            DataOutputStream dos = new DataOutputStream(os);
+            ProtocolCodec.writeResponse(dos, response, parameters);
+            dos.flush();
+         }
+         catch (Throwable t)
+         {
+            if (log.isDebugEnabled())
+            {
+               log.debugf("Error sending response: %s", t.getMessage());
+            }
+         }
+
+         return;
+      }
+
       ObjectOutputStream oos = null;
       try
       {
-         oos = new ObjectOutputStream(socket.getOutputStream());
+         oos = new ObjectOutputStream(os);
          oos.writeInt(response.ordinal());
          oos.writeInt(response.getNumberOfParameter());
          if (response.getNumberOfParameter() > 0 && parameters != null)
@@ -571,4 +756,165 @@ public class Communication implements Runnable
          }
       }
    }
+
+   /**
+    * The input of a request
+    */
+   private abstract static class Input
+   {
+      /**
+       * Read the ordinal of the request
+       * @return The value
+       * @exception IOException Thrown if an error occurs
+       */
+      abstract int readOrdinal() throws IOException;
+
+      /**
+       * Read the number of parameters
+       * @return The value
+       * @exception IOException Thrown if an error occurs
+       */
+      abstract int readNumberOfParameters() throws IOException;
+
+      /**
+       * Read a parameter
+       * @return The value
+       * @exception IOException Thrown if an error occurs
+       * @exception ClassNotFoundException Thrown if a class can't be found
+       */
+      abstract Object readObject() throws IOException, ClassNotFoundException;
+
+      /**
+       * Set the work class loader for the following parameters
+       * @param wcl The value
+       */
+      abstract void setWorkClassLoader(WorkClassLoader wcl);
+
+      /**
+       * Close
+       * @exception IOException Thrown if an error occurs
+       */
+      abstract void close() throws IOException;
+   }
+
+   /**
+    * The input of a request using Java serialization
+    */
+   private static class SerializedInput extends Input
+   {
+      /** The stream */
+      private WorkObjectInputStream wois;
+
+      /**
+       * Constructor
+       * @param is The input stream
+       * @exception IOException Thrown if an error occurs
+       */
+      SerializedInput(InputStream is) throws IOException
+      {
+         this.wois = new WorkObjectInputStream(is);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      int readOrdinal() throws IOException
+      {
+         return wois.readInt();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      int readNumberOfParameters() throws IOException
+      {
+         return wois.readInt();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      Object readObject() throws IOException, ClassNotFoundException
+      {
+         return wois.readObject();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      void setWorkClassLoader(WorkClassLoader wcl)
+      {
+         wois.setWorkClassLoader(wcl);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      void close() throws IOException
+      {
+         wois.close();
+      }
+   }
+
+   /**
+    * The input of a request using the binary protocol
+    */
+   private static class BinaryInput extends Input
+   {
+      /** The stream */
+      private DataInputStream dis;
+
+      /** The work class loader */
+      private WorkClassLoader wcl;
+
+      /**
+       * Constructor
+       * @param is The input stream
+       */
+      BinaryInput(InputStream is)
+      {
+         this.dis = new DataInputStream(is);
+         this.wcl = null;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      int readOrdinal() throws IOException
+      {
+         return ProtocolCodec.readOrdinal(dis);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      int readNumberOfParameters() throws IOException
+      {
+         return ProtocolCodec.readNumberOfParameters(dis);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      Object readObject() throws IOException, ClassNotFoundException
+      {
+         return ProtocolCodec.readValue(dis, wcl);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      void setWorkClassLoader(WorkClassLoader v)
+      {
+         wcl = v;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      void close() throws IOException
+      {
+         dis.close();
+      }
+   }
 }
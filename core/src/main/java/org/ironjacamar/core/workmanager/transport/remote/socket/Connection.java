@@ -0,0 +1,437 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.workmanager.transport.remote.socket;
+
+import org.ironjacamar.core.CoreLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A persistent connection to a peer, which multiplexes requests.
+ *
+ * Each request is sent as a frame holding a request id, the length of the message and
+ * the message itself; the peer answers with a frame holding the same request id, so many
+ * requests can be in flight on the connection at the same time. The responses are read by a
+ * thread of the connection, and a frame longer than the maximum frame size closes the connection.
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class Connection implements Runnable
+{
+   /** The magic number starting a multiplexed connection */
+   static final int MAGIC = 0x494A4D58;
+
+   /** The default maximum frame size in bytes */
+   static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+   /** The default connect timeout in milliseconds */
+   static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+   /** The logger */
+   private static CoreLogger log = Logger.getMessageLogger(CoreLogger.class, Connection.class.getName());
+
+   /** Trace logging */
+   private static boolean trace = log.isTraceEnabled();
+
+   /** The address of the peer */
+   private final String address;
+
+   /** The socket */
+   private final Socket socket;
+
+   /** The input stream */
+   private final DataInputStream in;
+
+   /** The output stream */
+   private final DataOutputStream out;
+
+   /** The maximum frame size in bytes */
+   private final int maxFrameSize;
+
+   /** The write lock */
+   private final ReentrantLock writeLock;
+
+   /** The next request id */
+   private final AtomicInteger nextId;
+
+   /** The requests waiting for a response */
+   private final ConcurrentMap<Integer, CompletableFuture<byte[]>> pending;
+
+   /** Is the connection closed */
+   private final AtomicBoolean closed;
+
+   /** The last time the connection was used */
+   private volatile long lastUsed;
+
+   /**
+    * Constructor
+    * @param address The address of the peer, as host:port
+    * @exception IOException Thrown if the connection can't be established
+    */
+   public Connection(String address) throws IOException
+   {
+      this(address, DEFAULT_MAX_FRAME_SIZE);
+   }
+
+   /**
+    * Constructor
+    * @param address The address of the peer, as host:port
+    * @param maxFrameSize The maximum frame size in bytes
+    * @exception IOException Thrown if the connection can't be established
+    */
+   public Connection(String address, int maxFrameSize) throws IOException
+   {
+      this(address, maxFrameSize, DEFAULT_CONNECT_TIMEOUT);
+   }
+
+   /**
+    * Constructor
+    * @param address The address of the peer, as host:port
+    * @param maxFrameSize The maximum frame size in bytes
+    * @param connectTimeout The connect timeout in milliseconds; 0 waits until the connection
+    *                       is established or refused
+    * @exception IOException Thrown if the connection can't be established
+    */
+   public Connection(String address, int maxFrameSize, int connectTimeout) throws IOException
+   {
+      this.address = address;
+      this.socket = connect(address, connectTimeout);
+      this.maxFrameSize = maxFrameSize;
+      this.writeLock = new ReentrantLock();
+      this.nextId = new AtomicInteger(0);
+      this.pending = new ConcurrentHashMap<Integer, CompletableFuture<byte[]>>();
+      this.closed = new AtomicBoolean(false);
+      this.lastUsed = System.currentTimeMillis();
+
+      try
+      {
+         this.socket.setTcpNoDelay(true);
+         this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+         this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+         out.writeInt(MAGIC);
+         out.flush();
+      }
+      catch (IOException ioe)
+      {
+         closeSocket(socket);
+         throw ioe;
+      }
+   }
+
+   /**
+    * Connect a socket to a peer
+    * @param address The address of the peer, as host:port
+    * @param connectTimeout The connect timeout in milliseconds; 0 waits until the connection
+    *                       is established or refused
+    * @return The socket
+    * @exception IOException Thrown if the connection can't be established
+    */
+   static Socket connect(String address, int connectTimeout) throws IOException
+   {
+      String[] addressPart = address.split(":");
+      Socket socket = new Socket();
+
+      try
+      {
+         socket.connect(new InetSocketAddress(addressPart[0], Integer.valueOf(addressPart[1])), connectTimeout);
+      }
+      catch (IOException ioe)
+      {
+         closeSocket(socket);
+         throw ioe;
+      }
+
+      return socket;
+   }
+
+   /**
+    * Close a socket, ignoring any error
+    * @param socket The socket
+    */
+   private static void closeSocket(Socket socket)
+   {
+      try
+      {
+         socket.close();
+      }
+      catch (IOException ioe)
+      {
+         //ignore it
+      }
+   }
+
+   /**
+    * Get the address of the peer
+    * @return The value
+    */
+   public String getAddress()
+   {
+      return address;
+   }
+
+   /**
+    * Start the thread reading the responses
+    */
+   public void start()
+   {
+      Thread reader = new Thread(this, "SocketTransport-" + address);
+      reader.setDaemon(true);
+      reader.start();
+   }
+
+   /**
+    * Send a request, and wait for its response
+    * @param message The request message
+    * @return The response message
+    * @exception ClosedChannelException Thrown if the connection was closed before the request was sent
+    * @exception IOException Thrown if the request fails
+    */
+   public byte[] request(byte[] message) throws IOException
+   {
+      return request(message, 0L);
+   }
+
+   /**
+    * Send a request, and wait for its response
+    * @param message The request message
+    * @param timeout The time to wait for the response in milliseconds; 0 or less waits until
+    *                the response arrives or the connection is closed
+    * @return The response message
+    * @exception ClosedChannelException Thrown if the connection was closed before the request was
+    *            written; a request which was written never fails with this exception
+    * @exception SocketTimeoutException Thrown if the response didn't arrive within the timeout
+    * @exception IOException Thrown if the request fails
+    */
+   public byte[] request(byte[] message, long timeout) throws IOException
+   {
+      Integer id = Integer.valueOf(nextId.incrementAndGet());
+      CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+
+      lastUsed = System.currentTimeMillis();
+      pending.put(id, response);
+
+      writeLock.lock();
+      try
+      {
+         if (closed.get())
+         {
+            pending.remove(id);
+            throw new ClosedChannelException();
+         }
+
+         writeFrame(out, id.intValue(), message);
+      }
+      catch (ClosedChannelException cce)
+      {
+         throw cce;
+      }
+      catch (IOException ioe)
+      {
+         pending.remove(id);
+         close(ioe);
+         throw ioe;
+      }
+      finally
+      {
+         writeLock.unlock();
+      }
+
+      try
+      {
+         if (timeout > 0)
+            return response.get(timeout, TimeUnit.MILLISECONDS);
+
+         return response.get();
+      }
+      catch (TimeoutException te)
+      {
+         pending.remove(id);
+         throw new SocketTimeoutException("No response from " + address + " within " + timeout + " ms");
+      }
+      catch (InterruptedException ie)
+      {
+         pending.remove(id);
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for " + address);
+      }
+      catch (ExecutionException ee)
+      {
+         // The request was written, so it must not be mistaken for one which can be sent again
+         if (ee.getCause() instanceof ClosedChannelException)
+            throw new IOException("Connection to " + address + " closed", ee.getCause());
+
+         if (ee.getCause() instanceof IOException)
+            throw (IOException)ee.getCause();
+
+         throw new IOException(ee.getCause());
+      }
+      finally
+      {
+         lastUsed = System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * Has the connection been idle for the timeout
+    * @param now The current time
+    * @param timeout The idle timeout in milliseconds
+    * @return True if idle; otherwise false
+    */
+   public boolean isIdle(long now, long timeout)
+   {
+      return pending.isEmpty() && now - lastUsed >= timeout;
+   }
+
+   /**
+    * Is the connection closed
+    * @return True if closed; otherwise false
+    */
+   public boolean isClosed()
+   {
+      return closed.get();
+   }
+
+   /**
+    * Close the connection
+    */
+   public void close()
+   {
+      close(new ClosedChannelException());
+   }
+
+   /**
+    * Close the connection, and fail the pending requests
+    * @param cause The cause
+    */
+   private void close(IOException cause)
+   {
+      if (!closed.compareAndSet(false, true))
+         return;
+
+      if (trace)
+         log.tracef("Closing connection to %s: %s", address, cause.getMessage());
+
+      try
+      {
+         socket.close();
+      }
+      catch (IOException ioe)
+      {
+         //ignore it
+      }
+
+      for (Integer id : pending.keySet())
+      {
+         CompletableFuture<byte[]> response = pending.remove(id);
+         if (response != null)
+            response.completeExceptionally(cause);
+      }
+   }
+
+   /**
+    * Read the responses
+    */
+   public void run()
+   {
+      try
+      {
+         while (!closed.get())
+         {
+            int id = in.readInt();
+            byte[] message = new byte[readFrameLength(in, maxFrameSize)];
+            in.readFully(message);
+
+            CompletableFuture<byte[]> response = pending.remove(Integer.valueOf(id));
+            if (response != null)
+               response.complete(message);
+         }
+      }
+      catch (IOException ioe)
+      {
+         close(ioe);
+      }
+   }
+
+   /**
+    * Read the length of a frame
+    * @param in The input stream
+    * @param maxFrameSize The maximum frame size in bytes
+    * @return The value
+    * @exception IOException Thrown if the length can't be read, or is invalid
+    */
+   static int readFrameLength(DataInputStream in, int maxFrameSize) throws IOException
+   {
+      int length = in.readInt();
+
+      if (length < 0 || length > maxFrameSize)
+         throw new StreamCorruptedException("Invalid frame length: " + length);
+
+      return length;
+   }
+
+   /**
+    * Write a frame
+    * @param out The output stream
+    * @param id The request id
+    * @param message The message
+    * @exception IOException Thrown if the frame can't be written
+    */
+   static void writeFrame(DataOutputStream out, int id, byte[] message) throws IOException
+   {
+      out.writeInt(id);
+      out.writeInt(message.length);
+      out.write(message);
+      out.flush();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString()
+   {
+      return "Connection [address=" + address + ", pending=" + pending.size() + ", closed=" + closed + "]";
+   }
+}
@@ -23,19 +23,35 @@ package org.ironjacamar.core.workmanager.transport.remote.socket;
 
 import org.ironjacamar.core.CoreBundle;
 import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.connectionmanager.pool.MaintenanceScheduler;
 import org.ironjacamar.core.spi.workmanager.Address;
 import org.ironjacamar.core.workmanager.transport.remote.AbstractRemoteTransport;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolCodec;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
 import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Response;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.resource.spi.work.WorkException;
@@ -77,6 +93,33 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
    /** Is the transport initialized */
    private boolean initialized;
 
+   /** Use persistent, multiplexed connections to the peers */
+   private boolean multiplexed;
+
+   /** The idle timeout of a multiplexed connection in milliseconds */
+   private long idleTimeout;
+
+   /** The time to wait for the response to a request on a multiplexed connection in milliseconds */
+   private long requestTimeout;
+
+   /** The maximum frame size on a multiplexed connection in bytes */
+   private int maxFrameSize;
+
+   /** The connect timeout in milliseconds */
+   private int connectTimeout;
+
+   /** The multiplexed connections to the peers */
+   private ConcurrentMap<String, Connection> connections;
+
+   /** The multiplexed connections being established, by address */
+   private ConcurrentMap<String, CompletableFuture<Connection>> connecting;
+
+   /** The multiplexed connections accepted from the peers */
+   private Set<Socket> serverConnections;
+
+   /** The idle connection reaper */
+   private MaintenanceScheduler.Task reaper;
+
    /**
     * Constructor
     */
@@ -89,6 +132,15 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
       this.running = new AtomicBoolean(false);
       this.ss = null;
       this.initialized = false;
+      this.multiplexed = false;
+      this.idleTimeout = 60000L;
+      this.requestTimeout = 300000L;
+      this.maxFrameSize = Connection.DEFAULT_MAX_FRAME_SIZE;
+      this.connectTimeout = Connection.DEFAULT_CONNECT_TIMEOUT;
+      this.connections = new ConcurrentHashMap<String, Connection>();
+      this.connecting = new ConcurrentHashMap<String, CompletableFuture<Connection>>();
+      this.serverConnections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+      this.reaper = null;
    }
 
    /**
@@ -106,6 +158,20 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
          running.set(true);
 
          getExecutorService().submit(this);
+
+         if (multiplexed && idleTimeout > 0)
+         {
+            MaintenanceScheduler.getInstance().register(this);
+            reaper = MaintenanceScheduler.getInstance().schedule(this, new Runnable()
+            {
+               public void run()
+               {
+                  reapIdleConnections();
+               }
+            }, idleTimeout);
+         }
+
+         startStatisticsPublisher();
       }
    }
 
@@ -173,40 +239,177 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
    {
       running.set(false);
 
+      stopStatisticsPublisher();
+      clearClassDefinitions();
+
+      if (reaper != null)
+      {
+         reaper.cancel();
+         reaper = null;
+
+         MaintenanceScheduler.getInstance().unregister(this);
+      }
+
+      for (Connection c : connections.values())
+      {
+         c.close();
+      }
+      connections.clear();
+
+      for (Socket socket : serverConnections)
+      {
+         try
+         {
+            socket.close();
+         }
+         catch (IOException ioe)
+         {
+            //ignore it
+         }
+      }
+      serverConnections.clear();
+
       if (ss != null)
          ss.close();
    }
 
-   @Override
-   protected Serializable sendMessage(String address, Request request, Serializable... parameters)
-      throws WorkException
+   /**
+    * Close the multiplexed connections that have been idle for the idle timeout
+    */
+   void reapIdleConnections()
    {
-      String[] addressPart = address.split(":");
-      Socket socket = null;
-      ObjectOutputStream oos = null;
-
-      if (trace)
-         log.tracef("%s:%d: sending message=%s to %s:%s", ss.getInetAddress().getHostName(),
-                    ss.getLocalPort(), request, addressPart[0], addressPart[1]);
+      long now = System.currentTimeMillis();
 
-      try
+      for (Map.Entry<String, Connection> entry : connections.entrySet())
       {
-         socket = new Socket(addressPart[0], Integer.valueOf(addressPart[1]));
+         Connection c = entry.getValue();
 
-         oos = new ObjectOutputStream(socket.getOutputStream());
-         oos.writeInt(request.ordinal());
-         oos.writeInt(request.getNumberOfParameter());
-         if (parameters != null)
+         if (c.isClosed() || c.isIdle(now, idleTimeout))
          {
-            for (Serializable o : parameters)
+            if (connections.remove(entry.getKey(), c))
             {
-               oos.writeObject(o);
+               if (trace)
+                  log.tracef("Reaping connection: %s", c);
+
+               c.close();
             }
          }
+      }
+   }
+
+   /**
+    * Get the multiplexed connection to a peer, and establish it if needed. Only one thread
+    * connects to a peer at a time; the other threads asking for the same peer wait for it,
+    * while the threads asking for other peers aren't blocked
+    * @param address The address of the peer
+    * @return The connection
+    * @exception IOException Thrown if the connection can't be established
+    */
+   private Connection getConnection(String address) throws IOException
+   {
+      Connection c = connections.get(address);
+
+      if (c != null && !c.isClosed())
+         return c;
+
+      CompletableFuture<Connection> f = new CompletableFuture<Connection>();
+      CompletableFuture<Connection> other = connecting.putIfAbsent(address, f);
+
+      if (other != null)
+         return awaitConnection(other);
+
+      try
+      {
+         c = connections.get(address);
+
+         if (c == null || c.isClosed())
+         {
+            if (trace)
+               log.tracef("Connecting to %s", address);
+
+            c = new Connection(address, maxFrameSize, connectTimeout);
+            connections.put(address, c);
+
+            c.start();
+         }
+
+         f.complete(c);
+         return c;
+      }
+      catch (IOException ioe)
+      {
+         f.completeExceptionally(ioe);
+         throw ioe;
+      }
+      catch (RuntimeException re)
+      {
+         f.completeExceptionally(re);
+         throw re;
+      }
+      finally
+      {
+         connecting.remove(address, f);
+      }
+   }
+
+   /**
+    * Wait for a multiplexed connection which is established by another thread
+    * @param f The future of the connection
+    * @return The connection
+    * @exception IOException Thrown if the connection can't be established
+    */
+   private Connection awaitConnection(CompletableFuture<Connection> f) throws IOException
+   {
+      try
+      {
+         return f.get();
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException();
+      }
+      catch (ExecutionException ee)
+      {
+         if (ee.getCause() instanceof IOException)
+            throw (IOException)ee.getCause();
+
+         throw new IOException(ee.getCause());
+      }
+   }
+
+   /**
+    * Add a multiplexed connection accepted from a peer
+    * @param socket The socket
+    */
+   void addServerConnection(Socket socket)
+   {
+      serverConnections.add(socket);
+   }
+
+   /**
+    * Remove a multiplexed connection accepted from a peer
+    * @param socket The socket
+    */
+   void removeServerConnection(Socket socket)
+   {
+      serverConnections.remove(socket);
+   }
 
-         oos.flush();
+   @Override
+   protected Serializable sendMessage(String address, Request request, Serializable... parameters)
+      throws WorkException
+   {
+      if (trace)
+         log.tracef("%s:%d: sending message=%s to %s", ss.getInetAddress().getHostName(),
+                    ss.getLocalPort(), request, address);
+
+      try
+      {
+         if (multiplexed)
+            return sendMultiplexedMessage(address, request, parameters);
 
-         return parseResponse(socket);
+         return sendSocketMessage(address, request, parameters);
       }
       catch (Throwable t)
       {
@@ -225,19 +428,65 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
             throw we;
          }
       }
+   }
+
+   /**
+    * Send a message over a multiplexed connection, using the binary protocol. A connection that
+    * was closed before the message was written, for example by the reaper, is established again
+    * unless the transport is shutting down
+    * @param address The address
+    * @param request The request
+    * @param parameters The parameters
+    * @return The result
+    * @exception Throwable Thrown if an error occurs
+    */
+   private Serializable sendMultiplexedMessage(String address, Request request, Serializable... parameters)
+      throws Throwable
+   {
+      ByteArrayOutputStream message = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(message);
+      ProtocolCodec.writeRequest(dos, request, parameters);
+      dos.flush();
+
+      byte[] response = null;
+      try
+      {
+         response = getConnection(address).request(message.toByteArray(), requestTimeout);
+      }
+      catch (ClosedChannelException cce)
+      {
+         if (!running.get())
+            throw cce;
+
+         response = getConnection(address).request(message.toByteArray(), requestTimeout);
+      }
+
+      return parseBinaryResponse(response);
+   }
+
+   /**
+    * Send a message over a new socket
+    * @param address The address
+    * @param request The request
+    * @param parameters The parameters
+    * @return The result
+    * @exception Throwable Thrown if an error occurs
+    */
+   private Serializable sendSocketMessage(String address, Request request, Serializable... parameters)
+      throws Throwable
+   {
+      Socket socket = null;
+
+      try
+      {
+         socket = Connection.connect(address, connectTimeout);
+
+         writeRequest(socket.getOutputStream(), request, parameters);
+
+         return parseResponse(socket.getInputStream());
+      }
       finally
       {
-         if (oos != null)
-         {
-            try
-            {
-               oos.close();
-            }
-            catch (IOException e)
-            {
-               //ignore it
-            }
-         }
          if (socket != null)
          {
             try
@@ -252,13 +501,42 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
       }
    }
 
-   private Serializable parseResponse(Socket socket) throws Throwable
+   /**
+    * Write a request
+    * @param os The output stream
+    * @param request The request
+    * @param parameters The parameters
+    * @exception IOException Thrown if an error occurs
+    */
+   private void writeRequest(OutputStream os, Request request, Serializable... parameters) throws IOException
+   {
+      ObjectOutputStream oos = new ObjectOutputStream(os);
+      oos.writeInt(request.ordinal());
+      oos.writeInt(request.getNumberOfParameter());
+      if (parameters != null)
+      {
+         for (Serializable o : parameters)
+         {
+            oos.writeObject(o);
+         }
+      }
+
+      oos.flush();
+   }
+
+   /**
+    * Parse a response
+    * @param is The input stream
+    * @return The result
+    * @exception Throwable Thrown if the response is an exception
+    */
+   private Serializable parseResponse(InputStream is) throws Throwable
    {
       ObjectInputStream ois = null;
 
       try
       {
-         ois = new ObjectInputStream(socket.getInputStream());
+         ois = new ObjectInputStream(is);
 
          int commandOrdinalPosition = ois.readInt();
          int numberOfParameters = ois.readInt();
@@ -270,29 +548,7 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
             parameters[i] = parameter;
          }
 
-         Response response = Response.values()[commandOrdinalPosition];
-
-         switch (response)
-         {
-            case OK_VOID : {
-               return null;
-            }
-            case OK_SERIALIZABLE : {
-               return parameters[0];
-            }
-            case WORK_EXCEPTION : {
-               throw (WorkException)parameters[0];
-            }
-            case GENERIC_EXCEPTION : {
-               throw (Throwable)parameters[0];
-            }
-            default :
-               if (log.isDebugEnabled())
-               {
-                  log.debug("Unknown response received on socket Transport");
-               }
-               throw new WorkException("Unknown response received on socket Transport");
-         }
+         return toResult(Response.values()[commandOrdinalPosition], parameters);
       }
       finally
       {
@@ -310,6 +566,60 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
       }
    }
 
+   /**
+    * Parse a response of the binary protocol
+    * @param message The message
+    * @return The result
+    * @exception Throwable Thrown if the response is an exception
+    */
+   private Serializable parseBinaryResponse(byte[] message) throws Throwable
+   {
+      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(message));
+
+      int commandOrdinalPosition = ProtocolCodec.readOrdinal(dis);
+      int numberOfParameters = ProtocolCodec.readNumberOfParameters(dis);
+      Serializable[] parameters = new Serializable[numberOfParameters];
+
+      for (int i = 0; i < numberOfParameters; i++)
+      {
+         parameters[i] = ProtocolCodec.readValue(dis, null);
+      }
+
+      return toResult(Response.values()[commandOrdinalPosition], parameters);
+   }
+
+   /**
+    * Get the result of a response
+    * @param response The response
+    * @param parameters The parameters
+    * @return The result
+    * @exception Throwable Thrown if the response is an exception
+    */
+   private Serializable toResult(Response response, Serializable[] parameters) throws Throwable
+   {
+      switch (response)
+      {
+         case OK_VOID : {
+            return null;
+         }
+         case OK_SERIALIZABLE : {
+            return parameters[0];
+         }
+         case WORK_EXCEPTION : {
+            throw (WorkException)parameters[0];
+         }
+         case GENERIC_EXCEPTION : {
+            throw (Throwable)parameters[0];
+         }
+         default :
+            if (log.isDebugEnabled())
+            {
+               log.debug("Unknown response received on socket Transport");
+            }
+            throw new WorkException("Unknown response received on socket Transport");
+      }
+   }
+
    /**
     * Set the host.
     *
@@ -339,6 +649,98 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
       this.peers = peers;
    }
 
+   /**
+    * Is the transport using persistent, multiplexed connections to the peers
+    * @return The value
+    */
+   public boolean isMultiplexed()
+   {
+      return multiplexed;
+   }
+
+   /**
+    * Use persistent, multiplexed connections to the peers instead of a socket per message.
+    * The peers accept both kinds of connections
+    * @param v The value
+    */
+   public void setMultiplexed(boolean v)
+   {
+      this.multiplexed = v;
+   }
+
+   /**
+    * Get the idle timeout of a multiplexed connection
+    * @return The value in milliseconds
+    */
+   public long getIdleTimeout()
+   {
+      return idleTimeout;
+   }
+
+   /**
+    * Set the idle timeout of a multiplexed connection
+    * @param v The value in milliseconds; 0 or less keeps the connections open
+    */
+   public void setIdleTimeout(long v)
+   {
+      this.idleTimeout = v;
+   }
+
+   /**
+    * Get the time to wait for the response to a request on a multiplexed connection
+    * @return The value in milliseconds
+    */
+   public long getRequestTimeout()
+   {
+      return requestTimeout;
+   }
+
+   /**
+    * Set the time to wait for the response to a request on a multiplexed connection
+    * @param v The value in milliseconds; 0 or less waits until the connection is closed
+    */
+   public void setRequestTimeout(long v)
+   {
+      this.requestTimeout = v;
+   }
+
+   /**
+    * Get the maximum frame size on a multiplexed connection
+    * @return The value in bytes
+    */
+   public int getMaxFrameSize()
+   {
+      return maxFrameSize;
+   }
+
+   /**
+    * Set the maximum frame size on a multiplexed connection; a peer sending a longer
+    * frame is disconnected
+    * @param v The value in bytes
+    */
+   public void setMaxFrameSize(int v)
+   {
+      this.maxFrameSize = v;
+   }
+
+   /**
+    * Get the connect timeout
+    * @return The value in milliseconds
+    */
+   public int getConnectTimeout()
+   {
+      return connectTimeout;
+   }
+
+   /**
+    * Set the connect timeout
+    * @param v The value in milliseconds; 0 waits until the connection is established or refused
+    */
+   public void setConnectTimeout(int v)
+   {
+      this.connectTimeout = v;
+   }
+
    /**
     * Get the physical address
     * @return The value
@@ -371,6 +773,7 @@ public class SocketTransport extends AbstractRemoteTransport<String> implements
    @Override
    public String toString()
    {
-      return "SocketTransport [host=" + host + ", port=" + port + ", running=" + running + ", ss=" + ss + "]";
+      return "SocketTransport [host=" + host + ", port=" + port + ", running=" + running + ", ss=" + ss +
+         ", multiplexed=" + multiplexed + ", connections=" + connections.size() + "]";
    }
 }
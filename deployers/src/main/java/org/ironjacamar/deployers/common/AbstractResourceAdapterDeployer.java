@@ -1075,6 +1075,20 @@ public abstract class AbstractResourceAdapterDeployer
    private void applyPoolConfiguration(PoolConfiguration pc,
                                        org.ironjacamar.common.api.metadata.common.Validation v)
    {
+      // The validation metadata has no batch size, so the default comes from a system property
+      String batchSize = SecurityActions.getSystemProperty("ironjacamar.pool.validation.batch");
+      if (batchSize != null && !batchSize.trim().equals(""))
+      {
+         try
+         {
+            pc.setBackgroundValidationBatchSize(Integer.parseInt(batchSize.trim()));
+         }
+         catch (NumberFormatException nfe)
+         {
+            // Use the default batch size
+         }
+      }
+
       if (v != null)
       {
          if (v.isValidateOnMatch() != null)
@@ -0,0 +1,387 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.bootstrapcontext;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the timers of a bootstrap context
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class BootstrapContextTimerTestCase
+{
+   /** The scheduler */
+   private TimerScheduler scheduler;
+
+   /**
+    * Setup
+    */
+   @Before
+   public void setup()
+   {
+      scheduler = new TimerScheduler(2);
+   }
+
+   /**
+    * Teardown
+    */
+   @After
+   public void teardown()
+   {
+      if (scheduler != null)
+         scheduler.shutdown();
+   }
+
+   /**
+    * The timers are assigned the threads in turn, and the threads are bounded
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testSharedThread() throws Throwable
+   {
+      Timer t1 = new BootstrapContextTimer(scheduler);
+      Timer t2 = new BootstrapContextTimer(scheduler);
+      Timer t3 = new BootstrapContextTimer(scheduler);
+
+      String[] threads = new String[] {threadOf(t1), threadOf(t2), threadOf(t3)};
+
+      assertNotEquals(threads[0], threads[1]);
+      assertEquals(threads[0], threads[2]);
+      assertEquals(2, scheduler.getThreads());
+   }
+
+   /**
+    * A long running task delays the timers sharing its thread, but not the other timers
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testHeadOfLine() throws Throwable
+   {
+      final CountDownLatch blocked = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch other = new CountDownLatch(1);
+      final CountDownLatch shared = new CountDownLatch(1);
+
+      Timer t1 = new BootstrapContextTimer(scheduler);
+      Timer t2 = new BootstrapContextTimer(scheduler);
+      Timer t3 = new BootstrapContextTimer(scheduler);
+
+      t1.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            blocked.countDown();
+            try
+            {
+               release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ie)
+            {
+               Thread.currentThread().interrupt();
+            }
+         }
+      }, 0L);
+      assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+      t2.schedule(new CountDown(other), 0L);
+      t3.schedule(new CountDown(shared), 0L);
+
+      assertTrue(other.await(5, TimeUnit.SECONDS));
+      assertFalse(shared.await(100L, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertTrue(shared.await(5, TimeUnit.SECONDS));
+   }
+
+   /**
+    * A task can only be scheduled once, unless it was rejected
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testScheduleOnce() throws Throwable
+   {
+      final CountDownLatch latch = new CountDownLatch(1);
+
+      Timer t1 = new BootstrapContextTimer(scheduler);
+      Timer t2 = new BootstrapContextTimer(scheduler);
+      TimerTask task = new CountDown(latch);
+
+      try
+      {
+         t1.schedule(task, -1L);
+         fail("Scheduled with a negative delay");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         // Ok
+      }
+
+      t1.schedule(task, 0L);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+      try
+      {
+         t2.schedule(task, 0L);
+         fail("Scheduled a task twice");
+      }
+      catch (IllegalStateException ise)
+      {
+         // Ok
+      }
+   }
+
+   /**
+    * A cancelled timer cancels its tasks, and doesn't accept tasks
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testTimerCancel() throws Throwable
+   {
+      final AtomicInteger count = new AtomicInteger(0);
+
+      BootstrapContextTimer timer = new BootstrapContextTimer(scheduler);
+      TimerTask task = new TimerTask()
+      {
+         public void run()
+         {
+            count.incrementAndGet();
+         }
+      };
+      timer.schedule(task, 1000L, 1000L);
+      assertEquals(1, scheduler.getPendingTasks());
+
+      timer.cancel();
+      assertEquals(0, scheduler.getPendingTasks());
+      assertEquals(0, timer.size());
+
+      try
+      {
+         timer.schedule(new TimerTask()
+         {
+            public void run()
+            {
+            }
+         }, 0L);
+         fail("Scheduled on a cancelled timer");
+      }
+      catch (IllegalStateException ise)
+      {
+         // Ok
+      }
+
+      assertEquals(0, count.get());
+   }
+
+   /**
+    * A failed task cancels its timer, but not the other timers sharing its thread
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testFailedTask() throws Throwable
+   {
+      final CountDownLatch before = new CountDownLatch(1);
+      final CountDownLatch after = new CountDownLatch(3);
+
+      BootstrapContextTimer failing = new BootstrapContextTimer(scheduler);
+      BootstrapContextTimer other = new BootstrapContextTimer(scheduler);
+      BootstrapContextTimer sharing = new BootstrapContextTimer(scheduler);
+      assertEquals(threadOf(failing), threadOf(sharing));
+
+      failing.schedule(new CountDown(before), 60000L);
+      sharing.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            after.countDown();
+         }
+      }, 0L, 10L);
+
+      failing.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            throw new IllegalStateException("Expected");
+         }
+      }, 0L);
+
+      assertTrue(after.await(5, TimeUnit.SECONDS));
+      assertEquals(0, failing.size());
+      assertEquals(1, sharing.size());
+      assertEquals(2, scheduler.getThreads());
+
+      try
+      {
+         failing.schedule(new CountDown(before), 0L);
+         fail("Scheduled on a failed timer");
+      }
+      catch (IllegalStateException ise)
+      {
+         // Ok
+      }
+
+      assertFalse(before.await(100L, TimeUnit.MILLISECONDS));
+
+      final CountDownLatch latch = new CountDownLatch(1);
+      other.schedule(new CountDown(latch), 0L);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+      sharing.cancel();
+   }
+
+   /**
+    * The tasks run with the context classloader of the creator of their timer
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testContextClassLoader() throws Throwable
+   {
+      final CountDownLatch latch = new CountDownLatch(2);
+      final ClassLoader[] tccl = new ClassLoader[2];
+      ClassLoader cl = new URLClassLoader(new URL[0]);
+      ClassLoader old = Thread.currentThread().getContextClassLoader();
+
+      Timer t1 = null;
+      try
+      {
+         Thread.currentThread().setContextClassLoader(cl);
+         t1 = new BootstrapContextTimer(scheduler);
+      }
+      finally
+      {
+         Thread.currentThread().setContextClassLoader(old);
+      }
+      new BootstrapContextTimer(scheduler);
+      Timer t3 = new BootstrapContextTimer(scheduler);
+
+      t1.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            tccl[0] = Thread.currentThread().getContextClassLoader();
+            latch.countDown();
+         }
+      }, 0L);
+
+      t3.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            tccl[1] = Thread.currentThread().getContextClassLoader();
+            latch.countDown();
+         }
+      }, 0L);
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertEquals(cl, tccl[0]);
+      assertEquals(old, tccl[1]);
+   }
+
+   /**
+    * The pending and executed tasks are counted
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testCounters() throws Throwable
+   {
+      final CountDownLatch latch = new CountDownLatch(3);
+
+      BootstrapContextTimer timer = new BootstrapContextTimer(scheduler);
+      timer.schedule(new CountDown(latch), 0L);
+      timer.schedule(new CountDown(new CountDownLatch(1)), 60000L);
+      timer.scheduleAtFixedRate(new CountDown(latch), 0L, 10L);
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertTrue(scheduler.getExecutedCount() >= 3L);
+      assertEquals(2, scheduler.getPendingTasks());
+
+      timer.cancel();
+      assertEquals(0, scheduler.getPendingTasks());
+   }
+
+   /**
+    * Get the name of the thread running the tasks of a timer
+    * @param timer The timer
+    * @return The name
+    * @throws Throwable In case of an error
+    */
+   private static String threadOf(Timer timer) throws Throwable
+   {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final String[] thread = new String[1];
+
+      timer.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            thread[0] = Thread.currentThread().getName();
+            latch.countDown();
+         }
+      }, 0L);
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      return thread[0];
+   }
+
+   /**
+    * A task counting down a latch
+    */
+   static class CountDown extends TimerTask
+   {
+      /** The latch */
+      private final CountDownLatch latch;
+
+      /**
+       * Constructor
+       * @param latch The latch
+       */
+      CountDown(CountDownLatch latch)
+      {
+         this.latch = latch;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         latch.countDown();
+      }
+   }
+}
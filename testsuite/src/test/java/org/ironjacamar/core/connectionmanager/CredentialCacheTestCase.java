@@ -0,0 +1,207 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.connectionmanager;
+
+import org.ironjacamar.core.security.DefaultSubjectFactory;
+
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.security.auth.Subject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * CredentialCache tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class CredentialCacheTestCase
+{
+   /**
+    * Without a security domain
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testNoSecurityDomain() throws Exception
+   {
+      CredentialCache cache = new CredentialCache(null, 60000L, 4);
+
+      Credential c = cache.getCredential(null, null, null);
+      assertNull(c.getSubject());
+      assertSame(c, cache.getCredential(null, null, null));
+
+      ConnectionRequestInfo cri = new TestConnectionRequestInfo("a");
+      Credential cc = cache.getCredential(null, null, cri);
+      assertSame(cc, cache.getCredential(null, null, new TestConnectionRequestInfo("a")));
+      assertNotSame(cc, cache.getCredential(null, null, new TestConnectionRequestInfo("b")));
+   }
+
+   /**
+    * The subject is reused until the security domain changes
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testSecurityDomain() throws Exception
+   {
+      CountingSubjectFactory sf = new CountingSubjectFactory();
+      CredentialCache cache = new CredentialCache(null, 60000L, 4);
+
+      Credential c = cache.getCredential(sf, "domain", null);
+      assertSame(c, cache.getCredential(sf, "domain", null));
+      assertEquals(1, sf.getCount());
+
+      Credential cc = cache.getCredential(sf, "domain", new TestConnectionRequestInfo("a"));
+      assertSame(c.getSubject(), cc.getSubject());
+      assertEquals(1, sf.getCount());
+
+      Credential other = cache.getCredential(sf, "other", null);
+      assertNotSame(c, other);
+      assertEquals(2, sf.getCount());
+
+      cache.clear();
+      cache.getCredential(sf, "other", null);
+      assertEquals(3, sf.getCount());
+
+      cache.getCredential(new CountingSubjectFactory(), "other", null);
+      assertEquals(3, sf.getCount());
+   }
+
+   /**
+    * The subject expires
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testExpiry() throws Exception
+   {
+      CountingSubjectFactory sf = new CountingSubjectFactory();
+      CredentialCache cache = new CredentialCache(null, 50L, 4);
+
+      Credential c = cache.getCredential(sf, "domain", null);
+      Thread.sleep(100L);
+
+      assertNotSame(c, cache.getCredential(sf, "domain", null));
+      assertEquals(2, sf.getCount());
+
+      cache = new CredentialCache(null, 0L, 4);
+      assertNotSame(cache.getCredential(sf, "domain", null), cache.getCredential(sf, "domain", null));
+      assertEquals(4, sf.getCount());
+   }
+
+   /**
+    * The least recently used credential is evicted when the cache is full
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testEviction() throws Exception
+   {
+      CredentialCache cache = new CredentialCache(null, 60000L, 2);
+
+      Credential a = cache.getCredential(null, null, new TestConnectionRequestInfo("a"));
+      Credential b = cache.getCredential(null, null, new TestConnectionRequestInfo("b"));
+
+      assertSame(a, cache.getCredential(null, null, new TestConnectionRequestInfo("a")));
+      cache.getCredential(null, null, new TestConnectionRequestInfo("c"));
+
+      assertSame(a, cache.getCredential(null, null, new TestConnectionRequestInfo("a")));
+      assertNotSame(b, cache.getCredential(null, null, new TestConnectionRequestInfo("b")));
+   }
+
+   /**
+    * A subject factory counting the created subjects
+    */
+   static class CountingSubjectFactory extends DefaultSubjectFactory
+   {
+      /** The count */
+      private int count;
+
+      /**
+       * Constructor
+       */
+      CountingSubjectFactory()
+      {
+         super("domain", "user", "password");
+         this.count = 0;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public Subject createSubject(String securityDomain)
+      {
+         count++;
+         return super.createSubject(securityDomain);
+      }
+
+      /**
+       * Get the count
+       * @return The value
+       */
+      int getCount()
+      {
+         return count;
+      }
+   }
+
+   /**
+    * A connection request info
+    */
+   static class TestConnectionRequestInfo implements ConnectionRequestInfo
+   {
+      /** The value */
+      private String value;
+
+      /**
+       * Constructor
+       * @param value The value
+       */
+      TestConnectionRequestInfo(String value)
+      {
+         this.value = value;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public int hashCode()
+      {
+         return value.hashCode();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof TestConnectionRequestInfo))
+            return false;
+
+         return value.equals(((TestConnectionRequestInfo)o).value);
+      }
+   }
+}
@@ -0,0 +1,114 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.ccm;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the connection tracking of the CachedConnectionManager
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class CachedConnectionManagerTestCase
+{
+   /**
+    * Connections are only tracked when debug is enabled
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testDebug() throws Throwable
+   {
+      CachedConnectionManagerImpl ccm = new CachedConnectionManagerImpl(null);
+      Object c = new Object();
+
+      ccm.registerConnection(null, null, c);
+      assertEquals(0, ccm.getNumberOfConnections());
+
+      ccm.setDebug(true);
+      ccm.registerConnection(null, null, c);
+      assertEquals(1, ccm.getNumberOfConnections());
+
+      ccm.unregisterConnection(null, null, c);
+      assertEquals(0, ccm.getNumberOfConnections());
+      assertEquals(0, ccm.listConnections().size());
+   }
+
+   /**
+    * The sample rate controls which connections record their allocation stack trace
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testSampling() throws Throwable
+   {
+      CachedConnectionManagerImpl ccm = new CachedConnectionManagerImpl(null);
+      ccm.setDebug(true);
+
+      Object sampled = new Object();
+      ccm.registerConnection(null, null, sampled);
+
+      ccm.setLeakSampleRate(0);
+      Object unsampled = new Object();
+      ccm.registerConnection(null, null, unsampled);
+
+      Map<String, String> connections = ccm.listConnections();
+
+      assertEquals(2, ccm.getNumberOfConnections());
+      assertEquals(2, connections.size());
+      assertTrue(connections.get(sampled.toString()).contains("STACKTRACE"));
+      assertTrue(!connections.get(unsampled.toString()).contains("STACKTRACE"));
+      assertTrue(connections.get(unsampled.toString()).contains(Thread.currentThread().getName()));
+
+      ccm.unregisterConnection(null, null, sampled);
+      ccm.unregisterConnection(null, null, unsampled);
+      assertEquals(0, ccm.getNumberOfConnections());
+   }
+
+   /**
+    * Connections held longer than the leak threshold are flagged
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testLeakThreshold() throws Throwable
+   {
+      CachedConnectionManagerImpl ccm = new CachedConnectionManagerImpl(null);
+      ccm.setDebug(true);
+      ccm.setLeakSampleRate(0);
+
+      Object c = new Object();
+      ccm.registerConnection(null, null, c);
+      assertTrue(!ccm.listConnections().get(c.toString()).contains("possible leak"));
+
+      ccm.setLeakThreshold(1L);
+      Thread.sleep(10L);
+
+      assertTrue(ccm.listConnections().get(c.toString()).contains("possible leak"));
+
+      ccm.stop();
+      ccm.unregisterConnection(null, null, c);
+      assertEquals(0, ccm.getNumberOfConnections());
+   }
+}
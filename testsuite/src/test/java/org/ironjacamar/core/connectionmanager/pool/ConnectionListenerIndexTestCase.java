@@ -0,0 +1,296 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.CoreLogger;
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.resource.spi.ManagedConnection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * ConnectionListenerIndex tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ConnectionListenerIndexTestCase
+{
+   /**
+    * Find by managed connection and by connection handle
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testFind() throws Exception
+   {
+      ConnectionListenerIndex index = new ConnectionListenerIndex();
+
+      ManagedConnection mc1 = createManagedConnection();
+      ManagedConnection mc2 = createManagedConnection();
+      Set<Object> handles1 = new HashSet<Object>();
+      Set<Object> handles2 = new HashSet<Object>();
+      ConnectionListener cl1 = createConnectionListener(mc1, handles1);
+      ConnectionListener cl2 = createConnectionListener(mc2, handles2);
+
+      index.add(cl1);
+      index.add(cl2);
+      assertEquals(2, index.size());
+
+      assertSame(cl1, index.find(mc1, null));
+      assertSame(cl2, index.find(mc2, null));
+      assertNull(index.find(createManagedConnection(), null));
+      assertNull(index.find(null, null));
+
+      Object c = new Object();
+      handles1.add(c);
+      index.addConnection(cl1, c);
+
+      assertSame(cl1, index.find(mc1, c));
+      assertSame(cl1, index.find(null, c));
+      assertNull(index.find(mc2, c));
+
+      handles1.remove(c);
+      index.removeConnection(cl1, c);
+
+      assertNull(index.find(mc1, c));
+      assertNull(index.find(null, c));
+
+      index.remove(cl1);
+      assertEquals(1, index.size());
+      assertNull(index.find(mc1, null));
+      assertSame(cl2, index.find(mc2, null));
+
+      index.clear();
+      assertEquals(0, index.size());
+      assertNull(index.find(mc2, null));
+   }
+
+   /**
+    * A handle moved to another connection listener isn't removed by the old one
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testMovedConnection() throws Exception
+   {
+      ConnectionListenerIndex index = new ConnectionListenerIndex();
+
+      Object c = new Object();
+      ConnectionListener cl1 = createConnectionListener(createManagedConnection(), new HashSet<Object>());
+      ConnectionListener cl2 = createConnectionListener(createManagedConnection(), new HashSet<Object>());
+
+      index.addConnection(cl1, c);
+      index.addConnection(cl2, c);
+      index.removeConnection(cl1, c);
+
+      assertSame(cl2, index.find(null, c));
+   }
+
+   /**
+    * A pool which doesn't index its connection listeners is scanned
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testUnindexedPool() throws Exception
+   {
+      ManagedConnection mc = createManagedConnection();
+      Set<Object> handles = new HashSet<Object>();
+      final ConnectionListener cl = createConnectionListener(mc, handles);
+
+      UnindexedPool pool = new UnindexedPool();
+      pool.pools.put(new Credential(null, null), createManagedConnectionPool(cl));
+
+      assertEquals(0, pool.getConnectionListenerIndex().size());
+      assertSame(cl, pool.findConnectionListener(mc, null));
+      assertNull(pool.findConnectionListener(createManagedConnection(), null));
+
+      Object c = new Object();
+      handles.add(c);
+      pool.getConnectionListenerIndex().addConnection(cl, c);
+
+      assertSame(cl, pool.findConnectionListener(mc, c));
+      assertSame(cl, pool.findConnectionListener(null, c));
+   }
+
+   /**
+    * Create a managed connection pool
+    * @param cl The connection listener
+    * @return The value
+    */
+   private static ManagedConnectionPool createManagedConnectionPool(final ConnectionListener cl)
+   {
+      return (ManagedConnectionPool)Proxy.newProxyInstance(ManagedConnectionPool.class.getClassLoader(),
+                                                           new Class<?>[] {ManagedConnectionPool.class},
+                                                           new InvocationHandler()
+      {
+         /**
+          * {@inheritDoc}
+          */
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if ("findConnectionListener".equals(method.getName()))
+            {
+               ManagedConnection mc = (ManagedConnection)args[0];
+               Object c = args[1];
+
+               if (cl.getManagedConnection() == mc && (c == null || cl.getConnections().contains(c)))
+                  return cl;
+
+               return null;
+            }
+
+            if ("hashCode".equals(method.getName()))
+               return Integer.valueOf(System.identityHashCode(proxy));
+
+            if ("equals".equals(method.getName()))
+               return Boolean.valueOf(proxy == args[0]);
+
+            return null;
+         }
+      });
+   }
+
+   /**
+    * Create a managed connection
+    * @return The value
+    */
+   private static ManagedConnection createManagedConnection()
+   {
+      return (ManagedConnection)Proxy.newProxyInstance(ManagedConnection.class.getClassLoader(),
+                                                       new Class<?>[] {ManagedConnection.class},
+                                                       new InvocationHandler()
+      {
+         /**
+          * {@inheritDoc}
+          */
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if ("hashCode".equals(method.getName()))
+               return Integer.valueOf(0);
+
+            if ("equals".equals(method.getName()))
+               return Boolean.TRUE;
+
+            return null;
+         }
+      });
+   }
+
+   /**
+    * Create a connection listener
+    * @param mc The managed connection
+    * @param connections The connection handles
+    * @return The value
+    */
+   private static ConnectionListener createConnectionListener(final ManagedConnection mc,
+                                                              final Set<Object> connections)
+   {
+      return (ConnectionListener)Proxy.newProxyInstance(ConnectionListener.class.getClassLoader(),
+                                                        new Class<?>[] {ConnectionListener.class},
+                                                        new InvocationHandler()
+      {
+         /**
+          * {@inheritDoc}
+          */
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if ("getManagedConnection".equals(method.getName()))
+               return mc;
+
+            if ("getConnections".equals(method.getName()))
+               return connections;
+
+            if ("hashCode".equals(method.getName()))
+               return Integer.valueOf(System.identityHashCode(proxy));
+
+            if ("equals".equals(method.getName()))
+               return Boolean.valueOf(proxy == args[0]);
+
+            return null;
+         }
+      });
+   }
+
+   /**
+    * A pool which doesn't maintain the connection listener index itself
+    */
+   static class UnindexedPool extends AbstractPool
+   {
+      /**
+       * Constructor
+       */
+      UnindexedPool()
+      {
+         super(null, new PoolConfiguration());
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public String getType()
+      {
+         return "unindexed";
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public CoreLogger getLogger()
+      {
+         return null;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public ConnectionListener createConnectionListener(Credential credential, ManagedConnectionPool mcp)
+      {
+         return null;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void destroyConnectionListener(ConnectionListener cl)
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public ManagedConnectionPool createManagedConnectionPool(Credential credential)
+      {
+         return null;
+      }
+   }
+}
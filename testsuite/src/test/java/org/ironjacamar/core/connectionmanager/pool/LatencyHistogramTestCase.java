@@ -0,0 +1,90 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LatencyHistogram tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class LatencyHistogramTestCase
+{
+   /**
+    * Every value maps to a bucket that covers it
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testBuckets() throws Exception
+   {
+      for (long v = 0L; v < 1000000L; v++)
+      {
+         int index = LatencyHistogram.index(v);
+
+         assertTrue(LatencyHistogram.highestValue(index) >= v);
+         if (index > 0)
+            assertTrue(LatencyHistogram.highestValue(index - 1) < v);
+      }
+   }
+
+   /**
+    * Percentiles
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testPercentiles() throws Exception
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals(0L, histogram.getValueAtPercentile(99.0));
+
+      for (long v = 1L; v <= 10000L; v++)
+         histogram.record(v);
+
+      histogram.record(-1L);
+      assertEquals(10000L, histogram.getCount());
+
+      assertWithin(5000L, histogram.getValueAtPercentile(50.0));
+      assertWithin(9900L, histogram.getValueAtPercentile(99.0));
+      assertWithin(9990L, histogram.getValueAtPercentile(99.9));
+      assertWithin(10000L, histogram.getValueAtPercentile(100.0));
+
+      histogram.record(Long.MAX_VALUE);
+      assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100.0));
+
+      histogram.clear();
+      assertEquals(0L, histogram.getCount());
+   }
+
+   /**
+    * Assert that a value is within the precision of the histogram
+    * @param expected The expected value
+    * @param actual The actual value
+    */
+   private static void assertWithin(long expected, long actual)
+   {
+      assertTrue(actual >= expected);
+      assertTrue(actual - expected <= expected / LatencyHistogram.SUB_BUCKETS);
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MaintenanceScheduler tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class MaintenanceSchedulerTestCase
+{
+   /**
+    * A task executed right away
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testExecute() throws Exception
+   {
+      final CountDownLatch latch = new CountDownLatch(1);
+      MaintenanceScheduler ms = MaintenanceScheduler.getInstance();
+      long executed = ms.getExecutedCount();
+
+      ms.execute(new Runnable()
+      {
+         public void run()
+         {
+            latch.countDown();
+         }
+      });
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertTrue(ms.getExecutedCount() > executed);
+   }
+
+   /**
+    * A periodic task runs until it is cancelled
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testSchedule() throws Exception
+   {
+      final AtomicInteger count = new AtomicInteger();
+      final CountDownLatch latch = new CountDownLatch(3);
+      MaintenanceScheduler ms = MaintenanceScheduler.getInstance();
+
+      MaintenanceScheduler.Task task = ms.schedule(this, new Runnable()
+      {
+         public void run()
+         {
+            count.incrementAndGet();
+            latch.countDown();
+         }
+      }, 200L);
+
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+      task.cancel();
+      assertTrue(task.isCancelled());
+
+      Thread.sleep(500L);
+      int runs = count.get();
+
+      Thread.sleep(1000L);
+      assertEquals(runs, count.get());
+
+      assertTrue(ms.getMaxLateness() >= ms.getLateness(50.0));
+   }
+
+   /**
+    * A task executed right away isn't delayed by periodic tasks occupying the workers
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testExecuteWhileBusy() throws Exception
+   {
+      final CountDownLatch busy = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch executed = new CountDownLatch(1);
+      MaintenanceScheduler ms = MaintenanceScheduler.getInstance();
+
+      MaintenanceScheduler.Task[] tasks = new MaintenanceScheduler.Task[ms.getMaxThreads()];
+      try
+      {
+         for (int i = 0; i < tasks.length; i++)
+         {
+            tasks[i] = ms.schedule(this, new Runnable()
+            {
+               public void run()
+               {
+                  busy.countDown();
+                  try
+                  {
+                     release.await(10, TimeUnit.SECONDS);
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+               }
+            }, 100L);
+         }
+
+         assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+         ms.execute(new Runnable()
+         {
+            public void run()
+            {
+               executed.countDown();
+            }
+         });
+
+         assertTrue(executed.await(1, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         for (MaintenanceScheduler.Task task : tasks)
+         {
+            if (task != null)
+               task.cancel();
+         }
+         release.countDown();
+      }
+   }
+
+   /**
+    * The scheduler is stopped when the last user is unregistered
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testUnregister() throws Exception
+   {
+      MaintenanceScheduler ms = MaintenanceScheduler.getInstance();
+      Object user = new Object();
+
+      ms.register(user);
+      ms.register(user);
+      assertTrue(ms.isRunning());
+
+      ms.unregister(user);
+      assertTrue(ms.isRunning());
+
+      ms.unregister(user);
+      assertFalse(ms.isRunning());
+
+      final CountDownLatch latch = new CountDownLatch(1);
+      ms.execute(new Runnable()
+      {
+         public void run()
+         {
+            latch.countDown();
+         }
+      });
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+   }
+}
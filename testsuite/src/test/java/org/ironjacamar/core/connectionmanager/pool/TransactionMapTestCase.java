@@ -0,0 +1,309 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool;
+
+import org.ironjacamar.core.api.connectionmanager.pool.PoolConfiguration;
+import org.ironjacamar.core.connectionmanager.TransactionalConnectionManager;
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+import org.ironjacamar.core.connectionmanager.pool.stable.StablePool;
+import org.ironjacamar.core.spi.transaction.TransactionIntegration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TransactionMap tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class TransactionMapTestCase
+{
+   /**
+    * A lookup for a transaction which hasn't tracked anything doesn't create a map
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testFind() throws Exception
+   {
+      Registry tx = new Registry("tx");
+
+      assertNull(TransactionMap.find(tx.getRegistry()));
+      assertEquals(0, tx.synchronizations.size());
+      assertTrue(tx.resources.isEmpty());
+   }
+
+   /**
+    * Two pools in the same transaction share one map, which registers one synchronization
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testSharedByPools() throws Exception
+   {
+      Registry tx = new Registry("tx");
+
+      ManagedConnectionPool mcp1 = createProxy(ManagedConnectionPool.class);
+      ManagedConnectionPool mcp2 = createProxy(ManagedConnectionPool.class);
+      ConnectionListener cl1 = createProxy(ConnectionListener.class);
+      ConnectionListener cl2 = createProxy(ConnectionListener.class);
+
+      TransactionMap map1 = TransactionMap.findOrCreate(tx.getRegistry());
+      map1.put(mcp1, cl1);
+
+      TransactionMap map2 = TransactionMap.findOrCreate(tx.getRegistry());
+      map2.put(mcp2, cl2);
+
+      assertSame(map1, map2);
+      assertSame(map1, TransactionMap.find(tx.getRegistry()));
+      assertEquals("tx", map1.getKey());
+      assertEquals(1, tx.synchronizations.size());
+      assertSame(map1, tx.synchronizations.get(0));
+
+      assertSame(cl1, map1.get(mcp1));
+      assertSame(cl2, map1.get(mcp2));
+      assertTrue(map1.contains(cl1));
+      assertTrue(map1.contains(cl2));
+
+      assertSame(cl1, map1.remove(mcp1));
+      assertNull(map1.get(mcp1));
+      assertFalse(map1.contains(cl1));
+      assertSame(cl2, map1.get(mcp2));
+   }
+
+   /**
+    * The map is cleared when the transaction completes
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testAfterCompletion() throws Exception
+   {
+      Registry tx = new Registry("tx");
+
+      ManagedConnectionPool mcp1 = createProxy(ManagedConnectionPool.class);
+      ManagedConnectionPool mcp2 = createProxy(ManagedConnectionPool.class);
+      ConnectionListener cl1 = createProxy(ConnectionListener.class);
+      ConnectionListener cl2 = createProxy(ConnectionListener.class);
+
+      TransactionMap map = TransactionMap.findOrCreate(tx.getRegistry());
+      map.put(mcp1, cl1);
+      map.put(mcp2, cl2);
+
+      tx.complete(Status.STATUS_COMMITTED);
+
+      assertNull(map.get(mcp1));
+      assertNull(map.get(mcp2));
+      assertFalse(map.contains(cl1));
+      assertFalse(map.contains(cl2));
+   }
+
+   /**
+    * StablePool rejects a connection listener tracked by another transaction, until that
+    * transaction completes
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testStablePoolOtherTransaction() throws Exception
+   {
+      Registry tx1 = new Registry("tx1");
+      Registry tx2 = new Registry("tx2");
+      Current current = new Current(tx1);
+
+      StablePool pool = new StablePool(current.getConnectionManager(), new PoolConfiguration());
+
+      ManagedConnectionPool mcp = createProxy(ManagedConnectionPool.class);
+      ConnectionListener cl = createProxy(ConnectionListener.class);
+
+      TransactionMap map = TransactionMap.findOrCreate(tx1.getRegistry());
+      map.put(mcp, cl);
+      ((AbstractPool)pool).transactionTracked(map, cl);
+
+      assertNull(pool.verifyConnectionListener(cl));
+      assertNull(pool.verifyConnectionListener(createProxy(ConnectionListener.class)));
+
+      current.registry = tx2;
+      assertEquals("tx1", pool.verifyConnectionListener(cl));
+
+      tx1.complete(Status.STATUS_COMMITTED);
+      assertNull(pool.verifyConnectionListener(cl));
+   }
+
+   /**
+    * Create a proxy with identity semantics, which returns <code>null</code> for other methods
+    * @param <T> The type
+    * @param clz The interface
+    * @return The value
+    */
+   private static <T> T createProxy(Class<T> clz)
+   {
+      return clz.cast(Proxy.newProxyInstance(clz.getClassLoader(), new Class<?>[] {clz}, new InvocationHandler()
+      {
+         /**
+          * {@inheritDoc}
+          */
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if ("hashCode".equals(method.getName()))
+               return Integer.valueOf(System.identityHashCode(proxy));
+
+            if ("equals".equals(method.getName()))
+               return Boolean.valueOf(proxy == args[0]);
+
+            return null;
+         }
+      }));
+   }
+
+   /**
+    * A transaction, seen through its transaction synchronization registry
+    */
+   static class Registry implements InvocationHandler
+   {
+      /** The transaction key */
+      private final Object key;
+
+      /** The resources */
+      private final Map<Object, Object> resources;
+
+      /** The interposed synchronizations */
+      private final List<Synchronization> synchronizations;
+
+      /**
+       * Constructor
+       * @param key The transaction key
+       */
+      Registry(Object key)
+      {
+         this.key = key;
+         this.resources = new HashMap<Object, Object>();
+         this.synchronizations = new ArrayList<Synchronization>();
+      }
+
+      /**
+       * Get the transaction synchronization registry
+       * @return The value
+       */
+      TransactionSynchronizationRegistry getRegistry()
+      {
+         return (TransactionSynchronizationRegistry)
+            Proxy.newProxyInstance(TransactionSynchronizationRegistry.class.getClassLoader(),
+                                   new Class<?>[] {TransactionSynchronizationRegistry.class}, this);
+      }
+
+      /**
+       * Complete the transaction
+       * @param status The status
+       */
+      void complete(int status)
+      {
+         for (Synchronization s : synchronizations)
+            s.beforeCompletion();
+
+         for (Synchronization s : synchronizations)
+            s.afterCompletion(status);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Object invoke(Object proxy, Method method, Object[] args)
+      {
+         if ("getTransactionKey".equals(method.getName()))
+            return key;
+
+         if ("getResource".equals(method.getName()))
+            return resources.get(args[0]);
+
+         if ("putResource".equals(method.getName()))
+            return resources.put(args[0], args[1]);
+
+         if ("registerInterposedSynchronization".equals(method.getName()))
+            synchronizations.add((Synchronization)args[0]);
+
+         return null;
+      }
+   }
+
+   /**
+    * The current transaction of a transactional connection manager
+    */
+   static class Current implements InvocationHandler
+   {
+      /** The current transaction */
+      private Registry registry;
+
+      /**
+       * Constructor
+       * @param registry The current transaction
+       */
+      Current(Registry registry)
+      {
+         this.registry = registry;
+      }
+
+      /**
+       * Get the connection manager
+       * @return The value
+       */
+      TransactionalConnectionManager getConnectionManager()
+      {
+         return (TransactionalConnectionManager)
+            Proxy.newProxyInstance(TransactionalConnectionManager.class.getClassLoader(),
+                                   new Class<?>[] {TransactionalConnectionManager.class}, this);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Object invoke(Object proxy, Method method, Object[] args)
+      {
+         if ("getTransactionIntegration".equals(method.getName()))
+            return Proxy.newProxyInstance(TransactionIntegration.class.getClassLoader(),
+                                          new Class<?>[] {TransactionIntegration.class}, this);
+
+         if ("getTransactionSynchronizationRegistry".equals(method.getName()))
+            return registry.getRegistry();
+
+         if ("hashCode".equals(method.getName()))
+            return Integer.valueOf(System.identityHashCode(proxy));
+
+         if ("equals".equals(method.getName()))
+            return Boolean.valueOf(proxy == args[0]);
+
+         return null;
+      }
+   }
+}
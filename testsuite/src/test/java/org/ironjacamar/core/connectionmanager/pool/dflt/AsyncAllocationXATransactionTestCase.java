@@ -0,0 +1,166 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool.dflt;
+
+import org.ironjacamar.core.api.connectionmanager.ConnectionManager;
+import org.ironjacamar.core.api.deploymentrepository.DeploymentRepository;
+import org.ironjacamar.embedded.Configuration;
+import org.ironjacamar.embedded.Deployment;
+import org.ironjacamar.embedded.dsl.resourceadapters20.api.ResourceAdaptersDescriptor;
+import org.ironjacamar.embedded.junit4.AllChecks;
+import org.ironjacamar.embedded.junit4.IronJacamar;
+import org.ironjacamar.embedded.junit4.PostCondition;
+import org.ironjacamar.embedded.junit4.PreCondition;
+import org.ironjacamar.rars.ResourceAdapterFactory;
+import org.ironjacamar.rars.txlog.TxLogConnection;
+import org.ironjacamar.rars.txlog.TxLogConnectionFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.transaction.UserTransaction;
+
+import org.jboss.shrinkwrap.api.spec.ResourceAdapterArchive;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Asynchronous allocation in an XATransaction
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+@RunWith(IronJacamar.class)
+@Configuration(full = true)
+@PreCondition(condition = AllChecks.class)
+@PostCondition(condition = AllChecks.class)
+public class AsyncAllocationXATransactionTestCase
+{
+   /** The txlog connection factory */
+   @Resource(mappedName = "java:/eis/TxLogConnectionFactory")
+   private static TxLogConnectionFactory cf;
+
+   /** The deployment repository */
+   @Inject
+   private static DeploymentRepository dr;
+
+   /** The UserTransaction */
+   @Inject
+   private static UserTransaction ut;
+
+   /**
+    * The resource adapter
+    * @throws Throwable In case of an error
+    */
+   @Deployment(order = 1)
+   private static ResourceAdapterArchive createResourceAdapter() throws Throwable
+   {
+      return ResourceAdapterFactory.createTxLogRar();
+   }
+
+   /**
+    * The activation
+    * @throws Throwable In case of an error
+    */
+   @Deployment(order = 2)
+   private static ResourceAdaptersDescriptor createActivation() throws Throwable
+   {
+      return ResourceAdapterFactory.createTxLogDeployment(TransactionSupportLevel.XATransaction);
+   }
+
+   /**
+    * Dependent stages run once the connection is acquired, and the connection is
+    * enlisted by the caller
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testDependentStage() throws Throwable
+   {
+      assertNotNull(cf);
+      assertNotNull(dr);
+      assertNotNull(ut);
+
+      org.ironjacamar.core.api.deploymentrepository.Deployment d = dr.findByJndi("java:/eis/TxLogConnectionFactory");
+      assertNotNull(d);
+
+      org.ironjacamar.core.api.deploymentrepository.Pool p = d.getConnectionFactories().iterator().next().getPool();
+      assertNotNull(p);
+
+      assertTrue(p.getPool() instanceof DefaultPool);
+      ConnectionManager cm = ((DefaultPool)p.getPool()).getConnectionManager();
+
+      final CountDownLatch completed = new CountDownLatch(1);
+
+      ut.begin();
+
+      CompletableFuture<TxLogConnection> f = cm.allocateConnectionAsync(cm.getManagedConnectionFactory(), null)
+         .thenApply(new Function<Object, TxLogConnection>()
+         {
+            public TxLogConnection apply(Object o)
+            {
+               return (TxLogConnection)o;
+            }
+         });
+
+      f.whenComplete(new BiConsumer<TxLogConnection, Throwable>()
+      {
+         public void accept(TxLogConnection c, Throwable t)
+         {
+            completed.countDown();
+         }
+      });
+
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+
+      TxLogConnection c = f.get(10, TimeUnit.SECONDS);
+      assertNotNull(c);
+
+      cm.enlistConnection(c);
+
+      String id = c.getId();
+
+      c.close();
+
+      assertFalse(c.isInPool());
+
+      ut.commit();
+
+      assertTrue(c.isInPool());
+
+      c = cf.getConnection();
+
+      assertEquals("3B8", c.getState(id));
+      c.clearState(id);
+
+      c.close();
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.connectionmanager.pool.dflt;
+
+import org.ironjacamar.core.api.deploymentrepository.DeploymentRepository;
+import org.ironjacamar.core.connectionmanager.Credential;
+import org.ironjacamar.core.connectionmanager.listener.ConnectionListener;
+import org.ironjacamar.core.connectionmanager.pool.ManagedConnectionPool;
+import org.ironjacamar.embedded.Configuration;
+import org.ironjacamar.embedded.Deployment;
+import org.ironjacamar.embedded.dsl.resourceadapters20.api.ResourceAdaptersDescriptor;
+import org.ironjacamar.embedded.junit4.AllChecks;
+import org.ironjacamar.embedded.junit4.IronJacamar;
+import org.ironjacamar.embedded.junit4.PostCondition;
+import org.ironjacamar.embedded.junit4.PreCondition;
+import org.ironjacamar.rars.ResourceAdapterFactory;
+import org.ironjacamar.rars.test.TestConnection;
+import org.ironjacamar.rars.test.TestConnectionFactory;
+import org.ironjacamar.rars.test.TestManagedConnectionFactory;
+import org.ironjacamar.util.TestUtils;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+
+import org.jboss.shrinkwrap.api.spec.ResourceAdapterArchive;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Batched back ground validation test case
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+@RunWith(IronJacamar.class)
+@Configuration(full = true)
+@PreCondition(condition = AllChecks.class)
+@PostCondition(condition = AllChecks.class)
+public class BatchBackgroundValidationTestCase
+{
+   /** The test connection factory */
+   @Resource(mappedName = "java:/eis/TestConnectionFactory")
+   private static TestConnectionFactory cf;
+
+   /** The deployment repository */
+   @Inject
+   private static DeploymentRepository dr;
+   
+   /**
+    * The resource adapter
+    * @throws Throwable In case of an error
+    */
+   @Deployment(order = 1)
+   private static ResourceAdapterArchive createResourceAdapter() throws Throwable
+   {
+      return ResourceAdapterFactory.createTestRar();
+   }
+   
+   /**
+    * The activation
+    * @throws Throwable In case of an error
+    */
+   @Deployment(order = 2)
+   private static ResourceAdaptersDescriptor createActivation() throws Throwable
+   {
+      return ResourceAdapterFactory.createTestDeployment(0, Boolean.FALSE, 2);
+   }
+   
+   /**
+    * Batched back ground validation
+    * @throws Throwable In case of an error
+    */
+   @Test
+   @SuppressWarnings("unchecked")
+   public void testBatchBackgroundValidation() throws Throwable
+   {
+      assertNotNull(cf);
+      assertNotNull(dr);
+
+      assertEquals(1, dr.getDeployments().size());
+      
+      org.ironjacamar.core.api.deploymentrepository.Deployment d = dr.findByJndi("java:/eis/TestConnectionFactory");
+      assertNotNull(d);
+
+      org.ironjacamar.core.api.deploymentrepository.ConnectionFactory dcf =
+         d.getConnectionFactories().iterator().next();
+      assertNotNull(dcf);
+
+      org.ironjacamar.core.api.deploymentrepository.Pool p = dcf.getPool();
+      assertNotNull(p);
+
+      DefaultPool defaultPool = (DefaultPool)p.getPool();
+      defaultPool.getConfiguration().setBackgroundValidationBatchSize(3);
+
+      TestManagedConnectionFactory mcf =
+         (TestManagedConnectionFactory)defaultPool.getConnectionManager().getManagedConnectionFactory();
+      assertNotNull(mcf);
+
+      ConcurrentHashMap<Credential, ManagedConnectionPool> mcps =
+         (ConcurrentHashMap<Credential, ManagedConnectionPool>)TestUtils.extract(defaultPool, "pools");
+      assertNotNull(mcps);
+      assertEquals(0, mcps.size());
+      
+      TestConnection c1 = cf.getConnection();
+      assertNotNull(c1);
+      TestConnection c2 = cf.getConnection();
+      assertNotNull(c2);
+      TestConnection c3 = cf.getConnection();
+      assertNotNull(c3);
+
+      assertEquals(2, c1.getInvalidConnectionFailureCount());
+
+      c1.close();
+      c2.close();
+      c3.close();
+      
+      assertEquals(1, mcps.size());
+
+      ManagedConnectionPool mcp = mcps.values().iterator().next();
+      assertNotNull(mcp);
+
+      Collection<ConnectionListener> listeners =
+         (Collection<ConnectionListener>)TestUtils.extract(mcp, "stripes");
+      assertNotNull(listeners);
+      assertEquals(3, listeners.size());
+
+      // All three connections are validated by one getInvalidConnections call
+      int calls = mcf.getInvalidConnectionsCalls();
+      mcp.validateConnections();
+
+      assertEquals(calls + 1, mcf.getInvalidConnectionsCalls());
+      assertEquals(1, listeners.size());
+
+      c1 = cf.getConnection();
+      assertNotNull(c1);
+      c2 = cf.getConnection();
+      assertNotNull(c2);
+      c3 = cf.getConnection();
+      assertNotNull(c3);
+
+      assertEquals(0, c1.getInvalidConnectionFailureCount());
+
+      c1.close();
+      c2.close();
+      c3.close();
+
+      assertEquals(3, listeners.size());
+
+      // Three connections are validated in a batch of two and a batch of one
+      defaultPool.getConfiguration().setBackgroundValidationBatchSize(2);
+      calls = mcf.getInvalidConnectionsCalls();
+      mcp.validateConnections();
+
+      assertEquals(calls + 2, mcf.getInvalidConnectionsCalls());
+      assertEquals(3, listeners.size());
+
+      // We cheat and shutdown the pool to clear out mcps
+      defaultPool.shutdown();
+   }
+}
@@ -41,8 +41,8 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnection;
 import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -167,8 +167,8 @@ public class CapacityNoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 1));
 
@@ -239,8 +239,8 @@ public class CapacityNoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, TestUtils.collectionSizeTenSecTimeout(listeners, 1));
       //assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 10));
@@ -310,8 +310,8 @@ public class CapacityNoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 1));
 
@@ -331,7 +331,7 @@ public class CapacityNoCredentialsTestCase
       c1.close();
 
       c = noTxCf.getConnection();
-      assertEquals(c.getListenerIdentity(), System.identityHashCode(listeners.getFirst()));
+      assertEquals(c.getListenerIdentity(), System.identityHashCode(TestUtils.getFirst(listeners)));
       c.close();
 
       Injection injection = new Injection();
@@ -380,8 +380,8 @@ public class CapacityNoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 1));
 
@@ -401,7 +401,7 @@ public class CapacityNoCredentialsTestCase
       c1.close();
 
       c = noTxCfFILO.getConnection();
-      assertEquals(c.getListenerIdentity(), System.identityHashCode(listeners.getLast()));
+      assertEquals(c.getListenerIdentity(), System.identityHashCode(TestUtils.getLast(listeners)));
       c.close();
 
       Injection injection = new Injection();
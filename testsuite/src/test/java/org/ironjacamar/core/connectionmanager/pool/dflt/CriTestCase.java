@@ -38,9 +38,9 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.rars.security.UnifiedSecurityCri;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -200,12 +200,12 @@ public class CriTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(2, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertEquals("user", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
       assertEquals("pwd", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getPassword());
@@ -213,7 +213,7 @@ public class CriTestCase
       c1.close();
 
       assertEquals(FREE, cl.getState());
-      cl = listeners.getLast();
+      cl = TestUtils.getLast(listeners);
       assertEquals(IN_USE, cl.getState());
       assertEquals("user", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
       assertEquals("pwd", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getPassword());
@@ -281,12 +281,12 @@ public class CriTestCase
       ManagedConnectionPool firstMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
 
       assertEquals("user", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
@@ -301,12 +301,12 @@ public class CriTestCase
       assertNotNull(secondMcp);
 
 
-      listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      cl = listeners.getFirst();
+      cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
 
       assertEquals("user1", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
@@ -378,12 +378,12 @@ public class CriTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertEquals("user", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
       assertEquals("pwd", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getPassword());
@@ -460,12 +460,12 @@ public class CriTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertEquals("user", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getUserName());
       assertEquals("pwd", ((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()).getPassword());
@@ -542,12 +542,12 @@ public class CriTestCase
       ManagedConnectionPool firstMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener firstCL = listeners.getFirst();
+      ConnectionListener firstCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, firstCL.getState());
 
       assertEquals("user", ((UnifiedSecurityCri) firstCL.getCredential().getConnectionRequestInfo()).getUserName());
@@ -562,12 +562,12 @@ public class CriTestCase
       assertNotNull(secondMcp);
 
 
-      listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener secondCL = listeners.getFirst();
+      ConnectionListener secondCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, secondCL.getState());
 
       assertEquals("user1", ((UnifiedSecurityCri) secondCL.getCredential().getConnectionRequestInfo()).getUserName());
@@ -37,9 +37,9 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnection;
 import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -185,8 +185,8 @@ public class FlushAllGracefullyTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
 
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 3));
@@ -199,7 +199,7 @@ public class FlushAllGracefullyTestCase
 
       assertEquals(1, mcps.size());
 
-      assertEquals(listeners.getFirst().getState(), ConnectionListener.DESTROY);
+      assertEquals(TestUtils.getFirst(listeners).getState(), ConnectionListener.DESTROY);
 
       c2.close();
 
@@ -267,16 +267,16 @@ public class FlushAllGracefullyTestCase
       assertNotNull(firstMcp);
       assertEquals(3, mcps.size());
 
-      ConcurrentLinkedDeque<ConnectionListener> firstListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> firstListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(firstListeners);
 
-      ConcurrentLinkedDeque<ConnectionListener> secondListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      Collection<ConnectionListener> secondListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(secondListeners);
 
-      ConcurrentLinkedDeque<ConnectionListener> thirdListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(thirdMcp, "listeners");
+      Collection<ConnectionListener> thirdListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(thirdMcp, "stripes");
       assertNotNull(thirdListeners);
 
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(firstListeners, 1));
@@ -291,7 +291,7 @@ public class FlushAllGracefullyTestCase
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(secondListeners, 0));
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(thirdListeners, 1));
 
-      assertEquals(thirdListeners.getFirst().getState(), ConnectionListener.DESTROY);
+      assertEquals(TestUtils.getFirst(thirdListeners).getState(), ConnectionListener.DESTROY);
 
 
       assertEquals(1, mcps.size());
@@ -37,9 +37,9 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnection;
 import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -185,8 +185,8 @@ public class FlushAllIdleConnectionTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
 
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 3));
@@ -259,12 +259,12 @@ public class FlushAllIdleConnectionTestCase
       ManagedConnectionPool secondMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> firstListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> firstListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(firstListeners);
 
-      ConcurrentLinkedDeque<ConnectionListener> secondListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      Collection<ConnectionListener> secondListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(firstListeners);
 
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(firstListeners, 1));
@@ -38,9 +38,9 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.rars.security.UnifiedSecurityConnectionImpl;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -186,8 +186,8 @@ public class FlushAllInvalidIdleConnectionTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
 
       assertTrue(TestUtils.isCorrectCollectionSizeTenSecTimeout(listeners, 3));
@@ -269,16 +269,16 @@ public class FlushAllInvalidIdleConnectionTestCase
       ManagedConnectionPool thirdMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> firstListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> firstListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(firstListeners);
 
-      ConcurrentLinkedDeque<ConnectionListener> secondListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      Collection<ConnectionListener> secondListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(secondConnection);
 
-      ConcurrentLinkedDeque<ConnectionListener> thirdListeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(thirdMcp, "listeners");
+      Collection<ConnectionListener> thirdListeners = (Collection<ConnectionListener>) TestUtils
+            .extract(thirdMcp, "stripes");
       assertNotNull(thirdListeners);
 
 
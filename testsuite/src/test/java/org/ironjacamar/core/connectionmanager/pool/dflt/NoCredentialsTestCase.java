@@ -38,8 +38,8 @@ import org.ironjacamar.rars.security.UnifiedSecurityConnectionFactory;
 import org.ironjacamar.rars.security.UnifiedSecurityCri;
 import org.ironjacamar.util.TestUtils;
 
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -204,12 +204,12 @@ public class NoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNull(((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()));
 
@@ -279,12 +279,12 @@ public class NoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNull(((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()));
 
@@ -350,19 +350,19 @@ public class NoCredentialsTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(2, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNull(((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()));
 
       c1.close();
       assertEquals(FREE, cl.getState());
 
-      cl = listeners.getLast();
+      cl = TestUtils.getLast(listeners);
 
       assertEquals(IN_USE, cl.getState());
       assertNull(((UnifiedSecurityCri) cl.getCredential().getConnectionRequestInfo()));
@@ -40,8 +40,8 @@ import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener
 import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener.FREE;
 import static org.ironjacamar.core.connectionmanager.listener.ConnectionListener.IN_USE;
 
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -131,12 +131,12 @@ public class SmokeTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners =
-         (ConcurrentLinkedDeque<ConnectionListener>)TestUtils.extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners =
+         (Collection<ConnectionListener>)TestUtils.extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       
       c.close();
@@ -187,12 +187,12 @@ public class SmokeTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners =
-         (ConcurrentLinkedDeque<ConnectionListener>)TestUtils.extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners =
+         (Collection<ConnectionListener>)TestUtils.extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       
       c.fail();
@@ -40,10 +40,10 @@ import org.ironjacamar.util.TestUtils;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -208,12 +208,12 @@ public class SubjectTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(2, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNotNull(cl.getCredential().getSubject());
       PasswordCredential firstPC = getPasswordCredential(cl.getCredential().getSubject());
@@ -222,7 +222,7 @@ public class SubjectTestCase
       c1.close();
 
       assertEquals(FREE, cl.getState());
-      cl = listeners.getLast();
+      cl = TestUtils.getLast(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNotNull(cl.getCredential().getSubject());
       firstPC = getPasswordCredential(cl.getCredential().getSubject());
@@ -290,12 +290,12 @@ public class SubjectTestCase
       ManagedConnectionPool firstMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener firstCL = listeners.getFirst();
+      ConnectionListener firstCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, firstCL.getState());
       assertNotNull(firstCL.getCredential().getSubject());
       PasswordCredential firstPC = getPasswordCredential(firstCL.getCredential().getSubject());
@@ -309,12 +309,12 @@ public class SubjectTestCase
       assertNotNull(secondMcp);
 
 
-      listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener secondCL = listeners.getFirst();
+      ConnectionListener secondCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, secondCL.getState());
       assertNotNull(secondCL.getCredential().getSubject());
       firstPC = getPasswordCredential(secondCL.getCredential().getSubject());
@@ -386,12 +386,12 @@ public class SubjectTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNotNull(cl.getCredential().getSubject());
       PasswordCredential firstPC = getPasswordCredential(cl.getCredential().getSubject());
@@ -467,12 +467,12 @@ public class SubjectTestCase
       ManagedConnectionPool mcp = mcps.values().iterator().next();
       assertNotNull(mcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(mcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(mcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener cl = listeners.getFirst();
+      ConnectionListener cl = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, cl.getState());
       assertNotNull(cl.getCredential().getSubject());
       PasswordCredential firstPC = getPasswordCredential(cl.getCredential().getSubject());
@@ -552,12 +552,12 @@ public class SubjectTestCase
       ManagedConnectionPool firstMcp = iter.next();
       assertNotNull(firstMcp);
 
-      ConcurrentLinkedDeque<ConnectionListener> listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(firstMcp, "listeners");
+      Collection<ConnectionListener> listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(firstMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener firstCL = listeners.getFirst();
+      ConnectionListener firstCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, firstCL.getState());
 
       assertNotNull(firstCL.getCredential().getSubject());
@@ -573,12 +573,12 @@ public class SubjectTestCase
       assertNotNull(secondMcp);
 
 
-      listeners = (ConcurrentLinkedDeque<ConnectionListener>) TestUtils
-            .extract(secondMcp, "listeners");
+      listeners = (Collection<ConnectionListener>) TestUtils
+            .extract(secondMcp, "stripes");
       assertNotNull(listeners);
       assertEquals(1, listeners.size());
 
-      ConnectionListener secondCL = listeners.getFirst();
+      ConnectionListener secondCL = TestUtils.getFirst(listeners);
       assertEquals(IN_USE, secondCL.getState());
 
       assertNotNull(secondCL.getCredential().getSubject());
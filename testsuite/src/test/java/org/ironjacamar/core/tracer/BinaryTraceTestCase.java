@@ -0,0 +1,265 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.tracer;
+
+import org.ironjacamar.tracer.TraceFileReader;
+import org.ironjacamar.tracer.TraceIndex;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Binary trace format tests: BinaryTraceWriter, TraceFileReader and TraceIndex
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class BinaryTraceTestCase
+{
+   /** Enough events for the strings to span several segments */
+   private static final int EVENTS = 10000;
+
+   /** The trace file */
+   private File file;
+
+   /**
+    * Create the trace file
+    * @throws Exception In case of an error
+    */
+   @Before
+   public void before() throws Exception
+   {
+      file = File.createTempFile("ironjacamar", ".trace");
+      file.delete();
+   }
+
+   /**
+    * Delete the trace file
+    * @throws Exception In case of an error
+    */
+   @After
+   public void after() throws Exception
+   {
+      file.delete();
+   }
+
+   /**
+    * Events read back are the events written
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      List<TraceEvent> expected = write(0, EVENTS);
+
+      assertTrue(TraceFileReader.isBinary(file));
+      assertEvents(expected, readAll());
+   }
+
+   /**
+    * A second writer appends to the file, like the text format does
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testAppend() throws Exception
+   {
+      List<TraceEvent> expected = write(0, EVENTS);
+      expected.addAll(write(EVENTS, 10));
+
+      assertEvents(expected, readAll());
+
+      File text = File.createTempFile("ironjacamar", ".log");
+      try
+      {
+         FileWriter fw = new FileWriter(text);
+         fw.write("Not a binary trace\n");
+         fw.close();
+
+         try
+         {
+            new BinaryTraceWriter(text);
+            fail("Appended to a text trace");
+         }
+         catch (IOException ioe)
+         {
+            // Expected
+         }
+
+         assertFalse(TraceFileReader.isBinary(text));
+      }
+      finally
+      {
+         text.delete();
+      }
+   }
+
+   /**
+    * The index finds the events of a pool and of a connection listener
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testIndex() throws Exception
+   {
+      List<TraceEvent> expected = write(0, EVENTS);
+      expected.addAll(write(EVENTS, 10));
+
+      TraceIndex index = TraceIndex.build(file);
+
+      assertEquals(expected.size(), index.getEventCount());
+      assertTrue(index.getSegmentCount() > 2);
+      assertEquals(2, index.getPools().size());
+      assertTrue(index.getPools().contains("Pool0"));
+      assertTrue(index.getPools().contains("Pool1"));
+      assertFalse(index.getConnectionListeners().contains("NONE"));
+
+      for (String pool : index.getPools())
+      {
+         List<TraceEvent> poolEvents = new ArrayList<TraceEvent>();
+         for (TraceEvent te : expected)
+         {
+            if (pool.equals(te.getPool()))
+               poolEvents.add(te);
+         }
+
+         assertEvents(poolEvents, index.getPoolEvents(pool));
+      }
+
+      String cl = Integer.toHexString(3);
+      List<TraceEvent> clEvents = new ArrayList<TraceEvent>();
+      for (TraceEvent te : expected)
+      {
+         if (cl.equals(te.getConnectionListener()))
+            clEvents.add(te);
+      }
+
+      assertEquals(EVENTS / 8 + 1, clEvents.size());
+      assertEvents(clEvents, index.getConnectionListenerEvents(cl));
+
+      assertTrue(index.getPoolEvents("Unknown").isEmpty());
+      assertTrue(index.getConnectionListenerEvents("Unknown").isEmpty());
+   }
+
+   /**
+    * Write events with a new writer
+    * @param first The number of the first event
+    * @param count The number of events
+    * @return The events as they should be read back
+    * @throws Exception In case of an error
+    */
+   private List<TraceEvent> write(int first, int count) throws Exception
+   {
+      List<TraceEvent> result = new ArrayList<TraceEvent>();
+      BinaryTraceWriter writer = new BinaryTraceWriter(file);
+      try
+      {
+         for (int i = first; i < first + count; i++)
+         {
+            String pool = "Pool" + (i % 2);
+            int clId = i % 8;
+            String payload2 = "Payload" + i;
+
+            if (i % 8 == 0)
+            {
+               writer.write(pool, "MCP", 0, 1L, TraceEvent.GET_CONNECTION_LISTENER, i, "NONE", 0,
+                            null, i, payload2);
+               result.add(new TraceEvent(pool, "MCP", 1L, TraceEvent.GET_CONNECTION_LISTENER, i,
+                                         "NONE", Integer.toHexString(i), payload2));
+            }
+            else
+            {
+               writer.write(pool, null, 42, 2L, TraceEvent.RETURN_CONNECTION_LISTENER, i, null, clId,
+                            "Connection", 0, payload2);
+               result.add(new TraceEvent(pool, Integer.toHexString(42), 2L, TraceEvent.RETURN_CONNECTION_LISTENER,
+                                         i, Integer.toHexString(clId), "Connection", payload2));
+            }
+         }
+      }
+      finally
+      {
+         writer.close();
+      }
+      return result;
+   }
+
+   /**
+    * Read all events
+    * @return The events
+    * @throws Exception In case of an error
+    */
+   private List<TraceEvent> readAll() throws Exception
+   {
+      List<TraceEvent> result = new ArrayList<TraceEvent>();
+      TraceFileReader reader = new TraceFileReader(file);
+      try
+      {
+         TraceEvent te = reader.next();
+         while (te != null)
+         {
+            result.add(te);
+            te = reader.next();
+         }
+
+         assertNull(reader.next());
+      }
+      finally
+      {
+         reader.close();
+      }
+      return result;
+   }
+
+   /**
+    * Assert that two lists of events are equal
+    * @param expected The expected events
+    * @param actual The actual events
+    */
+   private static void assertEvents(List<TraceEvent> expected, List<TraceEvent> actual)
+   {
+      assertEquals(expected.size(), actual.size());
+
+      for (int i = 0; i < expected.size(); i++)
+      {
+         TraceEvent e = expected.get(i);
+         TraceEvent a = actual.get(i);
+
+         assertEquals(e.getPool(), a.getPool());
+         assertEquals(e.getManagedConnectionPool(), a.getManagedConnectionPool());
+         assertEquals(e.getThreadId(), a.getThreadId());
+         assertEquals(e.getType(), a.getType());
+         assertEquals(e.getTimestamp(), a.getTimestamp());
+         assertEquals(e.getConnectionListener(), a.getConnectionListener());
+         assertEquals(e.getPayload1(), a.getPayload1());
+         assertEquals(e.getPayload2(), a.getPayload2());
+      }
+   }
+}
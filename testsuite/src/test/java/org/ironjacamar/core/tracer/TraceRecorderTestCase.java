@@ -0,0 +1,219 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.tracer;
+
+import org.ironjacamar.tracer.TraceFileReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TraceRecorder tests
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class TraceRecorderTestCase
+{
+   /** The number of producers */
+   private static final int PRODUCERS = 4;
+
+   /** The number of events of each producer */
+   private static final int EVENTS = 20000;
+
+   /** The trace file */
+   private File file;
+
+   /**
+    * Create the trace file
+    * @throws Exception In case of an error
+    */
+   @Before
+   public void before() throws Exception
+   {
+      file = File.createTempFile("ironjacamar", ".trace");
+      file.delete();
+   }
+
+   /**
+    * Delete the trace file
+    * @throws Exception In case of an error
+    */
+   @After
+   public void after() throws Exception
+   {
+      file.delete();
+   }
+
+   /**
+    * Events recorded by several threads, while the drainer runs, are each written exactly once,
+    * and in the order of each thread
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testMultipleProducers() throws Exception
+   {
+      final TraceRecorder recorder = new TraceRecorder(file, 1024, true);
+      final CountDownLatch go = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+
+      recorder.start();
+      try
+      {
+         List<Future<Long>> producers = new ArrayList<Future<Long>>();
+         for (int p = 0; p < PRODUCERS; p++)
+         {
+            producers.add(executor.submit(new Callable<Long>()
+            {
+               public Long call() throws Exception
+               {
+                  go.await();
+
+                  for (int i = 0; i < EVENTS; i++)
+                  {
+                     // A full buffer drops the event, so retry until the drainer has caught up
+                     while (!recorder.record("Pool", "MCP", TraceEvent.GET_CONNECTION_LISTENER, "CL",
+                                             null, Integer.toString(i)))
+                     {
+                        Thread.yield();
+                     }
+                  }
+
+                  return Long.valueOf(Thread.currentThread().getId());
+               }
+            }));
+         }
+
+         go.countDown();
+
+         for (Future<Long> f : producers)
+            f.get();
+      }
+      finally
+      {
+         recorder.stop();
+         executor.shutdown();
+      }
+
+      Map<Long, Integer> next = new HashMap<Long, Integer>();
+      int count = 0;
+
+      TraceFileReader reader = new TraceFileReader(file);
+      try
+      {
+         TraceEvent te = reader.next();
+         while (te != null)
+         {
+            Long threadId = Long.valueOf(te.getThreadId());
+            Integer expected = next.get(threadId);
+            if (expected == null)
+               expected = Integer.valueOf(0);
+
+            assertEquals("Pool", te.getPool());
+            assertEquals("MCP", te.getManagedConnectionPool());
+            assertEquals("CL", te.getConnectionListener());
+            assertEquals(expected.toString(), te.getPayload2());
+
+            next.put(threadId, Integer.valueOf(expected.intValue() + 1));
+            count++;
+
+            te = reader.next();
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      assertEquals(PRODUCERS * EVENTS, count);
+      assertEquals(PRODUCERS, next.size());
+
+      for (Integer n : next.values())
+         assertEquals(EVENTS, n.intValue());
+   }
+
+   /**
+    * Events recorded while the buffer is full are dropped and counted, and the buffer accepts
+    * events again once it has been drained
+    * @throws Exception In case of an error
+    */
+   @Test
+   public void testOverflow() throws Exception
+   {
+      // Rounded up to 8
+      TraceRecorder recorder = new TraceRecorder(file, 5, true);
+
+      for (int i = 0; i < 8; i++)
+         assertTrue(recorder.record("Pool", null, TraceEvent.GET_CONNECTION_LISTENER, null, null,
+                                    Integer.toString(i)));
+
+      for (int i = 8; i < 12; i++)
+         assertFalse(recorder.record("Pool", null, TraceEvent.GET_CONNECTION_LISTENER, null, null,
+                                     Integer.toString(i)));
+
+      assertEquals(4L, recorder.getDropped());
+
+      recorder.start();
+      recorder.stop();
+
+      List<String> payloads = new ArrayList<String>();
+      TraceFileReader reader = new TraceFileReader(file);
+      try
+      {
+         TraceEvent te = reader.next();
+         while (te != null)
+         {
+            payloads.add(te.getPayload2());
+            te = reader.next();
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      assertEquals(8, payloads.size());
+      for (int i = 0; i < 8; i++)
+         assertEquals(Integer.toString(i), payloads.get(i));
+
+      for (int i = 0; i < 8; i++)
+         assertTrue(recorder.record("Pool", null, TraceEvent.GET_CONNECTION_LISTENER, null, null, "Again"));
+
+      assertFalse(recorder.record("Pool", null, TraceEvent.GET_CONNECTION_LISTENER, null, null, "Dropped"));
+      assertEquals(5L, recorder.getDropped());
+   }
+}
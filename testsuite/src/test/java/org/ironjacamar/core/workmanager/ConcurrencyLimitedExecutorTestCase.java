@@ -0,0 +1,114 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ConcurrencyLimitedExecutor test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ConcurrencyLimitedExecutorTestCase
+{
+   /**
+    * Free threads follow the permits, and a full executor rejects
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testConcurrencyLimit() throws Throwable
+   {
+      ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(2);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(2);
+
+      Runnable r = new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               release.await();
+            }
+            catch (InterruptedException ie)
+            {
+               Thread.currentThread().interrupt();
+            }
+            finally
+            {
+               done.countDown();
+            }
+         }
+      };
+
+      try
+      {
+         assertEquals(2L, executor.getNumberOfFreeThreads());
+
+         executor.executeBlocking(r);
+         executor.executeNonBlocking(r);
+         assertEquals(0L, executor.getNumberOfFreeThreads());
+
+         try
+         {
+            executor.executeNonBlocking(r);
+            fail("Permit granted");
+         }
+         catch (RejectedExecutionException ree)
+         {
+            // Expected
+         }
+
+         try
+         {
+            executor.executeBlocking(r, 10L, TimeUnit.MILLISECONDS);
+            fail("Permit granted");
+         }
+         catch (RejectedExecutionException ree)
+         {
+            // Expected
+         }
+
+         release.countDown();
+         assertTrue(done.await(5L, TimeUnit.SECONDS));
+
+         long deadline = System.currentTimeMillis() + 5000L;
+         while (executor.getNumberOfFreeThreads() != 2L && System.currentTimeMillis() < deadline)
+            Thread.sleep(10L);
+
+         assertEquals(2L, executor.getNumberOfFreeThreads());
+      }
+      finally
+      {
+         release.countDown();
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,359 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.DistributedWorkManager;
+import org.ironjacamar.core.spi.security.SecurityIntegration;
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.spi.workmanager.policy.Policy;
+import org.ironjacamar.core.spi.workmanager.selector.Selector;
+import org.ironjacamar.core.spi.workmanager.transport.Transport;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.resource.spi.work.DistributableWork;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * WorkManager batch submission test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class WorkManagerBatchTestCase
+{
+   /** The executor */
+   private ConcurrencyLimitedExecutor executor;
+
+   /** The work manager */
+   private WorkManagerImpl wm;
+
+   /**
+    * Setup
+    */
+   @Before
+   public void setup()
+   {
+      executor = new ConcurrencyLimitedExecutor(2);
+
+      wm = new WorkManagerImpl();
+      wm.setShortRunningThreadPool(executor);
+      wm.setSecurityIntegration((SecurityIntegration)Proxy.newProxyInstance(
+         SecurityIntegration.class.getClassLoader(), new Class<?>[] {SecurityIntegration.class},
+         new InvocationHandler()
+         {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+               return null;
+            }
+         }));
+   }
+
+   /**
+    * Teardown
+    */
+   @After
+   public void teardown()
+   {
+      wm.shutdown();
+      executor.shutdown();
+   }
+
+   /**
+    * All work instances of a batch are accepted and run
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testScheduleWorkBatch() throws Throwable
+   {
+      CountDownLatch done = new CountDownLatch(5);
+      CountingListener listener = new CountingListener();
+
+      List<Work> works = new ArrayList<Work>();
+      for (int i = 0; i < 5; i++)
+         works.add(new LatchWork(done));
+
+      wm.scheduleWorkBatch(works, WorkManager.INDEFINITE, null, listener);
+
+      assertTrue(done.await(5L, TimeUnit.SECONDS));
+      assertEquals(5, listener.accepted.get());
+      assertEquals(0, listener.rejected.get());
+      assertEquals(5, wm.getStatistics().getScheduleWorkAccepted());
+   }
+
+   /**
+    * A batch with an invalid work instance is rejected as a whole
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testScheduleWorkBatchRejected() throws Throwable
+   {
+      CountDownLatch done = new CountDownLatch(1);
+      CountingListener listener = new CountingListener();
+
+      try
+      {
+         wm.scheduleWorkBatch(Arrays.asList(new LatchWork(done), null), WorkManager.INDEFINITE, null, listener);
+         fail("Batch accepted");
+      }
+      catch (WorkRejectedException wre)
+      {
+         // Expected
+      }
+
+      assertEquals(0, listener.accepted.get());
+      assertEquals(2, listener.rejected.get());
+      assertEquals(1L, done.getCount());
+      assertEquals(2, wm.getStatistics().getScheduleWorkRejected());
+   }
+
+   /**
+    * A batch with a work instance that isn't spec compliant is rejected as a whole
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testScheduleWorkBatchNotCompliant() throws Throwable
+   {
+      CountDownLatch done = new CountDownLatch(1);
+      CountingListener listener = new CountingListener();
+
+      try
+      {
+         wm.scheduleWorkBatch(Arrays.asList(new LatchWork(done), new SynchronizedWork()),
+                              WorkManager.INDEFINITE, null, listener);
+         fail("Batch accepted");
+      }
+      catch (WorkException we)
+      {
+         // Expected
+      }
+
+      assertEquals(0, listener.accepted.get());
+      assertEquals(2, listener.rejected.get());
+      assertEquals(1L, done.getCount());
+   }
+
+   /**
+    * A distributed batch stops at the first work instance the transport fails to send; it and
+    * the work instances after it are rejected, and the local work instances before it still run
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testDistributedScheduleWorkBatchTransportFailure() throws Throwable
+   {
+      final AtomicInteger sent = new AtomicInteger(0);
+      final WorkException failure = new WorkException("Transport failure");
+
+      DistributedWorkManagerImpl dwm = new DistributedWorkManagerImpl();
+      dwm.setId("local");
+      dwm.setName("local");
+      dwm.setShortRunningThreadPool(executor);
+      dwm.setSecurityIntegration(wm.getSecurityIntegration());
+      dwm.setPolicy(new Policy()
+      {
+         public boolean shouldDistribute(DistributedWorkManager manager, DistributableWork work)
+         {
+            return true;
+         }
+      });
+      dwm.setSelector(new Selector()
+      {
+         public Address selectDistributedWorkManager(Address own, DistributableWork work)
+         {
+            return new Address("remote", "remote", "transport");
+         }
+      });
+      dwm.setTransport((Transport)Proxy.newProxyInstance(
+         Transport.class.getClassLoader(), new Class<?>[] {Transport.class},
+         new InvocationHandler()
+         {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+               if ("scheduleWork".equals(method.getName()) && sent.incrementAndGet() > 1)
+                  throw failure;
+
+               if (method.getReturnType() == boolean.class)
+                  return Boolean.TRUE;
+
+               if (method.getReturnType() == long.class)
+                  return Long.valueOf(0L);
+
+               if (method.getReturnType() == String.class)
+                  return "transport";
+
+               return null;
+            }
+         }));
+
+      try
+      {
+         CountDownLatch run = new CountDownLatch(1);
+         CountDownLatch notRun = new CountDownLatch(1);
+         CountingListener listener = new CountingListener();
+
+         try
+         {
+            dwm.scheduleWorkBatch(Arrays.asList(new LatchWork(run), new DistributableLatchWork(notRun),
+                                                new DistributableLatchWork(notRun), new LatchWork(notRun),
+                                                new DistributableLatchWork(notRun)),
+                                  WorkManager.INDEFINITE, null, listener);
+            fail("Batch accepted");
+         }
+         catch (WorkException we)
+         {
+            assertTrue(we == failure);
+         }
+
+         assertTrue(run.await(5L, TimeUnit.SECONDS));
+         assertEquals(1L, notRun.getCount());
+         assertEquals(2, sent.get());
+         assertEquals(1, listener.accepted.get());
+         assertEquals(3, listener.rejected.get());
+         assertEquals(3, dwm.getStatistics().getScheduleWorkRejected());
+      }
+      finally
+      {
+         dwm.shutdown();
+      }
+   }
+
+   /**
+    * Work counting down a latch
+    */
+   static class LatchWork implements Work
+   {
+      /** The latch */
+      private CountDownLatch latch;
+
+      /**
+       * Constructor
+       * @param latch The latch
+       */
+      LatchWork(CountDownLatch latch)
+      {
+         this.latch = latch;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         latch.countDown();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * Distributable work counting down a latch
+    */
+   static class DistributableLatchWork extends LatchWork implements DistributableWork
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Constructor
+       * @param latch The latch
+       */
+      DistributableLatchWork(CountDownLatch latch)
+      {
+         super(latch);
+      }
+   }
+
+   /**
+    * Work with a synchronized run method
+    */
+   static class SynchronizedWork implements Work
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public synchronized void run()
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * Work listener counting the events
+    */
+   static class CountingListener extends WorkAdapter
+   {
+      /** Accepted */
+      private AtomicInteger accepted = new AtomicInteger(0);
+
+      /** Rejected */
+      private AtomicInteger rejected = new AtomicInteger(0);
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workAccepted(WorkEvent e)
+      {
+         accepted.incrementAndGet();
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workRejected(WorkEvent e)
+      {
+         rejected.incrementAndGet();
+      }
+   }
+}
@@ -0,0 +1,226 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager;
+
+import org.ironjacamar.core.api.workmanager.WorkManagerStatistics;
+import org.ironjacamar.core.spi.security.SecurityIntegration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WorkManager statistics test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class WorkManagerStatisticsTestCase
+{
+   /** The number of work instances */
+   private static final int WORK = 3;
+
+   /** The executor */
+   private ConcurrencyLimitedExecutor executor;
+
+   /** The work manager */
+   private WorkManagerImpl wm;
+
+   /**
+    * Setup
+    */
+   @Before
+   public void setup()
+   {
+      executor = new ConcurrencyLimitedExecutor(WORK);
+
+      wm = new WorkManagerImpl();
+      wm.setShortRunningThreadPool(executor);
+      wm.setSecurityIntegration((SecurityIntegration)Proxy.newProxyInstance(
+         SecurityIntegration.class.getClassLoader(), new Class<?>[] {SecurityIntegration.class},
+         new InvocationHandler()
+         {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+               return null;
+            }
+         }));
+   }
+
+   /**
+    * Teardown
+    */
+   @After
+   public void teardown()
+   {
+      wm.shutdown();
+      executor.shutdown();
+   }
+
+   /**
+    * The active gauge counts the running work instances, and returns to 0 once they complete
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testWorkActive() throws Throwable
+   {
+      CountDownLatch started = new CountDownLatch(WORK);
+      CountDownLatch release = new CountDownLatch(1);
+      CompletedListener listener = new CompletedListener(WORK);
+
+      WorkManagerStatistics statistics = wm.getStatistics();
+      assertEquals(0, statistics.getWorkActive());
+
+      for (int i = 0; i < WORK; i++)
+         wm.scheduleWork(new BlockingWork(started, release), WorkManager.INDEFINITE, null, listener);
+
+      assertTrue(started.await(5L, TimeUnit.SECONDS));
+      assertEquals(WORK, statistics.getWorkActive());
+
+      release.countDown();
+
+      assertTrue(listener.completed.await(5L, TimeUnit.SECONDS));
+      assertEquals(0, statistics.getWorkActive());
+      assertEquals(WORK, statistics.getWorkSuccessful());
+      assertEquals(WORK, statistics.getScheduleWorkAccepted());
+   }
+
+   /**
+    * Clearing the statistics resets the counters, but not the active gauge, which still
+    * returns to 0 once the running work instances complete
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testClearKeepsWorkActive() throws Throwable
+   {
+      CountDownLatch started = new CountDownLatch(WORK);
+      CountDownLatch release = new CountDownLatch(1);
+      CompletedListener listener = new CompletedListener(WORK);
+
+      WorkManagerStatistics statistics = wm.getStatistics();
+
+      for (int i = 0; i < WORK; i++)
+         wm.scheduleWork(new BlockingWork(started, release), WorkManager.INDEFINITE, null, listener);
+
+      assertTrue(started.await(5L, TimeUnit.SECONDS));
+
+      statistics.clear();
+
+      assertEquals(WORK, statistics.getWorkActive());
+      assertEquals(0, statistics.getScheduleWorkAccepted());
+      assertEquals(0, statistics.getWorkSuccessful());
+
+      release.countDown();
+
+      assertTrue(listener.completed.await(5L, TimeUnit.SECONDS));
+      assertEquals(0, statistics.getWorkActive());
+      assertEquals(WORK, statistics.getWorkSuccessful());
+   }
+
+   /**
+    * Work which waits until it is released
+    */
+   static class BlockingWork implements Work
+   {
+      /** Counted down when the work is running */
+      private CountDownLatch started;
+
+      /** The release */
+      private CountDownLatch release;
+
+      /**
+       * Constructor
+       * @param started Counted down when the work is running
+       * @param release The release
+       */
+      BlockingWork(CountDownLatch started, CountDownLatch release)
+      {
+         this.started = started;
+         this.release = release;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+         started.countDown();
+
+         try
+         {
+            release.await();
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * A work listener counting down on completion, which is fired after the work instance
+    * has left the active work
+    */
+   static class CompletedListener extends WorkAdapter
+   {
+      /** Completed */
+      private CountDownLatch completed;
+
+      /**
+       * Constructor
+       * @param count The number of work instances
+       */
+      CompletedListener(int count)
+      {
+         this.completed = new CountDownLatch(count);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workCompleted(WorkEvent e)
+      {
+         completed.countDown();
+      }
+   }
+}
@@ -0,0 +1,238 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.selector;
+
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.spi.workmanager.transport.Transport;
+import org.ironjacamar.util.TestUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.resource.spi.work.DistributableWork;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PingTime test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class PingTimeTestCase
+{
+   /** Own work manager */
+   private static final Address OWN = new Address("wm", "WorkManager", "local");
+
+   /** A nearby work manager */
+   private static final Address NEAR = new Address("wm", "WorkManager", "near");
+
+   /** A far away work manager */
+   private static final Address FAR = new Address("wm", "WorkManager", "far");
+
+   /** An unreachable work manager */
+   private static final Address DOWN = new Address("wm", "WorkManager", "down");
+
+   /** The work */
+   private static final DistributableWork WORK = new TestWork();
+
+   /**
+    * Nearby work managers are preferred, unless a far away work manager is much more idle
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testNearbyAndIdle() throws Throwable
+   {
+      PingTime pt = createSelector();
+
+      pt.updateShortRunningFree(NEAR, 2L);
+      pt.updateShortRunningFree(FAR, 2L);
+      pt.probe();
+
+      assertEquals(NEAR, pt.selectDistributedWorkManager(OWN, WORK));
+
+      pt.updateShortRunningFree(FAR, 1000L);
+      pt.updateShortRunningFree(FAR, 1000L);
+      pt.updateShortRunningFree(NEAR, 1L);
+
+      assertEquals(FAR, pt.selectDistributedWorkManager(OWN, WORK));
+   }
+
+   /**
+    * An unreachable work manager is only selected when no other work manager has free threads
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testUnreachable() throws Throwable
+   {
+      PingTime pt = createSelector();
+
+      pt.updateShortRunningFree(NEAR, 1L);
+      pt.updateShortRunningFree(DOWN, 1000L);
+      pt.probe();
+
+      assertEquals(NEAR, pt.selectDistributedWorkManager(OWN, WORK));
+
+      pt.updateShortRunningFree(NEAR, 0L);
+
+      assertEquals(DOWN, pt.selectDistributedWorkManager(OWN, WORK));
+   }
+
+   /**
+    * A ping which isn't answered within the ping timeout counts as unanswered
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testPingTimeout() throws Throwable
+   {
+      PingTime pt = new PingTime();
+      pt.setProbeInterval(0L);
+      pt.setPingTimeout(50L);
+
+      pt.join(OWN);
+      pt.join(NEAR);
+      pt.join(DOWN);
+
+      pt.setTransport(createTransport(10000L));
+
+      pt.updateShortRunningFree(NEAR, 1L);
+      pt.updateShortRunningFree(DOWN, 1000L);
+
+      long start = System.currentTimeMillis();
+      pt.probe();
+
+      assertTrue(System.currentTimeMillis() - start < 5000L);
+      assertEquals(NEAR, pt.selectDistributedWorkManager(OWN, WORK));
+
+      pt.shutdown();
+   }
+
+   /**
+    * The probes stop when the last work manager using the selector unregisters
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testUnregister() throws Throwable
+   {
+      PingTime pt = createSelector();
+      Object first = new Object();
+      Object second = new Object();
+
+      pt.register(first);
+      pt.register(second);
+
+      pt.unregister(first);
+      assertNotNull(TestUtils.extract(pt, "scheduler"));
+
+      pt.unregister(second);
+      assertNull(TestUtils.extract(pt, "scheduler"));
+      assertNull(TestUtils.extract(pt, "pinger"));
+   }
+
+   /**
+    * Create a selector which knows of the work managers
+    * @return The selector
+    */
+   private PingTime createSelector()
+   {
+      PingTime pt = new PingTime();
+      pt.setProbeInterval(0L);
+
+      pt.join(OWN);
+      pt.join(NEAR);
+      pt.join(FAR);
+      pt.join(DOWN);
+
+      pt.setTransport(createTransport(0L));
+
+      return pt;
+   }
+
+   /**
+    * Create a transport; the far away work manager answers a ping after 20 ms, and the
+    * unreachable one doesn't answer
+    * @param hang The time in milliseconds a ping of the unreachable work manager hangs before
+    *             it fails; 0 fails it right away
+    * @return The transport
+    */
+   private Transport createTransport(final long hang)
+   {
+      return (Transport)Proxy.newProxyInstance(Transport.class.getClassLoader(),
+                                               new Class<?>[] {Transport.class},
+                                               new InvocationHandler()
+      {
+         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+         {
+            if ("getId".equals(method.getName()))
+               return "local";
+
+            if ("ping".equals(method.getName()))
+            {
+               Address address = (Address)args[0];
+
+               if (DOWN.equals(address))
+               {
+                  if (hang > 0L)
+                     Thread.sleep(hang);
+
+                  return Long.valueOf(Long.MAX_VALUE);
+               }
+
+               if (FAR.equals(address))
+                  Thread.sleep(20L);
+
+               return Long.valueOf(0L);
+            }
+
+            return null;
+         }
+      });
+   }
+
+   /**
+    * A distributable work instance
+    */
+   static class TestWork implements DistributableWork
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+}
@@ -0,0 +1,311 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.transport.remote;
+
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.workmanager.ClassBundle;
+import org.ironjacamar.core.workmanager.ClassBundleFactory;
+import org.ironjacamar.core.workmanager.ClassDefinition;
+import org.ironjacamar.core.workmanager.ClassDefinitionCache;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.resource.spi.work.DistributableWork;
+import javax.resource.spi.work.WorkException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for shipping class bundles as references
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ClassBundleTestCase
+{
+   /** A work manager on the peer */
+   private static final Address PEER = new Address("wm", "WorkManager", "peer");
+
+   /** The class definition cache */
+   private ClassDefinitionCache cache;
+
+   /**
+    * Setup
+    */
+   @Before
+   public void setup()
+   {
+      cache = new ClassDefinitionCache();
+   }
+
+   /**
+    * The class bundle is created once for each class
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testCachedBundle() throws Throwable
+   {
+      ClassBundle cb = ClassBundleFactory.createClassBundle(new TestWork());
+
+      assertTrue(cb.getDefinitions().size() > 0);
+      assertTrue(cb == ClassBundleFactory.createClassBundle(new TestWork()));
+   }
+
+   /**
+    * Known definitions are sent as references, which are resolved from the cache
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testReferences() throws Throwable
+   {
+      ClassBundle cb = ClassBundleFactory.createClassBundle(new TestWork());
+
+      Set<String> known = new HashSet<String>();
+      for (ClassDefinition cd : cb.getDefinitions())
+      {
+         known.add(cd.getHash());
+      }
+
+      ClassBundle references = ClassBundleFactory.createClassBundle(cb, known);
+      for (ClassDefinition cd : references.getDefinitions())
+      {
+         assertTrue(cd.isReference());
+         assertNull(cd.getData());
+      }
+
+      try
+      {
+         cache.resolve(references);
+         fail("Resolved unknown references");
+      }
+      catch (WorkException we)
+      {
+         assertEquals(ClassDefinitionCache.CLASS_DEFINITION_MISSING, we.getErrorCode());
+      }
+
+      cache.resolve(cb);
+      ClassBundle resolved = cache.resolve(references);
+
+      assertEquals(cb, resolved);
+      for (ClassDefinition cd : resolved.getDefinitions())
+      {
+         assertTrue(!cd.isReference());
+      }
+   }
+
+   /**
+    * Repeated work only carries references, and the full bundle is sent again when the
+    * peer is missing a definition
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testShipping() throws Throwable
+   {
+      TestTransport transport = new TestTransport();
+      transport.setId("local");
+      transport.nodes.put(PEER, "peer");
+
+      transport.scheduleWork(PEER, new TestWork());
+      transport.scheduleWork(PEER, new TestWork());
+
+      assertEquals(2, transport.bundles.size());
+      assertTrue(!transport.bundles.get(0).getDefinitions().get(0).isReference());
+      for (ClassDefinition cd : transport.bundles.get(1).getDefinitions())
+      {
+         assertTrue(cd.isReference());
+      }
+
+      transport.getClassDefinitionCache().clear();
+      transport.scheduleWork(PEER, new TestWork());
+
+      assertEquals(4, transport.bundles.size());
+      assertTrue(!transport.bundles.get(3).getDefinitions().get(0).isReference());
+   }
+
+   /**
+    * The least recently used definitions are evicted from a full cache
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testEviction() throws Throwable
+   {
+      ClassDefinition first = new ClassDefinition("First", 1L, new byte[] {1});
+      ClassDefinition second = new ClassDefinition("Second", 1L, new byte[] {2});
+      ClassDefinition third = new ClassDefinition("Third", 1L, new byte[] {3});
+
+      ClassDefinitionCache small = new ClassDefinitionCache(2);
+      small.resolve(bundle(first));
+      small.resolve(bundle(second));
+      small.resolve(bundle(first.toReference()));
+      small.resolve(bundle(third));
+
+      assertEquals(2, small.size());
+      small.resolve(bundle(first.toReference()));
+      small.resolve(bundle(third.toReference()));
+
+      try
+      {
+         small.resolve(bundle(second.toReference()));
+         fail("Resolved an evicted reference");
+      }
+      catch (WorkException we)
+      {
+         assertEquals(ClassDefinitionCache.CLASS_DEFINITION_MISSING, we.getErrorCode());
+      }
+   }
+
+   /**
+    * The hash of a received definition is computed from its data
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testReceivedHash() throws Throwable
+   {
+      ClassDefinition cd = new ClassDefinition("Test", 1L, new byte[] {1, 2, 3});
+      String hash = cd.getHash();
+
+      Field f = ClassDefinition.class.getDeclaredField("hash");
+      f.setAccessible(true);
+      f.set(cd, new ClassDefinition("Other", 1L, new byte[] {4}).getHash());
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(cd);
+      oos.flush();
+
+      ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+      ClassDefinition received = (ClassDefinition)ois.readObject();
+
+      assertEquals(hash, received.getHash());
+   }
+
+   /**
+    * Create a class bundle
+    * @param cd The class definition
+    * @return The class bundle
+    */
+   private static ClassBundle bundle(ClassDefinition cd)
+   {
+      List<ClassDefinition> definitions = new ArrayList<ClassDefinition>(1);
+      definitions.add(cd);
+      return new ClassBundle(definitions);
+   }
+
+   /**
+    * A work instance
+    */
+   public static class TestWork implements DistributableWork
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * A transport which records the class bundles, and resolves them like a peer
+    */
+   static class TestTransport extends AbstractRemoteTransport<String>
+   {
+      /** The class bundles */
+      final List<ClassBundle> bundles = new ArrayList<ClassBundle>();
+
+      /**
+       * {@inheritDoc}
+       */
+      public void startup() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void shutdown() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void initialize() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean isInitialized()
+      {
+         return true;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      protected String getOwnAddress()
+      {
+         return "local";
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      protected Serializable sendMessage(String physicalAddress, Request request, Serializable... parameters)
+         throws WorkException
+      {
+         assertEquals(Request.SCHEDULE_WORK, request);
+
+         ClassBundle cb = (ClassBundle)parameters[1];
+         bundles.add(cb);
+         getClassDefinitionCache().resolve(cb);
+
+         return null;
+      }
+   }
+}
@@ -0,0 +1,248 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.transport.remote;
+
+import org.ironjacamar.core.api.workmanager.DistributedWorkManagerStatisticsValues;
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.workmanager.ClassBundle;
+import org.ironjacamar.core.workmanager.ClassDefinition;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.resource.spi.work.WorkException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ProtocolCodec test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ProtocolCodecTestCase
+{
+   /** An address */
+   private static final Address ADDRESS = new Address("wm", "WorkManager", "localhost:1299");
+
+   /**
+    * A control message keeps its values, and is smaller than with Java serialization
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testControlMessage() throws Throwable
+   {
+      byte[] message = encode(Request.UPDATE_SHORTRUNNING_FREE, ADDRESS, Long.valueOf(42L));
+
+      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(message));
+      assertEquals(Request.UPDATE_SHORTRUNNING_FREE.ordinal(), ProtocolCodec.readOrdinal(dis));
+      assertEquals(2, ProtocolCodec.readNumberOfParameters(dis));
+      assertEquals(ADDRESS, ProtocolCodec.readValue(dis, null));
+      assertEquals(Long.valueOf(42L), ProtocolCodec.readValue(dis, null));
+      assertEquals(-1, dis.read());
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeInt(Request.UPDATE_SHORTRUNNING_FREE.ordinal());
+      oos.writeInt(2);
+      oos.writeObject(ADDRESS);
+      oos.writeObject(Long.valueOf(42L));
+      oos.close();
+
+      assertTrue(message.length < baos.size());
+   }
+
+   /**
+    * Values with a fixed layout, and values using Java serialization, keep their values
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testValues() throws Throwable
+   {
+      Set<Address> addresses = new HashSet<Address>();
+      addresses.add(ADDRESS);
+      addresses.add(new Address("wm2", "WorkManager", null));
+
+      ClassBundle cb = new ClassBundle(Arrays.asList(new ClassDefinition("a.B", 1L, new byte[] {1, 2, 3})));
+      DistributedWorkManagerStatisticsValues values =
+         new DistributedWorkManagerStatisticsValues(1, 2, 3, 4, 5, 6, 7, 8);
+
+      assertEquals(addresses, roundTrip((Serializable)addresses));
+      assertEquals(cb, roundTrip(cb));
+      assertEquals("localhost:1299", roundTrip("localhost:1299"));
+      assertNull(roundTrip(null));
+
+      DistributedWorkManagerStatisticsValues v = (DistributedWorkManagerStatisticsValues)roundTrip(values);
+      assertEquals(1, v.getWorkSuccessful());
+      assertEquals(2, v.getWorkFailed());
+      assertEquals(3, v.getDoWorkAccepted());
+      assertEquals(4, v.getDoWorkRejected());
+      assertEquals(5, v.getScheduleWorkAccepted());
+      assertEquals(6, v.getScheduleWorkRejected());
+      assertEquals(7, v.getStartWorkAccepted());
+      assertEquals(8, v.getStartWorkRejected());
+
+      WorkException we = (WorkException)roundTrip(new WorkException("Expected"));
+      assertEquals("Expected", we.getMessage());
+   }
+
+   /**
+    * A statistics update keeps its totals and free counts
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testStatisticsUpdate() throws Throwable
+   {
+      StatisticsUpdate update = new StatisticsUpdate("localhost:1300", 7L, 3L);
+      update.addTotals(ADDRESS, new long[] {1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L});
+      update.addFreeCounts(new Address("wm2", "WorkManager", "localhost:1300"), 10L, -1L);
+
+      StatisticsUpdate v = (StatisticsUpdate)roundTrip(update);
+      assertEquals("localhost:1300", v.getTransportId());
+      assertEquals(7L, v.getEpoch());
+      assertEquals(3L, v.getSequence());
+      assertArrayEquals(new long[] {1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L}, v.getTotals().get(ADDRESS));
+      assertArrayEquals(new long[] {10L, -1L},
+                        v.getFreeCounts().get(new Address("wm2", "WorkManager", "localhost:1300")));
+   }
+
+   /**
+    * A response without parameters doesn't carry any
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testVoidResponse() throws Throwable
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(baos);
+      ProtocolCodec.writeResponse(dos, Response.OK_VOID, (Serializable)null);
+      dos.flush();
+
+      assertEquals(3, baos.size());
+   }
+
+   /**
+    * Counts and lengths which are negative, or larger than the message, are rejected before allocating
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testCorruptSizes() throws Throwable
+   {
+      // Set of Address
+      assertCorrupt(4, -1);
+      assertCorrupt(4, Integer.MAX_VALUE);
+
+      // ClassBundle; -1 is a bundle without definitions
+      assertCorrupt(5, -2);
+      assertCorrupt(5, Integer.MAX_VALUE);
+      assertNull(((ClassBundle)read(5, -1)).getDefinitions());
+
+      // Java serialization
+      assertCorrupt(7, -2);
+      assertCorrupt(7, 1024 * 1024 * 1024);
+   }
+
+   /**
+    * Encode a request
+    * @param request The request
+    * @param parameters The parameters
+    * @return The message
+    * @throws Throwable In case of an error
+    */
+   private byte[] encode(Request request, Serializable... parameters) throws Throwable
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(baos);
+      ProtocolCodec.writeRequest(dos, request, parameters);
+      dos.flush();
+
+      return baos.toByteArray();
+   }
+
+   /**
+    * Write and read a value
+    * @param v The value
+    * @return The value read
+    * @throws Throwable In case of an error
+    */
+   private Serializable roundTrip(Serializable v) throws Throwable
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(baos);
+      ProtocolCodec.writeValue(dos, v);
+      dos.flush();
+
+      return ProtocolCodec.readValue(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())), null);
+   }
+
+   /**
+    * Read a value which is a tag followed by a size
+    * @param tag The tag
+    * @param size The size
+    * @return The value read
+    * @throws Throwable In case of an error
+    */
+   private Serializable read(int tag, int size) throws Throwable
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(baos);
+      dos.writeByte(tag);
+      dos.writeInt(size);
+      dos.flush();
+
+      return ProtocolCodec.readValue(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())), null);
+   }
+
+   /**
+    * Assert that a value which is a tag followed by a size is rejected
+    * @param tag The tag
+    * @param size The size
+    * @throws Throwable In case of an error
+    */
+   private void assertCorrupt(int tag, int size) throws Throwable
+   {
+      try
+      {
+         read(tag, size);
+         fail("Size " + size + " accepted for tag " + tag);
+      }
+      catch (StreamCorruptedException sce)
+      {
+         // Expected
+      }
+   }
+}
@@ -0,0 +1,367 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.transport.remote;
+
+import org.ironjacamar.core.spi.workmanager.Address;
+import org.ironjacamar.core.workmanager.transport.remote.ProtocolMessages.Request;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.WorkException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for publishing the distributed statistics at an interval
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class StatisticsPublisherTestCase
+{
+   /** A work manager on the first peer */
+   private static final Address PEER1 = new Address("wm1", "WorkManager", "peer1");
+
+   /** Another work manager on the first peer */
+   private static final Address PEER1_OTHER = new Address("wm2", "WorkManager", "peer1");
+
+   /** A work manager on the second peer */
+   private static final Address PEER2 = new Address("wm3", "WorkManager", "peer2");
+
+   /**
+    * The deltas for all work managers on a peer are sent as one message with the totals
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testOneMessagePerPeer() throws Throwable
+   {
+      TestTransport transport = createTransport();
+
+      for (int i = 0; i < 100; i++)
+      {
+         transport.deltaDoWorkAccepted(PEER1);
+         transport.deltaWorkSuccessful(PEER1_OTHER);
+      }
+      transport.deltaWorkFailed(PEER2);
+
+      assertEquals(0, transport.updates.size());
+
+      transport.publishStatistics();
+
+      assertEquals(2, transport.updates.size());
+      for (int i = 0; i < transport.updates.size(); i++)
+      {
+         StatisticsUpdate update = transport.updates.get(i);
+         assertEquals("local", update.getTransportId());
+
+         if ("peer1".equals(transport.destinations.get(i)))
+         {
+            assertEquals(2, update.getTotals().size());
+            assertEquals(100L, update.getTotals().get(PEER1)[StatisticsUpdate.DOWORK_ACCEPTED]);
+            assertEquals(100L, update.getTotals().get(PEER1_OTHER)[StatisticsUpdate.WORK_SUCCESSFUL]);
+         }
+         else
+         {
+            assertEquals(1, update.getTotals().size());
+            assertEquals(1L, update.getTotals().get(PEER2)[StatisticsUpdate.WORK_FAILED]);
+         }
+      }
+
+      transport.publishStatistics();
+      assertEquals(2, transport.updates.size());
+   }
+
+   /**
+    * The totals are cumulative, so an update that couldn't be sent is covered by the next one
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testCumulativeTotals() throws Throwable
+   {
+      TestTransport transport = createTransport();
+
+      transport.deltaScheduleWorkAccepted(PEER2);
+      transport.fail = true;
+      transport.publishStatistics();
+      assertEquals(0, transport.updates.size());
+
+      transport.fail = false;
+      transport.deltaScheduleWorkAccepted(PEER2);
+      transport.publishStatistics();
+
+      assertEquals(1, transport.updates.size());
+      assertArrayEquals(new long[] {0L, 0L, 0L, 0L, 2L, 0L, 0L, 0L},
+                        transport.updates.get(0).getTotals().get(PEER2));
+   }
+
+   /**
+    * The statistics are published once the threshold is reached
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testThreshold() throws Throwable
+   {
+      TestTransport transport = createTransport();
+      transport.setStatisticsThreshold(10);
+
+      for (int i = 0; i < 10; i++)
+      {
+         transport.deltaStartWorkRejected(PEER2);
+      }
+
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (transport.updates.isEmpty() && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      assertTrue(!transport.updates.isEmpty());
+      assertEquals(10L, transport.updates.get(0).getTotals().get(PEER2)[StatisticsUpdate.STARTWORK_REJECTED]);
+   }
+
+   /**
+    * The statistics are published on the executor of the transport
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testPublishOnTransportExecutor() throws Throwable
+   {
+      final String[] thread = new String[1];
+      final CountDownLatch sent = new CountDownLatch(1);
+
+      ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            return new Thread(r, "Transport");
+         }
+      });
+
+      try
+      {
+         TestTransport transport = createTransport();
+         transport.setExecutorService(executor);
+         transport.setStatisticsThreshold(10);
+
+         transport.onSend = new Runnable()
+         {
+            public void run()
+            {
+               thread[0] = Thread.currentThread().getName();
+               sent.countDown();
+            }
+         };
+
+         for (int i = 0; i < 10; i++)
+         {
+            transport.deltaStartWorkRejected(PEER2);
+         }
+
+         assertTrue(sent.await(5, TimeUnit.SECONDS));
+         assertEquals("Transport", thread[0]);
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Changes reaching the threshold while the statistics are published are published afterwards
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testThresholdDuringPublish() throws Throwable
+   {
+      final TestTransport transport = createTransport();
+      transport.setStatisticsThreshold(10);
+
+      transport.onSend = new Runnable()
+      {
+         public void run()
+         {
+            for (int i = 0; i < 10; i++)
+            {
+               transport.deltaStartWorkRejected(PEER2);
+            }
+         }
+      };
+
+      transport.deltaStartWorkRejected(PEER2);
+      transport.publishStatistics();
+
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (transport.updates.size() < 2 && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10L);
+      }
+
+      assertEquals(2, transport.updates.size());
+      assertEquals(1L, transport.updates.get(0).getTotals().get(PEER2)[StatisticsUpdate.STARTWORK_REJECTED]);
+      assertEquals(11L, transport.updates.get(1).getTotals().get(PEER2)[StatisticsUpdate.STARTWORK_REJECTED]);
+      assertTrue(transport.updates.get(0).getSequence() < transport.updates.get(1).getSequence());
+   }
+
+   /**
+    * Free counts from an update delivered out of order aren't applied
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testStaleFreeCounts() throws Throwable
+   {
+      TestTransport transport = createTransport();
+
+      StatisticsUpdate later = new StatisticsUpdate("peer1", 1L, 2L);
+      later.addFreeCounts(PEER1, 5L, -1L);
+
+      StatisticsUpdate earlier = new StatisticsUpdate("peer1", 1L, 1L);
+      earlier.addFreeCounts(PEER1, 9L, -1L);
+
+      transport.localUpdateStatistics(later);
+      transport.localUpdateStatistics(earlier);
+
+      assertEquals(1, transport.shortRunningFree.size());
+      assertEquals(Long.valueOf(5L), transport.shortRunningFree.get(0));
+
+      StatisticsUpdate restarted = new StatisticsUpdate("peer1", 2L, 1L);
+      restarted.addFreeCounts(PEER1, 7L, -1L);
+      transport.localUpdateStatistics(restarted);
+
+      assertEquals(2, transport.shortRunningFree.size());
+      assertEquals(Long.valueOf(7L), transport.shortRunningFree.get(1));
+   }
+
+   /**
+    * Create a transport which knows of the peers, and publishes at an interval
+    * @return The transport
+    */
+   private TestTransport createTransport()
+   {
+      TestTransport transport = new TestTransport();
+      transport.setId("local");
+      transport.setStatisticsInterval(60000L);
+      transport.setStatisticsThreshold(0);
+      transport.nodes.put(PEER1, "peer1");
+      transport.nodes.put(PEER1_OTHER, "peer1");
+      transport.nodes.put(PEER2, "peer2");
+      return transport;
+   }
+
+   /**
+    * A transport which records the statistics updates
+    */
+   static class TestTransport extends AbstractRemoteTransport<String>
+   {
+      /** The destinations */
+      final List<String> destinations = new ArrayList<String>();
+
+      /** The updates */
+      final List<StatisticsUpdate> updates = new ArrayList<StatisticsUpdate>();
+
+      /** The short running free counts applied */
+      final List<Long> shortRunningFree = new ArrayList<Long>();
+
+      /** Fail sending */
+      volatile boolean fail = false;
+
+      /** Run once while sending */
+      volatile Runnable onSend = null;
+
+      /**
+       * {@inheritDoc}
+       */
+      public void startup() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void shutdown() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void initialize() throws Throwable
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean isInitialized()
+      {
+         return true;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      protected String getOwnAddress()
+      {
+         return "local";
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void localUpdateShortRunningFree(Address logicalAddress, Long freeCount)
+      {
+         shortRunningFree.add(freeCount);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      protected synchronized Serializable sendMessage(String physicalAddress, Request request,
+                                                      Serializable... parameters)
+         throws WorkException
+      {
+         if (fail)
+            throw new WorkException("Expected");
+
+         assertEquals(Request.UPDATE_STATISTICS, request);
+         destinations.add(physicalAddress);
+         updates.add((StatisticsUpdate)parameters[0]);
+
+         Runnable r = onSend;
+         onSend = null;
+         if (r != null)
+            r.run();
+
+         return null;
+      }
+   }
+}
@@ -0,0 +1,285 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2015, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.core.workmanager.transport.remote.socket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Multiplexed connection test cases
+ *
+ * @author <a href="mailto:jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class ConnectionTestCase
+{
+   /** The number of requests answered as one group by the server */
+   private static final int GROUP = 4;
+
+   /** The server socket */
+   private ServerSocket ss;
+
+   /** The executor */
+   private ExecutorService executor;
+
+   /**
+    * Setup: a server answering each group of requests in reverse order
+    * @throws Throwable In case of an error
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      ss = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      executor = Executors.newCachedThreadPool();
+
+      executor.submit(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            Socket socket = ss.accept();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (in.readInt() != Connection.MAGIC)
+               throw new IOException("No magic");
+
+            List<Integer> ids = new ArrayList<Integer>();
+            List<byte[]> messages = new ArrayList<byte[]>();
+            while (true)
+            {
+               ids.add(Integer.valueOf(in.readInt()));
+               byte[] message = new byte[in.readInt()];
+               in.readFully(message);
+               messages.add(message);
+
+               if (ids.size() == GROUP)
+               {
+                  for (int i = GROUP - 1; i >= 0; i--)
+                     Connection.writeFrame(out, ids.get(i).intValue(), messages.get(i));
+
+                  ids.clear();
+                  messages.clear();
+               }
+            }
+         }
+      });
+   }
+
+   /**
+    * Teardown
+    * @throws Throwable In case of an error
+    */
+   @After
+   public void teardown() throws Throwable
+   {
+      ss.close();
+      executor.shutdownNow();
+   }
+
+   /**
+    * Requests in flight at the same time get their own responses
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testMultiplexing() throws Throwable
+   {
+      final Connection c = new Connection("localhost:" + ss.getLocalPort());
+      executor.submit(c);
+
+      try
+      {
+         List<Future<byte[]>> responses = new ArrayList<Future<byte[]>>();
+         for (int i = 0; i < GROUP; i++)
+         {
+            final byte[] message = new byte[] {(byte)i};
+            responses.add(executor.submit(new Callable<byte[]>()
+            {
+               public byte[] call() throws Exception
+               {
+                  return c.request(message);
+               }
+            }));
+         }
+
+         for (int i = 0; i < GROUP; i++)
+            assertArrayEquals(new byte[] {(byte)i}, responses.get(i).get(5L, TimeUnit.SECONDS));
+
+         assertTrue(c.isIdle(System.currentTimeMillis(), 0L));
+      }
+      finally
+      {
+         c.close();
+      }
+   }
+
+   /**
+    * A closed connection fails the requests
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testClosed() throws Throwable
+   {
+      Connection c = new Connection("localhost:" + ss.getLocalPort());
+      executor.submit(c);
+
+      c.close();
+      assertTrue(c.isClosed());
+
+      try
+      {
+         c.request(new byte[] {0});
+         fail("Request sent");
+      }
+      catch (ClosedChannelException cce)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * A request without a response within the timeout fails, and the connection stays open
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testTimeout() throws Throwable
+   {
+      Connection c = new Connection("localhost:" + ss.getLocalPort());
+      c.start();
+
+      try
+      {
+         c.request(new byte[] {0}, 100L);
+         fail("Response received");
+      }
+      catch (SocketTimeoutException ste)
+      {
+         // Expected, the server only answers a full group
+      }
+      finally
+      {
+         assertFalse(c.isClosed());
+         assertTrue(c.isIdle(System.currentTimeMillis(), 0L));
+         c.close();
+      }
+   }
+
+   /**
+    * A request which was written doesn't fail with a ClosedChannelException when the
+    * connection is closed, so it isn't sent again
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testClosedAfterWrite() throws Throwable
+   {
+      final Connection c = new Connection("localhost:" + ss.getLocalPort());
+      c.start();
+
+      Future<byte[]> response = executor.submit(new Callable<byte[]>()
+      {
+         public byte[] call() throws Exception
+         {
+            return c.request(new byte[] {0});
+         }
+      });
+
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (c.isIdle(System.currentTimeMillis(), 0L) && System.currentTimeMillis() < deadline)
+         Thread.sleep(10L);
+
+      c.close();
+
+      try
+      {
+         response.get(5L, TimeUnit.SECONDS);
+         fail("Response received");
+      }
+      catch (ExecutionException ee)
+      {
+         assertTrue(ee.getCause() instanceof IOException);
+         assertFalse(ee.getCause() instanceof ClosedChannelException);
+      }
+   }
+
+   /**
+    * A frame longer than the maximum frame size closes the connection
+    * @throws Throwable In case of an error
+    */
+   @Test
+   public void testFrameTooLong() throws Throwable
+   {
+      final Connection c = new Connection("localhost:" + ss.getLocalPort(), 0);
+      c.start();
+
+      List<Future<byte[]>> responses = new ArrayList<Future<byte[]>>();
+      for (int i = 0; i < GROUP; i++)
+      {
+         final byte[] message = new byte[] {(byte)i};
+         responses.add(executor.submit(new Callable<byte[]>()
+         {
+            public byte[] call() throws Exception
+            {
+               return c.request(message);
+            }
+         }));
+      }
+
+      for (int i = 0; i < GROUP; i++)
+      {
+         try
+         {
+            responses.get(i).get(5L, TimeUnit.SECONDS);
+            fail("Response received");
+         }
+         catch (ExecutionException ee)
+         {
+            assertTrue(ee.getCause() instanceof StreamCorruptedException);
+         }
+      }
+
+      assertTrue(c.isClosed());
+   }
+}
@@ -21,6 +21,8 @@
 package org.ironjacamar.perf;
 
 import org.ironjacamar.embedded.Embedded;
+import org.ironjacamar.embedded.deployers.DashRaXmlDeployer;
+import org.ironjacamar.embedded.deployers.IronJacamarXmlDeployer;
 import org.ironjacamar.embedded.dsl.resourceadapters20.api.ResourceAdaptersDescriptor;
 import org.ironjacamar.rars.ResourceAdapterFactory;
 import org.ironjacamar.rars.perf.PerfConnection;
@@ -492,6 +494,19 @@ public abstract class Performance
       System.out.println("Transaction commit duration: " + TX_COMMIT_DURATION);
    }
 
+   /**
+    * Set the pool type used for the deployments
+    * @param type The pool type
+    * @throws Throwable Thrown in case of an error
+    */
+   static void setDefaultPoolType(String type) throws Throwable
+   {
+      embedded.lookup("IronJacamarXmlDeployer", IronJacamarXmlDeployer.class).setDefaultPoolType(type);
+      embedded.lookup("DashRaXmlDeployer", DashRaXmlDeployer.class).setDefaultPoolType(type);
+
+      System.out.println("Pool type: " + type);
+   }
+
    /**
     * beforeRun
     */
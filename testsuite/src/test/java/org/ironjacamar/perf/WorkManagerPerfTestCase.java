@@ -0,0 +1,345 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.ironjacamar.perf;
+
+import org.ironjacamar.core.spi.security.SecurityIntegration;
+import org.ironjacamar.core.workmanager.ConcurrencyLimitedExecutor;
+import org.ironjacamar.core.workmanager.WorkManagerImpl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkManager;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * WorkManager scheduleWork performance tests
+ *
+ * @author <a href="jesper.pedersen@ironjacamar.org">Jesper Pedersen</a>
+ */
+public class WorkManagerPerfTestCase
+{
+   /** Settings */
+   private static final int[] CLIENTS = {1, 10, 25, 50, 100, 150, 200, 250, 300};
+   private static final int THREADS = 50;
+   private static final int WORK_PER_CLIENT = 1000;
+
+   /** Data */
+   private static SortedMap<String, SortedMap<Integer, Integer>> data =
+      new TreeMap<String, SortedMap<Integer, Integer>>();
+
+   private static ExecutorService es;
+
+   /**
+    * Lifecycle start, before the suite is executed
+    * @throws Throwable throwable exception
+    */
+   @BeforeClass
+   public static void beforeClass() throws Throwable
+   {
+      es = Executors.newFixedThreadPool(CLIENTS[CLIENTS.length - 1], new Performance.PerformanceThreadFactory());
+
+      System.out.println("Clients: " + Arrays.toString(CLIENTS));
+      System.out.println("Threads: " + THREADS);
+      System.out.println("Work: " + WORK_PER_CLIENT);
+   }
+
+   /**
+    * Lifecycle stop, after the suite is executed
+    * @throws Throwable throwable exception
+    */
+   @AfterClass
+   public static void afterClass() throws Throwable
+   {
+      es.shutdown();
+      es = null;
+
+      Iterator<Map.Entry<String, SortedMap<Integer, Integer>>> it = data.entrySet().iterator();
+      while (it.hasNext())
+      {
+         Map.Entry<String, SortedMap<Integer, Integer>> entry = it.next();
+
+         Iterator<Map.Entry<Integer, Integer>> entryIt = entry.getValue().entrySet().iterator();
+         while (entryIt.hasNext())
+         {
+            Map.Entry<Integer, Integer> result = entryIt.next();
+            System.out.println("PERF-DATA: " + entry.getKey() + "," + result.getKey() + "," + result.getValue());
+         }
+      }
+   }
+
+   /**
+    * ScheduleWork, with statistics
+    *
+    * @throws Throwable Thrown in case of an error
+    */
+   @Test(timeout = 180000)
+   public void testScheduleWork() throws Throwable
+   {
+      for (int i = 0; i < CLIENTS.length; i++)
+      {
+         insertResult("ScheduleWork", CLIENTS[i], testBase(CLIENTS[i], true));
+      }
+   }
+
+   /**
+    * ScheduleWork, without statistics
+    *
+    * @throws Throwable Thrown in case of an error
+    */
+   @Test(timeout = 180000)
+   public void testScheduleWorkNoStatistics() throws Throwable
+   {
+      for (int i = 0; i < CLIENTS.length; i++)
+      {
+         insertResult("ScheduleWorkNoStatistics", CLIENTS[i], testBase(CLIENTS[i], false));
+      }
+   }
+
+   /**
+    * Base
+    *
+    * @param clients The number of clients
+    * @param statistics Enable the statistics
+    * @return The number of work instances completed per second
+    * @throws Throwable Thrown in case of an error
+    */
+   private int testBase(int clients, boolean statistics) throws Throwable
+   {
+      ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(THREADS);
+      WorkManagerImpl wm = createWorkManager(executor, statistics);
+
+      try
+      {
+         CountDownLatch done = new CountDownLatch(clients);
+         CompletedListener listener = new CompletedListener(clients * WORK_PER_CLIENT);
+
+         List<Client> clientList = new ArrayList<Client>(clients);
+         for (int i = 0; i < clients; i++)
+         {
+            clientList.add(new Client(wm, listener, done));
+         }
+
+         long start = System.nanoTime();
+
+         List<Future<Integer>> futures = es.invokeAll(clientList);
+
+         done.await();
+         assertTrue(listener.completed.await(60L, TimeUnit.SECONDS));
+
+         long end = System.nanoTime();
+
+         double millis = (end - start) / 1000000.0;
+
+         if (millis <= 0.0)
+            millis = 1.0;
+
+         double seconds = millis / 1000.0;
+
+         int totalWork = 0;
+         for (Future<Integer> f : futures)
+         {
+            totalWork += f.get(1, TimeUnit.SECONDS).intValue();
+         }
+
+         assertEquals(clients * WORK_PER_CLIENT, totalWork);
+
+         if (statistics)
+            assertEquals(0, wm.getStatistics().getWorkActive());
+
+         return (int)Math.ceil(totalWork / seconds);
+      }
+      finally
+      {
+         wm.shutdown();
+         executor.shutdown();
+      }
+   }
+
+   /**
+    * Create a work manager
+    * @param executor The executor
+    * @param statistics Enable the statistics
+    * @return The work manager
+    */
+   private static WorkManagerImpl createWorkManager(ConcurrencyLimitedExecutor executor, boolean statistics)
+   {
+      WorkManagerImpl wm = new WorkManagerImpl();
+      wm.setShortRunningThreadPool(executor);
+      wm.setStatisticsEnabled(statistics);
+      wm.setSecurityIntegration((SecurityIntegration)Proxy.newProxyInstance(
+         SecurityIntegration.class.getClassLoader(), new Class<?>[] {SecurityIntegration.class},
+         new InvocationHandler()
+         {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+               return null;
+            }
+         }));
+
+      return wm;
+   }
+
+   /**
+    * Insert result
+    * @param type The type
+    * @param clients The number of clients
+    * @param result The result
+    */
+   private static void insertResult(String type, int clients, int result)
+   {
+      SortedMap<Integer, Integer> section = data.get(type);
+
+      if (section == null)
+         section = new TreeMap<Integer, Integer>();
+
+      section.put(Integer.valueOf(clients), Integer.valueOf(result));
+
+      data.put(type, section);
+   }
+
+   /**
+    * Client
+    */
+   static class Client implements Callable<Integer>
+   {
+      private WorkManager wm;
+      private CompletedListener listener;
+      private CountDownLatch done;
+
+      /**
+       * Constructor
+       * @param wm The work manager
+       * @param listener The work listener
+       * @param done Done counter
+       */
+      Client(WorkManager wm, CompletedListener listener, CountDownLatch done)
+      {
+         this.wm = wm;
+         this.listener = listener;
+         this.done = done;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Integer call()
+      {
+         int success = 0;
+
+         try
+         {
+            for (int i = 0; i < WORK_PER_CLIENT; i++)
+            {
+               wm.scheduleWork(new NoopWork(), WorkManager.INDEFINITE, null, listener);
+               success++;
+            }
+         }
+         catch (Throwable t)
+         {
+            System.err.println("Thread: " + Thread.currentThread().getName() + ", " + t.getMessage());
+            t.printStackTrace(System.err);
+         }
+         finally
+         {
+            done.countDown();
+         }
+         return Integer.valueOf(success);
+      }
+   }
+
+   /**
+    * Work doing nothing
+    */
+   static class NoopWork implements Work
+   {
+      /**
+       * {@inheritDoc}
+       */
+      public void run()
+      {
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void release()
+      {
+      }
+   }
+
+   /**
+    * A work listener counting down on completion
+    */
+   static class CompletedListener extends WorkAdapter
+   {
+      private CountDownLatch completed;
+
+      /**
+       * Constructor
+       * @param count The number of work instances
+       */
+      CompletedListener(int count)
+      {
+         this.completed = new CountDownLatch(count);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void workCompleted(WorkEvent e)
+      {
+         completed.countDown();
+      }
+   }
+
+   /**
+    * Main
+    * @param args The arguments
+    */
+   public static void main(String[] args)
+   {
+      org.junit.runner.JUnitCore.main(WorkManagerPerfTestCase.class.getName());
+   }
+}
@@ -24,6 +24,7 @@ import java.io.PrintWriter;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionManager;
@@ -62,6 +63,9 @@ public class TestManagedConnectionFactory implements ManagedConnectionFactory,
    @NotNull
    private Integer invalidConnectionFailureCount;
 
+   /** The number of getInvalidConnections calls */
+   private AtomicInteger invalidConnectionsCalls;
+
    /**
     * Default constructor
     */
@@ -69,6 +73,7 @@ public class TestManagedConnectionFactory implements ManagedConnectionFactory,
    {
       this.createFailureCount = Integer.valueOf(0);
       this.invalidConnectionFailureCount = Integer.valueOf(0);
+      this.invalidConnectionsCalls = new AtomicInteger(0);
    }
 
    /** 
@@ -107,6 +112,15 @@ public class TestManagedConnectionFactory implements ManagedConnectionFactory,
       return invalidConnectionFailureCount;
    }
 
+   /**
+    * Get the number of getInvalidConnections calls
+    * @return The value
+    */
+   public int getInvalidConnectionsCalls()
+   {
+      return invalidConnectionsCalls.get();
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -164,6 +178,8 @@ public class TestManagedConnectionFactory implements ManagedConnectionFactory,
     */
    public Set getInvalidConnections(Set connectionSet) throws ResourceException
    {
+      invalidConnectionsCalls.incrementAndGet();
+
       Set result = new HashSet();
 
       Iterator it = connectionSet.iterator();
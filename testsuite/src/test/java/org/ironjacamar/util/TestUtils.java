@@ -150,5 +150,32 @@ public class TestUtils
       }
    }
 
+   /**
+    * Get the first element of a collection, in iteration order
+    * @param <T> The type of the elements
+    * @param collection The collection
+    * @return The value
+    */
+   public static <T> T getFirst(Collection<T> collection)
+   {
+      return collection.iterator().next();
+   }
+
+   /**
+    * Get the last element of a collection, in iteration order
+    * @param <T> The type of the elements
+    * @param collection The collection
+    * @return The value; <code>null</code> if the collection is empty
+    */
+   public static <T> T getLast(Collection<T> collection)
+   {
+      T last = null;
+
+      for (T t : collection)
+         last = t;
+
+      return last;
+   }
+
 
 }
@@ -25,7 +25,6 @@ import org.ironjacamar.Version;
 import org.ironjacamar.core.tracer.TraceEvent;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.Date;
@@ -35,6 +34,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * HTML report generator for a tracer log
@@ -2114,83 +2116,344 @@ public class HTMLReport
    }
    
    /**
-    * Main
-    * @param args The arguments
+    * A page of the report
     */
-   public static void main(String[] args)
+   private abstract static class PageTask extends RecursiveAction
    {
-      if (args == null || args.length < 1)
-      {
-         System.out.println("Usage: HTMLReport [-ignore-delist] [-ignore-tracking] " +
-                            "[-ignore-incomplete] [-no-sdedit] <file> [<output>]");
-         return;
-      }
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
 
-      boolean ignoreDelist = false;
-      boolean ignoreTracking = false;
-      boolean ignoreIncomplete = false;
-      boolean noSDedit = false;
-      int argCount = 0;
+      /** The file */
+      private final File file;
 
-      if ("-ignore-delist".equalsIgnoreCase(args[argCount]))
+      /**
+       * Constructor
+       * @param file The file
+       */
+      PageTask(File file)
       {
-         ignoreDelist = true;
-         argCount++;
+         this.file = file;
       }
-      if ("-ignore-tracking".equalsIgnoreCase(args[argCount]))
+
+      /**
+       * Generate the page
+       * @param fw The file writer
+       * @exception Exception If an error occurs
+       */
+      protected abstract void generate(FileWriter fw) throws Exception;
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      protected void compute()
       {
-         ignoreTracking = true;
-         argCount++;
+         FileWriter fw = null;
+         try
+         {
+            file.getParentFile().mkdirs();
+
+            fw = new FileWriter(file);
+            generate(fw);
+         }
+         catch (Exception e)
+         {
+            throw new RuntimeException(file.getAbsolutePath(), e);
+         }
+         finally
+         {
+            if (fw != null)
+            {
+               try
+               {
+                  fw.flush();
+                  fw.close();
+               }
+               catch (Exception e)
+               {
+                  // Ignore
+               }
+            }
+         }
       }
-      if ("-ignore-incomplete".equalsIgnoreCase(args[argCount]))
+   }
+
+   /**
+    * The pages of a pool; the connection listener pages are generated in parallel
+    */
+   private static class PoolTask extends RecursiveAction
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /** The pool name */
+      private final String poolName;
+
+      /** The interactions */
+      private final List<Interaction> data;
+
+      /** The overall status */
+      private final TraceEventStatus overallStatus;
+
+      /** The managed connection pools */
+      private final Set<String> mcps;
+
+      /** The CREATE callstacks */
+      private final Map<String, TraceEvent> createCallStacks;
+
+      /** The DESTROY callstacks */
+      private final Map<String, TraceEvent> destroyCallStacks;
+
+      /** Should SDedit functionality be disabled */
+      private final boolean noSDedit;
+
+      /** The pool directory */
+      private final File directory;
+
+      /** The report state */
+      private final ReportState state;
+
+      /**
+       * Constructor
+       * @param poolName The pool name
+       * @param data The interactions
+       * @param overallStatus The overall status
+       * @param mcps The managed connection pools
+       * @param createCallStacks The CREATE callstacks
+       * @param destroyCallStacks The DESTROY callstacks
+       * @param noSDedit Should SDedit functionality be disabled
+       * @param directory The pool directory
+       * @param state The report state
+       */
+      PoolTask(String poolName, List<Interaction> data, TraceEventStatus overallStatus, Set<String> mcps,
+               Map<String, TraceEvent> createCallStacks, Map<String, TraceEvent> destroyCallStacks,
+               boolean noSDedit, File directory, ReportState state)
       {
-         ignoreIncomplete = true;
-         argCount++;
+         this.poolName = poolName;
+         this.data = data;
+         this.overallStatus = overallStatus;
+         this.mcps = mcps;
+         this.createCallStacks = createCallStacks;
+         this.destroyCallStacks = destroyCallStacks;
+         this.noSDedit = noSDedit;
+         this.directory = directory;
+         this.state = state;
       }
-      if ("-no-sdedit".equalsIgnoreCase(args[argCount]))
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      protected void compute()
       {
-         noSDedit = true;
-         argCount++;
+         final Map<String, TraceEventStatus> clStatus = new TreeMap<String, TraceEventStatus>();
+         List<PageTask> tasks = new ArrayList<PageTask>();
+
+         if (data != null)
+         {
+            Map<String, List<Interaction>> clInteractions = TraceEventHelper.getConnectionListenerData(data);
+
+            for (Map.Entry<String, List<Interaction>> dataEntry : clInteractions.entrySet())
+            {
+               final String identifier = dataEntry.getKey();
+               final List<Interaction> interactions = dataEntry.getValue();
+
+               // Calculate connection listener status
+               List<TraceEventStatus> clStatuses = new ArrayList<TraceEventStatus>();
+
+               for (Interaction interaction : interactions)
+                  clStatuses.add(interaction.getStatus());
+
+               final TraceEventStatus currentCLStatus = TraceEventHelper.mergeStatus(clStatuses);
+               clStatus.put(identifier, currentCLStatus);
+
+               final TraceEvent createCallStack = createCallStacks.get(identifier);
+               final TraceEvent destroyCallStack = destroyCallStacks.get(identifier);
+               final File clF = new File(directory, identifier);
+
+               long fingerprint = ReportState.fingerprint(ReportState.SEED, currentCLStatus.name());
+               fingerprint = ReportState.fingerprint(fingerprint, noSDedit ? 1L : 0L);
+               fingerprint = ReportState.fingerprint(fingerprint, createCallStack);
+               fingerprint = ReportState.fingerprint(fingerprint, destroyCallStack);
+               for (Interaction interaction : interactions)
+                  fingerprint = ReportState.fingerprint(fingerprint, interaction.getEvents());
+
+               File page = new File(clF, "index.html");
+               if (state.isChanged(page, fingerprint))
+               {
+                  tasks.add(new PageTask(page)
+                  {
+                     private static final long serialVersionUID = 1L;
+
+                     @Override
+                     protected void generate(FileWriter fw) throws Exception
+                     {
+                        generateConnectionListenerIndexHTML(identifier, interactions, currentCLStatus,
+                                                            createCallStack, destroyCallStack,
+                                                            noSDedit, clF.getAbsolutePath(), fw);
+                     }
+                  });
+               }
+            }
+         }
+
+         long fingerprint = ReportState.fingerprint(ReportState.SEED, overallStatus.name());
+         if (mcps != null)
+         {
+            for (String mcp : mcps)
+               fingerprint = ReportState.fingerprint(fingerprint, mcp);
+         }
+         for (Map.Entry<String, TraceEventStatus> entry : clStatus.entrySet())
+         {
+            fingerprint = ReportState.fingerprint(fingerprint, entry.getKey());
+            fingerprint = ReportState.fingerprint(fingerprint, entry.getValue().name());
+         }
+
+         File page = new File(directory, "index.html");
+         if (state.isChanged(page, fingerprint))
+         {
+            tasks.add(new PageTask(page)
+            {
+               private static final long serialVersionUID = 1L;
+
+               @Override
+               protected void generate(FileWriter fw) throws Exception
+               {
+                  generatePoolIndexHTML(poolName, overallStatus, mcps, clStatus, fw);
+               }
+            });
+         }
+
+         invokeAll(tasks);
       }
+   }
 
-      File logFile = new File(args[argCount]);
-      FileReader logReader = null;
+   /**
+    * The report of a trace. The events are added a part at a time, each part holding all the
+    * events of the pools it covers; the pages of those pools are generated from the part, and
+    * only what the top-level pages need is kept
+    */
+   private static class Report
+   {
+      /** Ignore delist */
+      private final boolean ignoreDelist;
 
-      String rootDirectory = "report";
-      if (args.length > argCount + 1)
-         rootDirectory = args[argCount + 1];
+      /** Ignore tracking */
+      private final boolean ignoreTracking;
 
-      File root = new File(rootDirectory);
+      /** Ignore incomplete */
+      private final boolean ignoreIncomplete;
 
-      try
+      /** No SDedit */
+      private final boolean noSDedit;
+
+      /** The root directory */
+      private final File root;
+
+      /** The report state */
+      private final ReportState state;
+
+      /** The overall status of each pool */
+      private final Map<String, TraceEventStatus> overallPoolStatus;
+
+      /** The CCM status of each pool */
+      private final Map<String, TraceEventStatus> ccmPoolStatus;
+
+      /** The CCM events */
+      private final List<TraceEvent> ccmEvents;
+
+      /** ToC: Connections */
+      private final Map<String, List<TraceEvent>> tocConnections;
+
+      /** ToC: Managed connections */
+      private final Map<String, TraceEvent> tocManagedConnections;
+
+      /** ToC: Connection listeners */
+      private final Map<String, List<TraceEvent>> tocConnectionListeners;
+
+      /** ToC: Managed connection pools */
+      private final Map<String, List<TraceEvent>> tocMCPs;
+
+      /** The interactions in a transaction */
+      private final List<Interaction> transactionInteractions;
+
+      /** The version */
+      private TraceEvent version;
+
+      /**
+       * Constructor
+       * @param ignoreDelist Ignore delist
+       * @param ignoreTracking Ignore tracking
+       * @param ignoreIncomplete Ignore incomplete
+       * @param noSDedit No SDedit
+       * @param root The root directory
+       * @param state The report state
+       */
+      Report(boolean ignoreDelist, boolean ignoreTracking, boolean ignoreIncomplete, boolean noSDedit,
+             File root, ReportState state)
       {
-         logReader = new FileReader(logFile);
-         root.mkdirs();
+         this.ignoreDelist = ignoreDelist;
+         this.ignoreTracking = ignoreTracking;
+         this.ignoreIncomplete = ignoreIncomplete;
+         this.noSDedit = noSDedit;
+         this.root = root;
+         this.state = state;
+         this.overallPoolStatus = new TreeMap<String, TraceEventStatus>();
+         this.ccmPoolStatus = new TreeMap<String, TraceEventStatus>();
+         this.ccmEvents = new ArrayList<TraceEvent>();
+         this.tocConnections = new TreeMap<String, List<TraceEvent>>();
+         this.tocManagedConnections = new TreeMap<String, TraceEvent>();
+         this.tocConnectionListeners = new TreeMap<String, List<TraceEvent>>();
+         this.tocMCPs = new TreeMap<String, List<TraceEvent>>();
+         this.transactionInteractions = new ArrayList<Interaction>();
+         this.version = null;
+      }
 
-         List<TraceEvent> events = TraceEventHelper.getEvents(logReader, root);
-         Map<String, List<Interaction>> poolData =
+      /**
+       * Add a part of the events
+       * @param events The events
+       * @return The tasks generating the pages of the pools in the part
+       * @exception Exception If an error occurs
+       */
+      List<ForkJoinTask<Void>> add(List<TraceEvent> events) throws Exception
+      {
+         final Map<String, List<Interaction>> poolData =
             TraceEventHelper.getPoolData(TraceEventHelper.filterPoolEvents(events),
                                          ignoreDelist, ignoreTracking, ignoreIncomplete);
          Map<String, List<TraceEvent>> filteredLifecycle = TraceEventHelper.filterLifecycleEvents(events);
-         List<TraceEvent> filteredCCM = TraceEventHelper.filterCCMEvents(events);
          Map<String, List<TraceEvent>> filteredCCMPool = TraceEventHelper.filterCCMPoolEvents(events);
          Map<String, Set<String>> poolMCPs = TraceEventHelper.poolManagedConnectionPools(events);
-         Map<String, List<TraceEvent>> tocConnections = TraceEventHelper.tocConnections(events);
-         Map<String, TraceEvent> tocManagedConnections = TraceEventHelper.tocManagedConnections(events);
-         Map<String, List<TraceEvent>> tocConnectionListeners = TraceEventHelper.tocConnectionListeners(events);
-         Map<String, List<TraceEvent>> tocMCPs = TraceEventHelper.tocManagedConnectionPools(events);
+         Map<String, TraceEvent> createCallStacks =
+            TraceEventHelper.getTypes(events,
+                                      TraceEvent.CREATE_CONNECTION_LISTENER_GET,
+                                      TraceEvent.CREATE_CONNECTION_LISTENER_PREFILL,
+                                      TraceEvent.CREATE_CONNECTION_LISTENER_INCREMENTER);
+         Map<String, TraceEvent> destroyCallStacks =
+            TraceEventHelper.getTypes(events,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_RETURN,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_IDLE,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_INVALID,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_FLUSH,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_ERROR,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_PREFILL,
+                                      TraceEvent.DESTROY_CONNECTION_LISTENER_INCREMENTER);
+
+         ccmEvents.addAll(TraceEventHelper.filterCCMEvents(events));
+         merge(tocConnections, TraceEventHelper.tocConnections(events));
+         tocManagedConnections.putAll(TraceEventHelper.tocManagedConnections(events));
+         merge(tocConnectionListeners, TraceEventHelper.tocConnectionListeners(events));
+         merge(tocMCPs, TraceEventHelper.tocManagedConnectionPools(events));
+
+         if (version == null)
+            version = TraceEventHelper.getVersion(events);
 
          // CCM status calculation
-         TraceEventStatus ccmStatus = TraceEventHelper.getCCMStatus(filteredCCM, ignoreIncomplete);
-         Map<String, TraceEventStatus> ccmPoolStatus = new TreeMap<String, TraceEventStatus>();
          for (Map.Entry<String, List<TraceEvent>> entry : filteredCCMPool.entrySet())
          {
             ccmPoolStatus.put(entry.getKey(), TraceEventHelper.getCCMPoolStatus(entry.getValue(), ignoreIncomplete));
          }
 
          // Overall pool status
-         Map<String, TraceEventStatus> overallPoolStatus = new TreeMap<String, TraceEventStatus>();
-         
          for (String poolName : filteredLifecycle.keySet())
          {
             List<Interaction> interactions = poolData.get(poolName);
@@ -2208,365 +2471,305 @@ public class HTMLReport
             }
          }
 
-         FileWriter topLevel = null;
-         try
-         {
-            topLevel = new FileWriter(root.getAbsolutePath() + "/" + "index.html");
-            generateTopLevelIndexHTML(filteredLifecycle.keySet(), overallPoolStatus,
-                                      ccmStatus, ccmPoolStatus,
-                                      TraceEventHelper.getVersion(events), topLevel);
-         }
-         finally
+         final Set<String> activeCLs = new HashSet<String>();
+         for (List<Interaction> interactions : poolData.values())
          {
-            if (topLevel != null)
+            for (Interaction interaction : interactions)
             {
-               try
-               {
-                  topLevel.flush();
-                  topLevel.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               activeCLs.add(interaction.getConnectionListener());
+
+               if (interaction.getTransaction() != null)
+                  transactionInteractions.add(interaction);
             }
          }
 
+         List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
 
          for (String poolName : filteredLifecycle.keySet())
          {
-            List<Interaction> data = poolData.get(poolName);
-
-            FileWriter pool = null;
-            try
-            {
-               String path = root.getAbsolutePath() + "/" + poolName;
-               File f = new File(path);
-               f.mkdirs();
-
-               Map<String, TraceEventStatus> clStatus = new TreeMap<String, TraceEventStatus>();
-               if (data != null)
-               {
-                  Map<String, List<Interaction>> clInteractions = TraceEventHelper.getConnectionListenerData(data);
-                  
-                  Iterator<Map.Entry<String, List<Interaction>>> dataIt = clInteractions.entrySet().iterator();
-                  while (dataIt.hasNext())
-                  {
-                     Map.Entry<String, List<Interaction>> dataEntry = dataIt.next();
-                     String identifier = dataEntry.getKey();
-
-                     // Calculate connection listener status
-                     List<TraceEventStatus> clStatuses = new ArrayList<TraceEventStatus>();
-
-                     for (Interaction interaction : dataEntry.getValue())
-                        clStatuses.add(interaction.getStatus());
+            tasks.add(new PoolTask(poolName, poolData.get(poolName), overallPoolStatus.get(poolName),
+                                   poolMCPs.get(poolName), createCallStacks, destroyCallStacks,
+                                   noSDedit, new File(root, poolName), state));
+         }
 
-                     TraceEventStatus currentCLStatus = TraceEventHelper.mergeStatus(clStatuses);
-                     clStatus.put(identifier, currentCLStatus);
-                     
-                     FileWriter cl = null;
-                     try
-                     {
-                        String clPath = path + "/" + identifier;
-                        File clF = new File(clPath);
-                        clF.mkdirs();
-
-                        cl = new FileWriter(clF.getAbsolutePath() + "/" + "index.html");
-
-                        TraceEvent createCallStack =
-                           TraceEventHelper.getType(events, identifier,
-                                                    TraceEvent.CREATE_CONNECTION_LISTENER_GET,
-                                                    TraceEvent.CREATE_CONNECTION_LISTENER_PREFILL,
-                                                    TraceEvent.CREATE_CONNECTION_LISTENER_INCREMENTER);
-                        
-                        TraceEvent destroyCallStack =
-                           TraceEventHelper.getType(events, identifier,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_RETURN,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_IDLE,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_INVALID,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_FLUSH,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_ERROR,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_PREFILL,
-                                                    TraceEvent.DESTROY_CONNECTION_LISTENER_INCREMENTER);
-                        
-                        generateConnectionListenerIndexHTML(identifier, dataEntry.getValue(),
-                                                            currentCLStatus,
-                                                            createCallStack, destroyCallStack,
-                                                            noSDedit, clPath, cl);
-                     }
-                     finally
-                     {
-                        if (cl != null)
-                        {
-                           try
-                           {
-                              cl.flush();
-                              cl.close();
-                           }
-                           catch (Exception e)
-                           {
-                              // Ignore
-                           }
-                        }
-                     }
-                  }
-               }
+         for (Map.Entry<String, List<TraceEvent>> entry : filteredLifecycle.entrySet())
+         {
+            final String poolName = entry.getKey();
+            final List<TraceEvent> lifecycleEvents = entry.getValue();
 
-               pool = new FileWriter(f.getAbsolutePath() + "/" + "index.html");
-               generatePoolIndexHTML(poolName, overallPoolStatus.get(poolName), poolMCPs.get(poolName), clStatus, pool);
+            long fingerprint = ReportState.fingerprint(ReportState.SEED, lifecycleEvents);
+            for (TraceEvent te : lifecycleEvents)
+            {
+               boolean active = activeCLs.contains(te.getConnectionListener());
+               fingerprint = ReportState.fingerprint(fingerprint, active ? 1L : 0L);
             }
-            finally
+
+            File page = new File(new File(root, poolName), "lifecycle.html");
+            if (state.isChanged(page, fingerprint))
             {
-               if (pool != null)
+               tasks.add(new PageTask(page)
                {
-                  try
+                  private static final long serialVersionUID = 1L;
+
+                  @Override
+                  protected void generate(FileWriter fw) throws Exception
                   {
-                     pool.flush();
-                     pool.close();
+                     generateLifecycleHTML(poolName, lifecycleEvents, activeCLs, fw);
                   }
-                  catch (Exception e)
-                  {
-                     // Ignore
-                  }
-               }
+               });
             }
          }
 
-         Set<String> activeCLs = new HashSet<String>();
-         for (List<Interaction> interactions : poolData.values())
+         for (String ccmPoolKey : filteredLifecycle.keySet())
          {
-            for (Interaction interaction : interactions)
-               activeCLs.add(interaction.getConnectionListener());
-         }
+            final String poolName = ccmPoolKey;
+            List<TraceEvent> ccmPoolEvents = filteredCCMPool.get(ccmPoolKey);
+            TraceEventStatus ccmPStatus = ccmPoolStatus.get(ccmPoolKey);
 
-         Iterator<Map.Entry<String, List<TraceEvent>>> lifeIt = filteredLifecycle.entrySet().iterator();
-         while (lifeIt.hasNext())
-         {
-            Map.Entry<String, List<TraceEvent>> entry = lifeIt.next();
+            if (ccmPoolEvents == null)
+               ccmPoolEvents = new ArrayList<TraceEvent>();
 
-            FileWriter lifecycle = null;
-            try
-            {
-               String path = root.getAbsolutePath() + "/" + entry.getKey();
-               File f = new File(path);
-               f.mkdirs();
+            if (ccmPStatus == null)
+               ccmPStatus = TraceEventStatus.GREEN;
 
-               lifecycle = new FileWriter(path + "/" + "lifecycle.html");
-               generateLifecycleHTML(entry.getKey(), entry.getValue(), activeCLs, lifecycle);
-            }
-            finally
+            final List<TraceEvent> poolEvents = ccmPoolEvents;
+            final TraceEventStatus poolStatus = ccmPStatus;
+
+            long fingerprint = ReportState.fingerprint(ReportState.SEED, poolStatus.name());
+            fingerprint = ReportState.fingerprint(fingerprint, poolEvents);
+
+            File page = new File(new File(root, poolName), "ccm.html");
+            if (state.isChanged(page, fingerprint))
             {
-               if (lifecycle != null)
+               tasks.add(new PageTask(page)
                {
-                  try
-                  {
-                     lifecycle.flush();
-                     lifecycle.close();
-                  }
-                  catch (Exception e)
+                  private static final long serialVersionUID = 1L;
+
+                  @Override
+                  protected void generate(FileWriter fw) throws Exception
                   {
-                     // Ignore
+                     generateCCMPoolHTML(poolName, poolEvents, poolStatus, fw);
                   }
-               }
+               });
             }
          }
 
-         FileWriter ccm = null;
-         try
-         {
-            String path = root.getAbsolutePath() + "/CachedConnectionManager";
-            File f = new File(path);
-            f.mkdirs();
+         return tasks;
+      }
 
-            if (filteredCCM == null)
-               filteredCCM = new ArrayList<TraceEvent>();
-            
-            if (ccmStatus == null)
-               ccmStatus = TraceEventStatus.GREEN;
-            
-            ccm = new FileWriter(path + "/" + "ccm.html");
-            generateCCMHTML(filteredCCM, ccmStatus, path, ccm);
-         }
-         finally
+      /**
+       * Finish the report
+       * @return The tasks generating the top-level pages
+       * @exception Exception If an error occurs
+       */
+      List<ForkJoinTask<Void>> finish() throws Exception
+      {
+         TraceEventStatus ccmStatus = TraceEventHelper.getCCMStatus(ccmEvents, ignoreIncomplete);
+
+         if (ccmStatus == null)
+            ccmStatus = TraceEventStatus.GREEN;
+
+         final TraceEventStatus ccmOverallStatus = ccmStatus;
+         final TraceEvent versionEvent = version;
+         List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
+
+         tasks.add(new PageTask(new File(root, "index.html"))
          {
-            if (ccm != null)
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               try
-               {
-                  ccm.flush();
-                  ccm.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               generateTopLevelIndexHTML(overallPoolStatus.keySet(), overallPoolStatus,
+                                         ccmOverallStatus, ccmPoolStatus, versionEvent, fw);
             }
-         }
+         });
 
-         Iterator<String> ccmIt = filteredLifecycle.keySet().iterator();
-         while (ccmIt.hasNext())
+         final File ccmDirectory = new File(root, "CachedConnectionManager");
+         tasks.add(new PageTask(new File(ccmDirectory, "ccm.html"))
          {
-            String ccmPoolKey = ccmIt.next();
-            List<TraceEvent> ccmPoolEvents = filteredCCMPool.get(ccmPoolKey);
-            TraceEventStatus ccmPStatus = ccmPoolStatus.get(ccmPoolKey);
+            private static final long serialVersionUID = 1L;
 
-            ccm = null;
-            try
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               String path = root.getAbsolutePath() + "/" + ccmPoolKey;
-               File f = new File(path);
-               f.mkdirs();
-
-               if (ccmPoolEvents == null)
-                  ccmPoolEvents = new ArrayList<TraceEvent>();
-            
-               if (ccmPStatus == null)
-                  ccmPStatus = TraceEventStatus.GREEN;
-            
-               ccm = new FileWriter(path + "/" + "ccm.html");
-               generateCCMPoolHTML(ccmPoolKey, ccmPoolEvents, ccmPStatus, ccm);
+               generateCCMHTML(ccmEvents, ccmOverallStatus, ccmDirectory.getAbsolutePath(), fw);
             }
-            finally
-            {
-               if (ccm != null)
-               {
-                  try
-                  {
-                     ccm.flush();
-                     ccm.close();
-                  }
-                  catch (Exception e)
-                  {
-                     // Ignore
-                  }
-               }
-            }
-         }
+         });
 
          // Reference
-         FileWriter tocC = null;
-         try
+         tasks.add(new PageTask(new File(root, "toc-c.html"))
          {
-            String path = root.getAbsolutePath();
+            private static final long serialVersionUID = 1L;
 
-            tocC = new FileWriter(path + "/" + "toc-c.html");
-            generateToCConnection(tocConnections, tocC);
-         }
-         finally
-         {
-            if (tocC != null)
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               try
-               {
-                  tocC.flush();
-                  tocC.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               generateToCConnection(tocConnections, fw);
             }
-         }
-         FileWriter tocMC = null;
-         try
+         });
+         tasks.add(new PageTask(new File(root, "toc-mc.html"))
          {
-            String path = root.getAbsolutePath();
+            private static final long serialVersionUID = 1L;
 
-            tocMC = new FileWriter(path + "/" + "toc-mc.html");
-            generateToCManagedConnection(tocManagedConnections, tocMC);
-         }
-         finally
-         {
-            if (tocMC != null)
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               try
-               {
-                  tocMC.flush();
-                  tocMC.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               generateToCManagedConnection(tocManagedConnections, fw);
             }
-         }
-         FileWriter tocCL = null;
-         try
+         });
+         tasks.add(new PageTask(new File(root, "toc-cl.html"))
          {
-            String path = root.getAbsolutePath();
+            private static final long serialVersionUID = 1L;
 
-            tocCL = new FileWriter(path + "/" + "toc-cl.html");
-            generateToCConnectionListener(tocConnectionListeners, tocCL);
-         }
-         finally
-         {
-            if (tocCL != null)
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               try
-               {
-                  tocCL.flush();
-                  tocCL.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               generateToCConnectionListener(tocConnectionListeners, fw);
             }
-         }
-         FileWriter tocMCP = null;
-         try
+         });
+         tasks.add(new PageTask(new File(root, "toc-mcp.html"))
          {
-            String path = root.getAbsolutePath();
+            private static final long serialVersionUID = 1L;
 
-            tocMCP = new FileWriter(path + "/" + "toc-mcp.html");
-            generateToCManagedConnectionPool(tocMCPs, tocMCP);
-         }
-         finally
-         {
-            if (tocMCP != null)
+            @Override
+            protected void generate(FileWriter fw) throws Exception
             {
-               try
-               {
-                  tocMCP.flush();
-                  tocMCP.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
+               generateToCManagedConnectionPool(tocMCPs, fw);
             }
-         }
+         });
 
          // Transaction
-         FileWriter transaction = null;
-         try
+         tasks.add(new PageTask(new File(root, "transaction.html"))
+         {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void generate(FileWriter fw) throws Exception
+            {
+               generateTransaction(TraceEventHelper.getTransactionData(transactionInteractions), fw);
+            }
+         });
+
+         return tasks;
+      }
+
+      /**
+       * Merge a ToC
+       * @param toc The ToC
+       * @param part The ToC of a part
+       */
+      private static void merge(Map<String, List<TraceEvent>> toc, Map<String, List<TraceEvent>> part)
+      {
+         for (Map.Entry<String, List<TraceEvent>> entry : part.entrySet())
          {
-            List<Interaction> allInteractions = new ArrayList<Interaction>();
-            
-            for (List<Interaction> interactions : poolData.values())
-               allInteractions.addAll(interactions);
+            List<TraceEvent> l = toc.get(entry.getKey());
+
+            if (l == null)
+               toc.put(entry.getKey(), entry.getValue());
+            else
+               l.addAll(entry.getValue());
+         }
+      }
+   }
+
+   /**
+    * Run tasks to completion
+    * @param forkJoinPool The pool
+    * @param tasks The tasks
+    */
+   private static void run(ForkJoinPool forkJoinPool, List<ForkJoinTask<Void>> tasks)
+   {
+      for (ForkJoinTask<Void> task : tasks)
+         forkJoinPool.execute(task);
+
+      for (ForkJoinTask<Void> task : tasks)
+         task.join();
+   }
 
-            Map<String, List<Interaction>> transactionData = TraceEventHelper.getTransactionData(allInteractions);
-            String path = root.getAbsolutePath();
+   /**
+    * Main
+    * @param args The arguments
+    */
+   public static void main(String[] args)
+   {
+      if (args == null || args.length < 1)
+      {
+         System.out.println("Usage: HTMLReport [-ignore-delist] [-ignore-tracking] " +
+                            "[-ignore-incomplete] [-no-sdedit] [-incremental] [-threads <n>] <file> [<output>]");
+         return;
+      }
 
-            transaction = new FileWriter(path + "/" + "transaction.html");
-            generateTransaction(transactionData, transaction);
+      boolean ignoreDelist = false;
+      boolean ignoreTracking = false;
+      boolean ignoreIncomplete = false;
+      boolean noSDedit = false;
+      boolean incremental = false;
+      int threads = Runtime.getRuntime().availableProcessors();
+      int argCount = 0;
+
+      if ("-ignore-delist".equalsIgnoreCase(args[argCount]))
+      {
+         ignoreDelist = true;
+         argCount++;
+      }
+      if ("-ignore-tracking".equalsIgnoreCase(args[argCount]))
+      {
+         ignoreTracking = true;
+         argCount++;
+      }
+      if ("-ignore-incomplete".equalsIgnoreCase(args[argCount]))
+      {
+         ignoreIncomplete = true;
+         argCount++;
+      }
+      if ("-no-sdedit".equalsIgnoreCase(args[argCount]))
+      {
+         noSDedit = true;
+         argCount++;
+      }
+      if ("-incremental".equalsIgnoreCase(args[argCount]))
+      {
+         incremental = true;
+         argCount++;
+      }
+      if ("-threads".equalsIgnoreCase(args[argCount]))
+      {
+         threads = Math.max(1, Integer.parseInt(args[argCount + 1]));
+         argCount += 2;
+      }
+
+      File logFile = new File(args[argCount]);
+
+      String rootDirectory = "report";
+      if (args.length > argCount + 1)
+         rootDirectory = args[argCount + 1];
+
+      File root = new File(rootDirectory);
+      ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+
+      try
+      {
+         root.mkdirs();
+
+         final ReportState state = new ReportState(root, incremental);
+         Report report = new Report(ignoreDelist, ignoreTracking, ignoreIncomplete, noSDedit, root, state);
+
+         if (TraceFileReader.isBinary(logFile))
+         {
+            // One pool at a time, so only the events of a single pool are in memory
+            TraceIndex index = TraceIndex.build(logFile);
+            for (String pool : index.getPools())
+               run(forkJoinPool, report.add(index.getPoolEvents(pool)));
          }
-         finally
+         else
          {
-            if (transaction != null)
-            {
-               try
-               {
-                  transaction.flush();
-                  transaction.close();
-               }
-               catch (Exception e)
-               {
-                  // Ignore
-               }
-            }
+            run(forkJoinPool, report.add(TraceEventHelper.getEvents(logFile, root)));
          }
+
+         run(forkJoinPool, report.finish());
+
+         state.store();
       }
       catch (Exception e)
       {
@@ -2574,17 +2777,7 @@ public class HTMLReport
       }
       finally
       {
-         if (logReader != null)
-         {
-            try
-            {
-               logReader.close();
-            }
-            catch (Exception e)
-            {
-               // Ignore
-            }
-         }
+         forkJoinPool.shutdown();
       }
    }
 }
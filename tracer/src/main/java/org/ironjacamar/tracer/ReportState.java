@@ -0,0 +1,231 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.tracer;
+
+import org.ironjacamar.core.tracer.TraceEvent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fingerprints of the pages of a report, so an incremental run can skip
+ * the pages whose underlying events haven't changed
+ */
+public class ReportState
+{
+   /** The name of the state file */
+   private static final String STATE_FILE = "report.state";
+
+   /** The initial fingerprint */
+   static final long SEED = 0xcbf29ce484222325L;
+
+   /** The fingerprint prime */
+   private static final long PRIME = 0x100000001b3L;
+
+   /** The root directory */
+   private final File root;
+
+   /** Is the report incremental */
+   private final boolean incremental;
+
+   /** The fingerprints of the previous run */
+   private final Map<String, Long> previous;
+
+   /** The fingerprints of this run */
+   private final Map<String, Long> current;
+
+   /**
+    * Constructor
+    * @param root The root directory
+    * @param incremental Skip the pages that haven't changed since the previous run
+    */
+   public ReportState(File root, boolean incremental)
+   {
+      this.root = root;
+      this.incremental = incremental;
+      this.previous = new ConcurrentHashMap<String, Long>();
+      this.current = new ConcurrentHashMap<String, Long>();
+
+      if (incremental)
+         load();
+   }
+
+   /**
+    * Should a page be generated; records the fingerprint of the page for the next run
+    * @param page The page
+    * @param fingerprint The fingerprint of the events the page is generated from
+    * @return True if the page has to be generated, otherwise false
+    */
+   public boolean isChanged(File page, long fingerprint)
+   {
+      String key = root.toURI().relativize(page.toURI()).getPath();
+      current.put(key, Long.valueOf(fingerprint));
+
+      if (!incremental || !page.exists())
+         return true;
+
+      Long l = previous.get(key);
+      return l == null || l.longValue() != fingerprint;
+   }
+
+   /**
+    * Store the fingerprints of this run
+    * @exception IOException If an error occurs
+    */
+   public void store() throws IOException
+   {
+      Properties p = new Properties();
+      for (Map.Entry<String, Long> entry : current.entrySet())
+         p.setProperty(entry.getKey(), Long.toHexString(entry.getValue().longValue()));
+
+      OutputStream os = null;
+      try
+      {
+         os = new FileOutputStream(new File(root, STATE_FILE));
+         p.store(os, "IronJacamar tracer report");
+      }
+      finally
+      {
+         if (os != null)
+         {
+            try
+            {
+               os.close();
+            }
+            catch (IOException ignore)
+            {
+               // Ignore
+            }
+         }
+      }
+   }
+
+   /**
+    * Add a value to a fingerprint
+    * @param h The fingerprint
+    * @param v The value
+    * @return The new fingerprint
+    */
+   static long fingerprint(long h, long v)
+   {
+      return (h ^ v) * PRIME;
+   }
+
+   /**
+    * Add a string to a fingerprint
+    * @param h The fingerprint
+    * @param s The string
+    * @return The new fingerprint
+    */
+   static long fingerprint(long h, String s)
+   {
+      return fingerprint(h, s != null ? (long)s.hashCode() : 0L);
+   }
+
+   /**
+    * Add an event to a fingerprint
+    * @param h The fingerprint
+    * @param te The event
+    * @return The new fingerprint
+    */
+   static long fingerprint(long h, TraceEvent te)
+   {
+      if (te == null)
+         return fingerprint(h, 0L);
+
+      h = fingerprint(h, te.getType());
+      h = fingerprint(h, te.getThreadId());
+      h = fingerprint(h, te.getTimestamp());
+      h = fingerprint(h, te.getPool());
+      h = fingerprint(h, te.getManagedConnectionPool());
+      h = fingerprint(h, te.getConnectionListener());
+      h = fingerprint(h, te.getPayload1());
+      return fingerprint(h, te.getPayload2());
+   }
+
+   /**
+    * Add events to a fingerprint
+    * @param h The fingerprint
+    * @param events The events
+    * @return The new fingerprint
+    */
+   static long fingerprint(long h, Collection<TraceEvent> events)
+   {
+      if (events == null)
+         return fingerprint(h, 0L);
+
+      h = fingerprint(h, events.size());
+      for (TraceEvent te : events)
+         h = fingerprint(h, te);
+
+      return h;
+   }
+
+   /**
+    * Load the fingerprints of the previous run
+    */
+   private void load()
+   {
+      File f = new File(root, STATE_FILE);
+      if (!f.exists())
+         return;
+
+      InputStream is = null;
+      try
+      {
+         is = new FileInputStream(f);
+
+         Properties p = new Properties();
+         p.load(is);
+
+         for (String key : p.stringPropertyNames())
+            previous.put(key, Long.valueOf(Long.parseUnsignedLong(p.getProperty(key), 16)));
+      }
+      catch (Exception e)
+      {
+         // Regenerate everything
+         previous.clear();
+      }
+      finally
+      {
+         if (is != null)
+         {
+            try
+            {
+               is.close();
+            }
+            catch (IOException ignore)
+            {
+               // Ignore
+            }
+         }
+      }
+   }
+}
@@ -335,6 +335,58 @@ public class TraceEventHelper
       return getEvents(getData(fr, directory));
    }
 
+   /**
+    * Get the events of a trace file, in the text or the binary format
+    * @param file The file
+    * @param directory The directory
+    * @return The events
+    * @exception Exception If an error occurs
+    */
+   public static List<TraceEvent> getEvents(File file, File directory) throws Exception
+   {
+      if (TraceFileReader.isBinary(file))
+      {
+         List<TraceEvent> result = new ArrayList<TraceEvent>();
+         TraceFileReader reader = new TraceFileReader(file);
+         try
+         {
+            TraceEvent te = reader.next();
+            while (te != null)
+            {
+               result.add(te);
+               te = reader.next();
+            }
+         }
+         finally
+         {
+            reader.close();
+         }
+
+         return result;
+      }
+
+      FileReader fr = null;
+      try
+      {
+         fr = new FileReader(file);
+         return getEvents(fr, directory);
+      }
+      finally
+      {
+         if (fr != null)
+         {
+            try
+            {
+               fr.close();
+            }
+            catch (IOException ignore)
+            {
+               // Ignore
+            }
+         }
+      }
+   }
+
    /**
     * Get status
     * @param input The input
@@ -1047,6 +1099,28 @@ public class TraceEventHelper
       return null;
    }
 
+   /**
+    * Get a specific event type for all connection listeners
+    * @param events The events
+    * @param types The types
+    * @return The first event type found for each connection listener
+    */
+   public static Map<String, TraceEvent> getTypes(List<TraceEvent> events, int... types)
+   {
+      Map<String, TraceEvent> result = new HashMap<String, TraceEvent>();
+
+      for (TraceEvent te : events)
+      {
+         for (int type : types)
+         {
+            if (te.getType() == type && !result.containsKey(te.getConnectionListener()))
+               result.put(te.getConnectionListener(), te);
+         }
+      }
+
+      return result;
+   }
+
    /**
     * Has more application events
     * @param events The events
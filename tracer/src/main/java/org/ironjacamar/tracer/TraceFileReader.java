@@ -0,0 +1,298 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.tracer;
+
+import org.ironjacamar.core.tracer.TraceEvent;
+import org.ironjacamar.core.tracer.TraceFormat;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A streaming reader for trace files in the binary trace format.
+ *
+ * The file is memory-mapped a window at a time, and only the strings of the
+ * current segment are kept, so memory use doesn't depend on the size of the file.
+ * A record cut short at the end of the file, like in a trace that is still being
+ * written, ends the stream.
+ */
+public class TraceFileReader implements Closeable
+{
+   /** The size of a mapped window */
+   private static final int WINDOW = 64 * 1024 * 1024;
+
+   /** The file */
+   private final RandomAccessFile file;
+
+   /** The channel */
+   private final FileChannel channel;
+
+   /** The size of the file */
+   private final long size;
+
+   /** The strings of the current segment */
+   private final Map<Integer, String> strings;
+
+   /** The mapped window */
+   private MappedByteBuffer window;
+
+   /** The file position of the window */
+   private long windowStart;
+
+   /** The file position */
+   private long position;
+
+   /** The file position of the current segment */
+   private long segmentStart;
+
+   /**
+    * Constructor
+    * @param f The file
+    * @exception IOException If the file isn't a binary trace file
+    */
+   public TraceFileReader(File f) throws IOException
+   {
+      this.file = new RandomAccessFile(f, "r");
+      this.channel = file.getChannel();
+      this.size = channel.size();
+      this.strings = new HashMap<Integer, String>();
+      this.window = null;
+      this.windowStart = 0L;
+      this.position = 0L;
+
+      if (!ensure(8) || window.getInt() != TraceFormat.MAGIC)
+      {
+         close();
+         throw new IOException("Not a binary trace file: " + f);
+      }
+
+      int version = window.getInt();
+      if (version != TraceFormat.FORMAT_VERSION)
+      {
+         close();
+         throw new IOException("Unsupported trace format version: " + version);
+      }
+
+      position = 8L;
+      segmentStart = position;
+   }
+
+   /**
+    * Is a file in the binary trace format
+    * @param f The file
+    * @return True if it is, otherwise false
+    */
+   public static boolean isBinary(File f)
+   {
+      DataInputStream dis = null;
+      try
+      {
+         dis = new DataInputStream(new FileInputStream(f));
+         return f.length() >= 8 && dis.readInt() == TraceFormat.MAGIC;
+      }
+      catch (IOException ioe)
+      {
+         return false;
+      }
+      finally
+      {
+         if (dis != null)
+         {
+            try
+            {
+               dis.close();
+            }
+            catch (IOException ignore)
+            {
+               // Ignore
+            }
+         }
+      }
+   }
+
+   /**
+    * Get the file position of the current segment; a later {@link #seek(long)} to it
+    * will read the segment again
+    * @return The value
+    */
+   public long getSegmentStart()
+   {
+      return segmentStart;
+   }
+
+   /**
+    * Continue reading at the start of a segment
+    * @param segment The file position of the segment
+    */
+   public void seek(long segment)
+   {
+      strings.clear();
+      position = segment;
+      segmentStart = segment;
+   }
+
+   /**
+    * Read the next event
+    * @return The event, or <code>null</code> at the end of the file
+    * @exception IOException If the file is corrupt
+    */
+   public TraceEvent next() throws IOException
+   {
+      while (ensure(1))
+      {
+         long recordStart = position;
+         byte tag = window.get();
+         position++;
+
+         if (tag == TraceFormat.EVENT)
+         {
+            if (!ensure(TraceFormat.EVENT_SIZE))
+               break;
+
+            int flags = window.get();
+            int type = window.getInt();
+            long threadId = window.getLong();
+            long timestamp = window.getLong();
+            String pool = string(window.getInt());
+            int mcp = window.getInt();
+            int cl = window.getInt();
+            int payload1 = window.getInt();
+            String payload2 = string(window.getInt());
+
+            position += TraceFormat.EVENT_SIZE;
+
+            return new TraceEvent(pool,
+                                  value(mcp, (flags & TraceFormat.MCP_STRING) != 0),
+                                  threadId, type, timestamp,
+                                  value(cl, (flags & TraceFormat.CL_STRING) != 0),
+                                  value(payload1, (flags & TraceFormat.PAYLOAD1_STRING) != 0),
+                                  payload2);
+         }
+         else if (tag == TraceFormat.STRING)
+         {
+            if (!ensure(8))
+               break;
+
+            int id = window.getInt();
+            int length = window.getInt();
+            position += 8;
+
+            if (length < 0 || !ensure(length))
+               break;
+
+            byte[] data = new byte[length];
+            window.get(data);
+            position += length;
+
+            strings.put(Integer.valueOf(id), new String(data, StandardCharsets.UTF_8));
+         }
+         else if (tag == TraceFormat.RESET)
+         {
+            strings.clear();
+            segmentStart = position;
+         }
+         else
+         {
+            throw new IOException("Corrupt trace file at " + recordStart);
+         }
+      }
+
+      position = size;
+      return null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void close() throws IOException
+   {
+      window = null;
+      file.close();
+   }
+
+   /**
+    * Make sure the window covers a number of bytes from the current position
+    * @param n The number of bytes
+    * @return False if the file ends before that
+    * @exception IOException If an error occurs
+    */
+   private boolean ensure(int n) throws IOException
+   {
+      if (position + n > size)
+         return false;
+
+      if (window == null || position < windowStart || position + n > windowStart + window.limit())
+      {
+         long length = Math.min(Math.max((long)WINDOW, (long)n), size - position);
+         window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+         windowStart = position;
+      }
+      else
+      {
+         window.position((int)(position - windowStart));
+      }
+
+      return true;
+   }
+
+   /**
+    * Get a string
+    * @param id The id
+    * @return The value
+    * @exception IOException If the id isn't known in the segment
+    */
+   private String string(int id) throws IOException
+   {
+      if (id == 0)
+         return "";
+
+      String s = strings.get(Integer.valueOf(id));
+      if (s == null)
+         throw new IOException("Unknown string " + id + " at " + position);
+
+      return s;
+   }
+
+   /**
+    * Get the value of a field
+    * @param v The string id or identity hash code
+    * @param isString Is the value a string id
+    * @return The value
+    * @exception IOException If the id isn't known in the segment
+    */
+   private String value(int v, boolean isString) throws IOException
+   {
+      if (isString)
+         return string(v);
+
+      return Integer.toHexString(v);
+   }
+}
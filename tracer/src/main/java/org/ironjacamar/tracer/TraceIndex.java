@@ -0,0 +1,252 @@
+/*
+ * IronJacamar, a Java EE Connector Architecture implementation
+ * Copyright 2016, Red Hat Inc, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the Eclipse Public License 1.0 as
+ * published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the Eclipse
+ * Public License for more details.
+ *
+ * You should have received a copy of the Eclipse Public License 
+ * along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.ironjacamar.tracer;
+
+import org.ironjacamar.core.tracer.TraceEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An index of a binary trace file by pool and by connection listener.
+ *
+ * The index only records which segments of the file hold events for a pool or a
+ * connection listener; the events themselves are read again from the file when asked for.
+ */
+public class TraceIndex
+{
+   /** The file */
+   private final File file;
+
+   /** The file positions of the segments */
+   private long[] segments;
+
+   /** The number of segments */
+   private int segmentCount;
+
+   /** The number of events */
+   private long eventCount;
+
+   /** The segments of each pool */
+   private final Map<String, BitSet> pools;
+
+   /** The segments of each connection listener */
+   private final Map<String, BitSet> connectionListeners;
+
+   /**
+    * Constructor
+    * @param file The file
+    */
+   private TraceIndex(File file)
+   {
+      this.file = file;
+      this.segments = new long[64];
+      this.segmentCount = 0;
+      this.eventCount = 0L;
+      this.pools = new TreeMap<String, BitSet>();
+      this.connectionListeners = new TreeMap<String, BitSet>();
+   }
+
+   /**
+    * Build the index of a file in a single pass
+    * @param file The file
+    * @return The index
+    * @exception IOException If an error occurs
+    */
+   public static TraceIndex build(File file) throws IOException
+   {
+      TraceIndex index = new TraceIndex(file);
+      TraceFileReader reader = new TraceFileReader(file);
+      try
+      {
+         long segment = -1L;
+         TraceEvent te = reader.next();
+         while (te != null)
+         {
+            if (reader.getSegmentStart() != segment)
+            {
+               segment = reader.getSegmentStart();
+               index.addSegment(segment);
+            }
+
+            index.eventCount++;
+            index.mark(index.pools, te.getPool());
+
+            if (!"NONE".equals(te.getConnectionListener()))
+               index.mark(index.connectionListeners, te.getConnectionListener());
+
+            te = reader.next();
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      return index;
+   }
+
+   /**
+    * Get the file
+    * @return The value
+    */
+   public File getFile()
+   {
+      return file;
+   }
+
+   /**
+    * Get the number of events
+    * @return The value
+    */
+   public long getEventCount()
+   {
+      return eventCount;
+   }
+
+   /**
+    * Get the number of segments
+    * @return The value
+    */
+   public int getSegmentCount()
+   {
+      return segmentCount;
+   }
+
+   /**
+    * Get the pools
+    * @return The value
+    */
+   public Set<String> getPools()
+   {
+      return Collections.unmodifiableSet(pools.keySet());
+   }
+
+   /**
+    * Get the connection listeners
+    * @return The value
+    */
+   public Set<String> getConnectionListeners()
+   {
+      return Collections.unmodifiableSet(connectionListeners.keySet());
+   }
+
+   /**
+    * Get the events of a pool
+    * @param pool The pool
+    * @return The events
+    * @exception IOException If an error occurs
+    */
+   public List<TraceEvent> getPoolEvents(String pool) throws IOException
+   {
+      return read(pools.get(pool), pool, null);
+   }
+
+   /**
+    * Get the events of a connection listener
+    * @param cl The connection listener
+    * @return The events
+    * @exception IOException If an error occurs
+    */
+   public List<TraceEvent> getConnectionListenerEvents(String cl) throws IOException
+   {
+      return read(connectionListeners.get(cl), null, cl);
+   }
+
+   /**
+    * Add a segment
+    * @param position The file position of the segment
+    */
+   private void addSegment(long position)
+   {
+      if (segmentCount == segments.length)
+         segments = Arrays.copyOf(segments, segments.length * 2);
+
+      segments[segmentCount++] = position;
+   }
+
+   /**
+    * Mark the current segment for a key
+    * @param map The map
+    * @param key The key
+    */
+   private void mark(Map<String, BitSet> map, String key)
+   {
+      BitSet bs = map.get(key);
+      if (bs == null)
+      {
+         bs = new BitSet();
+         map.put(key, bs);
+      }
+
+      bs.set(segmentCount - 1);
+   }
+
+   /**
+    * Read the matching events of a set of segments
+    * @param bs The segments
+    * @param pool The pool, or <code>null</code>
+    * @param cl The connection listener, or <code>null</code>
+    * @return The events
+    * @exception IOException If an error occurs
+    */
+   private List<TraceEvent> read(BitSet bs, String pool, String cl) throws IOException
+   {
+      List<TraceEvent> result = new ArrayList<TraceEvent>();
+
+      if (bs == null)
+         return result;
+
+      TraceFileReader reader = new TraceFileReader(file);
+      try
+      {
+         for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1))
+         {
+            reader.seek(segments[i]);
+
+            TraceEvent te = reader.next();
+            while (te != null && reader.getSegmentStart() == segments[i])
+            {
+               if ((pool == null || pool.equals(te.getPool())) &&
+                   (cl == null || cl.equals(te.getConnectionListener())))
+                  result.add(te);
+
+               te = reader.next();
+            }
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      return result;
+   }
+}